@@ -1,11 +1,22 @@
 package com.demo;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 /**
  * ARPLayer - ARP(Address Resolution Protocol) 계층
@@ -14,7 +25,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * - IP 주소를 MAC 주소로 변환하는 프로토콜 구현
  * - ARP 캐시 테이블 관리 (IP-MAC 매핑 저장)
  * - ARP Request/Reply 메시지 송수신
- * - Proxy ARP: 다른 호스트 대신 ARP 응답
+ * - Proxy ARP: 다른 호스트 대신 ARP 응답 (CIDR 대역 단위, 최장 프리픽스 일치)
  * - Gratuitous ARP: 자신의 IP를 네트워크에 알림
  * 
  * ARP 패킷 구조 (28바이트):
@@ -29,23 +40,98 @@ import java.util.concurrent.ConcurrentHashMap;
  * 1. ARP Request: "192.168.0.5의 MAC 주소를 아는 사람?" (브로드캐스트)
  * 2. ARP Reply: "192.168.0.5는 AA:BB:CC:DD:EE:FF입니다" (유니캐스트)
  * 3. ARP 캐시에 저장하여 재사용
+ * 
+ * ARP 캐시 관리:
+ * - 엔트리마다 유효 시간(TTL) 적용, 만료된 엔트리는 조회되지 않고 정리됨
+ * - 만료 전 갱신: TTL의 마지막 20% 구간에 들어선 엔트리 중 최근(TTL 절반 이내) 사용된 것은
+ *   백그라운드에서 유니캐스트 ARP Request로 미리 갱신 (자주 쓰는 주소는 캐시 미스가 없음)
+ * - 요청 병합: 같은 IP에 대한 해석 요청은 재전송 간격 안에서 하나의 ARP Request로 합침
+ *   (재전송 간격은 1초부터 2배씩 증가)
+ * - 부정 캐시: 응답이 없던 IP는 일정 시간 동안 즉시 실패 처리 (연속 실패 시 시간 2배 증가)
+ * - 스냅샷: 캐시를 작은 바이너리 파일로 저장(주기적 + 종료 시)하고 재시작 시 복원
+ *   복원된 엔트리는 짧은 유효 시간으로 바로 사용하면서 백그라운드에서 유니캐스트 Request로 재확인
+ * 
+ * 주소 표현:
+ * - 내부에서는 IPv4 주소를 int, MAC 주소를 long으로 다룸 ({@link NetAddress})
+ * - 캐시는 기본형 배열 기반 {@link ArpTable}이라 조회 시 문자열/배열/박싱 할당이 없음
+ * - 문자열/바이트 배열 메서드는 UI 입력과 화면 표시용으로만 남겨 둠
  */
 public class ARPLayer implements BaseLayer {
     private final String name = "ARP";
     private BaseLayer underLayer; // 하위 계층: EthernetLayer
     private final List<BaseLayer> uppers = new ArrayList<>(); // 상위 계층: IPLayer
     
-    // ARP 캐시 테이블 (IP 주소 → MAC 주소 매핑)
-    // ConcurrentHashMap 사용으로 멀티스레드 안전성 보장
-    private final Map<String, byte[]> arpCache = new ConcurrentHashMap<>();
+    // ARP 캐시 테이블 (IP 주소 → MAC 주소 + 유효 시간)
+    // 조회는 잠금 없이, 변경은 테이블 내부에서 동기화
+    private final ArpTable arpCache = new ArpTable();
+    
+    // ARP 캐시 유효 시간 / 갱신 설정
+    private static final long DEFAULT_CACHE_TTL_MS = 5 * 60 * 1000;   // 5분
+    private static final double REFRESH_WINDOW_RATIO = 0.2;           // TTL의 마지막 20% 구간에서 갱신
+    private static final long CACHE_TICK_MS = 200;                    // 만료/갱신 점검 주기 (최대)
+    private volatile long cacheTtlMs = DEFAULT_CACHE_TTL_MS;
+    private ScheduledExecutorService cacheTimer;
+    
+    // 해석 요청 병합 / 부정 캐시 설정
+    private static final long INITIAL_RETRY_INTERVAL_MS = 1000;       // 첫 재전송 간격
+    private static final long MAX_RETRY_INTERVAL_MS = 8000;           // 재전송 간격 상한
+    private static final long INITIAL_NEGATIVE_TTL_MS = 5000;         // 첫 부정 캐시 시간
+    private static final long MAX_NEGATIVE_TTL_MS = 60_000;           // 부정 캐시 시간 상한
+    private final Map<Integer, Resolution> resolutions = new ConcurrentHashMap<>(); // 캐시 미스 경로에서만 사용
+    
+    // 스냅샷 설정
+    // 파일 구조: Magic(4) + Version(4) + 저장 시각(8) + 엔트리 수(4) + [IP(4) + MAC(8)] * N + CRC32(4)
+    private static final int SNAPSHOT_MAGIC = 0x41525053;            // "ARPS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 20;
+    private static final int SNAPSHOT_RECORD_SIZE = 12;
+    private static final long SNAPSHOT_MAX_AGE_MS = 30 * 60 * 1000;  // 이보다 오래된 스냅샷은 무시
+    private static final long RESTORED_ENTRY_TTL_MS = 30_000;        // 복원된 엔트리는 재확인 전까지 이 시간만 유효
+    private static final long REVALIDATE_SPACING_MS = 20;            // 재확인 Request 간격 (한꺼번에 보내지 않음)
+    
+    // 통계
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong entriesExpired = new AtomicLong();
+    private final AtomicLong refreshesSent = new AtomicLong();
+    private final AtomicLong requestsSent = new AtomicLong();
+    private final AtomicLong requestsCoalesced = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    
+    /**
+     * 응답을 기다리는 / 응답이 없던 IP의 해석 상태
+     */
+    private static final class Resolution {
+        long lastRequestAt;
+        long retryIntervalMs = INITIAL_RETRY_INTERVAL_MS;
+        long negativeUntil;            // 0이 아니면 이 시각까지 즉시 실패
+        long negativeTtlMs = INITIAL_NEGATIVE_TTL_MS;
+    }
+    
+    /**
+     * ARP 캐시 통계
+     */
+    public record ArpStats(long cacheHits, long cacheMisses, long entriesExpired, long refreshesSent,
+                           long requestsSent, long requestsCoalesced, long negativeHits, int entries) {}
+    
+    /**
+     * 주소 해석 완료 리스너 (IP 계층이 대기 중인 패킷을 보낼 때 사용)
+     */
+    @FunctionalInterface
+    public interface ResolutionListener {
+        void onResolved(int ip, long mac);
+    }
+    
+    private final List<ResolutionListener> resolutionListeners = new CopyOnWriteArrayList<>();
+    private final List<ResolutionListener> replyListeners = new CopyOnWriteArrayList<>();
     
     // 자신의 네트워크 정보
-    private byte[] myMac = new byte[6];    // 자신의 MAC 주소
-    private byte[] myIp = new byte[4];     // 자신의 IP 주소
+    private volatile long myMac = 0;    // 자신의 MAC 주소
+    private volatile int myIp = 0;      // 자신의 IP 주소
     
-    // Proxy ARP 설정 (다른 호스트 대신 ARP 응답)
-    private boolean proxyArpEnabled = false;
-    private final Map<String, byte[]> proxyTable = new ConcurrentHashMap<>();
+    // Proxy ARP 설정 (다른 호스트 대신 ARP 응답, 대역 → 응답할 MAC)
+    private volatile boolean proxyArpEnabled = false;
+    private final PrefixTable proxyTable = new PrefixTable();
     
     // ARP 프로토콜 상수
     private static final int HARDWARE_TYPE_ETHERNET = 0x0001;
@@ -54,6 +140,7 @@ public class ARPLayer implements BaseLayer {
     private static final int PROTOCOL_LEN = 4;
     private static final int OPERATION_REQUEST = 1;
     private static final int OPERATION_REPLY = 2;
+    private static final int ARP_PACKET_SIZE = 28;
     
     /**
      * 자신의 MAC 주소 설정
@@ -61,7 +148,7 @@ public class ARPLayer implements BaseLayer {
      */
     public void setMyMac(byte[] mac) {
         if (mac != null && mac.length >= 6) {
-            System.arraycopy(mac, 0, myMac, 0, 6);
+            myMac = NetAddress.macToLong(mac);
         }
     }
     
@@ -71,10 +158,17 @@ public class ARPLayer implements BaseLayer {
      */
     public void setMyIp(byte[] ip) {
         if (ip != null && ip.length >= 4) {
-            System.arraycopy(ip, 0, myIp, 0, 4);
+            myIp = NetAddress.ipToInt(ip);
         }
     }
     
+    /**
+     * @return 자신의 IPv4 주소
+     */
+    public int getMyIp() {
+        return myIp;
+    }
+    
     /**
      * Proxy ARP 활성화/비활성화
      * @param enabled true면 Proxy ARP 동작
@@ -85,24 +179,75 @@ public class ARPLayer implements BaseLayer {
     
     /**
      * Proxy ARP 테이블에 엔트리 추가
-     * @param ip IP 주소 문자열 (예: "192.168.0.100")
+     * @param ip IP 주소 또는 CIDR 대역 문자열 (예: "192.168.0.100", "10.1.0.0/16")
      * @param mac 6바이트 MAC 주소
+     * @throws IllegalArgumentException 주소 형식이 잘못된 경우
      */
     public void addProxyArpEntry(String ip, byte[] mac) {
         if (mac != null && mac.length >= 6) {
-            byte[] macCopy = Arrays.copyOf(mac, 6);
-            proxyTable.put(ip, macCopy);
+            int slash = ip.indexOf('/');
+            if (slash < 0) {
+                addProxyArpEntry(NetAddress.parseIp(ip), 32, NetAddress.macToLong(mac));
+            } else {
+                addProxyArpEntry(NetAddress.parseIp(ip.substring(0, slash)),
+                                 Integer.parseInt(ip.substring(slash + 1).trim()), NetAddress.macToLong(mac));
+            }
+        }
+    }
+    
+    /**
+     * Proxy ARP 테이블에 대역 추가 (겹치는 대역은 더 긴 프리픽스가 우선)
+     * @param network 대역 안의 주소 (호스트 비트는 무시)
+     * @param prefixLength 프리픽스 길이 (0~32)
+     * @param mac 대역 안의 주소에 대해 응답할 MAC 주소
+     */
+    public void addProxyArpEntry(int network, int prefixLength, long mac) {
+        proxyTable.put(network, prefixLength, mac);
+    }
+    
+    /**
+     * Proxy ARP 테이블에서 대역 삭제
+     * @return 삭제 여부
+     */
+    public boolean removeProxyArpEntry(int network, int prefixLength) {
+        return proxyTable.remove(network, prefixLength);
+    }
+    
+    /**
+     * ARP 캐시 엔트리 유효 시간 설정 (이후 추가되는 엔트리부터 적용)
+     * @param ttlMs 유효 시간 (밀리초, 1 이상)
+     */
+    public void setCacheTtl(long ttlMs) {
+        if (ttlMs < 1) {
+            throw new IllegalArgumentException("ARP 캐시 유효 시간은 1ms 이상이어야 합니다: " + ttlMs);
         }
+        this.cacheTtlMs = ttlMs;
     }
     
     /**
-     * ARP 캐시 테이블 조회
+     * ARP 캐시 조회 (송신 경로용, 할당 없음)
+     * 만료된 엔트리는 없는 것으로 처리합니다.
+     * @param ip IPv4 주소
+     * @return MAC 주소 또는 {@link NetAddress#NO_MAC} (캐시에 없음)
+     */
+    public long lookup(int ip) {
+        long mac = arpCache.get(ip, System.currentTimeMillis());
+        if (mac == NetAddress.NO_MAC) {
+            cacheMisses.incrementAndGet();
+        } else {
+            cacheHits.incrementAndGet();
+        }
+        return mac;
+    }
+    
+    /**
+     * ARP 캐시 테이블 조회 (표시용)
      * @param ip IP 주소 문자열 (예: "192.168.0.100")
      * @return MAC 주소 (6바이트) 또는 null (캐시에 없음)
      */
     public byte[] lookupArpCache(String ip) {
-        byte[] mac = arpCache.get(ip);
-        return (mac != null) ? Arrays.copyOf(mac, 6) : null;
+        long mac = lookup(NetAddress.parseIp(ip));
+        return mac == NetAddress.NO_MAC ? null : NetAddress.macToBytes(mac);
     }
     
     /**
@@ -112,40 +257,341 @@ public class ARPLayer implements BaseLayer {
      */
     public void addArpCacheEntry(String ip, byte[] mac) {
         if (mac != null && mac.length >= 6) {
-            byte[] macCopy = Arrays.copyOf(mac, 6);
-            arpCache.put(ip, macCopy);
-            System.out.println("[ARP 캐시] 추가: " + ip + " -> " + formatMac(macCopy));
+            addArpCacheEntry(NetAddress.parseIp(ip), NetAddress.macToLong(mac));
+        }
+    }
+    
+    /**
+     * ARP 캐시 테이블에 엔트리 추가
+     * @param ip IPv4 주소
+     * @param mac MAC 주소
+     */
+    public void addArpCacheEntry(int ip, long mac) {
+        arpCache.put(ip, mac, System.currentTimeMillis(), cacheTtlMs, 1 - REFRESH_WINDOW_RATIO);
+        if (!resolutions.isEmpty()) {
+            resolutions.remove(ip); // 응답을 받았으므로 재전송/부정 캐시 해제
+        }
+        startCacheTimer();
+        System.out.println("[ARP 캐시] 추가: " + NetAddress.formatIp(ip) + " -> " + NetAddress.formatMac(mac));
+        for (ResolutionListener listener : resolutionListeners) {
+            listener.onResolved(ip, mac);
+        }
+    }
+    
+    /**
+     * 주소 해석 완료 리스너 등록
+     * ARP 캐시에 엔트리가 추가될 때마다 (IP 주소, MAC 주소)로 호출됩니다.
+     * @param listener 리스너
+     */
+    public void addResolutionListener(ResolutionListener listener) {
+        if (listener != null && !resolutionListeners.contains(listener)) {
+            resolutionListeners.add(listener);
         }
     }
     
     /**
-     * ARP 캐시 테이블 전체 반환
+     * ARP Reply 수신 리스너 등록
+     * 자신에게 온 Reply를 받을 때만 (Sender IP, Sender MAC)으로 호출됩니다 (캐시 학습 후).
+     * 다른 호스트의 Request나 Gratuitous ARP로 학습한 엔트리는 전달되지 않습니다.
+     * @param listener 리스너
+     */
+    public void addReplyListener(ResolutionListener listener) {
+        if (listener != null && !replyListeners.contains(listener)) {
+            replyListeners.add(listener);
+        }
+    }
+    
+    /**
+     * ARP 캐시 테이블 전체 반환 (유효한 엔트리만, 표시용)
      * @return IP-MAC 매핑 맵
      */
     public Map<String, byte[]> getArpCache() {
-        return new ConcurrentHashMap<>(arpCache);
+        Map<String, byte[]> snapshot = new ConcurrentHashMap<>();
+        arpCache.forEach(System.currentTimeMillis(),
+            (ip, mac, expiresAt) -> snapshot.put(NetAddress.formatIp(ip), NetAddress.macToBytes(mac)));
+        return snapshot;
     }
     
     /**
-     * ARP 캐시 초기화
+     * ARP 캐시 초기화 (부정 캐시 포함)
      */
     public void clearArpCache() {
         arpCache.clear();
+        resolutions.clear();
         System.out.println("[ARP 캐시] 초기화됨");
     }
     
     /**
-     * ARP Request 전송 - IP 주소에 대한 MAC 주소 요청
-     * @param targetIp 찾고자 하는 IP 주소 (4바이트)
+     * @return ARP 캐시 통계
+     */
+    public ArpStats getArpStats() {
+        return new ArpStats(cacheHits.get(), cacheMisses.get(), entriesExpired.get(), refreshesSent.get(),
+                            requestsSent.get(), requestsCoalesced.get(), negativeHits.get(), arpCache.size());
+    }
+    
+    // ===== 주소 해석 요청 (병합 + 재전송 백오프 + 부정 캐시) =====
+    
+    /**
+     * IP 주소 해석 요청
+     * 이미 요청 중이면 재전송 간격이 지났을 때만 다시 보내고(간격은 2배씩 증가), 그 전에는 요청을 합칩니다.
+     * 
+     * @param targetIp 찾고자 하는 IPv4 주소
+     * @return 요청 중이면 true, 부정 캐시에 있어 즉시 실패해야 하면 false
+     */
+    public boolean requestResolution(int targetIp) {
+        long now = System.currentTimeMillis();
+        Resolution resolution = resolutions.computeIfAbsent(targetIp, key -> new Resolution());
+        synchronized (resolution) {
+            if (now < resolution.negativeUntil) {
+                negativeHits.incrementAndGet();
+                return false;
+            }
+            if (resolution.lastRequestAt != 0 && now - resolution.lastRequestAt < resolution.retryIntervalMs) {
+                requestsCoalesced.incrementAndGet();
+                return true;
+            }
+            if (resolution.lastRequestAt != 0) {
+                resolution.retryIntervalMs = Math.min(MAX_RETRY_INTERVAL_MS, resolution.retryIntervalMs * 2);
+            }
+            resolution.lastRequestAt = now;
+        }
+        requestsSent.incrementAndGet();
+        sendRequestFrame(targetIp, NetAddress.BROADCAST_MAC);
+        return true;
+    }
+    
+    /**
+     * 응답이 없던 IP를 부정 캐시에 등록 (연속으로 실패할수록 시간 2배 증가)
+     * @param targetIp 응답이 없던 IPv4 주소
+     */
+    public void markUnresolved(int targetIp) {
+        Resolution resolution = resolutions.computeIfAbsent(targetIp, key -> new Resolution());
+        synchronized (resolution) {
+            resolution.negativeUntil = System.currentTimeMillis() + resolution.negativeTtlMs;
+            System.out.println("[ARP] 응답 없음 - " + NetAddress.formatIp(targetIp) + " "
+                               + resolution.negativeTtlMs + "ms 동안 요청 보류");
+            resolution.negativeTtlMs = Math.min(MAX_NEGATIVE_TTL_MS, resolution.negativeTtlMs * 2);
+            resolution.lastRequestAt = 0;
+            resolution.retryIntervalMs = INITIAL_RETRY_INTERVAL_MS;
+        }
+    }
+    
+    /**
+     * 부정 캐시 여부 (응답이 없던 IP라 보류 중인지)
+     * @param ip IPv4 주소
+     */
+    public boolean isNegativelyCached(int ip) {
+        Resolution resolution = resolutions.get(ip);
+        if (resolution == null) {
+            return false;
+        }
+        synchronized (resolution) {
+            return System.currentTimeMillis() < resolution.negativeUntil;
+        }
+    }
+    
+    /**
+     * ARP Request 프레임 전송 (Ethernet 목적지/타입을 ARP용으로 바꿨다가 복원)
+     * @param targetIp 찾고자 하는 IP 주소
+     * @param destinationMac 브로드캐스트 또는 (갱신 시) 알고 있는 MAC
+     */
+    private void sendRequestFrame(int targetIp, long destinationMac) {
+        System.out.println("[ARP] Request 전송: Who has " + NetAddress.formatIp(targetIp)
+                           + "? Tell " + NetAddress.formatIp(myIp));
+        sendFrame(destinationMac, buildArpPacket(OPERATION_REQUEST, myMac, myIp, 0L, targetIp));
+    }
+    
+    /**
+     * 스캔용 브로드캐스트 ARP Request (병합/부정 캐시/로그 없이 바로 전송, 응답은 캐시에 학습됨)
+     * @param targetIp 찾고자 하는 IPv4 주소
      * @return 전송 성공 여부
      */
-    public boolean sendArpRequest(byte[] targetIp) {
-        if (underLayer == null || targetIp == null || targetIp.length < 4) {
+    public boolean sendProbe(int targetIp) {
+        requestsSent.incrementAndGet();
+        return sendFrame(NetAddress.BROADCAST_MAC, buildArpPacket(OPERATION_REQUEST, myMac, myIp, 0L, targetIp));
+    }
+    
+    /**
+     * ARP 패킷을 지정한 MAC으로 전송 (목적지/EtherType을 호출마다 지정, Ethernet 공유 상태 변경 없음)
+     */
+    private boolean sendFrame(long destinationMac, byte[] arpPacket) {
+        if (underLayer == null) {
             return false;
         }
+        if (underLayer instanceof EthernetLayer ethernetLayer) {
+            return ethernetLayer.send(arpPacket, arpPacket.length, destinationMac, 0x0806); // ARP
+        }
+        return underLayer.Send(arpPacket, arpPacket.length);
+    }
+    
+    // ===== 만료 정리 / 만료 전 갱신 =====
+    
+    private synchronized void startCacheTimer() {
+        if (cacheTimer != null) {
+            return;
+        }
+        cacheTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ArpCacheTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 갱신 구간 안에 여러 번 점검하도록 TTL이 짧으면 주기도 줄임
+        long tick = Math.max(10, Math.min(CACHE_TICK_MS, (long) (cacheTtlMs * REFRESH_WINDOW_RATIO / 4)));
+        cacheTimer.scheduleWithFixedDelay(this::maintainCache, tick, tick, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 만료된 엔트리 정리, 갱신 구간에 들어선 엔트리 중 최근 사용된 것은 유니캐스트 ARP Request로 갱신
+     */
+    private void maintainCache() {
+        int expired = arpCache.maintain(System.currentTimeMillis(), (ip, mac) -> {
+            refreshesSent.incrementAndGet();
+            sendRequestFrame(ip, mac);
+        });
+        if (expired > 0) {
+            entriesExpired.addAndGet(expired);
+            System.out.println("[ARP 캐시] 만료: " + expired + "개 엔트리 정리");
+        }
+    }
+    
+    // ===== 스냅샷 (재시작 시 캐시 복원) =====
+    
+    /**
+     * 유효한 캐시 엔트리를 파일로 저장
+     * 임시 파일에 쓴 뒤 교체하므로 저장 중 종료돼도 이전 스냅샷은 그대로 남습니다.
+     * 
+     * @param file 스냅샷 파일 경로
+     * @return 저장 성공 여부
+     */
+    public boolean saveSnapshot(Path file) {
+        ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE + arpCache.size() * SNAPSHOT_RECORD_SIZE + 4);
+        long now = System.currentTimeMillis();
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putInt(SNAPSHOT_VERSION);
+        buffer.putLong(now);
+        buffer.putInt(0); // 엔트리 수 (아래에서 기록)
+        int[] count = {0};
+        arpCache.forEach(now, (ip, mac, expiresAt) -> {
+            if (buffer.remaining() >= SNAPSHOT_RECORD_SIZE + 4) { // size() 이후 추가된 엔트리는 다음 저장 때 포함
+                buffer.putInt(ip);
+                buffer.putLong(mac);
+                count[0]++;
+            }
+        });
+        buffer.putInt(16, count[0]);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(temp, Arrays.copyOf(buffer.array(), buffer.position()));
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("[ARP] 스냅샷 저장 실패: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * 스냅샷 파일에서 캐시 복원
+     * 복원된 엔트리는 짧은 유효 시간으로 등록되어 바로 사용할 수 있고,
+     * 백그라운드에서 알고 있는 MAC으로 유니캐스트 Request를 보내 재확인합니다. (응답하면 정상 TTL로 갱신)
+     * 이미 캐시에 있는 엔트리, 오래되었거나 손상된 스냅샷은 무시합니다.
+     * 
+     * @param file 스냅샷 파일 경로
+     * @return 복원한 엔트리 수
+     */
+    public int loadSnapshot(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            System.err.println("[ARP] 스냅샷 읽기 실패: " + e.getMessage());
+            return 0;
+        }
+        
+        // 헤더/길이/CRC 검증
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < SNAPSHOT_HEADER_SIZE + 4
+            || buffer.getInt(0) != SNAPSHOT_MAGIC || buffer.getInt(4) != SNAPSHOT_VERSION) {
+            System.err.println("[ARP] 스냅샷 형식 오류 - 무시: " + file);
+            return 0;
+        }
+        int count = buffer.getInt(16);
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        if (count < 0 || data.length != SNAPSHOT_HEADER_SIZE + count * SNAPSHOT_RECORD_SIZE + 4
+            || buffer.getInt(data.length - 4) != (int) crc.getValue()) {
+            System.err.println("[ARP] 스냅샷 손상 - 무시: " + file);
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long age = now - buffer.getLong(8);
+        if (age < 0 || age > SNAPSHOT_MAX_AGE_MS) {
+            System.out.println("[ARP] 오래된 스냅샷 - 무시 (" + age / 1000 + "초 전 저장)");
+            return 0;
+        }
+        
+        long ttl = Math.min(RESTORED_ENTRY_TTL_MS, cacheTtlMs);
+        int[] ips = new int[count];
+        long[] macs = new long[count];
+        int restored = 0;
+        buffer.position(SNAPSHOT_HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            int ip = buffer.getInt();
+            long mac = buffer.getLong();
+            if (ip == 0 || mac < 0 || mac >= NetAddress.BROADCAST_MAC || arpCache.get(ip, now) != NetAddress.NO_MAC) {
+                continue;
+            }
+            arpCache.put(ip, mac, now, ttl, 1.0); // 만료 전 갱신 대신 아래에서 바로 재확인
+            ips[restored] = ip;
+            macs[restored] = mac;
+            restored++;
+        }
+        if (restored == 0) {
+            return 0;
+        }
         
-        // ARP Request 패킷 생성 (28바이트)
-        byte[] arpPacket = new byte[28];
+        startCacheTimer();
+        for (int i = 0; i < restored; i++) {
+            int ip = ips[i];
+            long mac = macs[i];
+            cacheTimer.schedule(() -> {
+                refreshesSent.incrementAndGet();
+                sendRequestFrame(ip, mac);
+            }, i * REVALIDATE_SPACING_MS, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("[ARP] 스냅샷 복원: " + restored + "개 엔트리 (재확인 중)");
+        return restored;
+    }
+    
+    /**
+     * 스냅샷 주기적 저장 시작
+     * @param file 스냅샷 파일 경로
+     * @param intervalMs 저장 주기 (밀리초, 1 이상)
+     */
+    public void startSnapshotSaving(Path file, long intervalMs) {
+        if (intervalMs < 1) {
+            throw new IllegalArgumentException("스냅샷 저장 주기는 1ms 이상이어야 합니다: " + intervalMs);
+        }
+        startCacheTimer();
+        cacheTimer.scheduleWithFixedDelay(() -> saveSnapshot(file), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * ARP 패킷 생성 (28바이트)
+     */
+    private static byte[] buildArpPacket(int operation, long senderMac, int senderIp, long targetMac, int targetIp) {
+        byte[] arpPacket = new byte[ARP_PACKET_SIZE];
         ByteBuffer buffer = ByteBuffer.wrap(arpPacket);
         
         // Hardware Type (2바이트) = 0x0001 (Ethernet)
@@ -160,73 +606,78 @@ public class ARPLayer implements BaseLayer {
         // Protocol Address Length (1바이트) = 4
         buffer.put((byte) PROTOCOL_LEN);
         
-        // Operation (2바이트) = 1 (Request)
-        buffer.putShort((short) OPERATION_REQUEST);
-        
-        // Sender Hardware Address (6바이트) = 자신의 MAC
-        buffer.put(myMac);
-        
-        // Sender Protocol Address (4바이트) = 자신의 IP
-        buffer.put(myIp);
-        
-        // Target Hardware Address (6바이트) = 00:00:00:00:00:00 (모름)
-        buffer.put(new byte[6]);
+        // Operation (2바이트) = 1 (Request) / 2 (Reply)
+        buffer.putShort((short) operation);
         
-        // Target Protocol Address (4바이트) = 찾고자 하는 IP
-        buffer.put(targetIp, 0, 4);
+        // Sender Hardware / Protocol Address (6 + 4바이트)
+        NetAddress.writeMac(senderMac, arpPacket, 8);
+        buffer.putInt(14, senderIp);
         
-        System.out.println("[ARP] Request 전송: Who has " + formatIp(targetIp) + "? Tell " + formatIp(myIp));
+        // Target Hardware / Protocol Address (6 + 4바이트)
+        NetAddress.writeMac(targetMac, arpPacket, 18);
+        buffer.putInt(24, targetIp);
         
-        // 하위 계층(Ethernet)으로 전송
-        return underLayer.Send(arpPacket, arpPacket.length);
+        return arpPacket;
     }
     
     /**
-     * ARP Reply 전송 - ARP Request에 대한 응답
-     * @param targetMac 응답을 받을 MAC 주소 (6바이트)
-     * @param targetIp 응답을 받을 IP 주소 (4바이트)
+     * ARP Request 전송 - IP 주소에 대한 MAC 주소 요청
+     * @param targetIp 찾고자 하는 IP 주소 (4바이트)
      * @return 전송 성공 여부
      */
-    public boolean sendArpReply(byte[] targetMac, byte[] targetIp) {
-        if (underLayer == null || targetMac == null || targetIp == null) {
+    public boolean sendArpRequest(byte[] targetIp) {
+        if (targetIp == null || targetIp.length < 4) {
             return false;
         }
+        return sendArpRequest(NetAddress.ipToInt(targetIp));
+    }
+    
+    /**
+     * ARP Request 전송 - IP 주소에 대한 MAC 주소 요청 (브로드캐스트)
+     * Target MAC은 00:00:00:00:00:00 (모름)
+     * @param targetIp 찾고자 하는 IPv4 주소
+     * @return 전송 성공 여부
+     */
+    public boolean sendArpRequest(int targetIp) {
+        if (underLayer == null) {
+            return false;
+        }
+        byte[] arpPacket = buildArpPacket(OPERATION_REQUEST, myMac, myIp, 0L, targetIp);
         
-        // ARP Reply 패킷 생성 (28바이트)
-        byte[] arpPacket = new byte[28];
-        ByteBuffer buffer = ByteBuffer.wrap(arpPacket);
-        
-        // Hardware Type (2바이트) = 0x0001 (Ethernet)
-        buffer.putShort((short) HARDWARE_TYPE_ETHERNET);
-        
-        // Protocol Type (2바이트) = 0x0800 (IPv4)
-        buffer.putShort((short) PROTOCOL_TYPE_IP);
-        
-        // Hardware Address Length (1바이트) = 6
-        buffer.put((byte) HARDWARE_LEN);
-        
-        // Protocol Address Length (1바이트) = 4
-        buffer.put((byte) PROTOCOL_LEN);
-        
-        // Operation (2바이트) = 2 (Reply)
-        buffer.putShort((short) OPERATION_REPLY);
-        
-        // Sender Hardware Address (6바이트) = 자신의 MAC
-        buffer.put(myMac);
-        
-        // Sender Protocol Address (4바이트) = 자신의 IP
-        buffer.put(myIp);
-        
-        // Target Hardware Address (6바이트) = 요청자의 MAC
-        buffer.put(targetMac, 0, 6);
+        System.out.println("[ARP] Request 전송: Who has " + NetAddress.formatIp(targetIp)
+                           + "? Tell " + NetAddress.formatIp(myIp));
         
-        // Target Protocol Address (4바이트) = 요청자의 IP
-        buffer.put(targetIp, 0, 4);
+        // 하위 계층(Ethernet)으로 브로드캐스트
+        return sendFrame(NetAddress.BROADCAST_MAC, arpPacket);
+    }
+    
+    /**
+     * ARP Reply 전송 - ARP Request에 대한 응답 (자신의 주소로)
+     * @param targetMac 응답을 받을 MAC 주소
+     * @param targetIp 응답을 받을 IPv4 주소
+     * @return 전송 성공 여부
+     */
+    public boolean sendArpReply(long targetMac, int targetIp) {
+        return sendArpReply(myMac, myIp, targetMac, targetIp);
+    }
+    
+    /**
+     * ARP Reply 전송 - Sender 주소를 명시 (Proxy ARP는 대신 응답하는 IP와 Proxy MAC 사용)
+     * 공유 필드를 바꾸지 않으므로 다른 스레드의 ARP 송신과 경쟁하지 않습니다.
+     * 
+     * @param senderMac "is at"으로 알릴 MAC 주소
+     * @param senderIp 응답 대상 IPv4 주소 (요청의 Target IP)
+     * @param targetMac 응답을 받을 MAC 주소 (요청자, 유니캐스트로 전송)
+     * @param targetIp 응답을 받을 IPv4 주소
+     * @return 전송 성공 여부
+     */
+    public boolean sendArpReply(long senderMac, int senderIp, long targetMac, int targetIp) {
+        byte[] arpPacket = buildArpPacket(OPERATION_REPLY, senderMac, senderIp, targetMac, targetIp);
         
-        System.out.println("[ARP] Reply 전송: " + formatIp(myIp) + " is at " + formatMac(myMac));
+        System.out.println("[ARP] Reply 전송: " + NetAddress.formatIp(senderIp) + " is at " + NetAddress.formatMac(senderMac));
         
-        // 하위 계층(Ethernet)으로 전송
-        return underLayer.Send(arpPacket, arpPacket.length);
+        // 하위 계층(Ethernet)으로 요청자에게 전송
+        return sendFrame(targetMac, arpPacket);
     }
     
     /**
@@ -243,27 +694,13 @@ public class ARPLayer implements BaseLayer {
             return false;
         }
         
-        // Gratuitous ARP는 자신의 IP를 대상으로 ARP Request 전송
-        byte[] arpPacket = new byte[28];
-        ByteBuffer buffer = ByteBuffer.wrap(arpPacket);
-        
-        buffer.putShort((short) HARDWARE_TYPE_ETHERNET);
-        buffer.putShort((short) PROTOCOL_TYPE_IP);
-        buffer.put((byte) HARDWARE_LEN);
-        buffer.put((byte) PROTOCOL_LEN);
-        buffer.putShort((short) OPERATION_REQUEST);
+        // Gratuitous ARP는 자신의 IP를 대상으로 ARP Request 전송 (Target = 자신)
+        byte[] arpPacket = buildArpPacket(OPERATION_REQUEST, myMac, myIp, 0L, myIp);
         
-        // Sender = 자신
-        buffer.put(myMac);
-        buffer.put(myIp);
+        System.out.println("[ARP] Gratuitous ARP 전송: " + NetAddress.formatIp(myIp)
+                           + " is at " + NetAddress.formatMac(myMac));
         
-        // Target = 자신 (Gratuitous ARP의 특징)
-        buffer.put(new byte[6]); // Target MAC = 00:00:00:00:00:00
-        buffer.put(myIp); // Target IP = 자신의 IP
-        
-        System.out.println("[ARP] Gratuitous ARP 전송: " + formatIp(myIp) + " is at " + formatMac(myMac));
-        
-        return underLayer.Send(arpPacket, arpPacket.length);
+        return sendFrame(NetAddress.BROADCAST_MAC, arpPacket);
     }
     
     @Override
@@ -311,71 +748,62 @@ public class ARPLayer implements BaseLayer {
     @Override
     public boolean Receive(byte[] input) {
         // 최소 ARP 패킷 크기 체크
-        if (input == null || input.length < 28) {
+        if (input == null || input.length < ARP_PACKET_SIZE) {
             return false;
         }
         
         ByteBuffer buffer = ByteBuffer.wrap(input);
         
         // ARP 헤더 파싱
-        int hardwareType = buffer.getShort() & 0xFFFF;
-        int protocolType = buffer.getShort() & 0xFFFF;
-        buffer.get(); // hwLen (사용하지 않음)
-        buffer.get(); // protoLen (사용하지 않음)
-        int operation = buffer.getShort() & 0xFFFF;
+        int hardwareType = buffer.getShort(0) & 0xFFFF;
+        int protocolType = buffer.getShort(2) & 0xFFFF;
+        int operation = buffer.getShort(6) & 0xFFFF;
         
         // Ethernet/IPv4 ARP만 처리
         if (hardwareType != HARDWARE_TYPE_ETHERNET || protocolType != PROTOCOL_TYPE_IP) {
             return false;
         }
         
-        // Sender 정보 추출
-        byte[] senderMac = new byte[6];
-        buffer.get(senderMac);
-        
-        byte[] senderIp = new byte[4];
-        buffer.get(senderIp);
-        
-        // Target 정보 추출
-        byte[] targetMac = new byte[6];
-        buffer.get(targetMac);
-        
-        byte[] targetIp = new byte[4];
-        buffer.get(targetIp);
+        // Sender / Target 정보 추출 (배열 복사 없이 기본형으로)
+        long senderMac = NetAddress.macToLong(input, 8);
+        int senderIp = buffer.getInt(14);
+        int targetIp = buffer.getInt(24);
         
         // Sender 정보를 ARP 캐시에 저장 (학습)
-        String senderIpStr = formatIp(senderIp);
-        addArpCacheEntry(senderIpStr, senderMac);
+        addArpCacheEntry(senderIp, senderMac);
         
         // ARP Request 처리
         if (operation == OPERATION_REQUEST) {
-            System.out.println("[ARP] Request 수신: Who has " + formatIp(targetIp) + "? Tell " + formatIp(senderIp));
+            System.out.println("[ARP] Request 수신: Who has " + NetAddress.formatIp(targetIp)
+                               + "? Tell " + NetAddress.formatIp(senderIp));
             
             // 자신의 IP가 Target인 경우 응답
-            if (Arrays.equals(targetIp, myIp)) {
+            if (targetIp == myIp) {
                 System.out.println("[ARP] 자신의 IP에 대한 요청 - Reply 전송");
                 return sendArpReply(senderMac, senderIp);
             }
             
-            // Proxy ARP 처리 - 다른 호스트 대신 응답
-            if (proxyArpEnabled) {
-                String targetIpStr = formatIp(targetIp);
-                byte[] proxyMac = proxyTable.get(targetIpStr);
+            // Proxy ARP 처리 - 다른 호스트 대신 응답 (Gratuitous ARP에는 응답하지 않음)
+            if (proxyArpEnabled && targetIp != senderIp) {
+                long proxyMac = proxyTable.lookup(targetIp);
                 
-                if (proxyMac != null) {
-                    System.out.println("[ARP] Proxy ARP - " + targetIpStr + " 대신 응답");
-                    // Proxy ARP Reply 전송 (자신의 MAC으로 응답)
-                    byte[] tempMyMac = myMac.clone();
-                    myMac = proxyMac; // 임시로 Proxy MAC 사용
-                    boolean result = sendArpReply(senderMac, senderIp);
-                    myMac = tempMyMac; // 원래 MAC 복원
-                    return result;
+                if (proxyMac != NetAddress.NO_MAC) {
+                    System.out.println("[ARP] Proxy ARP - " + NetAddress.formatIp(targetIp) + " 대신 응답");
+                    // Proxy ARP Reply 전송 (대신 응답하는 IP + Proxy MAC)
+                    return sendArpReply(proxyMac, targetIp, senderMac, senderIp);
                 }
             }
         }
         // ARP Reply 처리
         else if (operation == OPERATION_REPLY) {
-            System.out.println("[ARP] Reply 수신: " + formatIp(senderIp) + " is at " + formatMac(senderMac));
+            System.out.println("[ARP] Reply 수신: " + NetAddress.formatIp(senderIp)
+                               + " is at " + NetAddress.formatMac(senderMac));
+            
+            if (targetIp == myIp) {
+                for (ResolutionListener listener : replyListeners) {
+                    listener.onResolved(senderIp, senderMac);
+                }
+            }
             
             // 상위 계층(IP)으로 전달하여 대기 중인 패킷 전송 가능하게 함
             for (BaseLayer upper : uppers) {
@@ -385,27 +813,4 @@ public class ARPLayer implements BaseLayer {
         
         return true;
     }
-    
-    /**
-     * IP 주소를 문자열로 포맷팅 (예: "192.168.0.1")
-     */
-    private String formatIp(byte[] ip) {
-        if (ip == null || ip.length < 4) {
-            return "0.0.0.0";
-        }
-        return String.format("%d.%d.%d.%d",
-            ip[0] & 0xFF, ip[1] & 0xFF, ip[2] & 0xFF, ip[3] & 0xFF);
-    }
-    
-    /**
-     * MAC 주소를 문자열로 포맷팅 (예: "AA:BB:CC:DD:EE:FF")
-     */
-    private String formatMac(byte[] mac) {
-        if (mac == null || mac.length < 6) {
-            return "00:00:00:00:00:00";
-        }
-        return String.format("%02X:%02X:%02X:%02X:%02X:%02X",
-            mac[0] & 0xFF, mac[1] & 0xFF, mac[2] & 0xFF,
-            mac[3] & 0xFF, mac[4] & 0xFF, mac[5] & 0xFF);
-    }
 }
@@ -0,0 +1,232 @@
+package com.demo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * ArpScanner - 서브넷 ARP 스캔 (피어 탐색)
+ *
+ * 역할:
+ * - CIDR 대역(예: 192.168.0.0/24)의 모든 호스트 주소로 ARP Request를 정해진 속도로 연속 전송
+ * - 응답을 기다리지 않고 다음 Request를 보내므로 (파이프라인) /24는 수백 ms 안에 끝남
+ * - 응답은 ARP 계층의 수신 스레드에서 비동기로 캐시에 학습되고, 스캔은 이번 스캔이 Request를 보낸
+ *   주소에서 자신에게 온 Reply만 응답자로 기록 (다른 호스트의 Request/Gratuitous ARP로 학습한 엔트리는 제외)
+ * - 마지막 Request 후 잠시 응답을 더 기다린 뒤 결과(응답자, 소요 시간)를 콜백으로 전달
+ *
+ * 속도 제한:
+ * - 초당 Request 수를 제한하여 세그먼트에 ARP를 몰아서 보내지 않음
+ * - 기본 속도는 수신 측 Ethernet 브로드캐스트 폭주 제어(EthernetLayer.DEFAULT_BROADCAST_RATE)와 같음
+ *   → 더 빠르게 보내면 순간 허용량(DEFAULT_BROADCAST_BURST)을 넘은 Request는 상대가 버림
+ * - 절대 시각 기준으로 간격을 맞추므로 전송이 잠깐 밀려도 평균 속도는 유지
+ *
+ * 동시에 하나의 스캔만 실행됩니다.
+ */
+public final class ArpScanner {
+
+    /** 기본 전송 속도 (Request/초): 브로드캐스트 폭주 제어 속도와 같음, /24 약 1.3초, /22 약 5초 */
+    public static final int DEFAULT_RATE_PER_SECOND = (int) EthernetLayer.DEFAULT_BROADCAST_RATE;
+
+    /** 마지막 Request 후 응답을 기다리는 시간 */
+    public static final long DEFAULT_REPLY_GRACE_MS = 300;
+
+    /** 허용하는 가장 넓은 대역 (/16 = 65534개 호스트) */
+    public static final int MIN_PREFIX_LENGTH = 16;
+
+    /**
+     * 스캔 결과
+     * @param network 네트워크 주소
+     * @param prefixLength 프리픽스 길이
+     * @param probesSent 보낸 Request 수
+     * @param responders 응답한 IP 주소 (오름차순)
+     * @param lastReplyMs 시작부터 마지막 응답까지 걸린 시간 (응답이 없으면 0)
+     * @param durationMs 시작부터 완료(응답 대기 포함)까지 걸린 시간
+     */
+    public record ScanResult(int network, int prefixLength, int probesSent, int[] responders,
+                             long lastReplyMs, long durationMs) {
+
+        /**
+         * @return 응답한 IP 주소 문자열 목록 (표시용)
+         */
+        public List<String> responderAddresses() {
+            List<String> addresses = new ArrayList<>(responders.length);
+            for (int ip : responders) {
+                addresses.add(NetAddress.formatIp(ip));
+            }
+            return addresses;
+        }
+    }
+
+    /**
+     * 진행 중인 스캔 상태 (응답 기록은 ARP 수신 스레드에서)
+     */
+    private static final class Scan {
+        final int network;
+        final int prefixLength;
+        final int hostMask;
+        final long startedAt = System.nanoTime();
+        final BitSet probed = new BitSet();       // 호스트 번호별 Request 전송 여부
+        final BitSet responders = new BitSet();   // 호스트 번호별 응답 여부
+        long lastReplyNanos = 0;
+
+        Scan(int network, int prefixLength) {
+            this.hostMask = (int) ((1L << (32 - prefixLength)) - 1);
+            this.network = network & ~hostMask;
+            this.prefixLength = prefixLength;
+        }
+
+        boolean contains(int ip) {
+            return (ip & ~hostMask) == network;
+        }
+    }
+
+    private final ARPLayer arpLayer;
+    private volatile int ratePerSecond = DEFAULT_RATE_PER_SECOND;
+    private volatile long replyGraceMs = DEFAULT_REPLY_GRACE_MS;
+    private volatile Scan current;
+
+    /**
+     * @param arpLayer Request를 보내고 응답을 학습할 ARP 계층
+     */
+    public ArpScanner(ARPLayer arpLayer) {
+        this.arpLayer = arpLayer;
+        arpLayer.addReplyListener(this::onReply);
+    }
+
+    /**
+     * 전송 속도 설정
+     * 브로드캐스트 폭주 제어 속도보다 빠르면 순간 허용량을 넘는 대역에서는 응답이 누락될 수 있습니다.
+     * @param ratePerSecond 초당 Request 수 (1 이상)
+     */
+    public void setRate(int ratePerSecond) {
+        if (ratePerSecond < 1) {
+            throw new IllegalArgumentException("스캔 속도는 1 이상이어야 합니다: " + ratePerSecond);
+        }
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    /**
+     * 마지막 Request 후 응답 대기 시간 설정
+     * @param graceMs 대기 시간 (밀리초, 0 이상)
+     */
+    public void setReplyGrace(long graceMs) {
+        if (graceMs < 0) {
+            throw new IllegalArgumentException("응답 대기 시간은 0 이상이어야 합니다: " + graceMs);
+        }
+        this.replyGraceMs = graceMs;
+    }
+
+    /**
+     * @return 스캔 진행 중 여부
+     */
+    public boolean isRunning() {
+        return current != null;
+    }
+
+    /**
+     * CIDR 문자열로 스캔 시작 (예: "192.168.0.0/24")
+     * @throws IllegalArgumentException 형식이 잘못되었거나 대역이 너무 넓은 경우
+     */
+    public boolean start(String cidr, Consumer<ScanResult> onComplete) {
+        int slash = cidr.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("CIDR 형식이 아닙니다 (예: 192.168.0.0/24): " + cidr);
+        }
+        return start(NetAddress.parseIp(cidr.substring(0, slash)),
+                     Integer.parseInt(cidr.substring(slash + 1).trim()), onComplete);
+    }
+
+    /**
+     * 스캔 시작 (백그라운드 스레드에서 실행, 완료되면 콜백 호출)
+     *
+     * @param network 대역 안의 아무 주소 (호스트 비트는 무시)
+     * @param prefixLength 프리픽스 길이 (16~30)
+     * @param onComplete 완료 콜백 (스캔 스레드에서 호출, null 가능)
+     * @return 시작 여부 (이미 스캔 중이면 false)
+     * @throws IllegalArgumentException 프리픽스 길이가 범위를 벗어난 경우
+     */
+    public boolean start(int network, int prefixLength, Consumer<ScanResult> onComplete) {
+        if (prefixLength < MIN_PREFIX_LENGTH || prefixLength > 30) {
+            throw new IllegalArgumentException("스캔 대역은 /" + MIN_PREFIX_LENGTH + " ~ /30 이어야 합니다: /" + prefixLength);
+        }
+        Scan scan = new Scan(network, prefixLength);
+        synchronized (this) {
+            if (current != null) {
+                return false;
+            }
+            current = scan;
+        }
+        Thread thread = new Thread(() -> run(scan, onComplete), "ArpScanner");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 대역의 호스트 주소(네트워크/브로드캐스트 주소와 자신 제외)로 Request를 정해진 간격으로 전송
+     */
+    private void run(Scan scan, Consumer<ScanResult> onComplete) {
+        System.out.println("[ARP 스캔] 시작: " + NetAddress.formatIp(scan.network) + "/" + scan.prefixLength
+                           + " (" + ratePerSecond + "개/초)");
+        long intervalNanos = 1_000_000_000L / ratePerSecond;
+        long nextSendAt = System.nanoTime();
+        int myIp = arpLayer.getMyIp();
+        int probesSent = 0;
+        for (int host = 1; host < scan.hostMask; host++) {
+            int ip = scan.network | host;
+            if (ip == myIp) {
+                continue;
+            }
+            long wait = nextSendAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            synchronized (this) {
+                scan.probed.set(host);
+            }
+            arpLayer.sendProbe(ip);
+            probesSent++;
+            nextSendAt += intervalNanos;
+        }
+
+        // 마지막 Request에 대한 응답 대기
+        long graceDeadline = System.nanoTime() + replyGraceMs * 1_000_000L;
+        for (long wait; (wait = graceDeadline - System.nanoTime()) > 0; ) {
+            LockSupport.parkNanos(wait);
+        }
+
+        int[] responders;
+        long lastReplyNanos;
+        synchronized (this) {
+            current = null;
+            responders = scan.responders.stream().map(host -> scan.network | host).toArray();
+            lastReplyNanos = scan.lastReplyNanos;
+        }
+        ScanResult result = new ScanResult(scan.network, scan.prefixLength, probesSent, responders,
+            lastReplyNanos == 0 ? 0 : (lastReplyNanos - scan.startedAt) / 1_000_000,
+            (System.nanoTime() - scan.startedAt) / 1_000_000);
+        System.out.println("[ARP 스캔] 완료: 응답 " + responders.length + "/" + probesSent
+                           + " (" + result.durationMs() + "ms)");
+        if (onComplete != null) {
+            onComplete.accept(result);
+        }
+    }
+
+    /**
+     * ARP Reply 리스너: 이번 스캔이 Request를 보낸 주소의 Reply면 응답자로 기록
+     */
+    private void onReply(int ip, long mac) {
+        Scan scan = current;
+        if (scan == null || !scan.contains(ip)) {
+            return;
+        }
+        synchronized (this) {
+            if (current == scan && scan.probed.get(ip & scan.hostMask)) {
+                scan.responders.set(ip & scan.hostMask);
+                scan.lastReplyNanos = System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.demo;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * ArpTable - IPv4(int) → MAC(long) 오픈 어드레싱 해시 테이블
+ *
+ * 구조:
+ * - 키/값을 기본형 배열에 저장 (엔트리 객체, 박싱 없음)
+ * - 선형 탐사(Linear Probing), 용량은 2의 거듭제곱, 사용 슬롯이 절반을 넘으면 2배로 재구성
+ * - 삭제는 묘비(Tombstone) 표시: 키는 남겨 두어 탐사 경로를 유지하고 재구성 때 정리
+ * - IP 0(0.0.0.0)은 빈 슬롯 표시로 사용하므로 저장하지 않음
+ *
+ * 동시성:
+ * - 조회(get)는 잠금 없이 동작: 값을 먼저 쓰고 키를 release로 공개, 조회는 키를 acquire로 읽음
+ * - 변경(put/remove/maintain)은 synchronized, 재구성 시 새 배열을 만든 뒤 volatile 참조를 교체
+ * - 조회 시 갱신하는 마지막 사용 시각은 느슨하게 기록 (일부 유실돼도 갱신 판단에만 영향)
+ */
+public final class ArpTable {
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int EMPTY = 0;
+    private static final long TOMBSTONE = 0L; // expiresAt == 0 이면 삭제된 슬롯
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * 만료 전 갱신 대상 엔트리를 받는 콜백
+     */
+    @FunctionalInterface
+    public interface RefreshHandler {
+        void refresh(int ip, long mac);
+    }
+
+    /**
+     * 엔트리 방문 콜백 (표시용)
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(int ip, long mac, long expiresAt);
+    }
+
+    private static final class Slots {
+        final int[] keys;
+        final long[] macs;
+        final long[] learnedAt;
+        final long[] expiresAt;
+        final long[] refreshAt;   // Long.MAX_VALUE면 갱신 요청을 이미 보냄
+        final long[] lastUsedAt;  // 0이면 조회된 적 없음
+        final int mask;
+
+        Slots(int capacity) {
+            keys = new int[capacity];
+            macs = new long[capacity];
+            learnedAt = new long[capacity];
+            expiresAt = new long[capacity];
+            refreshAt = new long[capacity];
+            lastUsedAt = new long[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+    private int used = 0;   // 키가 기록된 슬롯 수 (묘비 포함)
+    private int live = 0;   // 유효 엔트리 수 (만료 여부와 무관)
+
+    /**
+     * MAC 조회 (잠금/할당 없음)
+     *
+     * @param ip IPv4 주소
+     * @param now 현재 시각 (밀리초)
+     * @return MAC (없거나 만료되면 {@link NetAddress#NO_MAC})
+     */
+    public long get(int ip, long now) {
+        if (ip == EMPTY) {
+            return NetAddress.NO_MAC;
+        }
+        Slots table = slots;
+        for (int i = hash(ip) & table.mask; ; i = (i + 1) & table.mask) {
+            int key = (int) INTS.getAcquire(table.keys, i);
+            if (key == EMPTY) {
+                return NetAddress.NO_MAC;
+            }
+            if (key == ip) {
+                long expires = (long) LONGS.getAcquire(table.expiresAt, i);
+                if (expires == TOMBSTONE || now >= expires) {
+                    return NetAddress.NO_MAC;
+                }
+                LONGS.setOpaque(table.lastUsedAt, i, now);
+                return (long) LONGS.getAcquire(table.macs, i);
+            }
+        }
+    }
+
+    /**
+     * 엔트리 추가/갱신
+     *
+     * @param ip IPv4 주소 (0 제외)
+     * @param mac MAC 주소
+     * @param now 현재 시각 (밀리초)
+     * @param ttlMs 유효 시간
+     * @param refreshRatio 유효 시간 중 이 비율이 지나면 갱신 대상
+     */
+    public synchronized void put(int ip, long mac, long now, long ttlMs, double refreshRatio) {
+        if (ip == EMPTY) {
+            return;
+        }
+        if ((used + 1) * 2 > slots.keys.length) {
+            rebuild();
+        }
+        Slots table = slots;
+        int i = hash(ip) & table.mask;
+        while (table.keys[i] != EMPTY && table.keys[i] != ip) {
+            i = (i + 1) & table.mask;
+        }
+        boolean newKey = table.keys[i] == EMPTY;
+        if (newKey || table.expiresAt[i] == TOMBSTONE) {
+            live++;
+        }
+        LONGS.setRelease(table.macs, i, mac);
+        table.learnedAt[i] = now;
+        LONGS.setRelease(table.refreshAt, i, now + (long) (ttlMs * refreshRatio));
+        LONGS.setRelease(table.lastUsedAt, i, 0L);
+        LONGS.setRelease(table.expiresAt, i, Math.max(1, now + ttlMs));
+        if (newKey) {
+            used++;
+            INTS.setRelease(table.keys, i, ip);
+        }
+    }
+
+    /**
+     * 엔트리 삭제
+     * @return 삭제 여부
+     */
+    public synchronized boolean remove(int ip) {
+        Slots table = slots;
+        int i = find(table, ip);
+        if (i < 0 || table.expiresAt[i] == TOMBSTONE) {
+            return false;
+        }
+        LONGS.setRelease(table.expiresAt, i, TOMBSTONE);
+        live--;
+        return true;
+    }
+
+    /**
+     * 모든 엔트리 삭제
+     */
+    public synchronized void clear() {
+        slots = new Slots(INITIAL_CAPACITY);
+        used = 0;
+        live = 0;
+    }
+
+    /**
+     * @return 저장된 엔트리 수 (아직 정리되지 않은 만료 엔트리 포함)
+     */
+    public synchronized int size() {
+        return live;
+    }
+
+    /**
+     * 만료 엔트리 정리 + 만료 전 갱신 대상 선정
+     * 갱신 구간에 들어섰고 최근(유효 시간의 절반 이내) 조회된 엔트리는 handler로 전달하고 다시 선정하지 않음
+     *
+     * @param now 현재 시각 (밀리초)
+     * @param handler 갱신 대상 콜백
+     * @return 정리한 만료 엔트리 수
+     */
+    public synchronized int maintain(long now, RefreshHandler handler) {
+        Slots table = slots;
+        int expired = 0;
+        for (int i = 0; i < table.keys.length; i++) {
+            long expires = table.expiresAt[i];
+            if (table.keys[i] == EMPTY || expires == TOMBSTONE) {
+                continue;
+            }
+            if (now >= expires) {
+                LONGS.setRelease(table.expiresAt, i, TOMBSTONE);
+                live--;
+                expired++;
+            } else if (now >= table.refreshAt[i]
+                       && now - (long) LONGS.getOpaque(table.lastUsedAt, i) < (expires - table.learnedAt[i]) / 2) {
+                table.refreshAt[i] = Long.MAX_VALUE;
+                handler.refresh(table.keys[i], table.macs[i]);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * 유효한 엔트리 방문 (표시용)
+     */
+    public synchronized void forEach(long now, EntryVisitor visitor) {
+        Slots table = slots;
+        for (int i = 0; i < table.keys.length; i++) {
+            long expires = table.expiresAt[i];
+            if (table.keys[i] != EMPTY && expires != TOMBSTONE && now < expires) {
+                visitor.visit(table.keys[i], table.macs[i], expires);
+            }
+        }
+    }
+
+    /**
+     * 묘비를 정리하고 필요하면 용량을 늘려 새 배열로 재구성 (조회 중인 스레드는 이전 배열을 계속 사용)
+     */
+    private void rebuild() {
+        Slots old = slots;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < (live + 1) * 4) {
+            capacity <<= 1;
+        }
+        Slots table = new Slots(capacity);
+        int count = 0;
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] == EMPTY || old.expiresAt[i] == TOMBSTONE) {
+                continue;
+            }
+            int j = hash(old.keys[i]) & table.mask;
+            while (table.keys[j] != EMPTY) {
+                j = (j + 1) & table.mask;
+            }
+            table.keys[j] = old.keys[i];
+            table.macs[j] = old.macs[i];
+            table.learnedAt[j] = old.learnedAt[i];
+            table.expiresAt[j] = old.expiresAt[i];
+            table.refreshAt[j] = old.refreshAt[i];
+            table.lastUsedAt[j] = old.lastUsedAt[i];
+            count++;
+        }
+        used = count;
+        live = count;
+        slots = table; // volatile 쓰기로 새 배열 공개
+    }
+
+    private static int find(Slots table, int ip) {
+        if (ip == EMPTY) {
+            return -1;
+        }
+        for (int i = hash(ip) & table.mask; ; i = (i + 1) & table.mask) {
+            int key = table.keys[i];
+            if (key == EMPTY) {
+                return -1;
+            }
+            if (key == ip) {
+                return i;
+            }
+        }
+    }
+
+    private static int hash(int ip) {
+        int h = ip * 0x9E3779B9; // 피보나치 해싱 (같은 서브넷의 연속 주소 분산)
+        return h ^ (h >>> 16);
+    }
+}
@@ -88,6 +88,19 @@ public interface BaseLayer {
 		return false;
 	}
 
+	/**
+	 * 이 계층에 한 번에 넘길 수 있는 최대 페이로드 크기를 반환합니다.
+	 * 기본 구현은 하위 계층의 값을 그대로 전달하며, 헤더를 붙이는 계층은 헤더 크기만큼 뺍니다.
+	 * 
+	 * 예시: Ethernet(MTU 1500) → IP(1500 - 20 = 1480) → ChatApp/FileApp이 Fragment 크기 결정
+	 * 
+	 * @return 최대 페이로드 크기 (알 수 없으면 0)
+	 */
+	public default int GetMaxPayloadSize() {
+		BaseLayer under = GetUnderLayer();
+		return under != null ? under.GetMaxPayloadSize() : 0;
+	}
+
 	/**
 	 * 매개변수 없이 수신을 처리하는 메서드 (확장용, 현재 미사용)
 	 * @return 처리 성공 여부
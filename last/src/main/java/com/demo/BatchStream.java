@@ -0,0 +1,408 @@
+package com.demo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * BatchStream - 여러 파일을 하나의 연속 스트림으로 묶는 배치 전송 형식
+ *
+ * 역할:
+ * - 디렉토리 안의 작은 파일 수천 개를 하나의 전송(FILE_START 1개, FILE_END 1개)으로 처리
+ * - 파일 경계와 상관없이 Fragment를 최대 크기까지 채워서 전송 (부분적으로 빈 Fragment 없음)
+ * - 수신 측은 Fragment가 순서대로 모이는 대로 디스크에 바로 풀어서 저장 (전체 버퍼링 없음)
+ *
+ * 스트림 형식:
+ * ┌──────────────┬──────────────────────────────┬──────────┬──────────┬─────┐
+ * │ ManifestLen  │ Manifest                     │ 파일 0   │ 파일 1   │ ... │
+ * │ (4 bytes)    │ Count(4) + [PathLen(2)       │ 데이터   │ 데이터   │     │
+ * │              │  + Path + Size(8)] * Count   │          │          │     │
+ * └──────────────┴──────────────────────────────┴──────────┴──────────┴─────┘
+ *
+ * - Path는 디렉토리 기준 상대 경로 ('/' 구분, UTF-8)
+ * - 파일 데이터는 Manifest 순서대로 이어 붙임
+ */
+public final class BatchStream {
+
+    private BatchStream() {
+    }
+
+    /**
+     * Manifest 항목
+     *
+     * @param path 상대 경로 ('/' 구분)
+     * @param size 파일 크기
+     */
+    public record Entry(String path, long size) {
+    }
+
+    // ===== 송신 측 =====
+
+    /**
+     * Packer - 디렉토리를 배치 스트림으로 변환 (송신 측)
+     */
+    public static class Packer {
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<File> files = new ArrayList<>();
+        private final byte[] header;
+        private final long[] dataOffsets;   // 스트림에서 각 파일 데이터의 시작 위치
+        private final long length;
+
+        /**
+         * @param directory 묶을 디렉토리 (하위 디렉토리 포함)
+         * @throws IOException 디렉토리 탐색 오류
+         */
+        public Packer(File directory) throws IOException {
+            Path root = directory.toPath();
+            try (Stream<Path> walk = Files.walk(root)) {
+                for (Path path : (Iterable<Path>) walk.filter(Files::isRegularFile).sorted()::iterator) {
+                    String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+                    entries.add(new Entry(relative, Files.size(path)));
+                    files.add(path.toFile());
+                }
+            }
+
+            header = encodeManifest(entries);
+            dataOffsets = new long[entries.size()];
+            long offset = header.length;
+            for (int i = 0; i < entries.size(); i++) {
+                dataOffsets[i] = offset;
+                offset += entries.get(i).size();
+            }
+            length = offset;
+        }
+
+        public int fileCount() {
+            return entries.size();
+        }
+
+        /** 스트림 전체 길이 (Manifest 포함) */
+        public long length() {
+            return length;
+        }
+
+        /**
+         * 스트림을 처음부터 읽는 InputStream (파일은 필요할 때 하나씩 열림)
+         */
+        public InputStream open() {
+            Iterator<File> fileIterator = files.iterator();
+            Iterator<Entry> entryIterator = entries.iterator();
+            Enumeration<InputStream> parts = new Enumeration<>() {
+                boolean headerDone = false;
+
+                @Override
+                public boolean hasMoreElements() {
+                    return !headerDone || fileIterator.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    if (!headerDone) {
+                        headerDone = true;
+                        return new ByteArrayInputStream(header);
+                    }
+                    File file = fileIterator.next();
+                    return new ExactLengthInputStream(file, entryIterator.next().size());
+                }
+            };
+            return new BufferedInputStream(new SequenceInputStream(parts));
+        }
+
+        /**
+         * 스트림의 임의 위치 읽기 (재전송용)
+         *
+         * @param offset 스트림 내 위치
+         * @param length 읽을 길이
+         * @return 읽은 데이터 (스트림 끝을 넘으면 짧아짐)
+         */
+        public byte[] readAt(long offset, int length) throws IOException {
+            int total = (int) Math.max(0, Math.min(length, this.length - offset));
+            byte[] result = new byte[total];
+            int filled = 0;
+
+            // Manifest 구간
+            if (offset < header.length) {
+                int n = (int) Math.min(total, header.length - offset);
+                System.arraycopy(header, (int) offset, result, 0, n);
+                filled = n;
+            }
+
+            // 파일 구간: offset이 속한 파일부터 차례로 읽기
+            int index = Arrays.binarySearch(dataOffsets, offset + filled);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            while (filled < total && index < files.size()) {
+                long position = offset + filled - dataOffsets[index];
+                int n = (int) Math.min(total - filled, entries.get(index).size() - position);
+                if (n > 0) {
+                    try (RandomAccessFile raf = new RandomAccessFile(files.get(index), "r")) {
+                        raf.seek(position);
+                        raf.readFully(result, filled, n);
+                    }
+                    filled += n;
+                }
+                index++;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Manifest 인코딩: ManifestLen(4) + Count(4) + [PathLen(2) + Path + Size(8)] * Count
+     */
+    static byte[] encodeManifest(List<Entry> entries) {
+        ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(manifest);
+        try {
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                byte[] path = entry.path().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(path.length);
+                out.write(path);
+                out.writeLong(entry.size());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream은 IOException이 발생하지 않음
+        }
+
+        byte[] body = manifest.toByteArray();
+        return ByteBuffer.allocate(4 + body.length).putInt(body.length).put(body).array();
+    }
+
+    /**
+     * Manifest 본문 파싱 (ManifestLen 제외)
+     */
+    static List<Entry> decodeManifest(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("잘못된 Manifest 항목 수: " + count);
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(count, 4096));
+        for (int i = 0; i < count; i++) {
+            byte[] path = new byte[in.readUnsignedShort()];
+            in.readFully(path);
+            long size = in.readLong();
+            if (size < 0) {
+                throw new IOException("잘못된 파일 크기: " + size);
+            }
+            entries.add(new Entry(new String(path, StandardCharsets.UTF_8), size));
+        }
+        return entries;
+    }
+
+    /**
+     * Manifest에 기록된 크기만큼만 읽는 스트림
+     * (전송 중에 파일 크기가 바뀌면 스트림 구조가 깨지므로 오류로 처리)
+     */
+    private static class ExactLengthInputStream extends InputStream {
+        private final File file;
+        private InputStream in;
+        private long remaining;
+
+        ExactLengthInputStream(File file, long length) {
+            this.file = file;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            if (in == null) {
+                in = new FileInputStream(file);
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n < 0) {
+                throw new IOException("전송 중 파일 크기가 변경됨: " + file);
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    // ===== 수신 측 =====
+
+    /**
+     * Unpacker - 배치 스트림을 디스크에 바로 풀어서 저장 (수신 측)
+     *
+     * Fragment는 병렬 검증 후 순서와 상관없이 도착하므로,
+     * 앞에서부터 연속된 부분만 파일에 쓰고 나머지는 잠시 보관합니다.
+     */
+    public static class Unpacker implements Closeable {
+        private final File baseDirectory;
+        private final Map<Integer, byte[]> pending = new HashMap<>();
+        private int nextSequence = 0;
+
+        // Manifest 파싱 상태
+        private final ByteArrayOutputStream manifestBuffer = new ByteArrayOutputStream();
+        private int manifestLength = -1;
+        private List<Entry> entries;
+
+        // 현재 쓰는 파일
+        private int entryIndex = 0;
+        private long entryRemaining = 0;
+        private OutputStream current;
+        private int filesCompleted = 0;
+        private long bytesWritten = 0;
+
+        /**
+         * @param baseDirectory 파일을 풀어놓을 디렉토리
+         */
+        public Unpacker(File baseDirectory) {
+            this.baseDirectory = baseDirectory;
+        }
+
+        /**
+         * 검증된 Fragment 전달 (여러 스레드에서 호출 가능)
+         *
+         * @param sequence Fragment 번호
+         * @param data Fragment 데이터
+         * @throws IOException 파일 쓰기 오류 또는 잘못된 스트림
+         */
+        public synchronized void accept(int sequence, byte[] data) throws IOException {
+            if (sequence < nextSequence) {
+                return;
+            }
+            pending.put(sequence, data);
+
+            byte[] next;
+            while ((next = pending.remove(nextSequence)) != null) {
+                consume(next, 0, next.length);
+                nextSequence++;
+            }
+        }
+
+        private void consume(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                // 1. Manifest 수집
+                if (entries == null) {
+                    int target = manifestLength < 0 ? 4 : manifestLength;
+                    int take = Math.min(target - manifestBuffer.size(), length);
+                    manifestBuffer.write(data, offset, take);
+                    offset += take;
+                    length -= take;
+
+                    if (manifestBuffer.size() == target) {
+                        if (manifestLength < 0) {
+                            manifestLength = ByteBuffer.wrap(manifestBuffer.toByteArray()).getInt();
+                            manifestBuffer.reset();
+                            if (manifestLength < 4) {
+                                throw new IOException("잘못된 Manifest 길이: " + manifestLength);
+                            }
+                        } else {
+                            entries = decodeManifest(manifestBuffer.toByteArray());
+                            openNextFile();
+                        }
+                    }
+                    continue;
+                }
+
+                // 2. 파일 데이터 쓰기
+                if (current == null) {
+                    throw new IOException("Manifest보다 긴 배치 스트림");
+                }
+                int take = (int) Math.min(entryRemaining, length);
+                current.write(data, offset, take);
+                offset += take;
+                length -= take;
+                entryRemaining -= take;
+                bytesWritten += take;
+                if (entryRemaining == 0) {
+                    closeCurrentFile();
+                    openNextFile();
+                }
+            }
+        }
+
+        /**
+         * 다음 파일 열기 (크기 0인 파일은 바로 생성하고 건너뜀)
+         */
+        private void openNextFile() throws IOException {
+            while (entryIndex < entries.size()) {
+                Entry entry = entries.get(entryIndex++);
+                File file = resolve(entry.path());
+                File parent = file.getParentFile();
+                if (parent != null && !parent.exists()) {
+                    parent.mkdirs();
+                }
+                current = new BufferedOutputStream(new FileOutputStream(file));
+                entryRemaining = entry.size();
+                if (entryRemaining > 0) {
+                    return;
+                }
+                closeCurrentFile();
+            }
+        }
+
+        private void closeCurrentFile() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+                filesCompleted++;
+            }
+        }
+
+        /**
+         * 상대 경로를 기준 디렉토리 안의 파일로 변환 (디렉토리 밖으로 나가는 경로 거부)
+         */
+        private File resolve(String path) throws IOException {
+            Path base = baseDirectory.toPath().toAbsolutePath().normalize();
+            Path target = base.resolve(path).normalize();
+            if (!target.startsWith(base) || target.equals(base)) {
+                throw new IOException("허용되지 않는 경로: " + path);
+            }
+            return target.toFile();
+        }
+
+        /**
+         * 스트림이 끝났는지 확인 (모든 파일이 Manifest 크기대로 기록됨)
+         */
+        public synchronized boolean isComplete() {
+            return entries != null && current == null && entryIndex == entries.size() && pending.isEmpty();
+        }
+
+        public synchronized int getFilesCompleted() {
+            return filesCompleted;
+        }
+
+        public synchronized int getFileCount() {
+            return entries != null ? entries.size() : 0;
+        }
+
+        public synchronized long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * 쓰는 중인 파일 닫기 (전송 실패 시)
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            pending.clear();
+        }
+    }
+}
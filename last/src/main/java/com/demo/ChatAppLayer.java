@@ -8,9 +8,14 @@ import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
 
 /**
  * ChatAppLayer - 채팅 애플리케이션 계층 (OSI 응용 계층에 해당)
@@ -31,12 +36,35 @@ import java.util.function.Consumer;
  * │ (1 byte)   │ (8 bytes) │ (4 bytes)│ (4 bytes)│ (가변)   │
  * └────────────┴───────────┴──────────┴──────────┴──────────┘
  * 
- * Type (하위 7비트):
+ * Type (하위 5비트):
  * - 0x01: CHAT_SINGLE (단일 메시지, Fragmentation 불필요)
  * - 0x02: CHAT_FRAGMENT (Fragment화된 메시지)
+ * - 0x03: CHAT_REPAIR (FEC 복구 Fragment, Seq 자리에 그룹 번호 + K(1) + M(1) + R(1))
+ * - 0x04: CHAT_ACK (신뢰성 모드 ACK, Session(4) + 누적 ACK(4) + SACK 수(1) + SACK Seq(4)*)
+ * - 0x05: CHAT_BATCH (여러 패킷을 묶은 프레임, Timestamp 뒤에 [Length(2) + 패킷]*)
  * 
- * Flag (상위 1비트):
+ * Flag (상위 3비트):
  * - 0x80: 암호화 플래그 (데이터가 암호화됨)
+ * - 0x40: 압축 플래그 (데이터가 OriginalLength(4) + Deflate 압축 데이터)
+ * - 0x20: 신뢰성 플래그 (Timestamp 뒤에 Session(4) + Seq(4) + Base(4) 헤더가 붙음)
+ * 
+ * 신뢰성 모드 (선택, ReliableChannel):
+ * - 상대 IP와 우선순위마다 독립된 Sequence 번호
+ * - 수신 측은 누적 ACK + SACK으로 응답하고, 같은 우선순위 안에서는 보낸 순서대로 전달
+ * - 송신 측은 측정한 RTT로 RTO를 계산해 ACK되지 않은 패킷만 재전송
+ * 
+ * 압축 (선택):
+ * - COMPRESSION_THRESHOLD 이상인 메시지는 Fragment화/암호화 전에 스레드별 Deflater로 압축 (ChunkCompressor)
+ * - 압축 효과가 없으면 원본 그대로 전송, 수신 측은 재조립 후 압축 해제
+ * 
+ * 배치 모드 (선택, Nagle 방식):
+ * - 같은 상대/우선순위의 작은 패킷을 지연 예산(기본 2ms) 동안 모아 CHAT_BATCH 하나로 전송
+ * - 배치 크기는 IP 페이로드 한도(MTU - IP 헤더)를 넘지 않음
+ * - HIGH 우선순위, ACK, 재전송은 배치를 거치지 않고 바로 전송
+ * 
+ * FEC (선택):
+ * - Fragment K개마다 XOR 패리티 Repair M개를 추가 전송 (FecCodec)
+ * - 손실된 Fragment를 재전송 없이 복구 (ChatApp에는 재전송 기능이 없음)
  */
 public class ChatAppLayer implements BaseLayer {
     // ===== 계층 기본 정보 =====
@@ -51,17 +79,30 @@ public class ChatAppLayer implements BaseLayer {
     // ===== 메시지 타입 상수 =====
     private static final byte MSG_TYPE_SINGLE = 0x01;      // 단일 메시지 (Fragment 불필요)
     private static final byte MSG_TYPE_FRAGMENT = 0x02;    // Fragment화된 메시지
+    private static final byte MSG_TYPE_REPAIR = 0x03;      // FEC 복구 Fragment
+    private static final byte MSG_TYPE_ACK = 0x04;         // 신뢰성 모드 ACK
+    private static final byte MSG_TYPE_BATCH = 0x05;       // 여러 패킷을 묶은 프레임
     
     // ===== 암호화 관련 상수 =====
     private static final byte ENCRYPTION_FLAG = (byte) 0x80;  // 10000000 (암호화 플래그)
-    private static final byte MSG_TYPE_MASK = 0x7F;            // 01111111 (타입 마스크)
+    private static final byte COMPRESSION_FLAG = 0x40;         // 01000000 (압축 플래그)
+    private static final byte RELIABLE_FLAG = 0x20;            // 00100000 (신뢰성 플래그)
+    private static final byte MSG_TYPE_MASK = 0x1F;            // 00011111 (타입 마스크)
     private static final byte XOR_ENCRYPTION_KEY = 0x42;       // XOR 암호화 키
     
     // ===== Fragment 설정 =====
-    private static final int MAX_FRAGMENT_SIZE = 512; // Fragment당 최대 데이터 크기 (바이트)
+    private static final int DEFAULT_FRAGMENT_SIZE = 512; // 하위 계층 MTU를 알 수 없을 때 Fragment 크기 (바이트)
+    // Fragment 크기는 실제로 보내는 Fragment 타입의 헤더 길이로 계산 (신뢰성 헤더는 FRAGMENT에만, REPAIR는 FEC 사용 시에만)
+    private static final int FRAGMENT_HEADER_SIZE = 1 + 1 + 8 + 4 + 4;       // Type + Priority + Timestamp + Seq + TotalSeq
+    private static final int REPAIR_HEADER_SIZE = 1 + 1 + 8 + 4 + 4 + 3 + 2; // Type + Priority + Timestamp + Group + TotalSeq
+                                                                               //   + K/M/R + FEC 길이 접두어
     
-    // ===== 메시지 재조립 버퍼 =====
-    private final Map<Integer, MessageReassemblyBuffer> reassemblyBuffers = new ConcurrentHashMap<>();
+    // ===== 메시지 재조립 버퍼 ("보낸 상대/타임스탬프/Fragment수", 상대나 메시지가 달라도 섞이지 않음) =====
+    private final Map<String, MessageReassemblyBuffer> reassemblyBuffers = new ConcurrentHashMap<>();
+    private static final long REASSEMBLY_TIMEOUT_MS = 10_000;   // 이 시간 안에 완성되지 않으면 폐기 (손실된 메시지)
+    private static final long REASSEMBLY_PURGE_INTERVAL_MS = 1000;
+    private volatile long lastReassemblyPurge = System.currentTimeMillis();
+    private volatile int reassemblyTimeouts = 0;
     
     // ===== 중복 메시지 필터 =====
     // 타임스탬프와 메시지 해시를 결합하여 중복 체크 (같은 시간에 다른 메시지는 허용)
@@ -72,6 +113,62 @@ public class ChatAppLayer implements BaseLayer {
     // ===== 암호화 설정 =====
     private boolean encryptionEnabled = false;
     
+    // ===== 압축 설정 =====
+    private static final int COMPRESSION_THRESHOLD = 256;            // 이 크기 이상인 메시지만 압축 시도
+    private static final int MAX_DECOMPRESSED_SIZE = 4 * 1024 * 1024; // 압축 해제 최대 크기 (압축 폭탄 방지)
+    private volatile boolean compressionEnabled = false;
+    private final ChunkCompressor messageCompressor = new ChunkCompressor();
+    
+    // ===== FEC 설정 (0이면 사용 안 함) =====
+    private static final int DEFAULT_FEC_GROUP_SIZE = 4;
+    private static final int DEFAULT_FEC_REPAIR_COUNT = 1;
+    private volatile int fecGroupSize = 0;                  // K
+    private volatile int fecRepairCount = DEFAULT_FEC_REPAIR_COUNT; // M
+    private volatile int fecRecoveredCount = 0;
+    // 재조립이 끝난 메시지 ID (재조립 버퍼 키) - 뒤늦게 도착한 Fragment/Repair 무시용
+    private final Set<String> completedMessageIds = ConcurrentHashMap.newKeySet();
+    
+    // 하위 계층이 IPLayer가 아닐 때(테스트 Mock 등) 상대 이름 - 보내는 상대와 받은 상대를 구분할 수 없음
+    private static final String UNKNOWN_PEER = "peer";
+    
+    // ===== 신뢰성 모드 설정 =====
+    private static final int RELIABLE_HEADER_OFFSET = 1 + 1 + 8; // Type + Priority + Timestamp 뒤에 삽입
+    private static final long RELIABLE_WINDOW_WAIT_MS = 2000;    // 윈도우가 가득 찼을 때 최대 대기
+    private static final long RETRANSMIT_TICK_MS = 10;           // 재전송 타이머 주기
+    private volatile boolean reliableEnabled = false;
+    private final Map<String, ReliableChannel> reliableChannels = new ConcurrentHashMap<>();
+    private Thread retransmitThread;
+    
+    // ===== 배치 모드 설정 =====
+    private static final int BATCH_HEADER_SIZE = 1 + 1 + 8;    // Type + Priority + Timestamp
+    private static final int DEFAULT_BATCH_MAX_SIZE = 1500 - 20; // 하위 계층 MTU를 알 수 없을 때 (Ethernet MTU - IP 헤더)
+    private static final long DEFAULT_BATCH_BUDGET_MICROS = 2000;
+    private volatile boolean batchingEnabled = false;
+    private volatile long batchBudgetMicros = DEFAULT_BATCH_BUDGET_MICROS;
+    private final Map<BatchKey, PendingBatch> pendingBatches = new HashMap<>(); // 상대/우선순위마다 하나
+    private ScheduledExecutorService batchTimer; // pendingBatches로 동기화
+    private long batchFramesSent = 0;
+    private long batchedPackets = 0;
+    
+    /**
+     * 배치 키 (여러 상대에게 번갈아 보내도 서로의 배치를 밀어내지 않음)
+     */
+    private record BatchKey(String peer, Priority priority) {}
+    
+    /**
+     * 전송 대기 중인 배치 (같은 상대/우선순위)
+     */
+    private static class PendingBatch {
+        final String peer;
+        final long createdAt = System.currentTimeMillis();
+        final List<byte[]> packets = new ArrayList<>();
+        int size = BATCH_HEADER_SIZE;
+        
+        PendingBatch(String peer) {
+            this.peer = peer;
+        }
+    }
+    
     // ===== 새로운 기능: 우선순위 =====
     public enum Priority {
         HIGH(0, "[긴급]"),
@@ -91,16 +188,21 @@ public class ChatAppLayer implements BaseLayer {
     
     // ===== 우선순위 메시지 래퍼 클래스 =====
     private static class PrioritizedMessage implements Comparable<PrioritizedMessage> {
+        // 같은 밀리초에 들어온 메시지도 순서를 구분하기 위한 큐 삽입 번호
+        private static final AtomicLong INSERTION_ORDER = new AtomicLong();
+        
         final String content;
         final Priority priority;
         final long queuedAt;      // 큐에 추가된 시간
         final long sentAt;        // 원본 전송 시간
+        final long insertionOrder;
         
         PrioritizedMessage(String content, Priority priority, long sentAt) {
             this.content = content;
             this.priority = priority;
             this.sentAt = sentAt;
             this.queuedAt = System.currentTimeMillis();
+            this.insertionOrder = INSERTION_ORDER.getAndIncrement();
         }
         
         @Override
@@ -109,7 +211,7 @@ public class ChatAppLayer implements BaseLayer {
             int priorityCompare = Integer.compare(this.priority.order, other.priority.order);
             if (priorityCompare != 0) return priorityCompare;
             // 2. 같은 우선순위면 먼저 큐에 들어온 것부터 (FIFO)
-            return Long.compare(this.queuedAt, other.queuedAt);
+            return Long.compare(this.insertionOrder, other.insertionOrder);
         }
     }
     
@@ -142,7 +244,10 @@ public class ChatAppLayer implements BaseLayer {
         int expectedFragmentCount;
         Map<Integer, byte[]> receivedFragments = new HashMap<>();
         long originalSentTimestamp;
+        final long createdAt = System.currentTimeMillis(); // 첫 Fragment 수신 시각 (시간 초과 폐기용)
         Priority messagePriority = Priority.NORMAL;
+        boolean compressed;            // 재조립 후 압축 해제 필요
+        FecCodec.Decoder fecDecoder;   // 첫 Repair 수신 시 생성
         
         MessageReassemblyBuffer(int expectedFragmentCount) {
             this.expectedFragmentCount = expectedFragmentCount;
@@ -233,6 +338,254 @@ public class ChatAppLayer implements BaseLayer {
         return result;
     }
     
+    // ===== 압축 기능 메서드 =====
+    
+    /**
+     * 압축 활성화/비활성화 (COMPRESSION_THRESHOLD 이상인 메시지에 적용)
+     */
+    public void setCompressionEnabled(boolean enabled) {
+        this.compressionEnabled = enabled;
+        log("SYSTEM", "압축 " + (enabled ? "활성화 (" + COMPRESSION_THRESHOLD + "바이트 이상)" : "비활성화"));
+    }
+    
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+    
+    /**
+     * 메시지 압축 통계
+     */
+    public ChunkCompressor.Stats getCompressionStats() {
+        return messageCompressor.getStats();
+    }
+    
+    /**
+     * 메시지 압축: OriginalLength(4) + Deflate 데이터
+     * @return 압축된 페이로드, 효과가 없으면 null
+     */
+    private byte[] compressMessage(byte[] messageBytes) {
+        byte[] deflated = messageCompressor.newSession().compress(0, messageBytes); // 메시지마다 독립적으로 판단
+        if (deflated == null || deflated.length + 4 >= messageBytes.length) {
+            return null;
+        }
+        return ByteBuffer.allocate(4 + deflated.length).putInt(messageBytes.length).put(deflated).array();
+    }
+    
+    /**
+     * 메시지 압축 해제
+     * @return 원본 메시지, 손상된 데이터면 null
+     */
+    private byte[] decompressMessage(byte[] payload) {
+        if (payload.length < 4) {
+            return null;
+        }
+        int originalLength = ByteBuffer.wrap(payload).getInt();
+        if (originalLength < 0 || originalLength > MAX_DECOMPRESSED_SIZE) {
+            return null;
+        }
+        try {
+            byte[] data = messageCompressor.decompress(Arrays.copyOfRange(payload, 4, payload.length), originalLength);
+            return data.length == originalLength ? data : null;
+        } catch (DataFormatException e) {
+            return null;
+        }
+    }
+    
+    // ===== FEC 기능 메서드 =====
+    
+    /**
+     * FEC 활성화/비활성화 (기본 K=4, M=1)
+     */
+    public void setFecEnabled(boolean enabled) {
+        this.fecGroupSize = enabled ? DEFAULT_FEC_GROUP_SIZE : 0;
+        this.fecRepairCount = DEFAULT_FEC_REPAIR_COUNT;
+        log("SYSTEM", "FEC " + (enabled ? "활성화 (K=" + fecGroupSize + ", M=" + fecRepairCount + ")" : "비활성화"));
+    }
+    
+    /**
+     * FEC 중복도 설정
+     * @param groupSize K (Repair 하나가 보호하는 그룹의 Fragment 수)
+     * @param repairCount M (그룹당 Repair 수, 연속 M개 손실까지 복구)
+     */
+    public void setFecParameters(int groupSize, int repairCount) {
+        if (groupSize < 1 || groupSize > FecCodec.MAX_GROUP_SIZE || repairCount < 1 || repairCount > groupSize) {
+            throw new IllegalArgumentException("잘못된 FEC 설정: K=" + groupSize + ", M=" + repairCount);
+        }
+        this.fecGroupSize = groupSize;
+        this.fecRepairCount = repairCount;
+        log("SYSTEM", "FEC 설정: K=" + groupSize + ", M=" + repairCount);
+    }
+    
+    public boolean isFecEnabled() {
+        return fecGroupSize > 0;
+    }
+    
+    /**
+     * FEC로 복구한 Fragment 수
+     */
+    public int getFecRecoveredCount() {
+        return fecRecoveredCount;
+    }
+    
+    // ===== 신뢰성 모드 메서드 =====
+    
+    /**
+     * 신뢰성 모드 활성화/비활성화
+     * 비활성화하면 ACK 대기 중인 패킷과 수신 순서 상태를 모두 버립니다.
+     */
+    public synchronized void setReliableEnabled(boolean enabled) {
+        this.reliableEnabled = enabled;
+        if (enabled) {
+            startRetransmitTimer();
+        } else {
+            reliableChannels.clear();
+        }
+        log("SYSTEM", "신뢰성 모드 " + (enabled ? "활성화" : "비활성화"));
+    }
+    
+    public boolean isReliableEnabled() {
+        return reliableEnabled;
+    }
+    
+    /**
+     * 상대별 신뢰성 전송 통계
+     */
+    public Map<String, ReliableChannel.Stats> getReliableStats() {
+        Map<String, ReliableChannel.Stats> stats = new TreeMap<>();
+        reliableChannels.forEach((peer, channel) -> stats.put(peer, channel.getStats()));
+        return stats;
+    }
+    
+    /**
+     * 재전송 타이머 시작 (RTO가 지난 패킷만 다시 전송)
+     */
+    private void startRetransmitTimer() {
+        if (retransmitThread != null && retransmitThread.isAlive()) {
+            return;
+        }
+        retransmitThread = new Thread(() -> {
+            while (reliableEnabled && isProcessorRunning) {
+                try {
+                    Thread.sleep(RETRANSMIT_TICK_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                long now = System.nanoTime();
+                for (ReliableChannel channel : reliableChannels.values()) {
+                    for (byte[] packet : channel.collectRetransmissions(now)) {
+                        System.out.println("[ChatApp] 재전송: " + channel.getPeer() + " (" + packet.length + "바이트)");
+                        sendToLower(packet, packet.length, priorityFromByte(packet[1]), channel.getPeer());
+                    }
+                }
+            }
+        }, "ChatRetransmitTimer");
+        retransmitThread.setDaemon(true);
+        retransmitThread.start();
+    }
+    
+    private ReliableChannel channelFor(String peer) {
+        return reliableChannels.computeIfAbsent(peer, ReliableChannel::new);
+    }
+    
+    /**
+     * sendMessage(text)의 상대 (IPLayer에 설정된 기본 목적지 IP, 메시지마다 한 번만 읽어 전달)
+     * 수신 경로는 이 값을 쓰지 않고 데이터그램마다 받은 출발지를 사용합니다.
+     */
+    private String destinationPeer() {
+        if (lowerLayer instanceof IPLayer ipLayer) {
+            return NetAddress.formatIp(ipLayer.getDstIpAddress());
+        }
+        return UNKNOWN_PEER;
+    }
+    
+    // ===== 배치 모드 메서드 =====
+    
+    /**
+     * 배치 모드 활성화/비활성화 (비활성화하면 대기 중인 배치를 즉시 전송)
+     */
+    public void setBatchingEnabled(boolean enabled) {
+        synchronized (pendingBatches) {
+            this.batchingEnabled = enabled;
+            if (enabled && batchTimer == null) {
+                batchTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "ChatBatchFlusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        if (!enabled) {
+            flushAllBatches();
+        }
+        log("SYSTEM", "배치 모드 " + (enabled ? "활성화 (지연 예산 " + batchBudgetMicros + "us)" : "비활성화"));
+    }
+    
+    public boolean isBatchingEnabled() {
+        return batchingEnabled;
+    }
+    
+    /**
+     * 큰 메시지를 나눌 Fragment 데이터 크기 (하위 계층 최대 페이로드 - ChatApp 헤더)
+     * @return Fragment 크기 (하위 계층 MTU를 알 수 없으면 512바이트)
+     */
+    public int getFragmentSize() {
+        return fragmentSize(fecGroupSize);
+    }
+    
+    /**
+     * @param groupSize FEC 그룹 크기 (0이면 REPAIR를 보내지 않음)
+     */
+    private int fragmentSize(int groupSize) {
+        int overhead = FRAGMENT_HEADER_SIZE + (reliableEnabled ? ReliableChannel.HEADER_SIZE : 0);
+        if (groupSize > 0) {
+            overhead = Math.max(overhead, REPAIR_HEADER_SIZE);
+        }
+        int payload = GetMaxPayloadSize();
+        return payload > overhead ? payload - overhead : DEFAULT_FRAGMENT_SIZE;
+    }
+    
+    /**
+     * 배치 프레임 최대 크기 (하위 계층 최대 페이로드)
+     */
+    private int batchMaxSize() {
+        int payload = GetMaxPayloadSize();
+        return payload > 0 ? payload : DEFAULT_BATCH_MAX_SIZE;
+    }
+    
+    /**
+     * 배치 지연 예산 설정 (첫 패킷이 배치에 들어간 뒤 최대 대기 시간)
+     * @param micros 마이크로초 (1 이상)
+     */
+    public void setBatchLatencyBudget(long micros) {
+        if (micros < 1) {
+            throw new IllegalArgumentException("잘못된 배치 지연 예산: " + micros + "us");
+        }
+        this.batchBudgetMicros = micros;
+    }
+    
+    public long getBatchLatencyBudget() {
+        return batchBudgetMicros;
+    }
+    
+    /**
+     * 전송한 배치 프레임 수
+     */
+    public long getBatchFramesSent() {
+        synchronized (pendingBatches) {
+            return batchFramesSent;
+        }
+    }
+    
+    /**
+     * 배치 프레임으로 묶어 보낸 패킷 수
+     */
+    public long getBatchedPacketCount() {
+        synchronized (pendingBatches) {
+            return batchedPackets;
+        }
+    }
+    
     // ===== 우선순위 기능 메서드 =====
     
     /**
@@ -322,6 +675,18 @@ public class ChatAppLayer implements BaseLayer {
         if (messageProcessorThread != null) {
             messageProcessorThread.interrupt();
         }
+        if (retransmitThread != null) {
+            retransmitThread.interrupt();
+        }
+        // 먼저 배치를 끄고 타이머를 멈춘 뒤 남은 배치 전송 (이후 전송은 배치 없이 바로 나감)
+        synchronized (pendingBatches) {
+            batchingEnabled = false;
+            if (batchTimer != null) {
+                batchTimer.shutdownNow();
+                batchTimer = null;
+            }
+        }
+        flushAllBatches();
     }
     
     // ===== 로깅 기능 메서드 =====
@@ -347,24 +712,44 @@ public class ChatAppLayer implements BaseLayer {
     }
 
     /**
-     * 문자열 메시지를 네트워크로 전송합니다.
+     * 문자열 메시지를 기본 목적지(IPLayer의 setDstIp)로 전송합니다.
+     * 
+     * @param text 전송할 메시지 문자열
+     * @return 전송 성공 여부
+     * @see #sendMessageTo(String, String)
+     */
+    public boolean sendMessage(String text) {
+        return sendMessageTo(destinationPeer(), text);
+    }
+    
+    /**
+     * 문자열 메시지를 지정한 상대에게 전송합니다.
      * 긴 메시지는 자동으로 Fragment화됩니다.
+     * 상대는 호출마다 지정하므로 여러 스레드가 서로 다른 상대에게 동시에 보낼 수 있습니다.
      * 
      * 확장된 헤더 구조:
      * [Type+Flag(1B)] [Priority(1B)] [Timestamp(8B)] [Seq(4B)] [Total(4B)] [Data]
      * 
+     * @param peer 상대 IP (예: "192.168.0.20")
      * @param text 전송할 메시지 문자열
      * @return 전송 성공 여부
+     * @throws IllegalArgumentException IP 형식이 잘못된 경우
      */
-    public boolean sendMessage(String text) {
+    public boolean sendMessageTo(String peer, String text) {
         if (lowerLayer == null) return false;
+        if (lowerLayer instanceof IPLayer) {
+            peer = NetAddress.formatIp(NetAddress.parseIp(peer)); // 형식 검증 + 채널 키 정규화
+        }
         
         byte[] messageBytes = text.getBytes(StandardCharsets.UTF_8);
         long sentTimestamp = System.currentTimeMillis();
         
-        // IPLayer에 현재 우선순위 설정 (TOS 필드에 반영)
-        if (lowerLayer instanceof IPLayer ipLayer) {
-            ipLayer.setPriority(currentPriority);
+        // 압축 처리 (Fragment화와 암호화 전에 수행)
+        byte[] compressed = compressionEnabled && messageBytes.length >= COMPRESSION_THRESHOLD
+            ? compressMessage(messageBytes) : null;
+        if (compressed != null) {
+            System.out.println("[ChatApp] 메시지 압축: " + messageBytes.length + " → " + compressed.length + "바이트");
+            messageBytes = compressed;
         }
         
         // 암호화 처리
@@ -376,12 +761,14 @@ public class ChatAppLayer implements BaseLayer {
             log("SEND", text + " (timestamp=" + sentTimestamp + ")");
         }
         
-        // Type 바이트 생성 (암호화 플래그 포함)
-        byte typeFlag = encryptionEnabled ? ENCRYPTION_FLAG : 0;
+        // Type 바이트 생성 (암호화/압축 플래그 포함)
+        byte typeFlag = (byte) ((encryptionEnabled ? ENCRYPTION_FLAG : 0) | (compressed != null ? COMPRESSION_FLAG : 0));
         byte priorityByte = (byte) currentPriority.order;
         
-        // 작은 메시지는 Fragment화하지 않음
-        if (dataToSend.length <= MAX_FRAGMENT_SIZE) {
+        // 작은 메시지는 Fragment화하지 않음 (Fragment 크기는 경로 MTU와 이번 메시지의 Fragment 타입에 맞춤)
+        int groupSize = fecGroupSize;
+        int fragmentSize = fragmentSize(groupSize);
+        if (dataToSend.length <= fragmentSize) {
             // MSG_TYPE_SINGLE + Priority + Timestamp + Data
             // 헤더: 1 + 1 + 8 = 10바이트
             ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + 8 + dataToSend.length);
@@ -390,18 +777,19 @@ public class ChatAppLayer implements BaseLayer {
             buffer.putLong(sentTimestamp);
             buffer.put(dataToSend);
             
-            return lowerLayer.Send(buffer.array(), buffer.position());
+            return transmit(buffer.array(), buffer.position(), currentPriority, peer);
         }
         
         // 큰 메시지는 Fragment화
-        int fragmentCount = (int) Math.ceil((double) dataToSend.length / MAX_FRAGMENT_SIZE);
+        int fragmentCount = (int) Math.ceil((double) dataToSend.length / fragmentSize);
         System.out.println("[ChatApp] 메시지 Fragment화: " + fragmentCount + "개");
         log("SEND", text + " (fragments=" + fragmentCount + ", timestamp=" + sentTimestamp + ")");
         
+        int repairCount = Math.min(fecRepairCount, Math.max(1, groupSize));
         for (int seq = 0; seq < fragmentCount; seq++) {
-            int offset = seq * MAX_FRAGMENT_SIZE;
-            // 마지막 Fragment는 MAX_FRAGMENT_SIZE보다 작을 수 있으므로 실제 남은 크기와 비교하여 작은 값 선택
-            int length = Math.min(MAX_FRAGMENT_SIZE, dataToSend.length - offset);
+            int offset = seq * fragmentSize;
+            // 마지막 Fragment는 fragmentSize보다 작을 수 있으므로 실제 남은 크기와 비교하여 작은 값 선택
+            int length = Math.min(fragmentSize, dataToSend.length - offset);
             byte[] fragment = Arrays.copyOfRange(dataToSend, offset, offset + length);
             
             // MSG_TYPE_FRAGMENT + Priority + Timestamp + Sequence + TotalSeq + Data
@@ -414,14 +802,191 @@ public class ChatAppLayer implements BaseLayer {
             buffer.putInt(fragmentCount);
             buffer.put(fragment);
             
-            if (!lowerLayer.Send(buffer.array(), buffer.position())) {
+            if (!transmit(buffer.array(), buffer.position(), currentPriority, peer)) {
                 System.err.println("[ChatApp] Fragment 전송 실패: " + seq);
                 return false;
             }
+            
+            // 그룹의 마지막 Fragment를 보낸 뒤 Repair 전송
+            if (groupSize > 0 && (seq % groupSize == groupSize - 1 || seq == fragmentCount - 1)) {
+                sendRepairs(messageBytes, fragmentSize, seq / groupSize, groupSize, repairCount, fragmentCount,
+                            typeFlag, priorityByte, sentTimestamp, peer);
+            }
         }
         
         return true;
     }
+    
+    /**
+     * FEC Repair Fragment 전송
+     * 패리티는 평문 Fragment로 계산하고, 데이터와 같은 방식으로 암호화합니다.
+     * 
+     * MSG_TYPE_REPAIR + Priority + Timestamp + Group + TotalSeq + K + M + R + Data
+     * 헤더: 1 + 1 + 8 + 4 + 4 + 1 + 1 + 1 = 21바이트
+     */
+    private void sendRepairs(byte[] messageBytes, int fragmentSize, int group, int groupSize, int repairCount,
+                             int fragmentCount, byte typeFlag, byte priorityByte, long sentTimestamp, String peer) {
+        List<byte[]> members = new ArrayList<>();
+        int first = group * groupSize;
+        for (int seq = first; seq < Math.min(first + groupSize, fragmentCount); seq++) {
+            int offset = seq * fragmentSize;
+            members.add(Arrays.copyOfRange(messageBytes, offset, Math.min(messageBytes.length, offset + fragmentSize)));
+        }
+        
+        byte[][] repairs = FecCodec.encode(members, Math.min(repairCount, members.size()));
+        for (int r = 0; r < repairs.length; r++) {
+            byte[] data = encryptionEnabled ? applyXorEncryption(repairs[r], XOR_ENCRYPTION_KEY) : repairs[r];
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + 8 + 4 + 4 + 3 + data.length);
+            buffer.put((byte) (MSG_TYPE_REPAIR | typeFlag));
+            buffer.put(priorityByte);
+            buffer.putLong(sentTimestamp);
+            buffer.putInt(group);
+            buffer.putInt(fragmentCount);
+            buffer.put((byte) groupSize);
+            buffer.put((byte) repairs.length);
+            buffer.put((byte) r);
+            buffer.put(data);
+            
+            dispatch(buffer.array(), buffer.position(), currentPriority, peer);
+        }
+    }
+    
+    /**
+     * 메시지 패킷 전송 (신뢰성 모드면 Seq를 붙이고 ACK 대기 목록에 등록)
+     * FEC Repair는 재전송 대상이 아니므로 dispatch로 바로 넘깁니다.
+     */
+    private boolean transmit(byte[] packet, int length, Priority priority, String peer) {
+        if (!reliableEnabled) {
+            return dispatch(packet, length, priority, peer);
+        }
+        
+        ReliableChannel channel = channelFor(peer);
+        packet[0] |= RELIABLE_FLAG;
+        byte[] framed;
+        try {
+            framed = channel.register(priority.order, packet, length, RELIABLE_HEADER_OFFSET, RELIABLE_WINDOW_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (framed == null) {
+            System.err.println("[ChatApp] 신뢰성 윈도우 가득 참 - 전송 실패 (" + channel.getPeer() + ")");
+            return false;
+        }
+        return dispatch(framed, framed.length, priority, peer);
+    }
+    
+    /**
+     * 배치 모드면 대기 중인 배치에 추가하고, 아니면 바로 전송
+     * HIGH 우선순위와 배치에 들어가지 않는 큰 패킷은 (순서 유지를 위해 기존 배치를 먼저 보낸 뒤) 바로 전송합니다.
+     * 배치 모드 여부는 잠금 안에서 다시 확인 (그 사이 stopMessageProcessing이 타이머를 멈췄으면 바로 전송)
+     */
+    private boolean dispatch(byte[] packet, int length, Priority priority, String peer) {
+        int batchMaxSize = batchMaxSize();
+        if (!batchingEnabled || priority == Priority.HIGH
+            || BATCH_HEADER_SIZE + 2 + length > batchMaxSize) {
+            flushBatch(new BatchKey(peer, priority));
+            return sendToLower(packet, length, priority, peer);
+        }
+        
+        BatchKey key = new BatchKey(peer, priority);
+        PendingBatch full = null;
+        boolean batched = false;
+        synchronized (pendingBatches) {
+            PendingBatch batch = pendingBatches.get(key);
+            if (!batchingEnabled || batchTimer == null) {
+                // 확인 뒤 배치 모드가 꺼짐: 남은 배치를 먼저 보내고 바로 전송
+                full = pendingBatches.remove(key);
+            } else {
+                if (batch != null && batch.size + 2 + length > batchMaxSize) {
+                    full = pendingBatches.remove(key);
+                    batch = null;
+                }
+                if (batch == null) {
+                    batch = new PendingBatch(peer);
+                    pendingBatches.put(key, batch);
+                    PendingBatch scheduled = batch;
+                    batchTimer.schedule(() -> flushBatch(key, scheduled), batchBudgetMicros, TimeUnit.MICROSECONDS);
+                }
+                batch.packets.add(Arrays.copyOf(packet, length));
+                batch.size += 2 + length;
+                batched = true;
+            }
+        }
+        if (full != null) {
+            sendBatch(priority, full);
+        }
+        return batched || sendToLower(packet, length, priority, peer);
+    }
+    
+    private void flushBatch(BatchKey key) {
+        PendingBatch batch;
+        synchronized (pendingBatches) {
+            batch = pendingBatches.remove(key);
+        }
+        if (batch != null) {
+            sendBatch(key.priority(), batch);
+        }
+    }
+    
+    /**
+     * 지연 예산이 지난 배치 전송 (이미 다른 이유로 전송된 배치면 무시)
+     */
+    private void flushBatch(BatchKey key, PendingBatch expected) {
+        synchronized (pendingBatches) {
+            if (!pendingBatches.remove(key, expected)) {
+                return;
+            }
+        }
+        sendBatch(key.priority(), expected);
+    }
+    
+    private void flushAllBatches() {
+        List<BatchKey> keys;
+        synchronized (pendingBatches) {
+            keys = new ArrayList<>(pendingBatches.keySet());
+        }
+        keys.forEach(this::flushBatch);
+    }
+    
+    /**
+     * 배치 프레임 전송 (패킷이 하나뿐이면 배치 헤더 없이 그대로 전송)
+     * MSG_TYPE_BATCH + Priority + Timestamp + [Length(2) + 패킷]*
+     */
+    private void sendBatch(Priority priority, PendingBatch batch) {
+        if (batch.packets.size() == 1) {
+            byte[] packet = batch.packets.get(0);
+            sendToLower(packet, packet.length, priority, batch.peer);
+            return;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(batch.size);
+        buffer.put(MSG_TYPE_BATCH);
+        buffer.put((byte) priority.order);
+        buffer.putLong(batch.createdAt);
+        for (byte[] packet : batch.packets) {
+            buffer.putShort((short) packet.length);
+            buffer.put(packet);
+        }
+        synchronized (pendingBatches) {
+            batchFramesSent++;
+            batchedPackets += batch.packets.size();
+        }
+        System.out.println("[ChatApp] 배치 전송: 패킷 " + batch.packets.size() + "개, " + batch.size + "바이트");
+        sendToLower(buffer.array(), buffer.position(), priority, batch.peer);
+    }
+    
+    /**
+     * 하위 계층으로 전송
+     * IPLayer면 목적지, ChatApp 프로토콜, 우선순위(TOS 필드)를 패킷마다 지정하므로
+     * 파일 전송이나 다른 스레드의 전송과 IPLayer 설정을 공유하지 않습니다.
+     */
+    private boolean sendToLower(byte[] packet, int length, Priority priority, String peer) {
+        if (lowerLayer instanceof IPLayer ipLayer) {
+            return ipLayer.send(packet, length, IPLayer.SendDescriptor.chat(NetAddress.parseIp(peer), priority));
+        }
+        return lowerLayer.Send(packet, length);
+    }
 
     @Override
     public String GetLayerName() { return LAYER_NAME; }
@@ -466,6 +1031,24 @@ public class ChatAppLayer implements BaseLayer {
      */
     @Override
     public boolean Receive(byte[] input) {
+        return receive(input, UNKNOWN_PEER);
+    }
+    
+    /**
+     * IPLayer로부터 데이터그램 수신 (출발지는 수신 설명자로 함께 전달됨)
+     * 
+     * @param input 수신한 바이트 배열
+     * @param from 출발지 IP/TOS
+     * @return 처리 성공 여부
+     */
+    public boolean receive(byte[] input, IPLayer.ReceiveDescriptor from) {
+        return receive(input, NetAddress.formatIp(from.sourceIp()));
+    }
+    
+    /**
+     * @param peer 보낸 상대 (ACK 목적지, 신뢰성 채널과 재조립 버퍼의 키)
+     */
+    private boolean receive(byte[] input, String peer) {
         if (input == null || input.length < 2) {
             return false;
         }
@@ -473,8 +1056,9 @@ public class ChatAppLayer implements BaseLayer {
         ByteBuffer buffer = ByteBuffer.wrap(input);
         byte typeFlagByte = buffer.get();
         
-        // 암호화 플래그 추출
+        // 암호화/압축 플래그 추출
         boolean isEncrypted = (typeFlagByte & ENCRYPTION_FLAG) != 0;
+        boolean isCompressed = (typeFlagByte & COMPRESSION_FLAG) != 0;
         byte messageType = (byte) (typeFlagByte & MSG_TYPE_MASK);
         
         // 우선순위 추출 (1바이트)
@@ -487,6 +1071,11 @@ public class ChatAppLayer implements BaseLayer {
         }
         long originalSentTimestamp = buffer.getLong();
         
+        // 신뢰성 헤더가 있으면 순서를 맞춘 뒤 헤더를 제거하고 다시 처리
+        if ((typeFlagByte & RELIABLE_FLAG) != 0) {
+            return processReliable(input, buffer, priority, peer);
+        }
+        
         switch (messageType) {
             case MSG_TYPE_SINGLE:
                 // 단일 메시지 (Fragment화되지 않음)
@@ -499,6 +1088,15 @@ public class ChatAppLayer implements BaseLayer {
                     System.out.println("[ChatApp] 메시지 복호화됨");
                 }
                 
+                // 압축 해제
+                if (isCompressed) {
+                    data = decompressMessage(data);
+                    if (data == null) {
+                        System.err.println("[ChatApp] 압축 해제 실패 - 드롭");
+                        return false;
+                    }
+                }
+                
                 String message = new String(data, StandardCharsets.UTF_8);
                 
                 // 중복 메시지 필터링 (타임스탬프 + 내용 해시 기반)
@@ -535,7 +1133,63 @@ public class ChatAppLayer implements BaseLayer {
                     fragmentData = applyXorEncryption(fragmentData, XOR_ENCRYPTION_KEY);
                 }
                 
-                processFragment(sequenceNumber, totalFragments, fragmentData, originalSentTimestamp, isEncrypted, priority);
+                processFragment(sequenceNumber, totalFragments, fragmentData, originalSentTimestamp, isEncrypted,
+                                isCompressed, priority, peer);
+                break;
+                
+            case MSG_TYPE_REPAIR:
+                // FEC Repair Fragment
+                if (buffer.remaining() < 4 + 4 + 3) {
+                    return false;
+                }
+                
+                int group = buffer.getInt();
+                int repairTotal = buffer.getInt();
+                int groupSize = buffer.get() & 0xFF;
+                int repairCount = buffer.get() & 0xFF;
+                int repairIndex = buffer.get() & 0xFF;
+                
+                byte[] repairData = new byte[buffer.remaining()];
+                buffer.get(repairData);
+                if (isEncrypted) {
+                    repairData = applyXorEncryption(repairData, XOR_ENCRYPTION_KEY);
+                }
+                
+                processRepair(group, repairTotal, groupSize, repairCount, repairIndex, repairData,
+                              originalSentTimestamp, isEncrypted, isCompressed, priority, peer);
+                break;
+                
+            case MSG_TYPE_BATCH:
+                // 배치 프레임: 묶인 패킷을 하나씩 처리
+                while (buffer.remaining() >= 2) {
+                    int length = buffer.getShort() & 0xFFFF;
+                    if (length > buffer.remaining()) {
+                        return false;
+                    }
+                    byte[] packet = new byte[length];
+                    buffer.get(packet);
+                    receive(packet, peer);
+                }
+                break;
+                
+            case MSG_TYPE_ACK:
+                // 신뢰성 모드 ACK
+                if (buffer.remaining() < 4 + 4 + 1) {
+                    return false;
+                }
+                
+                int session = buffer.getInt();
+                int cumulativeAck = buffer.getInt();
+                int sackCount = Math.min(buffer.get() & 0xFF, buffer.remaining() / 4);
+                int[] sacks = new int[sackCount];
+                for (int i = 0; i < sackCount; i++) {
+                    sacks[i] = buffer.getInt();
+                }
+                
+                ReliableChannel channel = reliableChannels.get(peer);
+                if (channel != null) {
+                    channel.onAck(priority.order, session, cumulativeAck, sacks, System.nanoTime());
+                }
                 break;
                 
             default:
@@ -547,14 +1201,50 @@ public class ChatAppLayer implements BaseLayer {
     }
     
     /**
-     * IPLayer에서 우선순위 추출 (TOS 필드)
+     * 신뢰성 헤더가 붙은 패킷 처리
+     * ACK를 보내고, 순서가 맞는 패킷부터 신뢰성 헤더를 제거해 일반 패킷처럼 처리합니다.
      */
-    @SuppressWarnings("unused")
-    private Priority extractPriorityFromIPLayer() {
-        if (lowerLayer instanceof IPLayer ipLayer) {
-            return ipLayer.getCurrentReceivedPriority();
+    private boolean processReliable(byte[] input, ByteBuffer buffer, Priority priority, String peer) {
+        if (buffer.remaining() < ReliableChannel.HEADER_SIZE) {
+            return false;
+        }
+        int session = buffer.getInt();
+        int seq = buffer.getInt();
+        int base = buffer.getInt();
+        
+        byte[] packet = new byte[input.length - ReliableChannel.HEADER_SIZE];
+        System.arraycopy(input, 0, packet, 0, RELIABLE_HEADER_OFFSET);
+        System.arraycopy(input, RELIABLE_HEADER_OFFSET + ReliableChannel.HEADER_SIZE,
+                         packet, RELIABLE_HEADER_OFFSET, packet.length - RELIABLE_HEADER_OFFSET);
+        packet[0] &= ~RELIABLE_FLAG;
+        
+        ReliableChannel channel = channelFor(peer);
+        ReliableChannel.Received received = channel.onData(priority.order, session, seq, base, packet);
+        sendAck(priority, session, received, channel.getPeer());
+        
+        for (byte[] ordered : received.deliverable()) {
+            receive(ordered, peer);
+        }
+        return true;
+    }
+    
+    /**
+     * ACK 전송 (설정된 목적지가 아니라 데이터를 보낸 상대에게)
+     * MSG_TYPE_ACK + Priority + Timestamp + Session + 누적 ACK + SACK 수 + SACK Seq들
+     */
+    private void sendAck(Priority priority, int session, ReliableChannel.Received received, String peer) {
+        int[] sacks = received.sacks();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + 8 + 4 + 4 + 1 + sacks.length * 4);
+        buffer.put(MSG_TYPE_ACK);
+        buffer.put((byte) priority.order);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putInt(session);
+        buffer.putInt(received.cumulativeAck());
+        buffer.put((byte) sacks.length);
+        for (int seq : sacks) {
+            buffer.putInt(seq);
         }
-        return Priority.NORMAL;
+        sendToLower(buffer.array(), buffer.position(), priority, peer);
     }
     
     /**
@@ -602,42 +1292,151 @@ public class ChatAppLayer implements BaseLayer {
     /**
      * Fragment 처리 및 재조립
      */
-    private void processFragment(int sequenceNumber, int totalFragments, byte[] data, 
-                                  long sentTimestamp, boolean wasEncrypted, Priority priority) {
-        // 고유 ID 생성 (totalFragments를 기준으로)
-        int messageId = totalFragments;
+    private void processFragment(int sequenceNumber, int totalFragments, byte[] data, long sentTimestamp,
+                                 boolean wasEncrypted, boolean compressed, Priority priority, String peer) {
+        String messageId = reassemblyKey(peer, sentTimestamp, totalFragments);
+        if (completedMessageIds.contains(messageId)) {
+            return; // 이미 재조립 완료된 메시지 (중복/재전송 Fragment)
+        }
+        MessageReassemblyBuffer buffer = getReassemblyBuffer(messageId, totalFragments, sentTimestamp, priority);
+        buffer.compressed |= compressed;
+        
+        // Fragment 저장
+        buffer.receivedFragments.put(sequenceNumber, data);
+        System.out.println("[ChatApp] Fragment 수신: " + (sequenceNumber + 1) + "/" + totalFragments);
+        
+        // 같은 그룹의 Repair가 먼저 도착해 있었다면 복구 시도
+        if (buffer.fecDecoder != null) {
+            addRecovered(buffer, buffer.fecDecoder.onData(sequenceNumber));
+        }
+        
+        completeIfReady(messageId, buffer, wasEncrypted);
+    }
+    
+    /**
+     * FEC Repair 처리 - 그룹에서 1개만 빠졌으면 즉시 복구
+     */
+    private void processRepair(int group, int totalFragments, int groupSize, int repairCount, int repairIndex,
+                               byte[] data, long sentTimestamp, boolean wasEncrypted, boolean compressed,
+                               Priority priority, String peer) {
+        if (groupSize < 1 || totalFragments < 1) {
+            return;
+        }
+        String messageId = reassemblyKey(peer, sentTimestamp, totalFragments);
+        if (completedMessageIds.contains(messageId)) {
+            return; // 이미 재조립 완료된 메시지
+        }
+        MessageReassemblyBuffer buffer = getReassemblyBuffer(messageId, totalFragments, sentTimestamp, priority);
+        buffer.compressed |= compressed;
         
+        if (buffer.fecDecoder == null) {
+            buffer.fecDecoder = new FecCodec.Decoder(groupSize, totalFragments, buffer.receivedFragments::get);
+        }
+        addRecovered(buffer, buffer.fecDecoder.onRepair(group, repairCount, repairIndex, data));
+        
+        completeIfReady(messageId, buffer, wasEncrypted);
+    }
+    
+    private void addRecovered(MessageReassemblyBuffer buffer, List<FecCodec.Recovered> recovered) {
+        for (FecCodec.Recovered fragment : recovered) {
+            buffer.receivedFragments.put(fragment.sequence(), fragment.data());
+            fecRecoveredCount++;
+            System.out.println("[ChatApp] FEC로 Fragment 복구: " + (fragment.sequence() + 1) + "/" +
+                               buffer.expectedFragmentCount);
+        }
+    }
+    
+    /**
+     * 재조립 버퍼 키: 보낸 상대 + 전송 타임스탬프 + Fragment 수
+     * (완성되지 못한 메시지가 남아 있어도 같은 상대의 다음 메시지와 섞이지 않음)
+     */
+    private static String reassemblyKey(String peer, long sentTimestamp, int totalFragments) {
+        return peer + "/" + sentTimestamp + "/" + totalFragments;
+    }
+    
+    private MessageReassemblyBuffer getReassemblyBuffer(String messageId, int totalFragments,
+                                                        long sentTimestamp, Priority priority) {
         MessageReassemblyBuffer buffer = reassemblyBuffers.get(messageId);
         if (buffer == null) {
+            purgeExpiredReassemblies();
             buffer = new MessageReassemblyBuffer(totalFragments);
             buffer.originalSentTimestamp = sentTimestamp;
             buffer.messagePriority = priority;
             reassemblyBuffers.put(messageId, buffer);
             System.out.println("[ChatApp] 새 메시지 수신 시작 (총 " + totalFragments + "개 Fragment)");
         }
+        return buffer;
+    }
+    
+    /**
+     * 모든 Fragment가 모였으면 재조립하여 우선순위 큐에 추가
+     */
+    private void completeIfReady(String messageId, MessageReassemblyBuffer buffer, boolean wasEncrypted) {
+        if (!buffer.isComplete()) {
+            return;
+        }
         
-        // Fragment 저장
-        buffer.receivedFragments.put(sequenceNumber, data);
-        System.out.println("[ChatApp] Fragment 수신: " + (sequenceNumber + 1) + "/" + totalFragments);
-        
-        // 모든 Fragment 수신 완료 확인
-        if (buffer.isComplete()) {
-            byte[] completeMessage = buffer.reassembleMessage();
-            String message = new String(completeMessage, StandardCharsets.UTF_8);
-            
-            System.out.println("[ChatApp] 메시지 재조립 완료: " + message.length() + "바이트" + 
-                              (wasEncrypted ? " [복호화됨]" : ""));
-            
-            // 중복 메시지 필터링 (타임스탬프 + 내용 해시 기반)
-            if (!isDuplicate(buffer.originalSentTimestamp, message.hashCode())) {
-                // 우선순위 큐에 추가
-                priorityMessageQueue.offer(new PrioritizedMessage(message, buffer.messagePriority, buffer.originalSentTimestamp));
-            } else {
-                System.out.println("[ChatApp] 중복 Fragment 메시지 감지 - 드롭 (timestamp=" + buffer.originalSentTimestamp + ")");
+        byte[] completeMessage = buffer.reassembleMessage();
+        if (buffer.compressed) {
+            completeMessage = decompressMessage(completeMessage);
+            if (completeMessage == null) {
+                System.err.println("[ChatApp] 압축 해제 실패 - 메시지 드롭");
+                reassemblyBuffers.remove(messageId);
+                return;
             }
-            
-            // 버퍼 제거
-            reassemblyBuffers.remove(messageId);
         }
+        String message = new String(completeMessage, StandardCharsets.UTF_8);
+        
+        System.out.println("[ChatApp] 메시지 재조립 완료: " + message.length() + "바이트" + 
+                          (wasEncrypted ? " [복호화됨]" : ""));
+        
+        // 중복 메시지 필터링 (타임스탬프 + 내용 해시 기반)
+        if (!isDuplicate(buffer.originalSentTimestamp, message.hashCode())) {
+            // 우선순위 큐에 추가
+            priorityMessageQueue.offer(new PrioritizedMessage(message, buffer.messagePriority, buffer.originalSentTimestamp));
+        } else {
+            System.out.println("[ChatApp] 중복 Fragment 메시지 감지 - 드롭 (timestamp=" + buffer.originalSentTimestamp + ")");
+        }
+        
+        // 버퍼 제거
+        reassemblyBuffers.remove(messageId);
+        if (completedMessageIds.size() > 1000) {
+            completedMessageIds.clear();
+        }
+        completedMessageIds.add(messageId);
+    }
+    
+    /**
+     * 시간 안에 완성되지 않은 재조립 버퍼 폐기 (FEC로도 복구하지 못한 손실, 최대 1초에 한 번 검사)
+     */
+    private void purgeExpiredReassemblies() {
+        long now = System.currentTimeMillis();
+        if (now - lastReassemblyPurge < REASSEMBLY_PURGE_INTERVAL_MS) {
+            return;
+        }
+        lastReassemblyPurge = now;
+        reassemblyBuffers.values().removeIf(buffer -> {
+            if (now - buffer.createdAt < REASSEMBLY_TIMEOUT_MS) {
+                return false;
+            }
+            reassemblyTimeouts++;
+            System.out.println("[ChatApp] 재조립 시간 초과 - 메시지 폐기 (" + buffer.receivedFragments.size() + "/" +
+                               buffer.expectedFragmentCount + "개 Fragment 수신)");
+            return true;
+        });
+    }
+    
+    /**
+     * @return 시간 안에 완성되지 않아 폐기한 메시지 수
+     */
+    public int getReassemblyTimeouts() {
+        return reassemblyTimeouts;
+    }
+    
+    /**
+     * @return 재조립 중인 메시지 수
+     */
+    public int getPendingReassemblies() {
+        return reassemblyBuffers.size();
     }
 }
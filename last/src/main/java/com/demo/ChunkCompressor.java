@@ -0,0 +1,228 @@
+package com.demo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ChunkCompressor - Fragment 단위 적응형 압축기
+ *
+ * 역할:
+ * - Deflater/Inflater(낮은 압축 레벨)로 Fragment 데이터를 압축/해제
+ * - 스레드마다 Deflater/Inflater를 하나씩 만들어 재사용 (매번 생성하는 비용 제거)
+ * - 압축 효과를 샘플링하여 압축이 안 되는 데이터(JPEG, ZIP 등)는 자동으로 건너뜀
+ * - 압축률과 CPU 사용 시간 통계 제공
+ *
+ * 적응형 동작:
+ * 1. 첫 Fragment가 이미 압축된 형식(JPEG/PNG/ZIP/GZIP)의 매직 넘버면 바로 건너뛰기 모드
+ * 2. 압축 결과가 원본의 90% 이상이면 다음 SKIP_WINDOW개 Fragment는 압축 시도 생략
+ * 3. 건너뛰기 중에도 SAMPLE_INTERVAL마다 한 번씩 다시 시도 (데이터 특성 변화 대응,
+ *    매직 넘버로 건너뛰기로 한 전송은 다시 시도하지 않음)
+ * - 적응 상태는 전송마다 {@link Session}으로 따로 관리 (동시에 진행되는 전송끼리 판단을 공유하지 않음)
+ *
+ * 스레드 안전성:
+ * - Session.compress()는 여러 파이프라인 작업자 스레드에서 동시에 호출될 수 있음
+ * - 적응 상태와 통계는 Atomic 변수로 관리 (통계는 모든 Session 합계)
+ */
+public class ChunkCompressor {
+
+    /** Deflater 압축 레벨 (속도 우선) */
+    private static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+    /** 이 비율 이상이면 압축 효과 없음으로 판단 */
+    private static final double INCOMPRESSIBLE_RATIO = 0.9;
+
+    /** 압축 효과가 없을 때 압축을 생략할 Fragment 수 */
+    private static final int SKIP_WINDOW = 32;
+
+    /** 건너뛰기 중 재시도 간격 */
+    private static final int SAMPLE_INTERVAL = 16;
+
+    // 스레드별 재사용 코덱
+    private static final ThreadLocal<Deflater> DEFLATER =
+        ThreadLocal.withInitial(() -> new Deflater(COMPRESSION_LEVEL, true));
+    private static final ThreadLocal<Inflater> INFLATER =
+        ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> OUTPUT_BUFFER =
+        ThreadLocal.withInitial(() -> new byte[4096]);
+
+    // 통계
+    private final AtomicLong originalBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressedChunks = new AtomicLong();
+    private final AtomicLong skippedChunks = new AtomicLong();
+    private final AtomicLong compressNanos = new AtomicLong();
+    private final AtomicLong decompressNanos = new AtomicLong();
+
+    /**
+     * 압축 통계 스냅샷
+     *
+     * @param originalBytes 압축 대상이 된 원본 바이트 수
+     * @param compressedBytes 전송된 바이트 수 (압축하지 않은 Fragment 포함)
+     * @param compressedChunks 압축해서 보낸 Fragment 수
+     * @param skippedChunks 압축하지 않고 보낸 Fragment 수
+     * @param compressNanos 압축에 사용한 CPU 시간 (나노초)
+     * @param decompressNanos 압축 해제에 사용한 CPU 시간 (나노초)
+     */
+    public record Stats(long originalBytes, long compressedBytes, long compressedChunks,
+                        long skippedChunks, long compressNanos, long decompressNanos) {
+
+        /** 압축률 (전송 바이트 / 원본 바이트, 작을수록 좋음) */
+        public double ratio() {
+            return originalBytes > 0 ? (double) compressedBytes / originalBytes : 1.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("압축률 %.1f%% (%d → %d바이트), 압축 %d개/생략 %d개, CPU 압축 %.1fms/해제 %.1fms",
+                ratio() * 100, originalBytes, compressedBytes, compressedChunks, skippedChunks,
+                compressNanos / 1_000_000.0, decompressNanos / 1_000_000.0);
+        }
+    }
+
+    /**
+     * 전송 하나의 적응 상태 (전송을 시작할 때 {@link #newSession()}으로 생성)
+     */
+    public final class Session {
+
+        // 이 Sequence 전까지는 압축 생략 (Integer.MAX_VALUE면 매직 넘버로 결정된 전체 건너뛰기)
+        private final AtomicInteger skipUntilSequence = new AtomicInteger(0);
+
+        private Session() {
+        }
+
+        /**
+         * Fragment 압축 시도
+         *
+         * @param sequence Fragment 번호 (적응형 샘플링에 사용)
+         * @param data 원본 데이터
+         * @return 압축된 데이터, 압축하지 않기로 했거나 효과가 없으면 null
+         */
+        public byte[] compress(int sequence, byte[] data) {
+            // 첫 Fragment: 이미 압축된 형식이면 전체 건너뛰기
+            if (sequence == 0 && isKnownCompressedFormat(data)) {
+                skipUntilSequence.set(Integer.MAX_VALUE);
+            }
+
+            int skipUntil = skipUntilSequence.get();
+            boolean sampling = skipUntil != Integer.MAX_VALUE && sequence % SAMPLE_INTERVAL == 0;
+            if (sequence < skipUntil && !sampling) {
+                recordSkipped(data.length);
+                return null;
+            }
+
+            long t0 = System.nanoTime();
+            byte[] compressed = deflate(data);
+            compressNanos.addAndGet(System.nanoTime() - t0);
+
+            if (compressed == null || compressed.length >= data.length * INCOMPRESSIBLE_RATIO) {
+                // 압축 효과 없음 → 이후 일정 구간 압축 생략
+                skipUntilSequence.accumulateAndGet(sequence + SKIP_WINDOW,
+                    (current, next) -> current == Integer.MAX_VALUE ? current : Math.max(current, next));
+                recordSkipped(data.length);
+                return null;
+            }
+
+            // 압축 효과 있음 → 건너뛰기 해제 (매직 넘버로 결정된 경우는 유지)
+            skipUntilSequence.updateAndGet(current -> current == Integer.MAX_VALUE ? current : 0);
+            originalBytes.addAndGet(data.length);
+            compressedBytes.addAndGet(compressed.length);
+            compressedChunks.incrementAndGet();
+            return compressed;
+        }
+    }
+
+    /**
+     * 새 전송의 적응 상태 생성 (통계는 이 압축기에 누적)
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * 압축 해제
+     *
+     * @param data 압축된 데이터
+     * @param maxLength 해제 후 최대 길이 (Fragment 최대 크기)
+     * @return 원본 데이터
+     * @throws DataFormatException 손상된 압축 데이터
+     */
+    public byte[] decompress(byte[] data, int maxLength) throws DataFormatException {
+        long t0 = System.nanoTime();
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(data);
+
+        byte[] output = new byte[maxLength];
+        int length = 0;
+        while (!inflater.finished() && length < maxLength) {
+            int n = inflater.inflate(output, length, maxLength - length);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            length += n;
+        }
+        if (!inflater.finished()) {
+            throw new DataFormatException("압축 데이터가 완전하지 않음");
+        }
+        decompressNanos.addAndGet(System.nanoTime() - t0);
+        return Arrays.copyOf(output, length);
+    }
+
+    /**
+     * 통계 스냅샷 반환
+     */
+    public Stats getStats() {
+        return new Stats(originalBytes.get(), compressedBytes.get(), compressedChunks.get(),
+                         skippedChunks.get(), compressNanos.get(), decompressNanos.get());
+    }
+
+    private void recordSkipped(int length) {
+        originalBytes.addAndGet(length);
+        compressedBytes.addAndGet(length);
+        skippedChunks.incrementAndGet();
+    }
+
+    /**
+     * 스레드별 Deflater로 압축 (출력이 원본보다 커지면 null)
+     */
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] buffer = OUTPUT_BUFFER.get();
+        if (buffer.length < data.length) {
+            buffer = new byte[data.length];
+            OUTPUT_BUFFER.set(buffer);
+        }
+
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == data.length) {
+                return null; // 원본 크기를 넘어서면 압축 의미 없음
+            }
+            length += deflater.deflate(buffer, length, data.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * 이미 압축된 파일 형식인지 매직 넘버로 확인
+     * JPEG(FF D8 FF), PNG(89 50 4E 47), ZIP(50 4B 03 04), GZIP(1F 8B)
+     */
+    private static boolean isKnownCompressedFormat(byte[] data) {
+        if (data.length < 4) {
+            return false;
+        }
+        int b0 = data[0] & 0xFF, b1 = data[1] & 0xFF, b2 = data[2] & 0xFF, b3 = data[3] & 0xFF;
+        return (b0 == 0xFF && b1 == 0xD8 && b2 == 0xFF)
+            || (b0 == 0x89 && b1 == 0x50 && b2 == 0x4E && b3 == 0x47)
+            || (b0 == 0x50 && b1 == 0x4B && b2 == 0x03 && b3 == 0x04)
+            || (b0 == 0x1F && b1 == 0x8B);
+    }
+}
@@ -0,0 +1,390 @@
+package com.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * DeltaSync - rsync 방식의 델타 전송 알고리즘
+ *
+ * 동작 과정:
+ * 1. 수신 측: 기존 파일을 블록 단위로 나누어 블록마다 서명(Signature) 계산
+ *    - Weak: rolling checksum (한 바이트씩 밀면서 O(1)로 갱신 가능)
+ *    - Strong: SHA-256 앞 8바이트 (Weak 충돌 확인용)
+ * 2. 송신 측: 새 파일 위를 한 바이트씩 밀면서 Weak 값이 일치하는 블록을 찾고,
+ *    Strong 값까지 일치하면 "블록 참조"로, 나머지는 "리터럴 데이터"로 인코딩
+ * 3. 수신 측: 기존 파일 + 델타 스트림으로 새 파일 복원
+ *
+ * 델타 스트림 형식:
+ * ┌──────┬────────────┬──────────────┐
+ * │ 0x00 │ Length(4)  │ 리터럴 데이터 │   OP_LITERAL
+ * ├──────┼────────────┼──────────────┤
+ * │ 0x01 │ Block(4)   │ Count(4)     │   OP_COPY (연속 블록은 하나로 합침)
+ * └──────┴────────────┴──────────────┘
+ *
+ * 서명 계산은 블록마다 병렬로 수행되며, (경로, 크기, 수정 시각, 블록 크기)를 키로
+ * 캐시하여 같은 파일을 반복 동기화할 때 다시 계산하지 않습니다.
+ */
+public final class DeltaSync {
+
+    /** 기본 블록 크기 (바이트) */
+    public static final int DEFAULT_BLOCK_SIZE = 2048;
+    private static final long MAX_OUTPUT_LENGTH = Integer.MAX_VALUE - 8; // 배열 최대 크기
+
+    private static final byte OP_LITERAL = 0x00;
+    private static final byte OP_COPY = 0x01;
+
+    private static final int MOD = 1 << 16;
+
+    // 서명 캐시: 파일 상태가 바뀌면 키가 달라지므로 자동으로 새로 계산됨
+    private static final Map<String, Signature> SIGNATURE_CACHE = new ConcurrentHashMap<>();
+    private static final int MAX_CACHE_ENTRIES = 64;
+
+    private DeltaSync() {
+    }
+
+    /**
+     * 파일의 블록 서명 목록
+     *
+     * @param blockSize 블록 크기
+     * @param fileLength 원본 파일 크기 (-1이면 기존 파일 없음)
+     * @param weak 블록별 rolling checksum
+     * @param strong 블록별 강한 해시 (SHA-256 앞 8바이트)
+     */
+    public record Signature(int blockSize, long fileLength, int[] weak, long[] strong) {
+
+        public int blockCount() {
+            return weak.length;
+        }
+
+        public boolean hasBasis() {
+            return fileLength >= 0;
+        }
+
+        /** 기존 파일이 없을 때 사용하는 빈 서명 */
+        public static Signature none(int blockSize) {
+            return new Signature(blockSize, -1, new int[0], new long[0]);
+        }
+    }
+
+    /**
+     * 파일의 블록 서명 계산 (병렬, 캐시 사용)
+     *
+     * @param file 기존 파일
+     * @param blockSize 블록 크기
+     * @return 서명 (파일이 없으면 빈 서명)
+     * @throws IOException 파일 읽기 오류
+     */
+    public static Signature computeSignature(File file, int blockSize) throws IOException {
+        if (!file.isFile()) {
+            return Signature.none(blockSize);
+        }
+
+        String key = file.getCanonicalPath() + "|" + file.length() + "|" + file.lastModified() + "|" + blockSize;
+        Signature cached = SIGNATURE_CACHE.get(key);
+        if (cached != null) {
+            System.out.println("[Delta] 서명 캐시 사용: " + file.getName());
+            return cached;
+        }
+
+        long fileLength = file.length();
+        int blockCount = (int) ((fileLength + blockSize - 1) / blockSize);
+        int[] weak = new int[blockCount];
+        long[] strong = new long[blockCount];
+
+        // FileChannel의 위치 지정 읽기는 여러 스레드에서 동시에 사용 가능
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            IntStream.range(0, blockCount).parallel().forEach(index -> {
+                ByteBuffer block = ByteBuffer.allocate(blockSize);
+                try {
+                    long position = (long) index * blockSize;
+                    while (block.hasRemaining()) {
+                        int read = channel.read(block, position + block.position());
+                        if (read < 0) {
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                weak[index] = rollingChecksum(block.array(), 0, block.position());
+                strong[index] = strongHash(block.array(), 0, block.position());
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Signature signature = new Signature(blockSize, fileLength, weak, strong);
+        if (SIGNATURE_CACHE.size() >= MAX_CACHE_ENTRIES) {
+            SIGNATURE_CACHE.clear();
+        }
+        SIGNATURE_CACHE.put(key, signature);
+        return signature;
+    }
+
+    /**
+     * 새 파일 내용을 기존 파일의 서명에 대한 델타 스트림으로 인코딩
+     *
+     * @param data 새 파일 내용
+     * @param signature 수신 측 기존 파일의 서명
+     * @return 델타 스트림
+     */
+    public static byte[] encode(byte[] data, Signature signature) {
+        int blockSize = signature.blockSize();
+        DeltaWriter writer = new DeltaWriter(data);
+
+        // Weak 값 → 블록 번호 목록 (충돌 가능)
+        Map<Integer, List<Integer>> weakIndex = new HashMap<>();
+        for (int i = 0; i < signature.blockCount(); i++) {
+            // 마지막 블록이 짧으면 슬라이딩 윈도우와 크기가 달라 매칭되지 않으므로 제외
+            if ((long) (i + 1) * blockSize <= signature.fileLength()) {
+                weakIndex.computeIfAbsent(signature.weak()[i], k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        int position = 0;
+        int literalStart = 0;
+        if (!weakIndex.isEmpty() && data.length >= blockSize) {
+            int a = 0, b = 0;
+            boolean needInit = true;
+
+            while (position + blockSize <= data.length) {
+                if (needInit) {
+                    int weak = rollingChecksum(data, position, blockSize);
+                    a = weak & 0xFFFF;
+                    b = weak >>> 16;
+                    needInit = false;
+                }
+
+                List<Integer> candidates = weakIndex.get(a | (b << 16));
+                int matched = -1;
+                if (candidates != null) {
+                    long strong = strongHash(data, position, blockSize);
+                    for (int candidate : candidates) {
+                        if (signature.strong()[candidate] == strong) {
+                            matched = candidate;
+                            break;
+                        }
+                    }
+                }
+
+                if (matched >= 0) {
+                    writer.literal(literalStart, position);
+                    writer.copy(matched);
+                    position += blockSize;
+                    literalStart = position;
+                    needInit = true;
+                    continue;
+                }
+
+                // 윈도우를 한 바이트 이동 (rolling 갱신)
+                if (position + blockSize < data.length) {
+                    int out = data[position] & 0xFF;
+                    int in = data[position + blockSize] & 0xFF;
+                    a = (a - out + in) & (MOD - 1);
+                    b = (b - blockSize * out + a) & (MOD - 1);
+                }
+                position++;
+            }
+        }
+
+        writer.literal(literalStart, data.length);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 기존 파일과 델타 스트림으로 새 파일 내용 복원
+     *
+     * @param basis 수신 측 기존 파일
+     * @param blockSize 서명 계산에 사용한 블록 크기
+     * @param delta 델타 스트림
+     * @param targetLength 복원될 파일 크기 (상대가 보낸 값 - 델타 스트림이 만드는 크기와 같아야 함)
+     * @return 새 파일 내용
+     * @throws IOException 기존 파일 읽기 오류, 잘못된 델타 스트림 또는 크기 불일치
+     */
+    public static byte[] apply(File basis, int blockSize, byte[] delta, long targetLength) throws IOException {
+        // 할당 전에 델타 스트림이 실제로 만드는 크기를 계산해 검증 (상대가 보낸 크기로 바로 할당하지 않음)
+        long basisLength = basis.isFile() ? basis.length() : -1;
+        long outputLength = outputLength(delta, blockSize, basisLength);
+        if (targetLength != outputLength) {
+            throw new IOException("복원될 크기 불일치: " + targetLength + " != " + outputLength);
+        }
+        byte[] result = new byte[(int) targetLength];
+        int written = 0;
+        ByteBuffer in = ByteBuffer.wrap(delta);
+
+        try (RandomAccessFile raf = basis.isFile() ? new RandomAccessFile(basis, "r") : null) {
+            while (in.hasRemaining()) {
+                byte op = in.get();
+                if (op == OP_LITERAL) {
+                    int length = in.getInt();
+                    checkBounds(written, length, result.length);
+                    in.get(result, written, length);
+                    written += length;
+                } else if (op == OP_COPY) {
+                    int block = in.getInt();
+                    int count = in.getInt();
+                    if (raf == null) {
+                        throw new IOException("블록 참조가 있지만 기존 파일이 없음");
+                    }
+                    long offset = (long) block * blockSize;
+                    int length = (int) Math.min((long) count * blockSize, raf.length() - offset);
+                    checkBounds(written, length, result.length);
+                    raf.seek(offset);
+                    raf.readFully(result, written, length);
+                    written += length;
+                } else {
+                    throw new IOException("알 수 없는 델타 명령: " + op);
+                }
+            }
+        }
+
+        if (written != result.length) {
+            throw new IOException("복원된 크기 불일치: " + written + " != " + result.length);
+        }
+        return result;
+    }
+
+    /**
+     * 델타 스트림을 적용했을 때 만들어지는 크기 (데이터는 읽지 않음)
+     *
+     * @param basisLength 기존 파일 크기 (없으면 -1)
+     * @throws IOException 잘못된 델타 스트림이거나 결과가 배열 최대 크기를 넘음
+     */
+    private static long outputLength(byte[] delta, int blockSize, long basisLength) throws IOException {
+        if (blockSize <= 0) {
+            throw new IOException("잘못된 블록 크기: " + blockSize);
+        }
+        ByteBuffer in = ByteBuffer.wrap(delta);
+        long total = 0;
+        try {
+            while (in.hasRemaining()) {
+                byte op = in.get();
+                long length;
+                if (op == OP_LITERAL) {
+                    length = in.getInt();
+                    if (length < 0 || length > in.remaining()) {
+                        throw new IOException("잘못된 리터럴 길이: " + length);
+                    }
+                    in.position(in.position() + (int) length);
+                } else if (op == OP_COPY) {
+                    int block = in.getInt();
+                    int count = in.getInt();
+                    if (basisLength < 0) {
+                        throw new IOException("블록 참조가 있지만 기존 파일이 없음");
+                    }
+                    long offset = (long) block * blockSize;
+                    if (block < 0 || count < 0 || offset > basisLength) {
+                        throw new IOException("잘못된 블록 참조: " + block + " × " + count);
+                    }
+                    length = Math.min((long) count * blockSize, basisLength - offset);
+                } else {
+                    throw new IOException("알 수 없는 델타 명령: " + op);
+                }
+                total += length;
+                if (total > MAX_OUTPUT_LENGTH) {
+                    throw new IOException("델타 스트림 결과가 너무 큼");
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("델타 스트림이 잘림");
+        }
+        return total;
+    }
+
+    private static void checkBounds(int written, int length, int capacity) throws IOException {
+        if (length < 0 || written + length > capacity) {
+            throw new IOException("델타 스트림이 파일 크기를 벗어남");
+        }
+    }
+
+    /**
+     * rsync rolling checksum: a = Σx, b = Σ(L-i)x  (각각 mod 2^16)
+     * @return (b << 16) | a
+     */
+    static int rollingChecksum(byte[] data, int offset, int length) {
+        int a = 0, b = 0;
+        for (int i = 0; i < length; i++) {
+            int x = data[offset + i] & 0xFF;
+            a += x;
+            b += (length - i) * x;
+        }
+        return (a & (MOD - 1)) | ((b & (MOD - 1)) << 16);
+    }
+
+    /**
+     * 강한 해시 (SHA-256 앞 8바이트)
+     */
+    static long strongHash(byte[] data, int offset, int length) {
+        return ByteBuffer.wrap(FileIntegrity.leafHash(data, offset, length)).getLong();
+    }
+
+    /**
+     * 델타 스트림 작성기 (연속된 블록 참조는 하나의 OP_COPY로 합침)
+     */
+    private static class DeltaWriter {
+        private final byte[] source;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int pendingBlock = -1;
+        private int pendingCount = 0;
+
+        DeltaWriter(byte[] source) {
+            this.source = source;
+        }
+
+        void literal(int from, int to) {
+            if (to <= from) {
+                return;
+            }
+            flushCopy();
+            out.write(OP_LITERAL);
+            writeInt(to - from);
+            out.write(source, from, to - from);
+        }
+
+        void copy(int block) {
+            if (pendingBlock >= 0 && pendingBlock + pendingCount == block) {
+                pendingCount++;
+                return;
+            }
+            flushCopy();
+            pendingBlock = block;
+            pendingCount = 1;
+        }
+
+        private void flushCopy() {
+            if (pendingBlock < 0) {
+                return;
+            }
+            out.write(OP_COPY);
+            writeInt(pendingBlock);
+            writeInt(pendingCount);
+            pendingBlock = -1;
+            pendingCount = 0;
+        }
+
+        private void writeInt(int value) {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+        }
+
+        byte[] toByteArray() {
+            flushCopy();
+            return out.toByteArray();
+        }
+    }
+}
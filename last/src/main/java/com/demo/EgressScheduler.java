@@ -0,0 +1,545 @@
+package com.demo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * EgressScheduler - 송신 QoS 스케줄러 (Ethernet과 Physical 사이 계층)
+ *
+ * 역할:
+ * - Ethernet이 만든 프레임을 트래픽 클래스별 큐에 넣고, 전송 스레드 하나가 순서를 정해 Physical로 보냄
+ * - 파일 전송이 링크를 채우고 있어도 긴급 채팅은 큐 맨 앞에서 바로 나감
+ *   (IP TOS 우선순위가 표시만 되던 것을 로컬 송신 순서에도 반영)
+ *
+ * 트래픽 분류 (완성된 프레임의 헤더로 판단, 상위 계층의 공유 상태와 무관):
+ * - HIGH: ARP, TOS 우선순위 111(긴급 채팅)
+ * - NORMAL: TOS 000(일반 채팅), 기타 프레임
+ * - LOW: TOS 001(낮은 우선순위 채팅)
+ * - BULK: IP 프로토콜 254(파일 전송)
+ *
+ * 스케줄링:
+ * - HIGH는 엄격한 우선순위 (큐에 있으면 항상 먼저 전송)
+ * - 나머지는 DRR(Deficit Round Robin): 차례마다 클래스별 quantum(바이트)만큼 전송 기회를 얻음
+ *   → 기본 가중치 NORMAL 4 : LOW 2 : BULK 1, 파일 전송은 굶지 않고 채팅은 파일 뒤에 오래 묶이지 않음
+ *
+ * 흐름 제어:
+ * - 클래스별 큐 크기(바이트) 제한, 가득 차면 Send가 자리가 날 때까지 대기 (파일 송신 스레드 속도 조절)
+ * - 대기 시간이 지나도 자리가 없으면 드롭하고 false 반환
+ *
+ * 속도 제한 (페이싱, {@link TrafficPacer}):
+ * - IPv4 프레임은 목적지 IP/클래스별 토큰 버킷을 통과해야 큐에서 나감 (ARP 등은 제한 없음)
+ * - 토큰이 없는 클래스는 이번 차례를 건너뛰고, 모든 클래스가 기다려야 하면
+ *   가장 빠른 전송 가능 시각까지 나노초 단위로 대기 (새 프레임이 들어오면 바로 깨어남)
+ * - 클래스 큐 안에서는 순서를 지키므로 제한에 걸린 목적지의 프레임이 같은 클래스의 뒤 프레임을 붙잡을 수 있음
+ *
+ * Send는 큐에 넣으면 true를 반환하고, 실제 전송 실패는 통계(sendFailures)로만 집계합니다.
+ */
+public class EgressScheduler implements BaseLayer {
+    // ===== 계층 기본 정보 =====
+    private static final String LAYER_NAME = "Egress";
+    private BaseLayer lowerLayer;                                  // 하위 계층: PhysicalLayer
+    private final List<BaseLayer> upperLayers = new ArrayList<>(); // 상위 계층: EthernetLayer
+
+    // ===== 분류용 헤더 값 (IPLayer와 동일) =====
+    private static final int ETHER_TYPE_IPV4 = 0x0800;
+    private static final int ETHER_TYPE_ARP = 0x0806;
+    private static final int PROTOCOL_FILE_APP = 254;
+    private static final int TOS_PRECEDENCE_MASK = 0xE0;
+    private static final int TOS_PRIORITY_HIGH = 0xE0;
+    private static final int TOS_PRIORITY_LOW = 0x20;
+
+    // ===== 기본 설정 =====
+    private static final int DEFAULT_QUANTUM_UNIT = 1514;                 // 최대 Ethernet 프레임 하나
+    private static final int DEFAULT_QUEUE_LIMIT_BYTES = 1024 * 1024;     // 클래스당 1MB
+    private static final long DEFAULT_ENQUEUE_TIMEOUT_MS = 2000;          // 큐가 가득 찼을 때 최대 대기
+
+    /**
+     * 트래픽 클래스 (선언 순서 = DRR 순회 순서, HIGH는 DRR 대상 아님)
+     */
+    public enum TrafficClass {
+        HIGH("긴급"),
+        NORMAL("일반"),
+        LOW("낮음"),
+        BULK("파일");
+
+        public final String label;
+
+        TrafficClass(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * 클래스별 통계
+     * @param enqueued 큐에 넣은 프레임 수
+     * @param sent 하위 계층으로 보낸 프레임 수
+     * @param dropped 큐가 가득 차서 버린 프레임 수
+     * @param queuedFrames 현재 큐에 있는 프레임 수
+     * @param avgQueueDelayMs 평균 큐 대기 시간 (보낸 프레임 기준)
+     * @param maxQueueDelayMs 최대 큐 대기 시간
+     */
+    public record ClassStats(long enqueued, long sent, long dropped, int queuedFrames,
+                             double avgQueueDelayMs, double maxQueueDelayMs) {}
+
+    private record QueuedFrame(byte[] frame, long enqueuedAt, int destinationIp, boolean paced) {}
+
+    /**
+     * 클래스별 큐와 DRR 상태 (lock 보유 상태에서만 접근)
+     */
+    private static final class ClassQueue {
+        final ArrayDeque<QueuedFrame> frames = new ArrayDeque<>();
+        int bytes = 0;
+        int quantum;
+        int deficit = 0;
+        int limitBytes = DEFAULT_QUEUE_LIMIT_BYTES;
+        long enqueued = 0;
+        long sent = 0;
+        long dropped = 0;
+        long totalDelayNanos = 0;
+        long maxDelayNanos = 0;
+
+        ClassQueue(int quantum) {
+            this.quantum = quantum;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final EnumMap<TrafficClass, ClassQueue> queues = new EnumMap<>(TrafficClass.class);
+    private final TrafficClass[] drrOrder = {TrafficClass.NORMAL, TrafficClass.LOW, TrafficClass.BULK};
+    private int drrIndex = 0;
+    private boolean quantumGranted = false;  // 현재 DRR 차례의 클래스가 이번 라운드 quantum을 받았는지
+    private int totalFrames = 0;
+    private boolean sending = false;         // 전송 스레드가 큐에서 꺼낸 프레임을 보내는 중
+    private long sendFailures = 0;
+    private final TrafficPacer pacer = new TrafficPacer();
+    private long pacingWaitNanos = 0;        // 모든 클래스가 속도 제한에 걸렸을 때 다음 전송 가능까지 남은 시간
+    private volatile long enqueueTimeoutMs = DEFAULT_ENQUEUE_TIMEOUT_MS;
+    private Thread senderThread;
+
+    public EgressScheduler() {
+        queues.put(TrafficClass.HIGH, new ClassQueue(0));
+        queues.put(TrafficClass.NORMAL, new ClassQueue(4 * DEFAULT_QUANTUM_UNIT));
+        queues.put(TrafficClass.LOW, new ClassQueue(2 * DEFAULT_QUANTUM_UNIT));
+        queues.put(TrafficClass.BULK, new ClassQueue(DEFAULT_QUANTUM_UNIT));
+    }
+
+    // ===== 설정 =====
+
+    /**
+     * DRR quantum 설정 (라운드마다 클래스가 보낼 수 있는 바이트, 클래스 간 비율이 가중치)
+     * @param trafficClass NORMAL, LOW, BULK (HIGH는 엄격한 우선순위라 설정 불가)
+     * @param bytes quantum (1 이상)
+     */
+    public void setQuantum(TrafficClass trafficClass, int bytes) {
+        if (trafficClass == TrafficClass.HIGH) {
+            throw new IllegalArgumentException("HIGH 클래스는 엄격한 우선순위로 전송됩니다");
+        }
+        if (bytes < 1) {
+            throw new IllegalArgumentException("quantum은 1바이트 이상이어야 합니다: " + bytes);
+        }
+        lock.lock();
+        try {
+            queues.get(trafficClass).quantum = bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 클래스별 큐 크기 제한 설정
+     * @param bytes 최대 보관 바이트 (1 이상, 프레임 하나는 제한과 관계없이 항상 들어감)
+     */
+    public void setQueueLimit(TrafficClass trafficClass, int bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("큐 크기 제한은 1바이트 이상이어야 합니다: " + bytes);
+        }
+        lock.lock();
+        try {
+            queues.get(trafficClass).limitBytes = bytes;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 큐가 가득 찼을 때 Send가 기다리는 최대 시간 설정
+     * @param timeoutMs 대기 시간 (밀리초, 0이면 바로 드롭)
+     */
+    public void setEnqueueTimeout(long timeoutMs) {
+        if (timeoutMs < 0) {
+            throw new IllegalArgumentException("대기 시간은 0 이상이어야 합니다: " + timeoutMs);
+        }
+        this.enqueueTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * 클래스 속도 제한 설정 (목적지마다 따로 적용, 실행 중 변경 가능)
+     * @param bytesPerSecond 초당 바이트 (0이면 제한 없음)
+     * @param packetsPerSecond 초당 패킷 (0이면 제한 없음)
+     */
+    public void setClassRateLimit(TrafficClass trafficClass, long bytesPerSecond, int packetsPerSecond) {
+        TrafficPacer.RateLimit limit = new TrafficPacer.RateLimit(bytesPerSecond, packetsPerSecond);
+        lock.lock();
+        try {
+            pacer.setClassLimit(trafficClass, limit);
+            notEmpty.signal(); // 이전 속도로 계산한 대기를 다시 계산
+        } finally {
+            lock.unlock();
+        }
+        System.out.println("[Egress] " + trafficClass.label + " 속도 제한: " + describe(limit));
+    }
+
+    /**
+     * 목적지 전체 속도 제한 설정 (실행 중 변경 가능)
+     * @param destinationIp 목적지 IP (예: "192.168.0.20")
+     * @param bytesPerSecond 초당 바이트 (0이면 제한 없음)
+     * @param packetsPerSecond 초당 패킷 (0이면 제한 없음)
+     */
+    public void setDestinationRateLimit(String destinationIp, long bytesPerSecond, int packetsPerSecond) {
+        TrafficPacer.RateLimit limit = new TrafficPacer.RateLimit(bytesPerSecond, packetsPerSecond);
+        int ip = NetAddress.parseIp(destinationIp);
+        lock.lock();
+        try {
+            pacer.setDestinationLimit(ip, limit);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        System.out.println("[Egress] " + destinationIp + " 속도 제한: " + describe(limit));
+    }
+
+    /**
+     * @return 클래스 속도 제한 (목적지별)
+     */
+    public TrafficPacer.RateLimit getClassRateLimit(TrafficClass trafficClass) {
+        lock.lock();
+        try {
+            return pacer.getClassLimit(trafficClass);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String describe(TrafficPacer.RateLimit limit) {
+        if (limit.isUnlimited()) {
+            return "없음";
+        }
+        return (limit.bytesPerSecond() > 0 ? limit.bytesPerSecond() + "B/s " : "")
+             + (limit.packetsPerSecond() > 0 ? limit.packetsPerSecond() + "pps" : "");
+    }
+
+    // ===== 통계 =====
+
+    /**
+     * @return 클래스별 통계
+     */
+    public Map<TrafficClass, ClassStats> getStats() {
+        lock.lock();
+        try {
+            Map<TrafficClass, ClassStats> stats = new EnumMap<>(TrafficClass.class);
+            queues.forEach((trafficClass, queue) -> stats.put(trafficClass, new ClassStats(
+                queue.enqueued, queue.sent, queue.dropped, queue.frames.size(),
+                queue.sent > 0 ? queue.totalDelayNanos / (double) queue.sent / 1_000_000.0 : 0.0,
+                queue.maxDelayNanos / 1_000_000.0)));
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 하위 계층 전송 실패 수
+     */
+    public long getSendFailures() {
+        lock.lock();
+        try {
+            return sendFailures;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 큐가 모두 빌 때까지 대기 (종료 전 남은 프레임 전송 등)
+     * @param timeoutMs 최대 대기 시간 (밀리초)
+     * @return 제한 시간 안에 모두 전송했으면 true
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (totalFrames > 0 || sending) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ===== BaseLayer 인터페이스 구현 =====
+
+    @Override
+    public String GetLayerName() { return LAYER_NAME; }
+
+    @Override
+    public BaseLayer GetUnderLayer() { return lowerLayer; }
+
+    @Override
+    public BaseLayer GetUpperLayer(int index) {
+        return (index >= 0 && index < upperLayers.size()) ? upperLayers.get(index) : null;
+    }
+
+    @Override
+    public void SetUnderLayer(BaseLayer layer) { this.lowerLayer = layer; }
+
+    @Override
+    public void SetUpperLayer(BaseLayer layer) {
+        if (!upperLayers.contains(layer)) {
+            upperLayers.add(layer);
+        }
+    }
+
+    /**
+     * 프레임을 분류하여 클래스 큐에 넣습니다. (전송은 전송 스레드가 수행)
+     *
+     * @param input Ethernet 프레임
+     * @param length 프레임 길이
+     * @return 큐에 넣었으면 true, 하위 계층이 없거나 큐가 가득 차 드롭했으면 false
+     */
+    @Override
+    public boolean Send(byte[] input, int length) {
+        if (lowerLayer == null) {
+            System.err.println("[Egress] 하위 계층이 설정되지 않음");
+            return false;
+        }
+        byte[] frame = Arrays.copyOf(input, length); // 호출자가 버퍼를 재사용해도 안전하도록 복사
+        TrafficClass trafficClass = classify(frame, length);
+        ClassQueue queue = queues.get(trafficClass);
+        boolean ipv4 = length >= 14 + 20 && ((frame[12] & 0xFF) << 8 | (frame[13] & 0xFF)) == ETHER_TYPE_IPV4;
+        int destinationIp = ipv4 ? NetAddress.ipToInt(frame, 14 + 16) : 0;
+
+        lock.lock();
+        try {
+            startSenderIfNeeded();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(enqueueTimeoutMs);
+            while (!queue.frames.isEmpty() && queue.bytes + length > queue.limitBytes) {
+                if (remaining <= 0) {
+                    queue.dropped++;
+                    System.err.println("[Egress] " + trafficClass.label + " 큐 가득 참 - 프레임 드롭 ("
+                                       + queue.frames.size() + "개 대기)");
+                    return false;
+                }
+                try {
+                    remaining = notFull.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    queue.dropped++;
+                    return false;
+                }
+            }
+            queue.frames.add(new QueuedFrame(frame, System.nanoTime(), destinationIp, ipv4));
+            queue.bytes += length;
+            queue.enqueued++;
+            totalFrames++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 수신 방향은 그대로 상위 계층(Ethernet)으로 전달
+     */
+    @Override
+    public boolean Receive(byte[] input) {
+        boolean delivered = false;
+        for (BaseLayer upperLayer : upperLayers) {
+            delivered |= upperLayer.Receive(input);
+        }
+        return delivered;
+    }
+
+    // ===== 분류 및 스케줄링 =====
+
+    /**
+     * 프레임 헤더로 트래픽 클래스 결정
+     */
+    static TrafficClass classify(byte[] frame, int length) {
+        if (length < 14) {
+            return TrafficClass.NORMAL;
+        }
+        int etherType = ((frame[12] & 0xFF) << 8) | (frame[13] & 0xFF);
+        if (etherType == ETHER_TYPE_ARP) {
+            return TrafficClass.HIGH; // 주소 해석이 늦으면 해당 목적지의 모든 전송이 대기
+        }
+        if (etherType != ETHER_TYPE_IPV4 || length < 14 + 20) {
+            return TrafficClass.NORMAL;
+        }
+        if ((frame[14 + 9] & 0xFF) == PROTOCOL_FILE_APP) {
+            return TrafficClass.BULK;
+        }
+        return switch (frame[14 + 1] & TOS_PRECEDENCE_MASK) {
+            case TOS_PRIORITY_HIGH -> TrafficClass.HIGH;
+            case TOS_PRIORITY_LOW -> TrafficClass.LOW;
+            default -> TrafficClass.NORMAL;
+        };
+    }
+
+    /**
+     * 다음에 보낼 프레임 선택 (lock 보유, 큐가 비어 있지 않은 상태에서 호출)
+     * HIGH가 있으면 HIGH, 없으면 DRR 순서대로 deficit 안에 들어가는 클래스의 맨 앞 프레임
+     * 속도 제한에 걸린 클래스는 비어 있는 것처럼 건너뜀
+     *
+     * @return 보낼 프레임, 모든 클래스가 속도 제한에 걸렸으면 null (대기 시간은 pacingWaitNanos)
+     */
+    private QueuedFrame dequeueLocked(long now) {
+        pacingWaitNanos = Long.MAX_VALUE;
+        ClassQueue high = queues.get(TrafficClass.HIGH);
+        if (isReady(high, TrafficClass.HIGH, now)) {
+            return pollLocked(high, TrafficClass.HIGH, now);
+        }
+        boolean anyReady = false;
+        for (TrafficClass trafficClass : drrOrder) {
+            anyReady |= isReady(queues.get(trafficClass), trafficClass, now);
+        }
+        if (!anyReady) {
+            return null;
+        }
+        while (true) {
+            TrafficClass trafficClass = drrOrder[drrIndex];
+            ClassQueue queue = queues.get(trafficClass);
+            if (!isReady(queue, trafficClass, now)) {
+                queue.deficit = 0;      // 빈(또는 제한 중인) 클래스는 deficit을 쌓아 두지 않음
+                nextDrrClass();
+                continue;
+            }
+            if (!quantumGranted) {
+                queue.deficit += queue.quantum;
+                quantumGranted = true;
+            }
+            int length = queue.frames.peek().frame().length;
+            if (length <= queue.deficit) {
+                queue.deficit -= length;
+                QueuedFrame next = pollLocked(queue, trafficClass, now);
+                if (queue.frames.isEmpty()) {
+                    queue.deficit = 0;
+                    nextDrrClass();
+                }
+                return next;
+            }
+            nextDrrClass(); // deficit이 부족하면 다음 라운드에 이어서
+        }
+    }
+
+    /**
+     * 큐의 맨 앞 프레임을 지금 보낼 수 있는지 (속도 제한에 걸렸으면 대기 시간을 pacingWaitNanos에 반영)
+     */
+    private boolean isReady(ClassQueue queue, TrafficClass trafficClass, long now) {
+        QueuedFrame head = queue.frames.peek();
+        if (head == null) {
+            return false;
+        }
+        if (!head.paced()) {
+            return true;
+        }
+        long delay = pacer.delayNanos(head.destinationIp(), trafficClass, now);
+        if (delay > 0) {
+            pacingWaitNanos = Math.min(pacingWaitNanos, delay);
+            return false;
+        }
+        return true;
+    }
+
+    private void nextDrrClass() {
+        drrIndex = (drrIndex + 1) % drrOrder.length;
+        quantumGranted = false;
+    }
+
+    private QueuedFrame pollLocked(ClassQueue queue, TrafficClass trafficClass, long now) {
+        QueuedFrame next = queue.frames.poll();
+        queue.bytes -= next.frame().length;
+        if (next.paced()) {
+            pacer.consume(next.destinationIp(), trafficClass, next.frame().length, now);
+        }
+        queue.sent++;
+        long delay = now - next.enqueuedAt();
+        queue.totalDelayNanos += delay;
+        queue.maxDelayNanos = Math.max(queue.maxDelayNanos, delay);
+        totalFrames--;
+        return next;
+    }
+
+    private void startSenderIfNeeded() {
+        if (senderThread == null) {
+            senderThread = new Thread(this::runSender, "EgressScheduler");
+            senderThread.setDaemon(true);
+            senderThread.start();
+        }
+    }
+
+    /**
+     * 전송 스레드: 큐에서 하나씩 꺼내 하위 계층으로 전송 (전송 중에는 잠금을 놓아 Send가 막히지 않음)
+     */
+    private void runSender() {
+        while (true) {
+            QueuedFrame next;
+            lock.lock();
+            try {
+                sending = false;
+                while (true) {
+                    if (totalFrames == 0) {
+                        idle.signalAll();
+                        notEmpty.awaitUninterruptibly();
+                        continue;
+                    }
+                    next = dequeueLocked(System.nanoTime());
+                    if (next != null) {
+                        break;
+                    }
+                    // 속도 제한: 가장 빠른 전송 가능 시각까지 대기 (새 프레임이나 설정 변경 시 깨어남)
+                    try {
+                        notEmpty.awaitNanos(pacingWaitNanos);
+                    } catch (InterruptedException e) {
+                        // 전송 스레드는 종료하지 않음 (데몬 스레드)
+                    }
+                }
+                sending = true;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            boolean sent;
+            try {
+                sent = lowerLayer.Send(next.frame(), next.frame().length);
+            } catch (RuntimeException e) {
+                System.err.println("[Egress] 프레임 전송 중 오류: " + e.getMessage());
+                sent = false;
+            }
+            if (!sent) {
+                lock.lock();
+                try {
+                    sendFailures++;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -2,9 +2,10 @@ package com.demo;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * EthernetLayer - 이더넷 데이터링크 계층 (OSI 2계층에 해당)
@@ -17,7 +18,9 @@ import java.util.concurrent.ConcurrentHashMap;
  *   1. EtherType 필터 (IP: 0x0800, ARP: 0x0806 지원)
  *   2. 자기 수신 방지 (출발지 MAC이 자신과 같으면 드롭)
  *   3. 목적지 필터 (자신 또는 브로드캐스트 주소만 수락)
- *   4. 프레임 레벨 중복 방지 (해시 기반)
+ *   4. 프레임 레벨 중복 방지 (IPv4 프레임 앞부분 + IP ID, 회전 Bloom 필터 시간 창)
+ * - 브로드캐스트 폭주 제어: 출발지 MAC별 토큰 버킷으로 브로드캐스트 프레임 수 제한
+ *   (ARP 폭주나 브로드캐스트 잡음을 보내는 호스트가 수신 스레드를 독차지하지 못하게 함)
  * 
  * Ethernet 프레임 구조 (IEEE 802.3):
  * ┌──────────────┬──────────────┬──────────┬─────────────┬──────┬─────┐
@@ -40,17 +43,59 @@ public class EthernetLayer implements BaseLayer {
     // ===== MAC 주소 설정 =====
     private byte[] sourceMacAddress = new byte[6];      // 출발지 MAC 주소 (이 컴퓨터의 NIC MAC)
     private byte[] destinationMacAddress = new byte[6]; // 목적지 MAC 주소 (상대방 NIC MAC 또는 브로드캐스트)
-    private int etherType = 0x0800;                      // EtherType 필드 (기본값: 0x0800 = IPv4)
+    private volatile int etherType = 0x0800;             // EtherType 필드 (기본값: 0x0800 = IPv4)
     
     // ===== EtherType 상수 =====
     private static final int ETHER_TYPE_IPV4 = 0x0800;   // IPv4
     private static final int ETHER_TYPE_ARP = 0x0806;    // ARP
     
+    // ===== MTU (프레임 페이로드 최대 크기) =====
+    public static final int DEFAULT_MTU = 1500;          // 표준 Ethernet
+    private static final int MIN_MTU = 68;               // IPv4 최소 MTU
+    private volatile int mtu = 0;                        // 0이면 Physical 계층 MTU를 따름
+    private final AtomicLong oversizeDrops = new AtomicLong(); // MTU 초과로 전송하지 않은 프레임 수
+    
     // ===== 프레임 레벨 중복 방지 =====
-    private final Set<Integer> recentFrameHashes = ConcurrentHashMap.newKeySet();
-    private static final int MAX_RECENT_FRAMES = 1000;
-    private volatile long lastFrameCleanup = System.currentTimeMillis();
-    private static final long FRAME_DEDUP_WINDOW_MS = 2000; // 2초
+    private final FrameDeduplicator frameDeduplicator = new FrameDeduplicator(); // 1초 시간 창
+    
+    // ===== 브로드캐스트 폭주 제어 (출발지 MAC별 토큰 버킷) =====
+    public static final double DEFAULT_BROADCAST_RATE = 200;  // 출발지당 초당 허용 브로드캐스트 프레임 수
+    public static final int DEFAULT_BROADCAST_BURST = 300;    // 순간 허용량 (/24 ARP 스캔 한 번은 통과)
+    private static final int MAX_TRACKED_SOURCES = 1024;      // 넘으면 새 출발지는 하나의 버킷을 공유
+    private static final long PRUNE_INTERVAL_NANOS = 1_000_000_000L; // 가득 찼을 때 조용한 출발지 정리 최소 간격
+    private final Map<Long, TokenBucket> broadcastBuckets = new HashMap<>(); // broadcastBuckets로 동기화
+    private double broadcastRate = DEFAULT_BROADCAST_RATE;    // 0이면 제한 없음
+    private int broadcastBurst = DEFAULT_BROADCAST_BURST;
+    private final TokenBucket overflowBucket = new TokenBucket(DEFAULT_BROADCAST_BURST, System.nanoTime());
+    private long lastPruneNanos = System.nanoTime() - PRUNE_INTERVAL_NANOS; // broadcastBuckets로 동기화
+    private long bucketPrunes = 0;                            // 정리 횟수 (broadcastBuckets로 동기화)
+    private final AtomicLong broadcastAccepted = new AtomicLong();
+    private final AtomicLong broadcastDropped = new AtomicLong();
+    
+    /**
+     * 토큰 버킷 (초당 rate개씩 채워지고 최대 burst개까지 쌓임, 프레임 하나에 토큰 하나)
+     */
+    private static final class TokenBucket {
+        double tokens;
+        long refilledAt;
+        boolean limited;    // 제한 중 (로그를 한 번만 남기기 위함)
+        
+        TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+        
+        void refill(double rate, int burst, long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate / 1_000_000_000.0);
+            refilledAt = now;
+        }
+    }
+    
+    /**
+     * 브로드캐스트 폭주 제어 통계
+     * @param bucketPrunes 추적 출발지가 가득 차서 조용한 출발지를 정리한 횟수
+     */
+    public record StormStats(long broadcastAccepted, long broadcastDropped, int trackedSources, long bucketPrunes) {}
 
     /**
      * 출발지 MAC 주소를 설정합니다.
@@ -61,15 +106,23 @@ public class EthernetLayer implements BaseLayer {
     }
 
     /**
-     * 목적지 MAC 주소를 설정합니다.
+     * 기본 목적지 MAC 주소를 설정합니다. ({@link #Send(byte[], int)}에만 적용)
      * @param mac 6바이트 MAC 주소 (브로드캐스트는 FF:FF:FF:FF:FF:FF)
      */
     public void setDstMac(byte[] mac) { 
-        if (mac != null && mac.length >= 6) System.arraycopy(mac, 0, destinationMacAddress, 0, 6); 
+        if (mac != null && mac.length >= 6) System.arraycopy(mac, 0, destinationMacAddress, 0, 6);
+    }
+
+    /**
+     * 기본 목적지 MAC 주소를 설정합니다. (기존 배열에 기록, 할당 없음)
+     * @param mac 하위 48비트 MAC 주소 ({@link NetAddress})
+     */
+    public void setDstMac(long mac) {
+        NetAddress.writeMac(mac, destinationMacAddress, 0);
     }
 
     /**
-     * EtherType을 설정합니다.
+     * 기본 EtherType을 설정합니다. ({@link #Send(byte[], int)}에만 적용)
      * 표준 값: 0x0800=IPv4, 0x0806=ARP, 0x86DD=IPv6
      * @param type EtherType 값 (2바이트)
      */
@@ -93,6 +146,71 @@ public class EthernetLayer implements BaseLayer {
         return Arrays.copyOf(destinationMacAddress, 6);
     }
 
+    /**
+     * MTU(프레임 페이로드 최대 크기)를 설정합니다.
+     * 점보 프레임을 지원하는 네트워크라면 9000 등으로 올릴 수 있습니다.
+     * @param mtu MTU 값 (68 이상, 0이면 Physical 계층에서 감지한 MTU 사용)
+     */
+    public void setMtu(int mtu) {
+        if (mtu != 0 && mtu < MIN_MTU) {
+            throw new IllegalArgumentException("MTU는 " + MIN_MTU + " 이상이어야 합니다: " + mtu);
+        }
+        this.mtu = mtu;
+    }
+    
+    /**
+     * 현재 적용되는 MTU를 반환합니다.
+     * 직접 지정한 값 → Physical 계층 MTU → 기본값(1500) 순으로 결정합니다.
+     * @return 현재 MTU
+     */
+    public int getMtu() {
+        if (mtu > 0) {
+            return mtu;
+        }
+        int lowerMtu = lowerLayer != null ? lowerLayer.GetMaxPayloadSize() : 0;
+        return lowerMtu >= MIN_MTU ? lowerMtu : DEFAULT_MTU;
+    }
+    
+    /**
+     * @return MTU를 넘어 전송하지 않은 프레임 수
+     */
+    public long getOversizeDrops() {
+        return oversizeDrops.get();
+    }
+    
+    /**
+     * 출발지 MAC별 브로드캐스트 수신 제한 설정
+     * @param framesPerSecond 출발지당 초당 허용 프레임 수 (0이면 제한 없음)
+     * @param burst 순간 허용량 (1 이상)
+     */
+    public void setBroadcastRateLimit(double framesPerSecond, int burst) {
+        if (framesPerSecond < 0 || burst < 1) {
+            throw new IllegalArgumentException("잘못된 브로드캐스트 제한: " + framesPerSecond + "개/초, 버스트 " + burst);
+        }
+        synchronized (broadcastBuckets) {
+            this.broadcastRate = framesPerSecond;
+            this.broadcastBurst = burst;
+            broadcastBuckets.clear();
+            overflowBucket.tokens = burst;
+        }
+    }
+    
+    /**
+     * @return 브로드캐스트 폭주 제어 통계
+     */
+    public StormStats getStormStats() {
+        synchronized (broadcastBuckets) {
+            return new StormStats(broadcastAccepted.get(), broadcastDropped.get(), broadcastBuckets.size(), bucketPrunes);
+        }
+    }
+
+    /**
+     * @return 중복으로 판정되어 드롭된 프레임 수
+     */
+    public long getDuplicateFrameDrops() {
+        return frameDeduplicator.getDuplicates();
+    }
+
     // ===== BaseLayer 인터페이스 구현 =====
     
     @Override
@@ -101,6 +219,9 @@ public class EthernetLayer implements BaseLayer {
     @Override
     public BaseLayer GetUnderLayer() { return lowerLayer; }
 
+    @Override
+    public int GetMaxPayloadSize() { return getMtu(); }
+
     @Override
     public BaseLayer GetUpperLayer(int index) { 
         return (index >= 0 && index < upperLayers.size()) ? upperLayers.get(index) : null; 
@@ -129,14 +250,39 @@ public class EthernetLayer implements BaseLayer {
      * 4. 필요시 0x00으로 패딩하여 최소 크기 맞춤
      * 5. 하위 계층(Physical)으로 전달
      * 
+     * 목적지 MAC과 EtherType은 setDstMac/setEtherType으로 설정한 기본값을 사용합니다.
+     * 여러 스레드가 서로 다른 목적지로 보낼 때는 {@link #send(byte[], int, long, int)}를 사용하세요.
+     * 
      * @param input 상위 계층의 페이로드 (예: UTF-8 인코딩된 메시지)
      * @param length 페이로드 길이
      * @return 전송 성공 여부
      */
     @Override
     public boolean Send(byte[] input, int length) {
+        return send(input, length, NetAddress.macToLong(destinationMacAddress), etherType);
+    }
+    
+    /**
+     * 목적지 MAC과 EtherType을 호출마다 지정하여 전송합니다.
+     * 계층의 공유 상태를 바꾸지 않으므로 여러 스레드가 잠금 없이 동시에 호출할 수 있습니다.
+     * 
+     * @param input 상위 계층의 페이로드
+     * @param length 페이로드 길이
+     * @param dstMac 목적지 MAC ({@link NetAddress}의 48비트 값)
+     * @param frameEtherType EtherType (0x0800=IPv4, 0x0806=ARP)
+     * @return 전송 성공 여부
+     */
+    public boolean send(byte[] input, int length, long dstMac, int frameEtherType) {
         if (lowerLayer == null) return false;
         
+        // MTU를 넘는 페이로드는 NIC에서 거부되므로 미리 폐기
+        int maxPayload = getMtu();
+        if (length > maxPayload) {
+            oversizeDrops.incrementAndGet();
+            System.err.println("[Ethernet] MTU 초과 프레임 폐기: " + length + " > " + maxPayload);
+            return false;
+        }
+        
         // Ethernet 프레임 최소 크기 60바이트 (FCS 제외)
         final int MIN_FRAME_SIZE = 60;
         final int HEADER_SIZE = 14;
@@ -144,12 +290,12 @@ public class EthernetLayer implements BaseLayer {
         byte[] frame = new byte[frameLength];
         
         // Ethernet 헤더 구성
-        System.arraycopy(destinationMacAddress, 0, frame, 0, 6);  // 목적지 MAC (6바이트)
+        NetAddress.writeMac(dstMac, frame, 0);                    // 목적지 MAC (6바이트)
         System.arraycopy(sourceMacAddress, 0, frame, 6, 6);       // 출발지 MAC (6바이트)
         
         // EtherType (2바이트, 빅 엔디안)
-        frame[12] = (byte) ((etherType >> 8) & 0xFF);  // 상위 바이트
-        frame[13] = (byte) (etherType & 0xFF);         // 하위 바이트
+        frame[12] = (byte) ((frameEtherType >> 8) & 0xFF);  // 상위 바이트
+        frame[13] = (byte) (frameEtherType & 0xFF);         // 하위 바이트
         
         // 페이로드 복사
         System.arraycopy(input, 0, frame, HEADER_SIZE, length);
@@ -165,10 +311,11 @@ public class EthernetLayer implements BaseLayer {
      * 
      * 필터링 과정 (순서대로 적용):
      * 1. 최소 헤더 크기 체크 (14바이트)
-     * 2. 자기 수신 방지: 출발지 MAC이 자신과 같으면 드롭
-     * 3. 목적지 필터: 목적지가 자신 또는 브로드캐스트인 경우만 수락
-     * 4. EtherType 파싱
-     * 5. 이더넷 역다중화: EtherType에 따라 적절한 상위 계층으로 전달
+     * 2. 브로드캐스트 폭주 제어: 출발지 MAC별 허용량을 넘으면 드롭
+     * 3. 자기 수신 방지: 출발지 MAC이 자신과 같으면 드롭
+     * 4. 목적지 필터: 목적지가 자신 또는 브로드캐스트인 경우만 수락
+     * 5. EtherType 파싱
+     * 6. 이더넷 역다중화: EtherType에 따라 적절한 상위 계층으로 전달
      *    - 0x0800 (IPv4) → IPLayer
      *    - 0x0806 (ARP) → ARPLayer
      * 
@@ -181,29 +328,28 @@ public class EthernetLayer implements BaseLayer {
         final int HEADER_SIZE = 14;
         if (input.length < HEADER_SIZE) return false;
         
-        // 2. 프레임 레벨 중복 체크 (해시 기반)
+        // 2. 브로드캐스트 폭주 제어 (해시 계산/페이로드 복사/상위 전달 전에 출발지별로 제한)
+        // 이유: ARP 폭주 등으로 한 호스트가 브로드캐스트를 쏟아내면 수신 스레드가 그 처리만 하게 됩니다.
+        if (NetAddress.macToLong(input, 0) == NetAddress.BROADCAST_MAC) {
+            long frameSourceMac = NetAddress.macToLong(input, 6);
+            if (frameSourceMac != NetAddress.macToLong(sourceMacAddress) && !admitBroadcast(frameSourceMac)) {
+                return false;
+            }
+        }
+        
+        // 3. 프레임 레벨 중복 체크 (IPv4 프레임만, 앞부분 + IP ID 기준 시간 창)
         // 방금 처리한 패킷과 똑같은 패킷이 또 오면 무시
         // 이유: 네트워크 환경에 따라 내가 보낸 패킷이 나에게 다시 돌아오거나(Loopback), 스위치에서 복제되어 들어올 수 있습니다. 이를 방지하여 불필요한 처리를 막습니다.
-        int frameHash = Arrays.hashCode(input);
-        if (recentFrameHashes.contains(frameHash)) {
-            System.out.println("[Ethernet] 중복 프레임 감지 - 드롭 (hash=" + frameHash + ", length=" + input.length + ")");
+        // ARP는 ID가 없어 재전송 Request가 바이트 단위로 같으므로 검사하지 않습니다. (중복으로 받아도 캐시 갱신뿐)
+        if (input.length >= HEADER_SIZE + 20
+                && ((input[12] & 0xFF) << 8 | (input[13] & 0xFF)) == ETHER_TYPE_IPV4
+                && frameDeduplicator.isDuplicate(input, input.length, System.currentTimeMillis())) {
+            System.out.println("[Ethernet] 중복 프레임 감지 - 드롭 (IP ID=" + ((input[18] & 0xFF) << 8 | (input[19] & 0xFF))
+                               + ", length=" + input.length + ")");
             return false; // 중복 프레임 드롭
         }
         
-        // 새 프레임 해시 등록
-        recentFrameHashes.add(frameHash);
-        
-        // 주기적으로 오래된 해시 정리
-        long now = System.currentTimeMillis();
-        if (now - lastFrameCleanup > FRAME_DEDUP_WINDOW_MS) {
-            lastFrameCleanup = now;
-            if (recentFrameHashes.size() > MAX_RECENT_FRAMES) {
-                recentFrameHashes.clear();
-                System.out.println("[Ethernet] 프레임 해시 캐시 정리");
-            }
-        }
-        
-        // 3. MAC 주소 분석(목적지/출발지 확인)
+        // 4. MAC 주소 분석(목적지/출발지 확인)
         
         // 브로드캐스트 체크 (목적지가 FF:FF:FF:FF:FF:FF인지)
         boolean isBroadcastFrame = true;
@@ -232,7 +378,7 @@ public class EthernetLayer implements BaseLayer {
             }
         }
 
-        // 4. 자기 수신 방지: 내가 보낸 프레임은 드롭 (출발지 MAC == 내 MAC)
+        // 5. 자기 수신 방지: 내가 보낸 프레임은 드롭 (출발지 MAC == 내 MAC)
         // 보낸 사람이 '나'라면 버린다
         // 이유: jNetPcap이나 일부 네트워크 카드는 내가 보낸 패킷을 캡처해서 다시 Receive로 올려보내는 경우가 있습니다. 내가 보낸 말에 내가 대답할 필요는 없으므로 차단합니다.
         if (isSourceMe) {
@@ -241,7 +387,7 @@ public class EthernetLayer implements BaseLayer {
             return false;
         }
         
-        // 5. 목적지 필터: 나에게 온 것이거나 브로드캐스트만 수락
+        // 6. 목적지 필터: 나에게 온 것이거나 브로드캐스트만 수락
         // 이유: 같은 네트워크의 다른 사람끼리 주고받는 패킷이 내 랜카드에 들어올 수 있습니다. 내 것이 아니면 굳이 열어볼 필요가 없으므로(보안/성능) 버립니다.
         if (!(isDestinationMe || isBroadcastFrame)) {
             // 디버깅: 필터링된 패킷 정보 출력
@@ -258,13 +404,13 @@ public class EthernetLayer implements BaseLayer {
             return false;
         }
 
-        // 6. EtherType 파싱 (빅 엔디안 → 정수 변환)
+        // 7. EtherType 파싱 (빅 엔디안 → 정수 변환)
         int receivedEtherType = ((input[12] & 0xFF) << 8) | (input[13] & 0xFF);
         
-        // 7. 필터 통과 → 헤더 제거 후 페이로드 추출
+        // 8. 필터 통과 → 헤더 제거 후 페이로드 추출
         byte[] payload = Arrays.copyOfRange(input, HEADER_SIZE, input.length);
         
-        // 8. 이더넷 역다중화: EtherType에 따라 상위 계층 선택
+        // 9. 이더넷 역다중화: EtherType에 따라 상위 계층 선택
         boolean delivered = false;
         for (BaseLayer upperLayer : upperLayers) {
             // IPLayer는 0x0800만 처리
@@ -291,4 +437,59 @@ public class EthernetLayer implements BaseLayer {
         
         return delivered;
     }
+    
+    /**
+     * 브로드캐스트 프레임 허용 여부 (출발지 MAC의 토큰 버킷에서 토큰 하나 사용)
+     * 추적 중인 출발지가 너무 많으면 한동안 조용한 출발지를 정리하고, 그래도 많으면 새 출발지는 공유 버킷 사용
+     * 정리는 전체 버킷을 훑으므로 {@link #PRUNE_INTERVAL_NANOS}에 한 번만 수행
+     * (새 MAC을 쏟아내는 폭주 중에도 프레임마다 잠금을 쥔 채 1024개를 훑지 않음)
+     * (출발지 MAC을 바꿔 가며 보내는 폭주도 제한됨)
+     */
+    private boolean admitBroadcast(long frameSourceMac) {
+        synchronized (broadcastBuckets) {
+            if (broadcastRate <= 0) {
+                broadcastAccepted.incrementAndGet();
+                return true;
+            }
+            long now = System.nanoTime();
+            TokenBucket bucket = broadcastBuckets.get(frameSourceMac);
+            if (bucket == null) {
+                if (broadcastBuckets.size() >= MAX_TRACKED_SOURCES && now - lastPruneNanos >= PRUNE_INTERVAL_NANOS) {
+                    lastPruneNanos = now;
+                    bucketPrunes++;
+                    pruneIdleBuckets(now);
+                }
+                if (broadcastBuckets.size() >= MAX_TRACKED_SOURCES) {
+                    bucket = overflowBucket;
+                } else {
+                    bucket = new TokenBucket(broadcastBurst, now);
+                    broadcastBuckets.put(frameSourceMac, bucket);
+                }
+            }
+            
+            bucket.refill(broadcastRate, broadcastBurst, now);
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                bucket.limited = false;
+                broadcastAccepted.incrementAndGet();
+                return true;
+            }
+            broadcastDropped.incrementAndGet();
+            if (!bucket.limited) {
+                bucket.limited = true;
+                System.out.println("[Ethernet] 브로드캐스트 허용량 초과 - 제한 시작: " + NetAddress.formatMac(frameSourceMac));
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * 버킷이 가득 찰 만큼 조용했던 출발지 정리 (다시 보내면 가득 찬 버킷으로 새로 시작하므로 동작은 같음)
+     */
+    private void pruneIdleBuckets(long now) {
+        broadcastBuckets.values().removeIf(bucket -> {
+            bucket.refill(broadcastRate, broadcastBurst, now);
+            return bucket.tokens >= broadcastBurst;
+        });
+    }
 }
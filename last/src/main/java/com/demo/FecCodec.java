@@ -0,0 +1,206 @@
+package com.demo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * FecCodec - Fragment 단위 순방향 오류 정정 (Forward Error Correction)
+ *
+ * 역할:
+ * - K개의 데이터 Fragment마다 M개의 복구(Repair) Fragment를 추가 전송
+ * - 수신 측은 재전송 요청 없이 손실된 Fragment를 복구 (왕복 지연 없음)
+ *
+ * 인터리브 XOR 패리티:
+ * - 그룹 g = Sequence / K, 그룹 내 위치 j = Sequence % K
+ * - Repair r (0 ≤ r < M)은 j % M == r 인 데이터 Fragment들의 XOR
+ *
+ *   예) K=6, M=2:  Repair 0 = D0 ^ D2 ^ D4,  Repair 1 = D1 ^ D3 ^ D5
+ *
+ * - 각 Repair가 덮는 Fragment 중 1개까지 복구 가능
+ *   → 연속 손실(burst) M개까지 복구 가능
+ * - 길이가 다른 Fragment(마지막 Fragment 등)를 위해 [Length(2) + Data]를
+ *   가장 긴 Fragment 크기에 맞춰 0으로 채운 뒤 XOR
+ */
+public final class FecCodec {
+
+    /** 그룹 내 최대 데이터 Fragment 수 */
+    public static final int MAX_GROUP_SIZE = 64;
+
+    private FecCodec() {
+    }
+
+    /**
+     * 그룹 내 위치 j가 Repair r에 포함되는지 확인
+     */
+    public static boolean covers(int indexInGroup, int repairCount, int repairIndex) {
+        return indexInGroup % repairCount == repairIndex;
+    }
+
+    /**
+     * 그룹의 Repair Fragment 계산
+     *
+     * @param group 그룹의 데이터 Fragment (그룹 내 순서대로)
+     * @param repairCount M (Repair 개수)
+     * @return Repair Fragment 배열 (길이 M)
+     */
+    public static byte[][] encode(List<byte[]> group, int repairCount) {
+        byte[][] repairs = new byte[repairCount][];
+        for (int r = 0; r < repairCount; r++) {
+            List<byte[]> members = new ArrayList<>();
+            for (int j = 0; j < group.size(); j++) {
+                if (covers(j, repairCount, r)) {
+                    members.add(group.get(j));
+                }
+            }
+            repairs[r] = xor(members, null);
+        }
+        return repairs;
+    }
+
+    /**
+     * Repair와 나머지 Fragment들로 손실된 Fragment 하나 복구
+     *
+     * @param repair Repair Fragment
+     * @param present 같은 Repair에 포함된, 수신된 Fragment들
+     * @return 복구된 Fragment, 잘못된 Repair면 null
+     */
+    public static byte[] recover(byte[] repair, List<byte[]> present) {
+        byte[] encoded = xor(present, repair);
+        int length = ((encoded[0] & 0xFF) << 8) | (encoded[1] & 0xFF);
+        if (length > encoded.length - 2) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        System.arraycopy(encoded, 2, data, 0, length);
+        return data;
+    }
+
+    /**
+     * [Length(2) + Data]들의 XOR (init이 있으면 init부터 시작)
+     */
+    private static byte[] xor(List<byte[]> fragments, byte[] init) {
+        int size = init != null ? init.length : 0;
+        for (byte[] fragment : fragments) {
+            size = Math.max(size, fragment.length + 2);
+        }
+        byte[] result = new byte[size];
+        if (init != null) {
+            System.arraycopy(init, 0, result, 0, init.length);
+        }
+        for (byte[] fragment : fragments) {
+            result[0] ^= (byte) (fragment.length >>> 8);
+            result[1] ^= (byte) fragment.length;
+            for (int i = 0; i < fragment.length; i++) {
+                result[i + 2] ^= fragment[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 복구된 Fragment
+     */
+    public record Recovered(int sequence, byte[] data) {
+    }
+
+    /**
+     * Decoder - 수신 측 Repair 보관 및 복구 시도
+     *
+     * 데이터 Fragment는 Decoder가 직접 보관하지 않고 lookup 함수로 조회합니다.
+     * (재조립 버퍼에 이미 있는 데이터를 중복 저장하지 않기 위함)
+     * 스레드 안전: 모든 메서드는 synchronized
+     */
+    public static class Decoder {
+        private final int groupSize;
+        private final int totalFragments;
+        private final IntFunction<byte[]> lookup;
+        private final Map<Integer, Map<Integer, PendingRepair>> repairsByGroup = new HashMap<>();
+        private int recoveredCount = 0;
+
+        private record PendingRepair(int repairCount, int repairIndex, byte[] data) {
+        }
+
+        /**
+         * @param groupSize K
+         * @param totalFragments 전체 데이터 Fragment 수
+         * @param lookup Sequence → 수신된 데이터 (없으면 null)
+         */
+        public Decoder(int groupSize, int totalFragments, IntFunction<byte[]> lookup) {
+            this.groupSize = groupSize;
+            this.totalFragments = totalFragments;
+            this.lookup = lookup;
+        }
+
+        public int getGroupSize() {
+            return groupSize;
+        }
+
+        /**
+         * Repair Fragment 수신
+         * @return 이 Repair로 복구된 Fragment 목록
+         */
+        public synchronized List<Recovered> onRepair(int group, int repairCount, int repairIndex, byte[] data) {
+            if (repairCount <= 0 || repairIndex < 0 || repairIndex >= repairCount
+                || group < 0 || (long) group * groupSize >= totalFragments) {
+                return List.of();
+            }
+            repairsByGroup.computeIfAbsent(group, g -> new HashMap<>())
+                          .put(repairIndex, new PendingRepair(repairCount, repairIndex, data));
+            return tryRecover(group);
+        }
+
+        /**
+         * 데이터 Fragment 수신 (같은 그룹의 Repair로 복구 가능한지 다시 확인)
+         * @return 복구된 Fragment 목록
+         */
+        public synchronized List<Recovered> onData(int sequence) {
+            int group = sequence / groupSize;
+            return repairsByGroup.containsKey(group) ? tryRecover(group) : List.of();
+        }
+
+        public synchronized int getRecoveredCount() {
+            return recoveredCount;
+        }
+
+        private List<Recovered> tryRecover(int group) {
+            Map<Integer, PendingRepair> repairs = repairsByGroup.get(group);
+            int first = group * groupSize;
+            int size = Math.min(groupSize, totalFragments - first);
+            List<Recovered> recovered = new ArrayList<>();
+
+            repairs.values().removeIf(repair -> {
+                List<byte[]> present = new ArrayList<>();
+                int missing = -1;
+                for (int j = 0; j < size; j++) {
+                    if (!covers(j, repair.repairCount(), repair.repairIndex())) {
+                        continue;
+                    }
+                    byte[] data = lookup.apply(first + j);
+                    if (data != null) {
+                        present.add(data);
+                    } else if (missing >= 0) {
+                        return false; // 2개 이상 손실 → 다른 Fragment 도착 대기
+                    } else {
+                        missing = first + j;
+                    }
+                }
+                if (missing >= 0) {
+                    byte[] data = recover(repair.data(), present);
+                    if (data != null) {
+                        recovered.add(new Recovered(missing, data));
+                        recoveredCount++;
+                    }
+                }
+                return true; // 복구했거나 손실이 없으면 Repair 폐기
+            });
+
+            if (repairs.isEmpty()) {
+                repairsByGroup.remove(group);
+            }
+            return recovered;
+        }
+    }
+}
@@ -3,9 +3,20 @@ package com.demo;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.zip.DataFormatException;
 
 /**
  * FileAppLayer - 파일 전송 애플리케이션 계층
@@ -15,17 +26,62 @@ import java.util.function.BiConsumer;
  * - 수신한 Fragment를 재조립하여 파일 복원
  * - 파일 전송 중 채팅 메시지 전송 가능 (Thread 기반)
  * 
- * Fragment 헤더 구조 (10바이트):
+ * Fragment 헤더 구조 (13바이트 + 타입별 정보):
  * ┌──────────┬──────────┬──────────┬──────────┬──────────┐
- * │   Type   │ Sequence │Total Seq │File Name │  Data    │
- * │ (1 byte) │ (4 bytes)│ (4 bytes)│  Length  │(가변)    │
- * │          │          │          │ (1 byte) │          │
+ * │   Type   │ Transfer │ Sequence │Total Seq │ 타입별   │
+ * │ (1 byte) │    ID    │ (4 bytes)│ (4 bytes)│ 정보     │
+ * │          │ (4 bytes)│          │          │ (가변)   │
  * └──────────┴──────────┴──────────┴──────────┴──────────┘
  * 
+ * Transfer ID:
+ * - 송신 측이 전송마다 새로 발급 (시작값은 무작위), 재전송/FEC/NACK도 같은 ID 사용
+ * - 송수신 컨텍스트는 (상대 IP, Transfer ID)로 찾으므로 Fragment 수가 같은 전송이나
+ *   여러 상대의 전송이 동시에 진행되어도 섞이지 않음
+ * - 서명 요청/응답(0x05, 0x06)은 파일명으로 구분하며 Transfer ID는 0
+ * 
  * Type:
  * - 0x01: FILE_START (파일명, 파일크기 전송)
- * - 0x02: FILE_DATA (파일 데이터 전송)
- * - 0x03: FILE_END (전송 완료)
+ * - 0x02: FILE_DATA (파일 데이터 전송, Flags(1) + DataLen(2) + CRC32C(4) 포함)
+ * - 0x03: FILE_END (전송 완료, Merkle Root(32) 포함)
+ * - 0x04: FILE_NACK (수신 측 → 송신 측, 재전송이 필요한 Sequence 목록)
+ * - 0x05: FILE_SIG_REQUEST (송신 측 → 수신 측, 기존 파일의 블록 서명 요청)
+ * - 0x06: FILE_SIGNATURE (수신 측 → 송신 측, 블록 서명 목록, 여러 패킷으로 분할)
+ * - 0x07: FILE_REPAIR (FEC 복구 Fragment, Seq 자리에 그룹 번호 + K(1) + M(1) + R(1) + Flags/DataLen/CRC32C)
+ * - 0x08: FILE_HOLE (모두 0인 연속 Fragment 구간, Seq 자리에 시작 번호 + Count(4))
+ * 
+ * Fragment 크기:
+ * - 하위 계층의 최대 페이로드(MTU - IP 헤더)에서 FileApp 헤더를 뺀 만큼 데이터를 채움
+ *   (Ethernet 1500 → 1455바이트, 점보 프레임이면 그만큼 큰 Fragment)
+ * - 크기는 FILE_START의 ChunkSize로 전달되며, 알 수 없으면 기본값 1KB 사용
+ * 
+ * 전송 모드 (FILE_START의 Mode 바이트):
+ * - FULL: 파일 하나를 그대로 전송
+ * - DELTA: 수신 측 기존 파일에 대한 델타 스트림 전송 (아래 참고)
+ * - BATCH: 디렉토리의 여러 파일을 Manifest + 연속 스트림 하나로 전송 (BatchStream)
+ * 
+ * 무결성 검증:
+ * - 각 FILE_DATA는 CRC32C를 포함하며, 수신 측은 ForkJoinPool에서 병렬로 검증
+ * - 검증된 Fragment의 Leaf 해시를 미리 계산해 두고, FILE_END의 Merkle Root와 비교
+ * - CRC 오류/누락 Fragment만 FILE_NACK으로 재전송 요청 (파일 전체 재해싱 없음)
+ * - FEC 사용 시 K개 Fragment마다 XOR 패리티 M개를 함께 보내 손실을 재전송 없이 복구하고,
+ *   M은 재전송 요청 비율(손실률)에 맞춰 자동 조정 (FecCodec)
+ * 
+ * 송신 파이프라인 (FileSendPipeline):
+ * - read → [compress] → [encrypt] → checksum → frame 단계를 별도 작업자 스레드에서 처리
+ * - 압축은 Fragment 단위로 적용되며 Flags의 0x40 비트로 표시 (효과 없으면 생략)
+ * - Sequence 순서를 복원한 뒤 하위 계층으로 전송
+ * 
+ * 희소(Sparse) 파일:
+ * - scan 단계에서 모두 0인 Fragment를 찾아 이후 단계(압축/암호화/프레임)를 건너뜀
+ * - 연속된 0 Fragment는 FILE_HOLE 하나로 묶어 전송 (Merkle Leaf는 미리 계산한 0 블록 해시 사용)
+ * - 수신 측은 0 구간을 쓰지 않고 파일 크기만 늘려 희소 영역으로 저장
+ * 
+ * 델타 전송 (DeltaSync, rsync 방식):
+ * - 수신 측 received_files/에 같은 이름의 파일이 있으면 블록 서명을 받아
+ *   리터럴 데이터 + 블록 참조로 이루어진 델타 스트림만 전송
+ * - 델타 스트림은 일반 파일과 같은 FILE_DATA 경로(파이프라인, CRC, NACK)로 전송되며
+ *   FILE_START의 Mode 바이트로 구분, 수신 측은 기존 파일과 합쳐 복원 후 SHA-256으로 검증
+ * - 서명 응답이 없거나 기존 파일이 없으면 전체 전송으로 대체
  */
 public class FileAppLayer implements BaseLayer {
     private final String name = "FileApp";
@@ -36,12 +92,70 @@ public class FileAppLayer implements BaseLayer {
     private static final byte TYPE_FILE_START = 0x01;
     private static final byte TYPE_FILE_DATA = 0x02;
     private static final byte TYPE_FILE_END = 0x03;
+    private static final byte TYPE_FILE_NACK = 0x04;
+    private static final byte TYPE_FILE_SIG_REQUEST = 0x05;
+    private static final byte TYPE_FILE_SIGNATURE = 0x06;
+    private static final byte TYPE_FILE_REPAIR = 0x07;
+    private static final byte TYPE_FILE_HOLE = 0x08;
+    
+    // 전송 모드 (FILE_START의 Mode 바이트)
+    private static final byte MODE_FULL = 0x00;
+    private static final byte MODE_DELTA = 0x01;
+    private static final byte MODE_BATCH = 0x02;
+    
+    // Fragment 크기 (하위 계층의 최대 페이로드를 알 수 없을 때 사용하는 기본값)
+    private static final int DEFAULT_DATA_SIZE = 1024; // 1KB per fragment
+    // Fragment 헤더 길이 (Fragment 크기는 실제로 보내는 타입 기준, FILE_REPAIR는 FEC 사용 시에만)
+    // FILE_DATA: Type(1) + TransferId(4) + Seq(4) + TotalSeq(4) + Flags(1) + DataLen(2) + CRC32C(4)
+    private static final int FILE_DATA_HEADER_SIZE = 1 + 4 + 4 + 4 + 1 + 2 + 4;
+    // FILE_REPAIR: Type(1) + TransferId(4) + Group(4) + TotalSeq(4) + K/M/R(3) + Flags(1) + DataLen(2) + CRC32C(4)
+    private static final int FILE_REPAIR_HEADER_SIZE = 1 + 4 + 4 + 4 + 3 + 1 + 2 + 4;
+    private static final int FEC_LENGTH_PREFIX = 2; // Repair 데이터 앞의 원본 길이
+    private static final int MAX_CHUNK_SIZE = 0xFFFF - 2; // DataLen(2)에 FEC 길이 접두어까지 들어가야 함
+    
+    // 재전송 관련 설정
+    private static final int MAX_NACK_ROUNDS = 5;             // 최대 재전송 요청 횟수
+    private static final int MAX_NACK_SEQS_PER_PACKET = 200;  // NACK 1개에 담는 최대 Sequence 수
+    private static final long SEND_CONTEXT_HOLD_MS = 60_000;  // 송신 정보 보관 시간 (재전송 대비)
+    
+    // 델타 전송 관련 설정
+    private static final long SIGNATURE_TIMEOUT_MS = 3000;    // 서명 응답 대기 시간
+    private static final int SIGNATURE_ENTRY_SIZE = 4 + 8;    // Weak(4) + Strong(8)
+    private static final int SIGNATURES_PER_PACKET = DEFAULT_DATA_SIZE / SIGNATURE_ENTRY_SIZE;
     
-    // Fragment 크기 (최대 페이로드)
-    private static final int MAX_DATA_SIZE = 1024; // 1KB per fragment
+    // FEC 설정 (그룹 크기 K 고정, Repair 수 M은 손실률에 따라 MIN~MAX 사이에서 조정)
+    private static final int FEC_GROUP_SIZE = 16;
+    private static final int FEC_MIN_REPAIR = 1;
+    private static final int FEC_MAX_REPAIR = FEC_GROUP_SIZE / 2;
+    private static final double FEC_LOSS_SMOOTHING = 0.3;     // 손실률 EWMA 가중치
+    private static final double FEC_LOSS_DECAY = 0.8;         // 재전송 요청이 없을 때 손실률 감소 비율
     
-    // 수신 중인 파일 정보 저장
-    private final Map<String, FileReceiveContext> receivingFiles = new ConcurrentHashMap<>();
+    // 0 블록 (희소 영역 검출용, 가장 큰 Fragment 크기)
+    private static final byte[] ZERO_BLOCK = new byte[MAX_CHUNK_SIZE];
+    
+    // 수신 파일 저장 디렉토리
+    private static final String RECEIVE_DIR = "received_files";
+    
+    // Fragment 플래그 (FILE_DATA의 Flags 바이트)
+    private static final byte FLAG_ENCRYPTED = (byte) 0x80;   // 데이터가 XOR 암호화됨
+    private static final byte FLAG_COMPRESSED = 0x40;         // 데이터가 Deflate 압축됨
+    private static final byte XOR_ENCRYPTION_KEY = 0x42;      // ChatApp과 동일한 XOR 키
+    
+    // 송신 파이프라인 단계별 작업자 수 (CPU 단계)
+    private static final int PIPELINE_WORKERS =
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    
+    // Fragment 검증용 병렬 풀 (CRC32C + Leaf 해시 계산)
+    private static final ForkJoinPool VERIFY_POOL = ForkJoinPool.commonPool();
+    
+    // 수신 중인 파일 정보 저장 (보낸 상대 IP + Transfer ID 기준, transferKey 참고)
+    private final Map<Long, FileReceiveContext> receivingFiles = new ConcurrentHashMap<>();
+    
+    // 전송한 파일 정보 저장 (재전송 요청 처리용, 받는 상대 IP + Transfer ID 기준)
+    private final Map<Long, FileSendContext> sendingFiles = new ConcurrentHashMap<>();
+    
+    // 다음 전송의 Transfer ID (시작값은 무작위 - 재시작 전의 전송과 겹치지 않도록)
+    private final AtomicInteger nextTransferId = new AtomicInteger(ThreadLocalRandom.current().nextInt());
     
     // 파일 수신 콜백 (파일명, 진행률)
     private BiConsumer<String, Integer> onReceiveProgress;
@@ -50,6 +164,27 @@ public class FileAppLayer implements BaseLayer {
     // 파일 전송 콜백 (파일명, 진행률)
     private BiConsumer<String, Integer> onSendProgress;
     
+    // 암호화 설정
+    private volatile boolean encryptionEnabled = false;
+    
+    // 압축 설정 (Fragment 단위 적응형 압축)
+    private volatile boolean compressionEnabled = false;
+    private final ChunkCompressor compressor = new ChunkCompressor();
+    
+    // 델타 전송 설정 (수신 측에 기존 파일이 있으면 변경분만 전송)
+    private volatile boolean deltaEnabled = false;
+    
+    // FEC 설정 및 관측된 손실률 (재전송 요청 비율)
+    private volatile boolean fecEnabled = false;
+    private volatile double observedLossRate = 0.0;
+    private final AtomicInteger fecRecoveredCount = new AtomicInteger();
+    
+    // 응답 대기 중인 서명 요청 (상대 IP + 파일명 기준, signatureKey 참고)
+    private final Map<String, SignatureAssembly> pendingSignatures = new ConcurrentHashMap<>();
+    
+    // 마지막 송신 파이프라인의 단계별 통계
+    private volatile String lastPipelineReport = "";
+    
     /**
      * 파일 수신 컨텍스트
      */
@@ -58,23 +193,244 @@ public class FileAppLayer implements BaseLayer {
         long totalSize;
         int totalSequences;
         byte[] buffer;
-        int receivedSequences;
-        Set<Integer> receivedSeqNumbers = new HashSet<>();
+        final AtomicInteger receivedSequences = new AtomicInteger();
+        final Set<Integer> receivedSeqNumbers = ConcurrentHashMap.newKeySet();
+        final byte[][] leafHashes;                   // 검증된 Fragment의 Leaf 해시
+        final Queue<ForkJoinTask<?>> pendingVerifications = new ConcurrentLinkedQueue<>();
+        int nackRounds = 0;                          // 재전송 요청 횟수
+        DeltaHeader delta;                           // 델타 전송이면 복원 정보, 아니면 null
+        final BatchStream.Unpacker unpacker;         // 배치 전송이면 디스크에 바로 풀어서 저장, 아니면 null
+        volatile boolean unpackFailed = false;
+        FecCodec.Decoder fecDecoder;                 // FEC 사용 시 Repair 보관 및 복구
+        final Map<Integer, byte[]> retainedFragments = new ConcurrentHashMap<>(); // 배치+FEC: 그룹 완성 전까지 보관
+        final Set<Integer> holeSequences = ConcurrentHashMap.newKeySet(); // FILE_HOLE로 받은 0 Fragment
+        int chunkSize = DEFAULT_DATA_SIZE;            // Fragment 데이터 크기 (FILE_START에서 받음)
+        int senderIp;                                 // FILE_START를 보낸 상대 (재전송 요청 목적지)
+        int transferId;                               // 송신 측이 발급한 Transfer ID
+        byte[] zeroLeaf;                              // 0 Fragment의 Leaf 해시
         
         FileReceiveContext(String fileName, long totalSize, int totalSequences) {
+            this(fileName, totalSize, totalSequences, null);
+        }
+        
+        FileReceiveContext(String fileName, long totalSize, int totalSequences, BatchStream.Unpacker unpacker) {
             this.fileName = fileName;
             this.totalSize = totalSize;
             this.totalSequences = totalSequences;
-            this.buffer = new byte[(int) totalSize];
-            this.receivedSequences = 0;
+            this.unpacker = unpacker;
+            this.buffer = unpacker == null ? new byte[(int) totalSize] : null;
+            this.leafHashes = new byte[totalSequences][];
         }
         
         boolean isComplete() {
-            return receivedSequences >= totalSequences;
+            return receivedSequences.get() >= totalSequences;
         }
         
         int getProgress() {
-            return totalSequences > 0 ? (receivedSequences * 100 / totalSequences) : 0;
+            return totalSequences > 0 ? (receivedSequences.get() * 100 / totalSequences) : 0;
+        }
+        
+        /**
+         * 진행 중인 병렬 검증 작업이 모두 끝날 때까지 대기
+         */
+        void awaitVerifications() {
+            ForkJoinTask<?> task;
+            while ((task = pendingVerifications.poll()) != null) {
+                task.join();
+            }
+        }
+        
+        /**
+         * 수신(검증)된 Fragment 데이터 조회 (FEC 복구용), 없으면 null
+         */
+        byte[] fragmentData(int sequence) {
+            if (!receivedSeqNumbers.contains(sequence)) {
+                return null;
+            }
+            if (buffer == null) {
+                return retainedFragments.get(sequence);
+            }
+            int offset = sequence * chunkSize;
+            return Arrays.copyOfRange(buffer, offset, (int) Math.min(totalSize, (long) offset + chunkSize));
+        }
+        
+        /**
+         * 그룹의 Fragment가 모두 도착했으면 보관하던 데이터 해제 (배치+FEC)
+         */
+        void releaseCompletedGroup(int sequence) {
+            if (fecDecoder == null || retainedFragments.isEmpty()) {
+                return;
+            }
+            int groupSize = fecDecoder.getGroupSize();
+            int first = sequence / groupSize * groupSize;
+            int last = Math.min(first + groupSize, totalSequences);
+            for (int seq = first; seq < last; seq++) {
+                if (!receivedSeqNumbers.contains(seq)) {
+                    return;
+                }
+            }
+            for (int seq = first; seq < last; seq++) {
+                retainedFragments.remove(seq);
+            }
+        }
+        
+        /**
+         * 아직 수신(검증)되지 않은 Sequence 목록
+         */
+        List<Integer> missingSequences() {
+            List<Integer> missing = new ArrayList<>();
+            for (int seq = 0; seq < totalSequences; seq++) {
+                if (!receivedSeqNumbers.contains(seq)) {
+                    missing.add(seq);
+                }
+            }
+            return missing;
+        }
+    }
+    
+    /**
+     * 파일 송신 컨텍스트 (재전송 요청 처리용)
+     */
+    private static class FileSendContext {
+        final String name;
+        final TransferSource source;
+        final int totalSequences;
+        final int chunkSize;
+        final int destinationIp;                     // 전송 시작 시점의 목적지 (재전송도 같은 상대에게)
+        final int transferId;
+        final long createdAt = System.currentTimeMillis();
+        volatile byte[] merkleRoot;
+        volatile boolean encrypted;
+        volatile ChunkCompressor.Session compression; // 압축 사용 시 이 전송의 적응 상태 (재전송에도 사용)
+        
+        FileSendContext(String name, TransferSource source, int totalSequences, int chunkSize, int destinationIp,
+                        int transferId) {
+            this.name = name;
+            this.source = source;
+            this.totalSequences = totalSequences;
+            this.chunkSize = chunkSize;
+            this.destinationIp = destinationIp;
+            this.transferId = transferId;
+        }
+    }
+    
+    /**
+     * 전송할 데이터 (파일, 델타 스트림, 배치 스트림)
+     */
+    private interface TransferSource {
+        long length();
+        
+        /** 처음부터 순서대로 읽는 스트림 (송신 파이프라인용) */
+        InputStream open() throws IOException;
+        
+        /** 임의 위치 읽기 (재전송용) */
+        byte[] read(long offset, int length) throws IOException;
+        
+        static TransferSource ofFile(File file) {
+            long length = file.length();
+            return new TransferSource() {
+                public long length() {
+                    return length;
+                }
+                
+                public InputStream open() throws IOException {
+                    return new BufferedInputStream(new FileInputStream(file));
+                }
+                
+                public byte[] read(long offset, int length) throws IOException {
+                    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                        byte[] chunk = new byte[length];
+                        raf.seek(offset);
+                        int read = raf.read(chunk, 0, length);
+                        return read > 0 ? Arrays.copyOf(chunk, read) : new byte[0];
+                    }
+                }
+            };
+        }
+        
+        static TransferSource ofBytes(byte[] content) {
+            return new TransferSource() {
+                public long length() {
+                    return content.length;
+                }
+                
+                public InputStream open() {
+                    return new ByteArrayInputStream(content);
+                }
+                
+                public byte[] read(long offset, int length) {
+                    int from = (int) Math.min(offset, content.length);
+                    return Arrays.copyOfRange(content, from, Math.min(content.length, from + length));
+                }
+            };
+        }
+        
+        static TransferSource ofBatch(BatchStream.Packer packer) {
+            return new TransferSource() {
+                public long length() {
+                    return packer.length();
+                }
+                
+                public InputStream open() {
+                    return packer.open();
+                }
+                
+                public byte[] read(long offset, int length) throws IOException {
+                    return packer.readAt(offset, length);
+                }
+            };
+        }
+    }
+    
+    /**
+     * 델타 전송 복원 정보 (FILE_START에 포함)
+     * 
+     * @param targetSize 복원될 파일 크기
+     * @param blockSize 서명 블록 크기
+     * @param targetHash 복원될 파일의 SHA-256
+     */
+    private record DeltaHeader(long targetSize, int blockSize, byte[] targetHash) {
+        static final int LENGTH = 8 + 4 + FileIntegrity.HASH_LENGTH;
+        
+        byte[] toBytes() {
+            return ByteBuffer.allocate(LENGTH).putLong(targetSize).putInt(blockSize)
+                             .put(targetHash, 0, FileIntegrity.HASH_LENGTH).array();
+        }
+    }
+    
+    /**
+     * 여러 FILE_SIGNATURE 패킷으로 나뉘어 도착하는 서명 조립
+     */
+    private static class SignatureAssembly {
+        final CompletableFuture<DeltaSync.Signature> future = new CompletableFuture<>();
+        private final Set<Integer> receivedParts = new HashSet<>();
+        private int[] weak;
+        private long[] strong;
+        
+        synchronized void addPart(int part, int totalParts, int blockSize, long fileLength,
+                                  int firstBlock, int count, ByteBuffer entries) {
+            if (fileLength < 0) {
+                future.complete(DeltaSync.Signature.none(blockSize));
+                return;
+            }
+            if (weak == null) {
+                int blockCount = (int) ((fileLength + blockSize - 1) / blockSize);
+                weak = new int[blockCount];
+                strong = new long[blockCount];
+            }
+            for (int i = 0; i < count && entries.remaining() >= SIGNATURE_ENTRY_SIZE; i++) {
+                int block = firstBlock + i;
+                int w = entries.getInt();
+                long s = entries.getLong();
+                if (block >= 0 && block < weak.length) {
+                    weak[block] = w;
+                    strong[block] = s;
+                }
+            }
+            receivedParts.add(part);
+            if (receivedParts.size() >= totalParts) {
+                future.complete(new DeltaSync.Signature(blockSize, fileLength, weak, strong));
+            }
         }
     }
     
@@ -93,6 +449,102 @@ public class FileAppLayer implements BaseLayer {
         this.onSendProgress = callback;
     }
     
+    /**
+     * 파일 데이터 암호화 활성화/비활성화 (다음 전송부터 적용)
+     */
+    public void setEncryptionEnabled(boolean enabled) {
+        this.encryptionEnabled = enabled;
+    }
+    
+    public boolean isEncryptionEnabled() {
+        return encryptionEnabled;
+    }
+    
+    /**
+     * 파일 데이터 압축 활성화/비활성화 (다음 전송부터 적용)
+     * 압축 효과가 없는 Fragment는 자동으로 원본 그대로 전송됩니다.
+     */
+    public void setCompressionEnabled(boolean enabled) {
+        this.compressionEnabled = enabled;
+    }
+    
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+    
+    /**
+     * 델타 전송 활성화/비활성화 (다음 전송부터 적용)
+     * 수신 측에 같은 이름의 파일이 없거나 응답이 없으면 전체 전송으로 대체됩니다.
+     */
+    public void setDeltaEnabled(boolean enabled) {
+        this.deltaEnabled = enabled;
+    }
+    
+    public boolean isDeltaEnabled() {
+        return deltaEnabled;
+    }
+    
+    /**
+     * FEC 활성화/비활성화 (다음 전송부터 적용)
+     * Fragment 16개마다 XOR 패리티를 추가하며, 개수는 관측된 손실률에 따라 자동 조정됩니다.
+     */
+    public void setFecEnabled(boolean enabled) {
+        this.fecEnabled = enabled;
+    }
+    
+    public boolean isFecEnabled() {
+        return fecEnabled;
+    }
+    
+    /**
+     * 다음 전송에 사용할 Fragment 데이터 크기 (하위 계층 최대 페이로드 - FileApp 헤더)
+     * @return Fragment 크기 (하위 계층 MTU를 알 수 없으면 1KB)
+     */
+    public int getChunkSize() {
+        return chunkSize(fecEnabled);
+    }
+    
+    /**
+     * @param fec FILE_REPAIR도 보내는지 여부 (Repair는 헤더와 FEC 길이 접두어만큼 더 큼)
+     */
+    private int chunkSize(boolean fec) {
+        int overhead = fec ? FILE_REPAIR_HEADER_SIZE + FEC_LENGTH_PREFIX : FILE_DATA_HEADER_SIZE;
+        int payload = GetMaxPayloadSize();
+        if (payload <= overhead) {
+            return DEFAULT_DATA_SIZE;
+        }
+        return Math.min(MAX_CHUNK_SIZE, payload - overhead);
+    }
+    
+    /**
+     * 다음 전송에 사용할 그룹당 Repair 수 (관측된 손실률 기준)
+     */
+    public int getFecRepairCount() {
+        int repairs = (int) Math.ceil(observedLossRate * FEC_GROUP_SIZE * 2);
+        return Math.max(FEC_MIN_REPAIR, Math.min(FEC_MAX_REPAIR, repairs));
+    }
+    
+    /**
+     * FEC로 복구한 Fragment 수 (수신 측)
+     */
+    public int getFecRecoveredCount() {
+        return fecRecoveredCount.get();
+    }
+    
+    /**
+     * 압축 통계 (압축률, 압축/해제 CPU 시간)
+     */
+    public ChunkCompressor.Stats getCompressionStats() {
+        return compressor.getStats();
+    }
+    
+    /**
+     * 마지막 파일 전송의 파이프라인 단계별 사용률 보고서
+     */
+    public String getLastPipelineReport() {
+        return lastPipelineReport;
+    }
+    
     @Override
     public String GetLayerName() {
         return name;
@@ -121,154 +573,664 @@ public class FileAppLayer implements BaseLayer {
     }
     
     /**
-     * 파일을 Fragment로 나누어 전송 (별도 Thread에서 실행)
+     * IPLayer에 설정된 기본 목적지로 파일 전송
+     * 
+     * @param filePath 전송할 파일 경로
+     * @return 전송 성공 여부
+     * @see #sendFile(int, String)
+     */
+    public boolean sendFile(String filePath) {
+        return sendFile(defaultDestinationIp(), filePath);
+    }
+    
+    /**
+     * 파일을 Fragment로 나누어 전송 (별도 Thread에서 실행)
+     * 목적지를 호출마다 지정하므로 여러 상대에게 동시에 보내도 IPLayer 설정을 공유하지 않습니다.
+     * 
+     * @param destinationIp 목적지 IP ({@link NetAddress}의 int 값)
+     * @param filePath 전송할 파일 경로
+     * @return 전송 성공 여부
+     */
+    public boolean sendFile(int destinationIp, String filePath) {
+        // 별도 스레드에서 파일 전송
+        Thread sendThread = new Thread(() -> {
+            try {
+                File file = new File(filePath);
+                if (!file.exists() || !file.isFile()) {
+                    System.err.println("[FileApp] 파일을 찾을 수 없음: " + filePath);
+                    return;
+                }
+                
+                // 델타 전송이 가능하면 변경분만 전송, 아니면 전체 전송
+                if (deltaEnabled && sendFileDelta(destinationIp, file)) {
+                    return;
+                }
+                transmit(destinationIp, file.getName(), TransferSource.ofFile(file), MODE_FULL, new byte[0]);
+                
+            } catch (Exception e) {
+                System.err.println("[FileApp] 파일 전송 중 오류: " + e.getMessage());
+                e.printStackTrace();
+            }
+        });
+        
+        sendThread.setName("FileTransfer-" + new File(filePath).getName());
+        sendThread.start();
+        
+        return true;
+    }
+    
+    /**
+     * 델타 전송 시도
+     * 
+     * 1. 수신 측에 기존 파일의 블록 서명 요청
+     * 2. 새 파일을 서명과 비교하여 델타 스트림 생성
+     * 3. 델타 스트림을 일반 파일처럼 전송 (FILE_START Mode = DELTA)
+     * 
+     * @return 델타로 전송했으면 true, 전체 전송이 필요하면 false
+     */
+    private boolean sendFileDelta(int destinationIp, File file) throws IOException, InterruptedException {
+        DeltaSync.Signature signature = requestSignature(destinationIp, file.getName(), DeltaSync.DEFAULT_BLOCK_SIZE);
+        if (signature == null || !signature.hasBasis()) {
+            System.out.println("[FileApp] 수신 측에 기존 파일 없음 - 전체 전송: " + file.getName());
+            return false;
+        }
+        
+        long t0 = System.nanoTime();
+        byte[] content = java.nio.file.Files.readAllBytes(file.toPath());
+        byte[] delta = DeltaSync.encode(content, signature);
+        System.out.println(String.format("[FileApp] 델타 인코딩: %d → %d바이트 (%.1f%%, %.1fms)",
+            content.length, delta.length, content.length > 0 ? delta.length * 100.0 / content.length : 0.0,
+            (System.nanoTime() - t0) / 1_000_000.0));
+        
+        if (delta.length == 0 || delta.length >= content.length) {
+            System.out.println("[FileApp] 델타 효과 없음 - 전체 전송: " + file.getName());
+            return false;
+        }
+        
+        DeltaHeader header = new DeltaHeader(content.length, signature.blockSize(),
+                                             FileIntegrity.leafHash(content, 0, content.length));
+        transmit(destinationIp, file.getName(), TransferSource.ofBytes(delta), MODE_DELTA, header.toBytes());
+        return true;
+    }
+    
+    /**
+     * 디렉토리의 모든 파일을 하나의 배치 스트림으로 전송 (별도 Thread에서 실행)
+     * 
+     * 파일 수와 상관없이 스레드 1개, FILE_START/FILE_END 1개로 전송되며,
+     * Fragment는 파일 경계를 넘어 최대 크기까지 채워집니다.
+     * 수신 측은 received_files/<디렉토리명>/ 아래에 같은 구조로 저장합니다.
+     * 
+     * @param directoryPath 전송할 디렉토리 경로
+     * @return 전송 시작 여부
+     * @see #sendDirectory(int, String)
+     */
+    public boolean sendDirectory(String directoryPath) {
+        return sendDirectory(defaultDestinationIp(), directoryPath);
+    }
+    
+    /**
+     * 디렉토리를 지정한 상대에게 배치 스트림으로 전송 ({@link #sendDirectory(String)} 참고)
+     * 
+     * @param destinationIp 목적지 IP ({@link NetAddress}의 int 값)
+     * @param directoryPath 전송할 디렉토리 경로
+     * @return 전송 시작 여부
+     */
+    public boolean sendDirectory(int destinationIp, String directoryPath) {
+        File directory = new File(directoryPath);
+        if (!directory.isDirectory()) {
+            System.err.println("[FileApp] 디렉토리를 찾을 수 없음: " + directoryPath);
+            return false;
+        }
+        
+        Thread sendThread = new Thread(() -> {
+            try {
+                BatchStream.Packer packer = new BatchStream.Packer(directory);
+                System.out.println("[FileApp] 배치 전송 준비: " + directory.getName() +
+                                 " (" + packer.fileCount() + "개 파일)");
+                byte[] header = ByteBuffer.allocate(4).putInt(packer.fileCount()).array();
+                transmit(destinationIp, directory.getName(), TransferSource.ofBatch(packer), MODE_BATCH, header);
+            } catch (Exception e) {
+                System.err.println("[FileApp] 배치 전송 중 오류: " + e.getMessage());
+                e.printStackTrace();
+            }
+        });
+        
+        sendThread.setName("FileTransfer-" + directory.getName());
+        sendThread.start();
+        
+        return true;
+    }
+    
+    /**
+     * 전송 데이터를 FILE_START → FILE_DATA → FILE_END 순서로 전송
+     * 
+     * @param destinationIp 목적지 IP (모든 Fragment를 이 상대에게 전송)
+     * @param fileName 전송 이름 (파일명 또는 디렉토리명)
+     * @param source 전송할 데이터 (재전송에도 사용)
+     * @param mode 전송 모드 (MODE_FULL, MODE_DELTA, MODE_BATCH)
+     * @param modeHeader FILE_START의 Mode 바이트 뒤에 붙는 모드별 정보
+     */
+    private void transmit(int destinationIp, String fileName, TransferSource source, byte mode, byte[] modeHeader)
+            throws IOException {
+        long fileSize = source.length();
+        
+        // 총 Fragment 개수 계산 (Fragment 크기는 경로 MTU와 이번 전송의 Fragment 타입에 맞춤)
+        boolean fec = fecEnabled;
+        int chunkSize = chunkSize(fec);
+        int totalSequences = (int) Math.ceil((double) fileSize / chunkSize);
+        int transferId = nextTransferId.getAndIncrement();
+        byte[] zeroLeaf = FileIntegrity.leafHash(ZERO_BLOCK, 0, chunkSize);
+        
+        System.out.println("[FileApp] 파일 전송 시작: " + fileName + 
+                         " (크기: " + fileSize + "바이트, " + 
+                         totalSequences + "개 Fragment × " + chunkSize + "바이트" + modeLabel(mode) + ")");
+        
+        // 재전송 요청에 대비하여 송신 정보 보관
+        purgeExpiredSendContexts();
+        FileSendContext sendContext = new FileSendContext(fileName, source, totalSequences, chunkSize, destinationIp,
+                                                          transferId);
+        sendingFiles.put(transferKey(destinationIp, transferId), sendContext);
+        byte[][] leafHashes = new byte[totalSequences][];
+        
+        // FEC 설정 (M은 이전 전송들의 재전송 요청 비율로 결정, 요청이 없으면 점차 감소)
+        int fecGroupSize = fec ? FEC_GROUP_SIZE : 0;
+        int fecRepairCount = getFecRepairCount();
+        observedLossRate *= FEC_LOSS_DECAY;
+        List<byte[]> fecGroup = new ArrayList<>();
+        
+        // 1. FILE_START 전송
+        sendFileStart(destinationIp, transferId, fileName, fileSize, totalSequences, mode, modeHeader, fecGroupSize,
+                      chunkSize);
+        
+        // 2. FILE_DATA 전송 (멀티코어 파이프라인: read → [compress] → [encrypt] → checksum → frame → send)
+        boolean compress = compressionEnabled;
+        boolean encrypt = encryptionEnabled;
+        ChunkCompressor.Session compression = compress ? compressor.newSession() : null;
+        sendContext.compression = compression;
+        sendContext.encrypted = encrypt;
+        FileSendPipeline pipeline = new FileSendPipeline(chunkSize);
+        pipeline.addStage("scan", chunk -> scanChunk(chunk, chunkSize, zeroLeaf), PIPELINE_WORKERS);
+        if (compress) {
+            pipeline.addStage("compress", chunk -> compressChunk(chunk, compression), PIPELINE_WORKERS);
+        }
+        if (encrypt) {
+            pipeline.addStage("encrypt", this::encryptChunk, PIPELINE_WORKERS);
+        }
+        pipeline.addStage("checksum", this::checksumChunk, PIPELINE_WORKERS)
+                .addStage("frame", chunk -> frameChunk(chunk, transferId, totalSequences), PIPELINE_WORKERS);
+        
+        int[] holeRun = {0, 0}; // 아직 보내지 않은 0 Fragment 구간 (시작, 개수)
+        try (InputStream in = source.open()) {
+            pipeline.run(in, chunk -> {
+                if (chunk.sequence < totalSequences) {
+                    leafHashes[chunk.sequence] = chunk.leafHash;
+                }
+                
+                // 0 Fragment는 모아서 FILE_HOLE 하나로 전송
+                if (chunk.zero) {
+                    if (holeRun[1] == 0) {
+                        holeRun[0] = chunk.sequence;
+                    }
+                    holeRun[1]++;
+                } else {
+                    if (holeRun[1] > 0) {
+                        sendFileHole(destinationIp, transferId, holeRun[0], holeRun[1], totalSequences);
+                        holeRun[1] = 0;
+                    }
+                    send(chunk.frame, chunk.frame.length, destinationIp);
+                }
+                
+                // 그룹이 채워지면 FEC Repair 전송
+                if (fecGroupSize > 0) {
+                    fecGroup.add(chunk.plain);
+                    if (fecGroup.size() == fecGroupSize || chunk.sequence == totalSequences - 1) {
+                        sendFileRepairs(destinationIp, transferId, chunk.sequence / fecGroupSize, totalSequences,
+                                        fecGroupSize, fecRepairCount, fecGroup, encrypt);
+                        fecGroup.clear();
+                    }
+                }
+                
+                if (chunk.zero) {
+                    return;
+                }
+                
+                // 진행률 출력
+                int sequence = chunk.sequence + 1;
+                int progress = (sequence * 100 / totalSequences);
+                System.out.println("[FileApp] 전송 진행: " + progress + "% " +
+                                 "(" + sequence + "/" + totalSequences + ")");
+                // 전송 속도는 EgressScheduler의 BULK 클래스 큐/속도 제한이 조절 (큐가 차면 Send에서 대기)
+            });
+        }
+        if (holeRun[1] > 0) {
+            sendFileHole(destinationIp, transferId, holeRun[0], holeRun[1], totalSequences);
+        }
+        
+        lastPipelineReport = pipeline.getStageReport();
+        System.out.print(lastPipelineReport);
+        if (compress) {
+            System.out.println("[FileApp] " + compressor.getStats());
+        }
+        
+        // 3. FILE_END 전송 (Merkle Root 포함)
+        sendContext.merkleRoot = FileIntegrity.merkleRoot(leafHashes);
+        sendFileEnd(destinationIp, transferId, totalSequences, sendContext.merkleRoot);
+        
+        System.out.println("[FileApp] 파일 전송 완료: " + fileName);
+    }
+    
+    /**
+     * FILE_START Fragment 전송
+     */
+    private void sendFileStart(int destinationIp, int transferId, String fileName, long fileSize, int totalSequences,
+                               byte mode, byte[] modeHeader, int fecGroupSize, int chunkSize) {
+        byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+        int fileNameLen = Math.min(fileNameBytes.length, 255);
+        
+        // Fragment 생성: Type(1) + TransferId(4) + Seq(4) + TotalSeq(4) + FileNameLen(1) + FileSize(8) + FileName(가변)
+        //              + Mode(1) + 모드별 정보 (델타: TargetSize(8) + BlockSize(4) + TargetHash(32),
+        //                                      배치: FileCount(4))
+        //              + FecGroupSize(1) (0이면 FEC 사용 안 함) + ChunkSize(4)
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 4 + 1 + 8 + fileNameLen + 1 + modeHeader.length + 1 + 4);
+        buffer.put(TYPE_FILE_START);
+        buffer.putInt(transferId);
+        buffer.putInt(0); // sequence = 0
+        buffer.putInt(totalSequences);
+        buffer.put((byte) fileNameLen);
+        buffer.putLong(fileSize);
+        buffer.put(fileNameBytes, 0, fileNameLen);
+        buffer.put(mode);
+        buffer.put(modeHeader);
+        buffer.put((byte) fecGroupSize);
+        buffer.putInt(chunkSize);
+        
+        send(buffer.array(), buffer.position(), destinationIp);
+    }
+    
+    private static String modeLabel(byte mode) {
+        return switch (mode) {
+            case MODE_DELTA -> ", 델타";
+            case MODE_BATCH -> ", 배치";
+            default -> "";
+        };
+    }
+    
+    // ===== 송신 파이프라인 단계 (여러 작업자 스레드에서 동시에 호출됨) =====
+    
+    /**
+     * scan 단계: 모두 0인 Fragment 검출 (Arrays.mismatch는 벡터화되어 있어 빠름)
+     * 0 Fragment는 이후 단계를 건너뛰고 FILE_HOLE로 전송됩니다.
+     */
+    private void scanChunk(FileSendPipeline.Chunk chunk, int chunkSize, byte[] zeroLeaf) {
+        if (chunk.plain.length == chunkSize
+            && Arrays.mismatch(chunk.plain, 0, chunkSize, ZERO_BLOCK, 0, chunkSize) < 0) {
+            chunk.zero = true;
+            chunk.leafHash = zeroLeaf;
+        }
+    }
+    
+    /**
+     * compress 단계: 적응형 Deflate 압축 (효과 없으면 원본 유지)
+     */
+    private void compressChunk(FileSendPipeline.Chunk chunk, ChunkCompressor.Session compression) {
+        if (chunk.zero) {
+            return;
+        }
+        byte[] compressed = compression.compress(chunk.sequence, chunk.payload);
+        if (compressed != null) {
+            chunk.payload = compressed;
+            chunk.flags |= FLAG_COMPRESSED;
+        }
+    }
+    
+    /**
+     * encrypt 단계: XOR 암호화
+     */
+    private void encryptChunk(FileSendPipeline.Chunk chunk) {
+        if (chunk.zero) {
+            return;
+        }
+        chunk.payload = applyXor(chunk.payload);
+        chunk.flags |= FLAG_ENCRYPTED;
+    }
+    
+    /**
+     * checksum 단계: 전송 데이터의 CRC32C와 원본 데이터의 Leaf 해시 계산
+     */
+    private void checksumChunk(FileSendPipeline.Chunk chunk) {
+        if (chunk.zero) {
+            return;
+        }
+        chunk.crc = FileIntegrity.crc32c(chunk.payload, 0, chunk.payload.length);
+        chunk.leafHash = FileIntegrity.leafHash(chunk.plain, 0, chunk.plain.length);
+    }
+    
+    /**
+     * frame 단계: FILE_DATA Fragment 생성
+     */
+    private void frameChunk(FileSendPipeline.Chunk chunk, int transferId, int totalSequences) {
+        if (chunk.zero) {
+            return;
+        }
+        // Fragment 생성: Type(1) + TransferId(4) + Seq(4) + TotalSeq(4) + Flags(1) + DataLen(2) + CRC32C(4)
+        //              + Data(가변)
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_DATA_HEADER_SIZE + chunk.payload.length);
+        buffer.put(TYPE_FILE_DATA);
+        buffer.putInt(transferId);
+        buffer.putInt(chunk.sequence);
+        buffer.putInt(totalSequences);
+        buffer.put(chunk.flags);
+        buffer.putShort((short) chunk.payload.length);
+        buffer.putInt(chunk.crc);
+        buffer.put(chunk.payload);
+        chunk.frame = buffer.array();
+    }
+    
+    /**
+     * FILE_DATA Fragment 전송 (재전송용, 파이프라인 단계를 순차 실행)
+     */
+    private void sendFileData(int destinationIp, int transferId, int sequence, int totalSequences, byte[] data,
+                              ChunkCompressor.Session compression, boolean encrypt) {
+        FileSendPipeline.Chunk chunk = new FileSendPipeline.Chunk(sequence, data);
+        if (compression != null) {
+            compressChunk(chunk, compression);
+        }
+        if (encrypt) {
+            encryptChunk(chunk);
+        }
+        checksumChunk(chunk);
+        frameChunk(chunk, transferId, totalSequences);
+        
+        send(chunk.frame, chunk.frame.length, destinationIp);
+    }
+    
+    /**
+     * FILE_REPAIR 전송 (그룹의 평문 Fragment로 XOR 패리티 계산 후 데이터와 같은 방식으로 암호화)
+     */
+    private void sendFileRepairs(int destinationIp, int transferId, int group, int totalSequences, int groupSize,
+                                 int repairCount, List<byte[]> members, boolean encrypt) {
+        byte[][] repairs = FecCodec.encode(members, Math.min(repairCount, members.size()));
+        for (int r = 0; r < repairs.length; r++) {
+            byte[] payload = encrypt ? applyXor(repairs[r]) : repairs[r];
+            byte flags = encrypt ? FLAG_ENCRYPTED : 0;
+            
+            // Fragment 생성: Type(1) + TransferId(4) + Group(4) + TotalSeq(4) + K(1) + M(1) + R(1)
+            //              + Flags(1) + DataLen(2) + CRC32C(4) + Data(가변)
+            ByteBuffer buffer = ByteBuffer.allocate(FILE_REPAIR_HEADER_SIZE + payload.length);
+            buffer.put(TYPE_FILE_REPAIR);
+            buffer.putInt(transferId);
+            buffer.putInt(group);
+            buffer.putInt(totalSequences);
+            buffer.put((byte) groupSize);
+            buffer.put((byte) repairs.length);
+            buffer.put((byte) r);
+            buffer.put(flags);
+            buffer.putShort((short) payload.length);
+            buffer.putInt(FileIntegrity.crc32c(payload, 0, payload.length));
+            buffer.put(payload);
+            
+            send(buffer.array(), buffer.position(), destinationIp);
+        }
+    }
+    
+    /**
+     * XOR 암호화/복호화 (동일 연산)
+     */
+    private static byte[] applyXor(byte[] data) {
+        byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = (byte) (data[i] ^ XOR_ENCRYPTION_KEY);
+        }
+        return result;
+    }
+    
+    /**
+     * FILE_HOLE 전송 (모두 0인 연속 Fragment 구간)
+     */
+    private void sendFileHole(int destinationIp, int transferId, int firstSequence, int count, int totalSequences) {
+        // Fragment 생성: Type(1) + TransferId(4) + Seq(4) + TotalSeq(4) + Count(4)
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 4 + 4);
+        buffer.put(TYPE_FILE_HOLE);
+        buffer.putInt(transferId);
+        buffer.putInt(firstSequence);
+        buffer.putInt(totalSequences);
+        buffer.putInt(count);
+        
+        send(buffer.array(), buffer.position(), destinationIp);
+        System.out.println("[FileApp] 빈 구간 전송: Fragment " + firstSequence + "~" +
+                         (firstSequence + count - 1) + " (" + count + "개)");
+    }
+    
+    /**
+     * FILE_END Fragment 전송
+     */
+    private void sendFileEnd(int destinationIp, int transferId, int totalSequences, byte[] merkleRoot) {
+        // Fragment 생성: Type(1) + TransferId(4) + Seq(4) + TotalSeq(4) + MerkleRoot(32)
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 4 + FileIntegrity.HASH_LENGTH);
+        buffer.put(TYPE_FILE_END);
+        buffer.putInt(transferId);
+        buffer.putInt(totalSequences); // 마지막 sequence
+        buffer.putInt(totalSequences);
+        buffer.put(merkleRoot, 0, FileIntegrity.HASH_LENGTH);
+        
+        send(buffer.array(), buffer.position(), destinationIp);
+    }
+    
+    /**
+     * FILE_NACK 전송 (재전송이 필요한 Sequence 목록, 파일을 보낸 상대에게)
+     */
+    private void sendFileNack(int senderIp, int transferId, int totalSequences, List<Integer> sequences) {
+        for (int from = 0; from < sequences.size(); from += MAX_NACK_SEQS_PER_PACKET) {
+            int to = Math.min(sequences.size(), from + MAX_NACK_SEQS_PER_PACKET);
+            
+            // Fragment 생성: Type(1) + TransferId(4) + Seq(4) + TotalSeq(4) + Count(2) + Seq 목록(4 * Count)
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 4 + 2 + 4 * (to - from));
+            buffer.put(TYPE_FILE_NACK);
+            buffer.putInt(transferId);
+            buffer.putInt(0);
+            buffer.putInt(totalSequences);
+            buffer.putShort((short) (to - from));
+            for (int i = from; i < to; i++) {
+                buffer.putInt(sequences.get(i));
+            }
+            
+            send(buffer.array(), buffer.position(), senderIp);
+        }
+    }
+    
+    /**
+     * 수신 측에 기존 파일의 블록 서명을 요청하고 응답 대기
      * 
-     * @param filePath 전송할 파일 경로
-     * @return 전송 성공 여부
+     * @return 서명, 응답이 없으면 null
      */
-    public boolean sendFile(String filePath) {
-        // 별도 스레드에서 파일 전송
-        Thread sendThread = new Thread(() -> {
-            try {
-                File file = new File(filePath);
-                if (!file.exists() || !file.isFile()) {
-                    System.err.println("[FileApp] 파일을 찾을 수 없음: " + filePath);
-                    return;
-                }
-                
-                String fileName = file.getName();
-                long fileSize = file.length();
-                
-                // 총 Fragment 개수 계산
-                int totalSequences = (int) Math.ceil((double) fileSize / MAX_DATA_SIZE);
-                
-                System.out.println("[FileApp] 파일 전송 시작: " + fileName + 
-                                 " (크기: " + fileSize + "바이트, " + 
-                                 totalSequences + "개 Fragment)");
-                
-                // 1. FILE_START 전송
-                sendFileStart(fileName, fileSize, totalSequences);
-                
-                // 2. FILE_DATA 전송
-                try (FileInputStream fis = new FileInputStream(file)) {
-                    byte[] buffer = new byte[MAX_DATA_SIZE];
-                    int sequence = 0;
-                    int bytesRead;
-                    
-                    while ((bytesRead = fis.read(buffer)) != -1) {
-                        byte[] data = Arrays.copyOf(buffer, bytesRead);
-                        sendFileData(sequence, totalSequences, data);
-                        sequence++;
-                        
-                        // 진행률 출력
-                        int progress = (sequence * 100 / totalSequences);
-                        System.out.println("[FileApp] 전송 진행: " + progress + "% " +
-                                         "(" + sequence + "/" + totalSequences + ")");
-                        
-                        // 네트워크 부하 방지 (약간의 딜레이)
-                        Thread.sleep(10);
-                    }
-                }
-                
-                // 3. FILE_END 전송
-                sendFileEnd(totalSequences);
-                
-                System.out.println("[FileApp] 파일 전송 완료: " + fileName);
-                
-            } catch (Exception e) {
-                System.err.println("[FileApp] 파일 전송 중 오류: " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
-        
-        sendThread.setName("FileTransfer-" + new File(filePath).getName());
-        sendThread.start();
-        
-        return true;
+    private DeltaSync.Signature requestSignature(int destinationIp, String fileName, int blockSize)
+            throws InterruptedException {
+        SignatureAssembly assembly = new SignatureAssembly();
+        String key = signatureKey(destinationIp, fileName);
+        pendingSignatures.put(key, assembly);
+        try {
+            byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+            int fileNameLen = Math.min(fileNameBytes.length, 255);
+            
+            // Fragment 생성: Type(1) + TransferId(4) + Seq(4) + TotalSeq(4) + BlockSize(4) + FileNameLen(1)
+            //              + FileName(가변)
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 4 + 4 + 1 + fileNameLen);
+            buffer.put(TYPE_FILE_SIG_REQUEST);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putInt(blockSize);
+            buffer.put((byte) fileNameLen);
+            buffer.put(fileNameBytes, 0, fileNameLen);
+            send(buffer.array(), buffer.position(), destinationIp);
+            
+            System.out.println("[FileApp] 블록 서명 요청: " + fileName);
+            return assembly.future.get(SIGNATURE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            System.out.println("[FileApp] 블록 서명 응답 없음: " + fileName);
+            return null;
+        } finally {
+            pendingSignatures.remove(key, assembly);
+        }
     }
     
     /**
-     * FILE_START Fragment 전송
+     * FILE_SIGNATURE 전송 (수신 측) - 서명 목록을 여러 패킷으로 나누어 요청한 상대에게 전송
      */
-    private void sendFileStart(String fileName, long fileSize, int totalSequences) {
+    private void sendSignature(int requesterIp, String fileName, DeltaSync.Signature signature) {
         byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
         int fileNameLen = Math.min(fileNameBytes.length, 255);
+        int blockCount = signature.blockCount();
+        int totalParts = Math.max(1, (blockCount + SIGNATURES_PER_PACKET - 1) / SIGNATURES_PER_PACKET);
         
-        // Fragment 생성: Type(1) + Seq(4) + TotalSeq(4) + FileNameLen(1) + FileSize(8) + FileName(가변)
-        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 1 + 8 + fileNameLen);
-        buffer.put(TYPE_FILE_START);
-        buffer.putInt(0); // sequence = 0
-        buffer.putInt(totalSequences);
-        buffer.put((byte) fileNameLen);
-        buffer.putLong(fileSize);
-        buffer.put(fileNameBytes, 0, fileNameLen);
-        
-        Send(buffer.array(), buffer.position());
+        for (int part = 0; part < totalParts; part++) {
+            int firstBlock = part * SIGNATURES_PER_PACKET;
+            int count = Math.min(SIGNATURES_PER_PACKET, blockCount - firstBlock);
+            
+            // Fragment 생성: Type(1) + TransferId(4) + Part(4) + TotalParts(4) + FileNameLen(1) + BlockSize(4)
+            //              + FileLength(8) + FirstBlock(4) + Count(2) + FileName(가변) + [Weak(4) + Strong(8)] * Count
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 4 + 1 + 4 + 8 + 4 + 2 + fileNameLen
+                                                    + SIGNATURE_ENTRY_SIZE * count);
+            buffer.put(TYPE_FILE_SIGNATURE);
+            buffer.putInt(0);
+            buffer.putInt(part);
+            buffer.putInt(totalParts);
+            buffer.put((byte) fileNameLen);
+            buffer.putInt(signature.blockSize());
+            buffer.putLong(signature.fileLength());
+            buffer.putInt(firstBlock);
+            buffer.putShort((short) count);
+            buffer.put(fileNameBytes, 0, fileNameLen);
+            for (int i = firstBlock; i < firstBlock + count; i++) {
+                buffer.putInt(signature.weak()[i]);
+                buffer.putLong(signature.strong()[i]);
+            }
+            
+            send(buffer.array(), buffer.position(), requesterIp);
+        }
     }
     
     /**
-     * FILE_DATA Fragment 전송
+     * 송수신 컨텍스트 키: 상대 IP + Transfer ID
+     * (Transfer ID는 송신 측마다 따로 발급하므로 상대 IP와 함께 써야 유일함)
      */
-    private void sendFileData(int sequence, int totalSequences, byte[] data) {
-        // Fragment 생성: Type(1) + Seq(4) + TotalSeq(4) + DataLen(2) + Data(가변)
-        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 2 + data.length);
-        buffer.put(TYPE_FILE_DATA);
-        buffer.putInt(sequence);
-        buffer.putInt(totalSequences);
-        buffer.putShort((short) data.length);
-        buffer.put(data);
-        
-        Send(buffer.array(), buffer.position());
+    private static long transferKey(int peerIp, int transferId) {
+        return ((long) peerIp << 32) | (transferId & 0xFFFFFFFFL);
     }
     
     /**
-     * FILE_END Fragment 전송
+     * 서명 요청 맵의 키 - 같은 파일명을 여러 상대에게 동시에 보내도 충돌하지 않도록 상대 IP 포함
      */
-    private void sendFileEnd(int totalSequences) {
-        // Fragment 생성: Type(1) + Seq(4) + TotalSeq(4)
-        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4);
-        buffer.put(TYPE_FILE_END);
-        buffer.putInt(totalSequences); // 마지막 sequence
-        buffer.putInt(totalSequences);
-        
-        Send(buffer.array(), buffer.position());
+    private static String signatureKey(int peerIp, String fileName) {
+        return NetAddress.formatIp(peerIp) + "/" + fileName;
+    }
+    
+    /**
+     * 상대가 보낸 파일명을 received_files/ 안의 경로로 변환 (경로 구성 요소는 제거)
+     * 
+     * @return 저장 경로, 파일명으로 쓸 수 없으면 null
+     */
+    private static File receivedFile(String fileName) {
+        String name = new File(fileName).getName();
+        if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+            return null;
+        }
+        return new File(RECEIVE_DIR, name);
+    }
+    
+    /**
+     * 보관 기간이 지난 송신 정보 정리
+     */
+    private void purgeExpiredSendContexts() {
+        long now = System.currentTimeMillis();
+        sendingFiles.values().removeIf(ctx -> now - ctx.createdAt > SEND_CONTEXT_HOLD_MS);
     }
     
     @Override
     public boolean Send(byte[] input, int length) {
+        return send(input, length, defaultDestinationIp());
+    }
+    
+    /**
+     * 목적지를 지정하여 전송
+     * IPLayer면 목적지와 FileApp 프로토콜을 패킷마다 지정하므로 채팅 전송과 IPLayer 설정을 공유하지 않습니다.
+     */
+    private boolean send(byte[] frame, int length, int destinationIp) {
         if (underLayer == null) {
             System.err.println("[FileApp] 하위 계층이 설정되지 않음");
             return false;
         }
-        
-        return underLayer.Send(input, length);
+        if (underLayer instanceof IPLayer ipLayer) {
+            return ipLayer.send(frame, length, IPLayer.SendDescriptor.file(destinationIp));
+        }
+        return underLayer.Send(frame, length);
+    }
+    
+    /**
+     * IPLayer에 설정된 기본 목적지 IP
+     */
+    private int defaultDestinationIp() {
+        return underLayer instanceof IPLayer ipLayer ? ipLayer.getDstIpAddress() : 0;
     }
     
     /**
-     * Fragment 수신 및 재조립
+     * Fragment 수신 및 재조립 (출발지를 알 수 없는 하위 계층 - 테스트 Mock 등)
      */
     @Override
     public boolean Receive(byte[] input) {
-        if (input == null || input.length < 9) {
+        return receive(input, 0);
+    }
+    
+    /**
+     * IPLayer가 출발지 IP와 함께 올려준 데이터그램 수신
+     * 출발지는 데이터그램마다 전달되므로 여러 상대의 수신이 섞여도 응답(NACK/서명)과 전송 식별이 엇갈리지 않음
+     */
+    public boolean receive(byte[] input, IPLayer.ReceiveDescriptor from) {
+        return receive(input, from.sourceIp());
+    }
+    
+    private boolean receive(byte[] input, int sourceIp) {
+        if (input == null || input.length < 13) {
             return false;
         }
         
         ByteBuffer buffer = ByteBuffer.wrap(input);
         byte type = buffer.get();
+        int transferId = buffer.getInt();
         int sequence = buffer.getInt();
         int totalSequences = buffer.getInt();
         
         switch (type) {
             case TYPE_FILE_START:
-                handleFileStart(buffer, sequence, totalSequences);
+                handleFileStart(buffer, sourceIp, transferId, totalSequences);
                 break;
                 
             case TYPE_FILE_DATA:
-                handleFileData(buffer, sequence, totalSequences);
+                handleFileData(buffer, sourceIp, transferId, sequence, totalSequences);
                 break;
                 
             case TYPE_FILE_END:
-                handleFileEnd(sequence, totalSequences);
+                handleFileEnd(buffer, sourceIp, transferId, totalSequences);
+                break;
+                
+            case TYPE_FILE_NACK:
+                handleFileNack(buffer, sourceIp, transferId, totalSequences);
+                break;
+                
+            case TYPE_FILE_SIG_REQUEST:
+                handleSignatureRequest(buffer, sourceIp);
+                break;
+                
+            case TYPE_FILE_SIGNATURE:
+                handleSignature(buffer, sourceIp, sequence, totalSequences);
+                break;
+                
+            case TYPE_FILE_REPAIR:
+                handleFileRepair(buffer, sourceIp, transferId, sequence, totalSequences);
+                break;
+                
+            case TYPE_FILE_HOLE:
+                handleFileHole(buffer, sourceIp, transferId, sequence, totalSequences);
                 break;
                 
             default:
@@ -282,21 +1244,56 @@ public class FileAppLayer implements BaseLayer {
     /**
      * FILE_START Fragment 처리
      */
-    private void handleFileStart(ByteBuffer buffer, int sequence, int totalSequences) {
+    private void handleFileStart(ByteBuffer buffer, int sourceIp, int transferId, int totalSequences) {
         byte fileNameLen = buffer.get();
         long fileSize = buffer.getLong();
         
         byte[] fileNameBytes = new byte[fileNameLen & 0xFF];
         buffer.get(fileNameBytes);
         String fileName = new String(fileNameBytes, StandardCharsets.UTF_8);
+        if (receivedFile(fileName) == null) {
+            System.err.println("[FileApp] 잘못된 파일명 - 수신 거부: " + fileName);
+            return;
+        }
+        
+        // 전송 모드 (이전 버전 송신 측은 Mode 바이트가 없음 → 전체 전송)
+        byte mode = buffer.remaining() >= 1 ? buffer.get() : MODE_FULL;
+        DeltaHeader delta = null;
+        if (mode == MODE_DELTA && buffer.remaining() >= DeltaHeader.LENGTH) {
+            long targetSize = buffer.getLong();
+            int blockSize = buffer.getInt();
+            byte[] targetHash = new byte[FileIntegrity.HASH_LENGTH];
+            buffer.get(targetHash);
+            delta = new DeltaHeader(targetSize, blockSize, targetHash);
+        } else if (mode == MODE_BATCH && buffer.remaining() >= 4) {
+            System.out.println("[FileApp] 배치 전송: " + buffer.getInt() + "개 파일");
+        }
+        int fecGroupSize = buffer.remaining() >= 1 ? buffer.get() & 0xFF : 0;
+        int chunkSize = buffer.remaining() >= 4 ? buffer.getInt() : DEFAULT_DATA_SIZE;
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            System.err.println("[FileApp] 잘못된 Fragment 크기: " + chunkSize);
+            return;
+        }
         
         System.out.println("[FileApp] 파일 수신 시작: " + fileName + 
                          " (크기: " + fileSize + "바이트, " + 
-                         totalSequences + "개 Fragment)");
+                         totalSequences + "개 Fragment" + modeLabel(mode) + ")");
         
-        // 수신 컨텍스트 생성
-        FileReceiveContext context = new FileReceiveContext(fileName, fileSize, totalSequences);
-        receivingFiles.put(fileName, context);
+        // 수신 컨텍스트 생성 (배치 전송은 메모리에 모으지 않고 디렉토리에 바로 풀어서 저장)
+        BatchStream.Unpacker unpacker = null;
+        if (mode == MODE_BATCH) {
+            unpacker = new BatchStream.Unpacker(receivedFile(fileName));
+        }
+        FileReceiveContext context = new FileReceiveContext(fileName, fileSize, totalSequences, unpacker);
+        context.delta = delta;
+        context.chunkSize = chunkSize;
+        context.senderIp = sourceIp;
+        context.transferId = transferId;
+        context.zeroLeaf = FileIntegrity.leafHash(ZERO_BLOCK, 0, chunkSize);
+        if (fecGroupSize > 0) {
+            context.fecDecoder = new FecCodec.Decoder(fecGroupSize, totalSequences, context::fragmentData);
+        }
+        receivingFiles.put(transferKey(context.senderIp, transferId), context);
         
         if (onReceiveProgress != null) {
             onReceiveProgress.accept(fileName, 0);
@@ -305,78 +1302,453 @@ public class FileAppLayer implements BaseLayer {
     
     /**
      * FILE_DATA Fragment 처리
+     * 
+     * CRC32C 검증과 Leaf 해시 계산은 ForkJoinPool에서 병렬로 수행되며,
+     * 수신 스레드는 파싱만 하고 바로 다음 프레임을 처리합니다.
      */
-    private void handleFileData(ByteBuffer buffer, int sequence, int totalSequences) {
+    private void handleFileData(ByteBuffer buffer, int sourceIp, int transferId, int sequence, int totalSequences) {
+        byte flags = buffer.get();
         short dataLen = buffer.getShort();
+        int expectedCrc = buffer.getInt();
         byte[] data = new byte[dataLen & 0xFFFF];
         buffer.get(data);
         
         // 해당 파일의 수신 컨텍스트 찾기
-        FileReceiveContext context = findContextByTotalSeq(totalSequences);
+        FileReceiveContext context = findReceiveContext(sourceIp, transferId, totalSequences);
         
         if (context == null) {
             System.err.println("[FileApp] 수신 컨텍스트를 찾을 수 없음 (Seq: " + sequence + ")");
             return;
         }
         
+        if (sequence < 0 || sequence >= context.totalSequences) {
+            System.err.println("[FileApp] 잘못된 Sequence 무시: " + sequence);
+            return;
+        }
+        
         // 중복 체크
         if (context.receivedSeqNumbers.contains(sequence)) {
             System.out.println("[FileApp] 중복 Fragment 무시: " + sequence);
             return;
         }
         
-        // 데이터를 버퍼에 복사
-        int offset = sequence * MAX_DATA_SIZE;
-        int copyLen = Math.min(data.length, context.buffer.length - offset);
-        System.arraycopy(data, 0, context.buffer, offset, copyLen);
+        context.pendingVerifications.add(
+            VERIFY_POOL.submit(() -> verifyAndStore(context, sequence, flags, expectedCrc, data)));
+    }
+    
+    /**
+     * Fragment 검증 및 저장 (ForkJoinPool 작업자 스레드에서 실행)
+     */
+    private void verifyAndStore(FileReceiveContext context, int sequence, byte flags, int expectedCrc, byte[] payload) {
+        // 1. CRC32C 검증 (전송된 데이터 기준) - 실패한 Fragment는 저장하지 않고 FILE_END 시점에 재전송 요청
+        if (FileIntegrity.crc32c(payload, 0, payload.length) != expectedCrc) {
+            System.err.println("[FileApp] CRC 오류 - Fragment 폐기 (Seq: " + sequence + ")");
+            return;
+        }
+        
+        // 복호화 → 압축 해제 (송신 측의 역순)
+        byte[] data = (flags & FLAG_ENCRYPTED) != 0 ? applyXor(payload) : payload;
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            try {
+                data = compressor.decompress(data, context.chunkSize);
+            } catch (DataFormatException e) {
+                System.err.println("[FileApp] 압축 해제 실패 - Fragment 폐기 (Seq: " + sequence + ")");
+                return;
+            }
+        }
+        
+        storeFragment(context, sequence, data);
+    }
+    
+    /**
+     * 검증된(또는 FEC로 복구된) Fragment 저장
+     */
+    private void storeFragment(FileReceiveContext context, int sequence, byte[] data) {
+        storeFragment(context, sequence, data, false);
+    }
+    
+    /**
+     * @param hole FILE_HOLE로 받은 0 Fragment (data는 0으로 채워진 배열)
+     */
+    private void storeFragment(FileReceiveContext context, int sequence, byte[] data, boolean hole) {
+        // 2. 범위 검증
+        long offset = (long) sequence * context.chunkSize;
+        if (offset + data.length > context.totalSize) {
+            System.err.println("[FileApp] 파일 범위를 벗어난 Fragment 폐기 (Seq: " + sequence + ")");
+            return;
+        }
+        
+        // 3. 데이터를 버퍼에 복사(배치 전송은 디스크에 풀어서 저장)하고 Leaf 해시 기록
+        //    (0 Fragment는 버퍼가 이미 0이므로 복사하지 않음)
+        context.leafHashes[sequence] = hole ? context.zeroLeaf : FileIntegrity.leafHash(data, 0, data.length);
+        if (hole && context.buffer != null) {
+            context.holeSequences.add(sequence);
+        } else if (context.unpacker != null) {
+            try {
+                context.unpacker.accept(sequence, data);
+            } catch (IOException e) {
+                System.err.println("[FileApp] 배치 스트림 저장 실패: " + e.getMessage());
+                context.unpackFailed = true;
+            }
+        } else {
+            System.arraycopy(data, 0, context.buffer, (int) offset, data.length);
+        }
+        if (context.fecDecoder != null && context.buffer == null) {
+            context.retainedFragments.put(sequence, data);
+        }
         
-        context.receivedSeqNumbers.add(sequence);
-        context.receivedSequences++;
+        if (!context.receivedSeqNumbers.add(sequence)) {
+            return; // 동시에 도착한 중복 Fragment
+        }
+        int received = context.receivedSequences.incrementAndGet();
         
         // 진행률 업데이트
         int progress = context.getProgress();
         System.out.println("[FileApp] 수신 진행: " + progress + "% " +
-                         "(" + context.receivedSequences + "/" + context.totalSequences + ")");
+                         "(" + received + "/" + context.totalSequences + ")");
         
         if (onReceiveProgress != null) {
             onReceiveProgress.accept(context.fileName, progress);
         }
+        
+        // 같은 그룹의 Repair로 복구할 수 있는 Fragment가 생겼는지 확인
+        if (context.fecDecoder != null) {
+            context.releaseCompletedGroup(sequence);
+            storeRecovered(context, context.fecDecoder.onData(sequence));
+        }
+    }
+    
+    /**
+     * FILE_HOLE 처리 - 0 Fragment 구간을 데이터 전송 없이 수신 처리
+     */
+    private void handleFileHole(ByteBuffer buffer, int sourceIp, int transferId, int firstSequence, int totalSequences) {
+        FileReceiveContext context = findReceiveContext(sourceIp, transferId, totalSequences);
+        if (context == null || buffer.remaining() < 4) {
+            return;
+        }
+        int count = buffer.getInt();
+        int last = (int) Math.min((long) firstSequence + count, context.totalSequences);
+        byte[] zeros = new byte[context.chunkSize];
+        for (int seq = Math.max(0, firstSequence); seq < last; seq++) {
+            if (!context.receivedSeqNumbers.contains(seq)) {
+                storeFragment(context, seq, zeros, true);
+            }
+        }
+    }
+    
+    /**
+     * FILE_REPAIR 처리 - 그룹에서 1개만 빠졌으면 재전송 없이 복구
+     */
+    private void handleFileRepair(ByteBuffer buffer, int sourceIp, int transferId, int group, int totalSequences) {
+        if (buffer.remaining() < 3 + 1 + 2 + 4) {
+            return;
+        }
+        buffer.get(); // K (FILE_START에서 이미 받음)
+        int repairCount = buffer.get() & 0xFF;
+        int repairIndex = buffer.get() & 0xFF;
+        byte flags = buffer.get();
+        int dataLen = buffer.getShort() & 0xFFFF;
+        int expectedCrc = buffer.getInt();
+        if (buffer.remaining() < dataLen) {
+            return;
+        }
+        byte[] payload = new byte[dataLen];
+        buffer.get(payload);
+        
+        FileReceiveContext context = findReceiveContext(sourceIp, transferId, totalSequences);
+        if (context == null || context.fecDecoder == null) {
+            return;
+        }
+        if (FileIntegrity.crc32c(payload, 0, payload.length) != expectedCrc) {
+            System.err.println("[FileApp] CRC 오류 - Repair 폐기 (Group: " + group + ")");
+            return;
+        }
+        byte[] repair = (flags & FLAG_ENCRYPTED) != 0 ? applyXor(payload) : payload;
+        
+        context.pendingVerifications.add(VERIFY_POOL.submit(() ->
+            storeRecovered(context, context.fecDecoder.onRepair(group, repairCount, repairIndex, repair))));
+    }
+    
+    private void storeRecovered(FileReceiveContext context, List<FecCodec.Recovered> recovered) {
+        for (FecCodec.Recovered fragment : recovered) {
+            if (context.receivedSeqNumbers.contains(fragment.sequence())) {
+                continue; // 검증 중이던 Fragment가 먼저 도착
+            }
+            fecRecoveredCount.incrementAndGet();
+            System.out.println("[FileApp] FEC로 Fragment 복구 (Seq: " + fragment.sequence() + ")");
+            storeFragment(context, fragment.sequence(), fragment.data());
+        }
     }
     
     /**
      * FILE_END Fragment 처리
+     * 
+     * 1. 진행 중인 병렬 검증 작업 완료 대기
+     * 2. 누락/손상 Fragment가 있으면 FILE_NACK 전송 후 재전송 대기
+     * 3. 모두 수신했으면 Leaf 해시로 Merkle Root 계산 후 비교
      */
-    private void handleFileEnd(int sequence, int totalSequences) {
-        FileReceiveContext context = findContextByTotalSeq(totalSequences);
+    private void handleFileEnd(ByteBuffer buffer, int sourceIp, int transferId, int totalSequences) {
+        FileReceiveContext context = findReceiveContext(sourceIp, transferId, totalSequences);
         
         if (context == null) {
             System.err.println("[FileApp] 수신 컨텍스트를 찾을 수 없음");
             return;
         }
         
-        System.out.println("[FileApp] 파일 수신 완료: " + context.fileName);
+        if (buffer.remaining() < FileIntegrity.HASH_LENGTH) {
+            System.err.println("[FileApp] FILE_END에 Merkle Root 없음");
+            return;
+        }
+        byte[] expectedRoot = new byte[FileIntegrity.HASH_LENGTH];
+        buffer.get(expectedRoot);
+        
+        context.awaitVerifications();
+        
+        if (context.unpackFailed) {
+            System.err.println("[FileApp] 배치 스트림 저장 오류 - 수신 실패: " + context.fileName);
+            completeReceive(context, false);
+            return;
+        }
+        
+        // 누락/손상 Fragment 재전송 요청
+        List<Integer> missing = context.missingSequences();
+        if (!missing.isEmpty()) {
+            if (context.nackRounds < MAX_NACK_ROUNDS) {
+                context.nackRounds++;
+                System.out.println("[FileApp] 재전송 요청 (" + context.nackRounds + "회차): " +
+                                 missing.size() + "개 Fragment");
+                sendFileNack(context.senderIp, context.transferId, context.totalSequences, missing);
+                return;
+            }
+            System.err.println("[FileApp] 재전송 한도 초과 - 수신 실패: " + context.fileName);
+            completeReceive(context, false);
+            return;
+        }
+        
+        // Merkle Root 비교 (Leaf 해시는 이미 계산되어 있음)
+        byte[] actualRoot = FileIntegrity.merkleRoot(context.leafHashes);
+        if (!MessageDigest.isEqual(expectedRoot, actualRoot)) {
+            System.err.println("[FileApp] Merkle Root 불일치 - 수신 실패: " + context.fileName);
+            completeReceive(context, false);
+            return;
+        }
+        
+        System.out.println("[FileApp] 파일 수신 완료: " + context.fileName + " (무결성 검증 통과)");
+        
+        // 배치 전송은 이미 디스크에 저장됨
+        if (context.unpacker != null) {
+            completeReceive(context, finishBatch(context));
+            return;
+        }
         
         // 파일 저장
-        boolean success = saveFile(context);
+        completeReceive(context, saveFile(context));
+    }
+    
+    /**
+     * 배치 전송 마무리 (모든 파일이 Manifest 크기대로 기록되었는지 확인)
+     */
+    private boolean finishBatch(FileReceiveContext context) {
+        BatchStream.Unpacker unpacker = context.unpacker;
+        boolean complete = unpacker.isComplete();
+        if (complete) {
+            System.out.println("[FileApp] 배치 저장 완료: " + unpacker.getFilesCompleted() + "개 파일, " +
+                             unpacker.getBytesWritten() + "바이트 → " + RECEIVE_DIR + "/" + context.fileName);
+        } else {
+            System.err.println("[FileApp] 배치 스트림이 완전하지 않음: " + context.fileName);
+        }
+        return complete;
+    }
+    
+    /**
+     * 수신 종료 처리 (콜백 호출 및 컨텍스트 제거)
+     */
+    private void completeReceive(FileReceiveContext context, boolean success) {
+        if (context.unpacker != null) {
+            try {
+                context.unpacker.close();
+            } catch (IOException e) {
+                System.err.println("[FileApp] 배치 파일 닫기 실패: " + e.getMessage());
+            }
+        }
         
         if (onReceiveComplete != null) {
             onReceiveComplete.accept(context.fileName, success);
         }
         
         // 컨텍스트 제거
-        receivingFiles.remove(context.fileName);
+        receivingFiles.remove(transferKey(context.senderIp, context.transferId), context);
+    }
+    
+    /**
+     * FILE_NACK 처리 (송신 측) - 요청된 Fragment만 다시 읽어 재전송
+     */
+    private void handleFileNack(ByteBuffer buffer, int sourceIp, int transferId, int totalSequences) {
+        FileSendContext context = sendingFiles.get(transferKey(sourceIp, transferId));
+        if (context == null || context.totalSequences != totalSequences || context.merkleRoot == null
+            || buffer.remaining() < 2) {
+            System.err.println("[FileApp] 재전송 요청을 처리할 송신 정보 없음");
+            return;
+        }
+        
+        int count = buffer.getShort() & 0xFFFF;
+        List<Integer> sequences = new ArrayList<>(count);
+        for (int i = 0; i < count && buffer.remaining() >= 4; i++) {
+            sequences.add(buffer.getInt());
+        }
+        
+        System.out.println("[FileApp] 재전송 요청 수신: " + sequences.size() + "개 Fragment");
+        
+        // 손실률 갱신 (다음 전송의 FEC Repair 수 결정에 사용)
+        double lossRate = (double) sequences.size() / Math.max(1, context.totalSequences);
+        observedLossRate = (1 - FEC_LOSS_SMOOTHING) * observedLossRate + FEC_LOSS_SMOOTHING * lossRate;
+        
+        // 수신 스레드를 막지 않도록 별도 스레드에서 재전송
+        Thread retransmitThread = new Thread(() -> {
+            try {
+                for (int seq : sequences) {
+                    if (seq < 0 || seq >= context.totalSequences) {
+                        continue;
+                    }
+                    byte[] chunk = context.source.read((long) seq * context.chunkSize, context.chunkSize);
+                    if (chunk.length > 0) {
+                        sendFileData(context.destinationIp, context.transferId, seq, context.totalSequences, chunk,
+                                     context.compression, context.encrypted);
+                    }
+                }
+                sendFileEnd(context.destinationIp, context.transferId, context.totalSequences, context.merkleRoot);
+            } catch (IOException e) {
+                System.err.println("[FileApp] 재전송 중 오류: " + e.getMessage());
+            }
+        });
+        retransmitThread.setName("FileRetransmit-" + context.name);
+        retransmitThread.start();
+    }
+    
+    /**
+     * FILE_SIG_REQUEST 처리 (수신 측) - 기존 파일의 블록 서명을 계산하여 응답
+     * 서명 계산은 블록 단위로 병렬 수행되므로 수신 스레드를 막지 않도록 별도로 실행합니다.
+     */
+    private void handleSignatureRequest(ByteBuffer buffer, int requesterIp) {
+        if (buffer.remaining() < 5) {
+            return;
+        }
+        int blockSize = buffer.getInt();
+        byte[] fileNameBytes = new byte[buffer.get() & 0xFF];
+        if (buffer.remaining() < fileNameBytes.length || blockSize <= 0 || blockSize > 64 * 1024) {
+            System.err.println("[FileApp] 잘못된 서명 요청 무시");
+            return;
+        }
+        buffer.get(fileNameBytes);
+        String fileName = new String(fileNameBytes, StandardCharsets.UTF_8);
+        
+        CompletableFuture.runAsync(() -> {
+            // 경로 구성 요소는 제거하고 received_files/ 안의 파일만 사용
+            File basis = receivedFile(fileName);
+            DeltaSync.Signature signature;
+            try {
+                if (basis == null) {
+                    throw new IOException("잘못된 파일명: " + fileName);
+                }
+                long t0 = System.nanoTime();
+                signature = DeltaSync.computeSignature(basis, blockSize);
+                System.out.println(String.format("[FileApp] 블록 서명 계산: %s (%d개 블록, %.1fms)",
+                    fileName, signature.blockCount(), (System.nanoTime() - t0) / 1_000_000.0));
+            } catch (IOException e) {
+                System.err.println("[FileApp] 블록 서명 계산 실패: " + e.getMessage());
+                signature = DeltaSync.Signature.none(blockSize);
+            }
+            sendSignature(requesterIp, fileName, signature);
+        }, VERIFY_POOL);
     }
     
     /**
-     * totalSequences로 수신 컨텍스트 찾기
+     * FILE_SIGNATURE 처리 (송신 측) - 서명 조각을 모아 대기 중인 전송에 전달
      */
-    private FileReceiveContext findContextByTotalSeq(int totalSequences) {
-        for (FileReceiveContext context : receivingFiles.values()) {
-            if (context.totalSequences == totalSequences) {
-                return context;
+    private void handleSignature(ByteBuffer buffer, int sourceIp, int part, int totalParts) {
+        if (buffer.remaining() < 1 + 4 + 8 + 4 + 2) {
+            return;
+        }
+        int fileNameLen = buffer.get() & 0xFF;
+        int blockSize = buffer.getInt();
+        long fileLength = buffer.getLong();
+        int firstBlock = buffer.getInt();
+        int count = buffer.getShort() & 0xFFFF;
+        if (buffer.remaining() < fileNameLen || blockSize <= 0) {
+            return;
+        }
+        byte[] fileNameBytes = new byte[fileNameLen];
+        buffer.get(fileNameBytes);
+        String fileName = new String(fileNameBytes, StandardCharsets.UTF_8);
+        
+        SignatureAssembly assembly = pendingSignatures.get(signatureKey(sourceIp, fileName));
+        if (assembly == null) {
+            System.out.println("[FileApp] 요청하지 않은 서명 무시: " + fileName);
+            return;
+        }
+        assembly.addPart(part, totalParts, blockSize, fileLength, firstBlock, count, buffer);
+    }
+    
+    /**
+     * 보낸 상대와 Transfer ID로 수신 컨텍스트 찾기
+     * @return 컨텍스트 (없거나 Fragment 수가 FILE_START와 다르면 null)
+     */
+    private FileReceiveContext findReceiveContext(int sourceIp, int transferId, int totalSequences) {
+        FileReceiveContext context = receivingFiles.get(transferKey(sourceIp, transferId));
+        return context != null && context.totalSequences == totalSequences ? context : null;
+    }
+    
+    /**
+     * 델타 스트림과 기존 파일로 새 파일 내용 복원 후 SHA-256 검증
+     * 
+     * @return 복원된 내용, 실패하면 null
+     */
+    private byte[] applyDelta(FileReceiveContext context, File basis) {
+        DeltaHeader delta = context.delta;
+        try {
+            byte[] data = DeltaSync.apply(basis, delta.blockSize(), context.buffer, delta.targetSize());
+            if (!MessageDigest.isEqual(delta.targetHash(), FileIntegrity.leafHash(data, 0, data.length))) {
+                System.err.println("[FileApp] 델타 복원 결과 해시 불일치: " + context.fileName);
+                return null;
+            }
+            System.out.println("[FileApp] 델타 복원 완료: " + context.fileName +
+                             " (델타 " + context.totalSize + "바이트 → " + data.length + "바이트)");
+            return data;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[FileApp] 델타 복원 실패: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 희소 파일 저장: 0 구간은 쓰지 않고 파일 크기만 맞춰 파일 시스템의 희소 영역(hole)으로 남김
+     */
+    private void saveSparseFile(FileReceiveContext context, File outputFile) throws IOException {
+        long written = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(outputFile, "rw")) {
+            raf.setLength(0);
+            raf.setLength(context.totalSize);
+            
+            // 0이 아닌 연속 구간만 기록
+            int seq = 0;
+            while (seq < context.totalSequences) {
+                if (context.holeSequences.contains(seq)) {
+                    seq++;
+                    continue;
+                }
+                int start = seq;
+                while (seq < context.totalSequences && !context.holeSequences.contains(seq)) {
+                    seq++;
+                }
+                long offset = (long) start * context.chunkSize;
+                int length = (int) (Math.min(context.totalSize, (long) seq * context.chunkSize) - offset);
+                raf.seek(offset);
+                raf.write(context.buffer, (int) offset, length);
+                written += length;
             }
         }
-        return null;
+        System.out.println("[FileApp] 희소 파일 저장: " + written + "/" + context.totalSize + "바이트 기록 (" +
+                         context.holeSequences.size() + "개 Fragment는 빈 영역)");
     }
     
     /**
@@ -385,15 +1757,30 @@ public class FileAppLayer implements BaseLayer {
     private boolean saveFile(FileReceiveContext context) {
         try {
             // 받은 파일을 저장할 디렉토리
-            File receivedDir = new File("received_files");
+            File receivedDir = new File(RECEIVE_DIR);
             if (!receivedDir.exists()) {
                 receivedDir.mkdirs();
             }
             
-            File outputFile = new File(receivedDir, context.fileName);
+            // 서명을 계산한 기준 파일과 같은 경로 (FILE_START에서 이미 검사됨)
+            File outputFile = receivedFile(context.fileName);
             
-            try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                fos.write(context.buffer, 0, (int) context.totalSize);
+            byte[] data = context.buffer;
+            int length = (int) context.totalSize;
+            if (context.delta != null) {
+                data = applyDelta(context, outputFile);
+                if (data == null) {
+                    return false;
+                }
+                length = data.length;
+            }
+            
+            if (context.delta == null && !context.holeSequences.isEmpty()) {
+                saveSparseFile(context, outputFile);
+            } else {
+                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+                    fos.write(data, 0, length);
+                }
             }
             
             System.out.println("[FileApp] 파일 저장 완료: " + outputFile.getAbsolutePath());
@@ -0,0 +1,105 @@
+package com.demo;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * FileIntegrity - 파일 전송 무결성 검증 유틸리티
+ *
+ * 역할:
+ * - Fragment 단위 CRC32C 계산 (JDK에서 하드웨어 명령어로 가속됨)
+ * - Fragment 데이터의 SHA-256 Leaf 해시 계산
+ * - Leaf 해시들로부터 Merkle Root 계산
+ *
+ * Merkle Tree 구조 (Leaf 4개 예시):
+ *                 Root
+ *              /        \
+ *         H(L0|L1)    H(L2|L3)
+ *         /    \       /    \
+ *        L0    L1     L2    L3      ← Leaf = SHA-256(Fragment 데이터)
+ *
+ * - 홀수 개의 노드가 남으면 마지막 노드는 그대로 윗 단계로 올라감
+ * - Leaf는 Fragment가 도착할 때마다 계산되므로, 전송 완료 시점에는
+ *   파일 전체를 다시 해싱하지 않고 Leaf 해시만으로 Root를 구할 수 있음
+ */
+public final class FileIntegrity {
+
+    /** SHA-256 해시 길이 (바이트) */
+    public static final int HASH_LENGTH = 32;
+
+    // MessageDigest는 스레드 안전하지 않으므로 스레드마다 하나씩 재사용
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256을 사용할 수 없음", e);
+        }
+    });
+
+    private FileIntegrity() {
+    }
+
+    /**
+     * CRC32C 체크섬 계산
+     * @param data 데이터 배열
+     * @param offset 시작 위치
+     * @param length 길이
+     * @return 32비트 CRC32C 값
+     */
+    public static int crc32c(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Fragment 데이터의 Leaf 해시 계산
+     * @param data Fragment 데이터
+     * @param offset 시작 위치
+     * @param length 길이
+     * @return SHA-256 해시 (32바이트)
+     */
+    public static byte[] leafHash(byte[] data, int offset, int length) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        digest.update(data, offset, length);
+        return digest.digest();
+    }
+
+    /**
+     * Leaf 해시 배열로부터 Merkle Root 계산
+     *
+     * @param leaves Leaf 해시 배열 (null 항목이 있으면 안 됨)
+     * @return Merkle Root (32바이트), Leaf가 없으면 빈 입력의 SHA-256
+     */
+    public static byte[] merkleRoot(byte[][] leaves) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+
+        if (leaves.length == 0) {
+            return digest.digest();
+        }
+
+        byte[][] level = leaves.clone();
+        int count = level.length;
+
+        // 한 단계씩 올라가며 두 노드를 합쳐 부모 노드 생성
+        while (count > 1) {
+            int parentCount = 0;
+            for (int i = 0; i < count; i += 2) {
+                if (i + 1 < count) {
+                    digest.reset();
+                    digest.update(level[i]);
+                    digest.update(level[i + 1]);
+                    level[parentCount++] = digest.digest();
+                } else {
+                    level[parentCount++] = level[i]; // 홀수 노드는 그대로 승격
+                }
+            }
+            count = parentCount;
+        }
+
+        return level[0];
+    }
+}
@@ -0,0 +1,317 @@
+package com.demo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * FileSendPipeline - 멀티코어 파일 송신 파이프라인
+ *
+ * 역할:
+ * - 파일 읽기, (선택) 압축/암호화, 체크섬, 프레임 생성을 별도 작업자 스레드로 분리
+ * - 단계 사이는 크기가 제한된 큐(ArrayBlockingQueue)로 연결하여 메모리 사용량 제한
+ * - 여러 작업자가 처리한 Chunk를 Sequence 순서대로 재정렬한 뒤 전송
+ * - 단계별 사용률(busy 시간 / 경과 시간)을 측정하여 병목 단계 파악
+ *
+ * 구조:
+ * ┌────────┐   큐   ┌──────────┐   큐   ┌──────────┐   큐   ┌────────────┐
+ * │  read  │ ─────▶ │ stage 1  │ ─────▶ │ stage N  │ ─────▶ │ 재정렬+send │
+ * │ (1개)  │        │ (N개)    │        │ (N개)    │        │ (호출 스레드)│
+ * └────────┘        └──────────┘        └──────────┘        └────────────┘
+ *
+ * 종료 처리:
+ * - read 단계가 EOF에 도달하면 POISON Chunk를 다음 큐에 넣음
+ * - POISON을 받은 작업자는 같은 큐에 다시 넣어 동료 작업자에게 알리고 종료
+ * - 단계의 마지막 작업자가 종료될 때 POISON을 다음 단계로 전달
+ */
+public class FileSendPipeline {
+
+    /** 단계 사이 큐 크기 (Chunk 개수) */
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * 파이프라인을 흐르는 파일 조각
+     */
+    public static class Chunk {
+        public final int sequence;
+        public byte[] plain;       // 원본 데이터 (Leaf 해시 계산용)
+        public byte[] payload;     // 전송될 데이터 (압축/암호화 적용 후)
+        public byte flags;         // Fragment 플래그 (압축/암호화 여부)
+        public int crc;            // payload의 CRC32C
+        public byte[] leafHash;    // plain의 SHA-256 Leaf 해시
+        public byte[] frame;       // 완성된 FILE_DATA Fragment
+        public boolean zero;       // 모두 0인 Fragment (프레임 대신 빈 구간으로 전송)
+
+        public Chunk(int sequence, byte[] plain) {
+            this.sequence = sequence;
+            this.plain = plain;
+            this.payload = plain;
+        }
+    }
+
+    private static final Chunk POISON = new Chunk(-1, new byte[0]);
+
+    /**
+     * 파이프라인 단계 정의
+     */
+    private static class Stage {
+        final String name;
+        final Consumer<Chunk> work;
+        final int workers;
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicLong processed = new AtomicLong();
+
+        Stage(String name, Consumer<Chunk> work, int workers) {
+            this.name = name;
+            this.work = work;
+            this.workers = Math.max(1, workers);
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // 통계 (read/send 단계는 파이프라인이 직접 측정)
+    private final Stage readStage = new Stage("read", c -> {}, 1);
+    private final Stage sendStage = new Stage("send", c -> {}, 1);
+    private long elapsedNanos;
+
+    /**
+     * @param chunkSize Chunk 하나의 최대 크기 (바이트)
+     */
+    public FileSendPipeline(int chunkSize) {
+        this(chunkSize, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public FileSendPipeline(int chunkSize, int queueCapacity) {
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 처리 단계 추가 (추가한 순서대로 실행)
+     * @param name 단계 이름 (통계 표시용)
+     * @param work Chunk를 제자리에서 변환하는 작업 (여러 스레드에서 동시에 호출됨)
+     * @param workers 작업자 스레드 수
+     * @return this (메서드 체이닝)
+     */
+    public FileSendPipeline addStage(String name, Consumer<Chunk> work, int workers) {
+        stages.add(new Stage(name, work, workers));
+        return this;
+    }
+
+    /**
+     * 파이프라인 실행 (호출 스레드가 send 단계를 담당)
+     *
+     * @param input 읽을 입력 스트림
+     * @param sink Sequence 순서대로 Chunk를 받아 전송하는 함수
+     * @return 처리한 Chunk 개수
+     * @throws IOException 읽기 또는 단계 처리 중 오류
+     */
+    public int run(InputStream input, Consumer<Chunk> sink) throws IOException {
+        long startedAt = System.nanoTime();
+
+        // 단계 수 + 1 개의 큐 생성 (read → stage1 → ... → stageN → send)
+        List<BlockingQueue<Chunk>> queues = new ArrayList<>();
+        for (int i = 0; i <= stages.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(startReader(input, queues.get(0)));
+        for (int i = 0; i < stages.size(); i++) {
+            threads.addAll(startStage(stages.get(i), queues.get(i), queues.get(i + 1)));
+        }
+
+        // send 단계: 재정렬 후 순서대로 전송
+        int sent = 0;
+        Map<Integer, Chunk> reorderBuffer = new HashMap<>();
+        BlockingQueue<Chunk> output = queues.get(stages.size());
+        try {
+            while (true) {
+                Chunk chunk = output.take();
+                if (chunk == POISON) {
+                    break;
+                }
+                reorderBuffer.put(chunk.sequence, chunk);
+
+                Chunk next;
+                while ((next = reorderBuffer.remove(sent)) != null) {
+                    long t0 = System.nanoTime();
+                    sink.accept(next);
+                    sendStage.busyNanos.addAndGet(System.nanoTime() - t0);
+                    sendStage.processed.incrementAndGet();
+                    sent++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            elapsedNanos = System.nanoTime() - startedAt;
+        }
+
+        Throwable error = failure.get();
+        if (error != null) {
+            throw (error instanceof IOException io) ? io : new IOException("파이프라인 처리 실패", error);
+        }
+        if (!reorderBuffer.isEmpty()) {
+            throw new IOException("재정렬되지 않은 Chunk 존재: " + reorderBuffer.size() + "개");
+        }
+        return sent;
+    }
+
+    /**
+     * read 단계 스레드 시작 (파일은 순차적으로 읽어야 하므로 1개)
+     */
+    private Thread startReader(InputStream input, BlockingQueue<Chunk> out) {
+        Thread reader = new Thread(() -> {
+            try {
+                byte[] buffer = new byte[chunkSize];
+                int sequence = 0;
+                while (true) {
+                    long t0 = System.nanoTime();
+                    int read = input.readNBytes(buffer, 0, chunkSize);
+                    if (read <= 0) {
+                        break;
+                    }
+                    Chunk chunk = new Chunk(sequence++, Arrays.copyOf(buffer, read));
+                    readStage.busyNanos.addAndGet(System.nanoTime() - t0);
+                    readStage.processed.incrementAndGet();
+                    out.put(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                putQuietly(out, POISON);
+            }
+        }, "FilePipeline-read");
+        reader.setDaemon(true);
+        reader.start();
+        return reader;
+    }
+
+    /**
+     * 처리 단계의 작업자 스레드들 시작
+     */
+    private List<Thread> startStage(Stage stage, BlockingQueue<Chunk> in, BlockingQueue<Chunk> out) {
+        AtomicInteger activeWorkers = new AtomicInteger(stage.workers);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int w = 0; w < stage.workers; w++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    while (true) {
+                        Chunk chunk = in.take();
+                        if (chunk == POISON) {
+                            in.put(POISON); // 같은 단계의 다른 작업자에게도 종료 알림
+                            break;
+                        }
+                        if (failure.get() == null) {
+                            long t0 = System.nanoTime();
+                            stage.work.accept(chunk);
+                            stage.busyNanos.addAndGet(System.nanoTime() - t0);
+                            stage.processed.incrementAndGet();
+                        }
+                        out.put(chunk);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    putQuietly(in, POISON);
+                } finally {
+                    // 단계의 마지막 작업자가 다음 단계로 종료 전달
+                    if (activeWorkers.decrementAndGet() == 0) {
+                        putQuietly(out, POISON);
+                    }
+                }
+            }, "FilePipeline-" + stage.name + "-" + w);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        return workers;
+    }
+
+    private static void putQuietly(BlockingQueue<Chunk> queue, Chunk chunk) {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 단계별 사용률 반환 (0.0 ~ 1.0)
+     * 사용률 = 작업 시간 합계 / (경과 시간 × 작업자 수)
+     *
+     * @return 단계 이름 → 사용률 (파이프라인 순서 유지)
+     */
+    public Map<String, Double> getStageUtilization() {
+        Map<String, Double> utilization = new LinkedHashMap<>();
+        for (Stage stage : allStages()) {
+            double capacity = (double) elapsedNanos * stage.workers;
+            utilization.put(stage.name, capacity > 0 ? stage.busyNanos.get() / capacity : 0.0);
+        }
+        return utilization;
+    }
+
+    /**
+     * 단계별 통계 보고서 (병목 단계 표시)
+     */
+    public String getStageReport() {
+        Map<String, Double> utilization = getStageUtilization();
+        String bottleneck = null;
+        double maxUtilization = -1;
+        for (Map.Entry<String, Double> entry : utilization.entrySet()) {
+            if (entry.getValue() > maxUtilization) {
+                maxUtilization = entry.getValue();
+                bottleneck = entry.getKey();
+            }
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("[FilePipeline] 총 %.1fms%n", elapsedNanos / 1_000_000.0));
+        for (Stage stage : allStages()) {
+            report.append(String.format("  %-10s 작업자 %d, 처리 %d개, 사용률 %5.1f%%%s%n",
+                stage.name, stage.workers, stage.processed.get(),
+                utilization.get(stage.name) * 100,
+                stage.name.equals(bottleneck) ? "  ← 병목" : ""));
+        }
+        return report.toString();
+    }
+
+    /**
+     * 경과 시간 (나노초)
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    private List<Stage> allStages() {
+        List<Stage> all = new ArrayList<>();
+        all.add(readStage);
+        all.addAll(stages);
+        all.add(sendStage);
+        return all;
+    }
+}
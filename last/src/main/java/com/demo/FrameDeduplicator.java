@@ -0,0 +1,128 @@
+package com.demo;
+
+import java.util.Arrays;
+
+/**
+ * FrameDeduplicator - 시간 창 기반 프레임 중복 검출 (회전하는 Bloom 필터 한 쌍)
+ *
+ * 구조:
+ * - 같은 크기의 Bloom 필터 2개(현재/이전)를 두고, 창 시간마다 이전 필터를 비워 현재 필터와 교체
+ * - 프레임은 현재 필터에 기록하고, 검사는 두 필터 모두에서 수행
+ *   → 한 번 본 프레임은 최소 창 시간(최대 2배) 동안 중복으로 판정, 한꺼번에 잊어버리는 구간이 없음
+ * - 키: 프레임 앞부분(최대 {@link #KEY_PREFIX_BYTES}바이트)과 길이
+ *   IPv4 프레임이면 앞부분에 출발지 MAC, IP 주소, IP Identification, Fragment Offset이 포함되므로
+ *   내용이 같은 채팅 메시지도 IP ID가 다르면 서로 다른 프레임으로 판정
+ * - 필터 배열은 생성 시 한 번만 할당 (검사 중 할당/박싱 없음)
+ *
+ * 용량: 필터당 2^20비트(128KB), 해시 4개 → 창당 2만 프레임에서 오탐률 약 0.003%
+ */
+public final class FrameDeduplicator {
+
+    /** 키로 사용하는 프레임 앞부분 크기 (Ethernet 14 + IP 헤더 20 + 페이로드 앞 30바이트) */
+    public static final int KEY_PREFIX_BYTES = 64;
+
+    /** 기본 중복 판정 시간 */
+    public static final long DEFAULT_WINDOW_MS = 1000;
+
+    private static final int FILTER_BITS = 1 << 20;
+    private static final int HASH_COUNT = 4;
+
+    private long[] current = new long[FILTER_BITS / 64];
+    private long[] previous = new long[FILTER_BITS / 64];
+    private final long windowMs;
+    private long rotatedAt = Long.MIN_VALUE;
+    private long duplicates = 0;
+
+    public FrameDeduplicator() {
+        this(DEFAULT_WINDOW_MS);
+    }
+
+    /**
+     * @param windowMs 중복 판정 시간 (밀리초, 1 이상)
+     */
+    public FrameDeduplicator(long windowMs) {
+        if (windowMs < 1) {
+            throw new IllegalArgumentException("중복 판정 시간은 1ms 이상이어야 합니다: " + windowMs);
+        }
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * 중복 여부를 검사하고, 처음 본 프레임이면 기록합니다.
+     *
+     * @param frame 프레임 데이터
+     * @param length 프레임 길이
+     * @param nowMillis 현재 시각 (밀리초)
+     * @return 창 시간 안에 같은 키의 프레임을 이미 봤으면 true
+     */
+    public synchronized boolean isDuplicate(byte[] frame, int length, long nowMillis) {
+        rotateIfNeeded(nowMillis);
+
+        long hash = hash(frame, length);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1; // 이중 해싱 (홀수 간격)
+        boolean seen = true;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & (FILTER_BITS - 1);
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            if ((current[word] & mask) == 0) {
+                if ((previous[word] & mask) == 0) {
+                    seen = false;
+                }
+                current[word] |= mask;
+            }
+        }
+        if (seen) {
+            duplicates++;
+        }
+        return seen;
+    }
+
+    /**
+     * @return 지금까지 중복으로 판정한 프레임 수
+     */
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * 창 시간이 지났으면 이전 필터를 비우고 현재 필터와 교체 (두 창 이상 지났으면 둘 다 비움)
+     */
+    private void rotateIfNeeded(long nowMillis) {
+        if (rotatedAt == Long.MIN_VALUE) {
+            rotatedAt = nowMillis;
+            return;
+        }
+        long elapsed = nowMillis - rotatedAt;
+        if (elapsed < windowMs) {
+            return;
+        }
+        long[] cleared = previous;
+        Arrays.fill(cleared, 0L);
+        previous = current;
+        current = cleared;
+        if (elapsed >= 2 * windowMs) {
+            Arrays.fill(previous, 0L);
+        }
+        rotatedAt = nowMillis;
+    }
+
+    /**
+     * 프레임 앞부분 + 길이의 64비트 해시 (FNV-1a 후 MurmurHash3 fmix64로 비트 섞기)
+     */
+    private static long hash(byte[] frame, int length) {
+        long h = 0xCBF29CE484222325L ^ length;
+        int end = Math.min(length, KEY_PREFIX_BYTES);
+        for (int i = 0; i < end; i++) {
+            h ^= frame[i] & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,9 +1,20 @@
 package com.demo;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 /**
  * IPLayer - IP(Internet Protocol) 계층 (OSI 3계층에 해당)
@@ -14,6 +25,18 @@ import java.util.List;
  * - ARP 연동: IP 주소를 MAC 주소로 변환하여 전송
  * - 목적지 주소 기반 라우팅 (간단한 구현)
  * - 우선순위 지원: TOS 필드를 통한 메시지 우선순위 처리
+ * - 전송 설명자({@link SendDescriptor}): 목적지/프로토콜/TOS를 패킷마다 지정하여
+ *   여러 스레드가 서로 다른 상대에게 잠금 없이 동시에 전송 (ARP 캐시 미스일 때만 대기 큐 잠금)
+ * 
+ * 상대 테이블 ({@link PeerSession}):
+ * - 주고받는 상대 IP마다 세션을 두고 해석된 MAC, IP 헤더 템플릿, IP ID, Fragment 재조립 상태, 통계를 보관
+ * - 기본 목적지(setDstIp) 하나가 아니라 여러 상대와 동시에 송수신 (허브 노드로 수백 명과 채팅)
+ * - int 키 해시 테이블({@link PeerTable})에 보관 (송수신마다 박싱 없음, 조회는 잠금 없음)
+ * - 세션은 처음 보낼 때(또는 Fragment를 받아 재조립이 필요할 때) 만들고, 상한(MAX_PEERS)을 넘지 않음
+ *   → 가득 차면 오래 쉬는 세션을 정리 (최대 1초에 한 번), 그래도 자리가 없으면 세션 없이 전송
+ * - 상대별 재조립기는 전역 상한({@link IpReassembler.Budget}, 4MB/64개)을 함께 씀
+ *   → Fragment를 보내는 상대가 아무리 많아도 재조립 버퍼 총량은 전역 상한을 넘지 않음
+ * - 세션이 없는 상대에게서 온 조각나지 않은 패킷은 세션을 만들지 않고 그대로 전달 (통계는 세션이 있을 때만)
  * 
  * IP 헤더 구조 (최소 20바이트, 옵션 제외):
  * ┌────────┬────────┬────────────┬─────────────┬───────────┬──────────┬────────────┬──────────┬─────────┬──────────┐
@@ -36,6 +59,18 @@ import java.util.List;
  *   - 001 (0x20): 낮음 (Priority)
  * 
  * 이 구현에서는 간단한 IP 헤더만 생성 (Version 4, IHL 5, 옵션 없음)
+ * 
+ * Fragmentation (RFC 791):
+ * - 페이로드가 하위 계층 MTU를 넘으면 같은 ID로 여러 Fragment로 나누어 전송
+ *   (마지막을 제외한 Fragment는 MF 플래그, Offset은 8바이트 단위)
+ * - 수신 측은 출발지 세션마다 (목적지, 프로토콜, ID)별로 재조립 후 상위 계층에 전달 (IpReassembler)
+ * - 상위 계층은 한 번에 최대 65515바이트까지 보낼 수 있음
+ * 
+ * ARP 대기 큐:
+ * - 목적지 MAC을 모르면 ARP 해석을 요청하고 완성된 IP 패킷을 목적지별 큐에 보관
+ * - ARP 응답으로 캐시가 채워지면 보관한 패킷을 순서대로 전송
+ * - 응답이 없으면 ARP 계층의 백오프에 따라 Request를 다시 보내고, 제한 시간이 지나면 폐기 후 콜백 호출
+ * - 최근 응답이 없던 목적지(ARP 부정 캐시)는 보관하지 않고 즉시 실패
  */
 public class IPLayer implements BaseLayer {
     // ===== 계층 기본 정보 =====
@@ -45,13 +80,16 @@ public class IPLayer implements BaseLayer {
     private final List<BaseLayer> upperLayers = new ArrayList<>(); // 상위 계층: ChatAppLayer, FileAppLayer
     
     // ===== IP 주소 설정 =====
-    private byte[] sourceIpAddress = new byte[4];      // 자신의 IP 주소
-    private byte[] destinationIpAddress = new byte[4]; // 목적지 IP 주소
+    // 내부에서는 int로 보관 (NetAddress), 바이트 배열은 설정/조회 메서드에서만 변환
+    private volatile int sourceIpAddress = 0;      // 자신의 IP 주소
+    private volatile int destinationIpAddress = 0; // 기본 목적지 IP 주소 (Send(byte[], int)용)
     
     // ===== IP 헤더 상수 =====
     private static final int IPV4_VERSION = 4;               // IPv4
-    private static final int IP_HEADER_LENGTH_UNITS = 5;     // 5 * 4 = 20바이트 (옵션 없음)
-    private static final int DEFAULT_TTL = 128;              // Time to Live
+    private static final int IP_HEADER_SIZE = PeerSession.HEADER_SIZE; // 20바이트 (옵션 없음, TTL 등은 세션 헤더 템플릿)
+    private static final int FLAG_MORE_FRAGMENTS = 0x2000;   // MF 플래그 (Flags 3비트 중 마지막)
+    private static final int FRAGMENT_OFFSET_MASK = 0x1FFF;  // Offset 13비트 (8바이트 단위)
+    private static final int ETHER_TYPE_IPV4 = 0x0800;
     
     // ===== 프로토콜 번호 상수 =====
     @SuppressWarnings("unused")
@@ -61,9 +99,8 @@ public class IPLayer implements BaseLayer {
     private static final int PROTOCOL_CHAT_APP = 253;        // ChatApp 프로토콜
     private static final int PROTOCOL_FILE_APP = 254;        // FileApp 프로토콜
     
-    // ===== 패킷 ID 및 프로토콜 설정 =====
-    private int packetIdentification = 0;                     // IP 패킷 ID (증가)
-    private int currentProtocol = PROTOCOL_CHAT_APP;          // 현재 사용할 프로토콜
+    // ===== 프로토콜 설정 =====
+    private volatile int currentProtocol = PROTOCOL_CHAT_APP;  // 기본 프로토콜 (Send(byte[], int)용)
     
     // ===== TOS (Type of Service) 우선순위 상수 =====
     // TOS 상위 3비트: Precedence (우선순위)
@@ -71,8 +108,101 @@ public class IPLayer implements BaseLayer {
     private static final int TOS_PRIORITY_NORMAL = 0x00;    // 000 00000 (일반)
     private static final int TOS_PRIORITY_LOW = 0x20;       // 001 00000 (낮음)
     
-    private int currentTosValue = TOS_PRIORITY_NORMAL;                                      // 현재 TOS 값
-    private ChatAppLayer.Priority lastReceivedPriority = ChatAppLayer.Priority.NORMAL;  // 마지막 수신 우선순위
+    private volatile int currentTosValue = TOS_PRIORITY_NORMAL;                             // 기본 TOS 값 (Send(byte[], int)용)
+    
+    // ===== 패킷 단위 로그 (기본 꺼짐: 전송/수신마다 문자열을 만들지 않음) =====
+    private volatile boolean packetLogEnabled = false;
+    
+    // ===== 상대 테이블 (IP ID, 헤더 템플릿, MAC, 재조립은 세션마다) =====
+    static final int MAX_PEERS = 1024;                               // 세션 수 상한
+    private static final long PEER_IDLE_TIMEOUT_NANOS = 300_000_000_000L; // 5분
+    private static final long PEER_SWEEP_INTERVAL_NANOS = 1_000_000_000L; // 가득 찼을 때 정리 주기
+    private final PeerTable peers = new PeerTable(MAX_PEERS);
+    private final IpReassembler.Budget reassemblyBudget =
+        new IpReassembler.Budget(IpReassembler.MAX_PENDING_DATAGRAMS, IpReassembler.MAX_BUFFERED_BYTES);
+    private final AtomicLong lastPeerSweepNanos = new AtomicLong(System.nanoTime() - PEER_SWEEP_INTERVAL_NANOS);
+    private final AtomicInteger peersEvicted = new AtomicInteger();
+    private final AtomicLong peerTableOverflows = new AtomicLong();
+    private final AtomicLong fragmentsSent = new AtomicLong();
+    
+    // ===== ARP 대기 큐 =====
+    private static final int ARP_PENDING_MAX_PACKETS = 256;          // 목적지당 최대 보관 패킷 수
+    private static final int ARP_PENDING_MAX_BYTES = 1024 * 1024;    // 목적지당 최대 보관 바이트
+    private static final long DEFAULT_ARP_RESOLVE_TIMEOUT_MS = 3000; // 주소 해석 제한 시간
+    private static final long ARP_CHECK_INTERVAL_MS = 250;           // 대기 목적지 점검 주기 (재전송 여부는 ARP 계층이 결정)
+    private static final int ARP_FLUSH_CHUNK = 16;                   // 보관 패킷 전송 시 잠금 한 번에 꺼내는 수
+    private final Object sendLock = new Object();                    // 대기 큐와 전송 순서 보호
+    private final Map<Integer, PendingDestination> pendingDestinations = new ConcurrentHashMap<>(); // 변경은 sendLock 안에서만 (캐시 미스 경로)
+    private volatile long arpResolveTimeoutMs = DEFAULT_ARP_RESOLVE_TIMEOUT_MS;
+    private BiConsumer<String, Integer> onArpResolutionFailed;      // 목적지 IP, 폐기된 패킷 수
+    private ScheduledExecutorService arpTimer;                       // sendLock으로 동기화, 보관 패킷 전송도 이 스레드에서
+    private long pendingPacketsQueued = 0;
+    private long pendingPacketsFlushed = 0;
+    private long pendingPacketsDropped = 0;
+    private long arpResolutionTimeouts = 0;
+    private long totalArpWaitNanos = 0;
+    private long maxArpWaitNanos = 0;
+    
+    /**
+     * ARP 응답을 기다리는 목적지 (완성된 IP 패킷을 순서대로 보관)
+     */
+    private static final class PendingDestination {
+        final int ip;
+        final long createdAt = System.currentTimeMillis();
+        final Deque<byte[]> packets = new ArrayDeque<>();
+        final Deque<Long> queuedAtNanos = new ArrayDeque<>();
+        int bytes = 0;
+        long resolvedMac = NetAddress.NO_MAC; // ARP 응답을 받으면 설정, 이후 타이머 스레드가 보관 패킷 전송
+        
+        PendingDestination(int ip) {
+            this.ip = ip;
+        }
+    }
+    
+    /**
+     * ARP 대기 큐 통계
+     */
+    public record ArpWaitStats(long packetsQueued, long packetsFlushed, long packetsDropped,
+                               long resolutionTimeouts, double avgWaitMs, double maxWaitMs,
+                               int destinationsPending) {}
+    
+    /**
+     * 전송 설명자: 패킷마다 목적지/프로토콜/TOS를 지정 (계층의 공유 상태를 바꾸지 않음)
+     * @param destinationIp 목적지 IP ({@link NetAddress}의 int 값)
+     * @param protocol IP 프로토콜 번호 (253=ChatApp, 254=FileApp)
+     * @param tos TOS 바이트 (상위 3비트가 우선순위)
+     */
+    public record SendDescriptor(int destinationIp, int protocol, int tos) {
+        
+        /**
+         * ChatApp 패킷 (우선순위를 TOS로 표시)
+         */
+        public static SendDescriptor chat(int destinationIp, ChatAppLayer.Priority priority) {
+            return new SendDescriptor(destinationIp, PROTOCOL_CHAT_APP, tosFor(priority));
+        }
+        
+        /**
+         * FileApp 패킷
+         */
+        public static SendDescriptor file(int destinationIp) {
+            return new SendDescriptor(destinationIp, PROTOCOL_FILE_APP, TOS_PRIORITY_NORMAL);
+        }
+    }
+    
+    /**
+     * 수신 설명자: 데이터그램마다 출발지/TOS를 상위 계층에 함께 전달 (마지막 수신 패킷 같은 공유 상태 없음)
+     * @param sourceIp 출발지 IP ({@link NetAddress}의 int 값)
+     * @param tos TOS 바이트 (상위 3비트가 우선순위)
+     */
+    public record ReceiveDescriptor(int sourceIp, int tos) {
+        
+        /**
+         * TOS로 표시된 우선순위
+         */
+        public ChatAppLayer.Priority priority() {
+            return priorityFromTos(tos);
+        }
+    }
     
     /**
      * 자신의 IP 주소 설정
@@ -80,17 +210,17 @@ public class IPLayer implements BaseLayer {
      */
     public void setMyIp(byte[] ip) {
         if (ip != null && ip.length >= 4) {
-            System.arraycopy(ip, 0, sourceIpAddress, 0, 4);
+            sourceIpAddress = NetAddress.ipToInt(ip);
         }
     }
     
     /**
-     * 목적지 IP 주소 설정
+     * 기본 목적지 IP 주소 설정 (Send(byte[], int)와 상위 계층이 상대를 정할 때 사용)
      * @param ip 4바이트 IP 주소
      */
     public void setDstIp(byte[] ip) {
         if (ip != null && ip.length >= 4) {
-            System.arraycopy(ip, 0, destinationIpAddress, 0, 4);
+            destinationIpAddress = NetAddress.ipToInt(ip);
         }
     }
     
@@ -100,6 +230,48 @@ public class IPLayer implements BaseLayer {
      */
     public void setArpLayer(ARPLayer arpLayer) {
         this.arpLayer = arpLayer;
+        if (arpLayer != null) {
+            arpLayer.addResolutionListener(this::flushPending);
+        }
+    }
+    
+    /**
+     * 패킷 단위 전송/수신 로그 설정 (디버깅용, 켜면 패킷마다 주소 문자열을 만들어 출력)
+     */
+    public void setPacketLogEnabled(boolean enabled) {
+        this.packetLogEnabled = enabled;
+    }
+    
+    /**
+     * ARP 주소 해석 제한 시간 설정 (지나면 대기 중인 패킷 폐기)
+     * @param timeoutMs 제한 시간 (밀리초, 1 이상)
+     */
+    public void setArpResolveTimeout(long timeoutMs) {
+        if (timeoutMs < 1) {
+            throw new IllegalArgumentException("ARP 제한 시간은 1ms 이상이어야 합니다: " + timeoutMs);
+        }
+        this.arpResolveTimeoutMs = timeoutMs;
+    }
+    
+    /**
+     * ARP 응답이 없어 패킷을 폐기했을 때 호출할 콜백 설정
+     * @param callback (목적지 IP 문자열, 폐기된 패킷 수)
+     */
+    public void setOnArpResolutionFailed(BiConsumer<String, Integer> callback) {
+        this.onArpResolutionFailed = callback;
+    }
+    
+    /**
+     * @return ARP 대기 큐 통계 (대기 시간은 전송된 패킷 기준)
+     */
+    public ArpWaitStats getArpWaitStats() {
+        synchronized (sendLock) {
+            double avgWaitMs = pendingPacketsFlushed > 0
+                ? totalArpWaitNanos / (double) pendingPacketsFlushed / 1_000_000.0 : 0.0;
+            return new ArpWaitStats(pendingPacketsQueued, pendingPacketsFlushed, pendingPacketsDropped,
+                                    arpResolutionTimeouts, avgWaitMs, maxArpWaitNanos / 1_000_000.0,
+                                    pendingDestinations.size());
+        }
     }
     
     /**
@@ -107,7 +279,7 @@ public class IPLayer implements BaseLayer {
      * @return 4바이트 IP 주소
      */
     public byte[] getMyIp() {
-        return Arrays.copyOf(sourceIpAddress, 4);
+        return NetAddress.ipToBytes(sourceIpAddress);
     }
     
     /**
@@ -115,11 +287,19 @@ public class IPLayer implements BaseLayer {
      * @return 4바이트 IP 주소
      */
     public byte[] getDstIp() {
-        return Arrays.copyOf(destinationIpAddress, 4);
+        return NetAddress.ipToBytes(destinationIpAddress);
+    }
+    
+    /**
+     * 기본 목적지 IP 주소 반환 (할당 없음)
+     * @return {@link NetAddress}의 int 값
+     */
+    public int getDstIpAddress() {
+        return destinationIpAddress;
     }
     
     /**
-     * 현재 사용할 프로토콜 설정 (ChatApp 또는 FileApp)
+     * 기본 프로토콜 설정 (Send(byte[], int)에만 적용, 동시 전송은 SendDescriptor 사용)
      * @param protocol PROTOCOL_CHAT_APP(253) 또는 PROTOCOL_FILE_APP(254)
      */
     public void setProtocol(int protocol) {
@@ -127,14 +307,14 @@ public class IPLayer implements BaseLayer {
     }
     
     /**
-     * ChatApp 프로토콜로 설정
+     * 기본 프로토콜을 ChatApp으로 설정
      */
     public void useChatProtocol() {
         this.currentProtocol = PROTOCOL_CHAT_APP;
     }
     
     /**
-     * FileApp 프로토콜로 설정
+     * 기본 프로토콜을 FileApp으로 설정
      */
     public void useFileProtocol() {
         this.currentProtocol = PROTOCOL_FILE_APP;
@@ -143,29 +323,143 @@ public class IPLayer implements BaseLayer {
     // ===== 우선순위 관련 메서드 =====
     
     /**
-     * 우선순위 설정 (ChatAppLayer.Priority 사용)
+     * 기본 우선순위 설정 (Send(byte[], int)에만 적용, 동시 전송은 SendDescriptor 사용)
      */
     public void setPriority(ChatAppLayer.Priority priority) {
-        switch (priority) {
-            case HIGH -> this.currentTosValue = TOS_PRIORITY_HIGH;
-            case LOW -> this.currentTosValue = TOS_PRIORITY_LOW;
-            default -> this.currentTosValue = TOS_PRIORITY_NORMAL;
-        }
+        this.currentTosValue = tosFor(priority);
         System.out.println("[IP] 우선순위 설정: " + priority.label + " (TOS=0x" + 
                           Integer.toHexString(currentTosValue).toUpperCase() + ")");
     }
     
     /**
-     * 마지막 수신 패킷의 우선순위 반환
+     * @return 지금까지 보낸 IP Fragment 수 (Fragmentation이 일어난 경우만 집계)
      */
-    public ChatAppLayer.Priority getCurrentReceivedPriority() {
-        return lastReceivedPriority;
+    public long getFragmentsSent() {
+        return fragmentsSent.get();
+    }
+    
+    /**
+     * @return Fragment 재조립 통계 (모든 상대 세션의 합)
+     */
+    public IpReassembler.Stats getReassemblyStats() {
+        long fragmentsReceived = 0, reassembled = 0, timedOut = 0, evicted = 0, rejected = 0;
+        int pending = 0, bufferedBytes = 0;
+        List<IpReassembler.Stats> sessionStats = new ArrayList<>();
+        peers.forEach(peer -> {
+            IpReassembler.Stats stats = peer.getReassemblyStats();
+            if (stats != null) {
+                sessionStats.add(stats);
+            }
+        });
+        for (IpReassembler.Stats stats : sessionStats) {
+            fragmentsReceived += stats.fragmentsReceived();
+            reassembled += stats.datagramsReassembled();
+            timedOut += stats.datagramsTimedOut();
+            evicted += stats.datagramsEvicted();
+            rejected += stats.fragmentsRejected();
+            pending += stats.pending();
+            bufferedBytes += stats.bufferedBytes();
+        }
+        return new IpReassembler.Stats(fragmentsReceived, reassembled, timedOut, evicted, rejected,
+                                       pending, bufferedBytes);
+    }
+    
+    // ===== 상대 테이블 =====
+    
+    /**
+     * @return 상대별 통계 (IP 문자열 순)
+     */
+    public Map<String, PeerSession.Stats> getPeerStats() {
+        Map<String, PeerSession.Stats> stats = new TreeMap<>();
+        peers.forEach(peer -> stats.put(NetAddress.formatIp(peer.getIp()), peer.getStats()));
+        return stats;
+    }
+    
+    /**
+     * @return 현재 세션이 있는 상대 수
+     */
+    public int getPeerCount() {
+        return peers.size();
+    }
+    
+    /**
+     * @return 상대가 너무 많아 정리된 세션 수
+     */
+    public int getPeersEvicted() {
+        return peersEvicted.get();
+    }
+    
+    /**
+     * @return 상대 테이블이 가득 차 세션 없이 처리한 패킷 수
+     */
+    public long getPeerTableOverflows() {
+        return peerTableOverflows.get();
+    }
+    
+    /**
+     * 상대 세션 조회 (없으면 생성, 가득 찼으면 오래 쉬는 세션을 정리한 뒤 다시 시도)
+     * @return 세션 (상한에 도달해 만들 수 없으면 null)
+     */
+    private PeerSession peer(int ip) {
+        PeerSession session = peers.get(ip);
+        if (session != null) {
+            return session;
+        }
+        session = peers.getOrCreate(ip);
+        if (session == null && evictIdlePeers()) {
+            session = peers.getOrCreate(ip);
+        }
+        return session;
+    }
+    
+    /**
+     * 보낼 상대의 세션 (상대 테이블이 가득 차면 테이블에 넣지 않는 임시 세션 - MAC/ID 상태를 유지하지 않음)
+     */
+    private PeerSession sendSession(int ip) {
+        PeerSession session = peer(ip);
+        if (session == null) {
+            peerTableOverflows.incrementAndGet();
+            session = new PeerSession(ip);
+        }
+        return session;
+    }
+    
+    /**
+     * 쉬는 시간이 제한을 넘은 세션 정리 (재조립 중이거나 ARP 응답을 기다리는 세션은 유지)
+     * 테이블 전체를 훑으므로 최대 PEER_SWEEP_INTERVAL_NANOS에 한 번만 실행합니다.
+     *
+     * @return 정리한 세션이 있으면 true
+     */
+    private boolean evictIdlePeers() {
+        long nowNanos = System.nanoTime();
+        long last = lastPeerSweepNanos.get();
+        if (nowNanos - last < PEER_SWEEP_INTERVAL_NANOS || !lastPeerSweepNanos.compareAndSet(last, nowNanos)) {
+            return false;
+        }
+        long nowMillis = System.currentTimeMillis();
+        int evicted = peers.removeIf(session ->
+            session.idleNanos(nowNanos) >= PEER_IDLE_TIMEOUT_NANOS
+                && !pendingDestinations.containsKey(session.getIp())
+                && session.retireReassembly(nowMillis));
+        peersEvicted.addAndGet(evicted);
+        return evicted > 0;
+    }
+    
+    /**
+     * 우선순위에 해당하는 TOS 바이트
+     */
+    private static int tosFor(ChatAppLayer.Priority priority) {
+        return switch (priority) {
+            case HIGH -> TOS_PRIORITY_HIGH;
+            case LOW -> TOS_PRIORITY_LOW;
+            default -> TOS_PRIORITY_NORMAL;
+        };
     }
     
     /**
      * TOS 바이트에서 우선순위 추출
      */
-    private ChatAppLayer.Priority priorityFromTos(int tos) {
+    private static ChatAppLayer.Priority priorityFromTos(int tos) {
         int precedence = (tos & 0xE0); // 상위 3비트
         return switch (precedence) {
             case TOS_PRIORITY_HIGH -> ChatAppLayer.Priority.HIGH;
@@ -186,6 +480,17 @@ public class IPLayer implements BaseLayer {
         return lowerLayer;
     }
     
+    /**
+     * 하위 계층 MTU에서 IP 헤더(20바이트)를 뺀 크기를 반환합니다.
+     * @return 상위 계층이 한 패킷에 담을 수 있는 최대 크기 (알 수 없으면 0)
+     */
+    @Override
+    public int GetMaxPayloadSize() {
+        int underPayload = lowerLayer != null ? lowerLayer.GetMaxPayloadSize() : 0;
+        int payload = underPayload - IP_HEADER_SIZE;
+        return payload > 0 ? payload : 0;
+    }
+    
     @Override
     public BaseLayer GetUpperLayer(int index) {
         return (index >= 0 && index < upperLayers.size()) ? upperLayers.get(index) : null;
@@ -204,94 +509,324 @@ public class IPLayer implements BaseLayer {
     }
     
     /**
-     * 상위 계층(ChatApp)으로부터 데이터를 받아 IP 패킷으로 캡슐화하여 전송
-     * 
-     * 전송 과정:
-     * 1. 목적지 IP 주소에 대한 MAC 주소를 ARP 캐시에서 조회
-     * 2. ARP 캐시에 없으면 ARP Request 전송 후 실패 반환
-     * 3. IP 헤더 생성 (20바이트)
-     * 4. 페이로드 추가
-     * 5. 하위 계층(Ethernet)으로 전송
+     * 상위 계층으로부터 데이터를 받아 기본 목적지/프로토콜/TOS로 전송
+     * (setDstIp, useChatProtocol/useFileProtocol, setPriority로 설정한 값, 동시 전송은 {@link #send} 사용)
      * 
      * @param input 상위 계층의 페이로드
-     * @param length 페이로드 길이
-     * @return 전송 성공 여부
+     * @param length 페이로드 길이 (최대 65515바이트)
+     * @return 전송 성공 여부 (대기 큐에 보관한 경우도 true, 큐가 가득 차면 false)
      */
     @Override
     public boolean Send(byte[] input, int length) {
+        return send(input, length, destinationIpAddress, currentProtocol, currentTosValue);
+    }
+    
+    /**
+     * 전송 설명자에 지정된 목적지/프로토콜/TOS로 IP 패킷을 캡슐화하여 전송
+     * 
+     * 전송 과정:
+     * 1. IP 헤더 생성 (20바이트) + 페이로드 추가 (MTU를 넘으면 Fragment로 나눔)
+     * 2. 목적지 IP 주소에 대한 MAC 주소를 ARP 캐시에서 조회
+     * 3. ARP 캐시에 없으면 ARP Request 전송 후 대기 큐에 보관 (응답이 오면 전송)
+     * 4. 하위 계층(Ethernet)으로 전송 (목적지 MAC도 호출마다 지정)
+     * 
+     * 주소를 알고 있고 대기 중인 패킷이 없으면 잠금 없이 전송하므로,
+     * 여러 스레드가 서로 다른 상대에게 동시에 보내도 서로 기다리거나 섞이지 않습니다.
+     * 
+     * @param input 상위 계층의 페이로드
+     * @param length 페이로드 길이 (최대 65515바이트)
+     * @param descriptor 목적지/프로토콜/TOS
+     * @return 전송 성공 여부 (대기 큐에 보관한 경우도 true, 큐가 가득 차면 false)
+     */
+    public boolean send(byte[] input, int length, SendDescriptor descriptor) {
+        return send(input, length, descriptor.destinationIp(), descriptor.protocol(), descriptor.tos());
+    }
+    
+    private boolean send(byte[] input, int length, int destinationIp, int protocol, int tos) {
         if (lowerLayer == null || arpLayer == null) {
             System.out.println("[IP] 하위 계층 또는 ARP 계층이 설정되지 않음");
             return false;
         }
-        
-        // 목적지 IP에 대한 MAC 주소 조회
-        String destinationIpStr = formatIp(destinationIpAddress);
-        byte[] destinationMac = arpLayer.lookupArpCache(destinationIpStr);
-        
-        // ARP 캐시에 없으면 ARP Request 전송
-        if (destinationMac == null) {
-            System.out.println("[IP] ARP 캐시에 " + destinationIpStr + " 없음 - ARP Request 전송");
-            arpLayer.sendArpRequest(destinationIpAddress);
+        if (length > IpReassembler.MAX_DATAGRAM_SIZE) {
+            System.err.println("[IP] 데이터그램 최대 크기 초과: " + length + "바이트");
             return false;
         }
         
-        System.out.println("[IP] 목적지 MAC 주소 발견: " + formatMac(destinationMac));
-        
-        // IP 패킷 생성: IP 헤더(20바이트) + 페이로드
-        int totalLength = 20 + length;
-        byte[] ipPacket = new byte[totalLength];
-        ByteBuffer buffer = ByteBuffer.wrap(ipPacket);
-        
-        // ===== IP 헤더 생성 (20바이트) =====
-        
-        // Version (4비트) + IHL (4비트) = 1바이트
-        buffer.put((byte) ((IPV4_VERSION << 4) | IP_HEADER_LENGTH_UNITS));
-        
-        // Type of Service (1바이트) - 우선순위 포함
-        buffer.put((byte) currentTosValue);
-        
-        // Total Length (2바이트) - 전체 패킷 크기
-        buffer.putShort((short) totalLength);
-        
-        // Identification (2바이트) - 패킷 ID
-        buffer.putShort((short) (packetIdentification++ & 0xFFFF));
-        
-        // Flags (3비트) + Fragment Offset (13비트) = 2바이트
-        buffer.putShort((short) 0);
-        
-        // Time to Live (1바이트)
-        buffer.put((byte) DEFAULT_TTL);
-        
-        // Protocol (1바이트) - ChatApp(253) 또는 FileApp(254)
-        buffer.put((byte) currentProtocol);
-        
-        // Header Checksum (2바이트) - 나중에 계산
-        int checksumPosition = buffer.position();
-        buffer.putShort((short) 0);
-        
-        // Source IP Address (4바이트)
-        buffer.put(sourceIpAddress);
+        // MTU 안에 들어가면 패킷 하나 (목록 없이), 넘으면 같은 ID의 Fragment 여러 개 (MTU를 모르면 Fragmentation 안 함)
+        PeerSession peer = sendSession(destinationIp);
+        int maxPayload = GetMaxPayloadSize();
+        byte[] packet = null;
+        List<byte[]> fragments = null;
+        if (maxPayload <= 0 || length <= maxPayload) {
+            packet = buildPacket(peer, peer.nextIdentification(), 0, protocol, tos, input, 0, length);
+        } else {
+            fragments = buildFragments(peer, peer.nextIdentification(), maxPayload, protocol, tos, input, length);
+        }
         
-        // Destination IP Address (4바이트)
-        buffer.put(destinationIpAddress);
+        // 빠른 경로: 주소를 알고 앞서 보관한 패킷이 없으면 바로 전송 (세션의 MAC 캐시, 잠금 없음)
+        long now = System.nanoTime();
+        long destinationMac = peer.cachedMac(now);
+        if (destinationMac == NetAddress.NO_MAC) {
+            destinationMac = arpLayer.lookup(destinationIp);
+            peer.updateMac(destinationMac, now);
+        }
+        if (destinationMac != NetAddress.NO_MAC
+            && (pendingDestinations.isEmpty() || !pendingDestinations.containsKey(destinationIp))) {
+            return packet != null ? transmit(peer, destinationMac, packet, false) : transmit(peer, destinationMac, fragments);
+        }
         
-        // ===== IP 헤더 체크섬 계산 =====
-        int checksum = calculateIpChecksum(ipPacket, 0, 20);
-        buffer.putShort(checksumPosition, (short) checksum);
+        synchronized (sendLock) {
+            // 잠금 안에서 다시 확인: 그사이 보관 패킷이 전송되었으면 바로 전송
+            destinationMac = arpLayer.lookup(destinationIp);
+            peer.updateMac(destinationMac, System.nanoTime());
+            
+            // ARP 캐시에 없거나 앞서 보관한 패킷이 남아 있으면 (순서 유지) 대기 큐에 보관
+            if (destinationMac == NetAddress.NO_MAC || pendingDestinations.containsKey(destinationIp)) {
+                return enqueuePending(destinationIp, packet != null ? List.of(packet) : fragments);
+            }
+            
+            return packet != null ? transmit(peer, destinationMac, packet, false) : transmit(peer, destinationMac, fragments);
+        }
+    }
+    
+    /**
+     * MTU를 넘는 페이로드를 같은 ID의 Fragment 여러 개로 만듦
+     */
+    private List<byte[]> buildFragments(PeerSession peer, int identification, int maxPayload, int protocol, int tos,
+                                        byte[] input, int length) {
+        // Fragmentation: 마지막을 제외한 Fragment는 8바이트 배수 크기
+        int fragmentSize = maxPayload & ~7;
+        List<byte[]> fragments = new ArrayList<>();
+        for (int offset = 0; offset < length; offset += fragmentSize) {
+            int fragmentLength = Math.min(fragmentSize, length - offset);
+            int flagsOffset = (offset / 8) | (offset + fragmentLength < length ? FLAG_MORE_FRAGMENTS : 0);
+            fragments.add(buildPacket(peer, identification, flagsOffset, protocol, tos, input, offset, fragmentLength));
+        }
+        System.out.println("[IP] 패킷 Fragmentation: " + length + "바이트 → " + fragments.size() + "개 (ID: " + identification + ")");
+        return fragments;
+    }
+    
+    /**
+     * IP 패킷(들)을 목적지 MAC으로 하위 계층에 전송 (목적지 MAC/EtherType은 호출마다 지정, 공유 상태 없음)
+     */
+    private boolean transmit(PeerSession peer, long destinationMac, List<byte[]> packets) {
+        boolean fragmented = packets.size() > 1;
+        for (byte[] ipPacket : packets) {
+            if (!transmit(peer, destinationMac, ipPacket, fragmented)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * IP 패킷 하나를 하위 계층에 전송
+     * @param fragment Fragment이면 true (Fragment 전송 수 집계)
+     */
+    private boolean transmit(PeerSession peer, long destinationMac, byte[] ipPacket, boolean fragment) {
+        if (packetLogEnabled) {
+            System.out.println("[IP] 패킷 전송: " + NetAddress.formatIp(sourceIpAddress) + " -> " + NetAddress.formatIp(NetAddress.ipToInt(ipPacket, 16)) + 
+                             " (길이: " + ipPacket.length + "바이트)");
+        }
         
-        // ===== 페이로드 복사 =====
-        buffer.put(input, 0, length);
+        // 하위 계층(Ethernet)으로 전송
+        boolean sent = lowerLayer instanceof EthernetLayer ethernetLayer
+            ? ethernetLayer.send(ipPacket, ipPacket.length, destinationMac, ETHER_TYPE_IPV4)
+            : lowerLayer.Send(ipPacket, ipPacket.length);
+        if (!sent) {
+            System.err.println("[IP] 패킷 전송 실패");
+            return false;
+        }
+        peer.recordSent(ipPacket.length, System.nanoTime());
+        if (fragment) {
+            fragmentsSent.incrementAndGet();
+        }
+        return true;
+    }
+    
+    // ===== ARP 대기 큐 =====
+    
+    /**
+     * ARP 응답을 기다리는 동안 패킷 보관 (sendLock 보유 상태에서 호출)
+     * 목적지의 첫 패킷이면 ARP Request를 보내고 재전송/제한 시간 타이머를 시작합니다.
+     */
+    private boolean enqueuePending(int destinationIp, List<byte[]> packets) {
+        String destinationIpStr = NetAddress.formatIp(destinationIp);
+        PendingDestination pending = pendingDestinations.get(destinationIp);
+        if (pending == null) {
+            if (!arpLayer.requestResolution(destinationIp)) {
+                pendingPacketsDropped += packets.size();
+                System.err.println("[IP] 최근 ARP 응답이 없던 목적지 - 패킷 폐기 (" + destinationIpStr + ")");
+                return false;
+            }
+            pending = new PendingDestination(destinationIp);
+            pendingDestinations.put(destinationIp, pending);
+            System.out.println("[IP] ARP 캐시에 " + destinationIpStr + " 없음 - ARP 해석 요청");
+            schedulePendingCheck(pending, Math.min(ARP_CHECK_INTERVAL_MS, arpResolveTimeoutMs));
+        }
         
-        System.out.println("[IP] 패킷 전송: " + formatIp(sourceIpAddress) + " -> " + formatIp(destinationIpAddress) + 
-                         " (길이: " + totalLength + "바이트)");
+        int bytes = packets.stream().mapToInt(packet -> packet.length).sum();
+        if (pending.packets.size() + packets.size() > ARP_PENDING_MAX_PACKETS
+            || pending.bytes + bytes > ARP_PENDING_MAX_BYTES) {
+            pendingPacketsDropped += packets.size();
+            System.err.println("[IP] ARP 대기 큐 가득 참 - 패킷 폐기 (" + destinationIpStr + ")");
+            return false;
+        }
         
-        // EthernetLayer의 목적지 MAC을 설정
-        if (lowerLayer instanceof EthernetLayer ethernetLayer) {
-            ethernetLayer.setDstMac(destinationMac);
+        long now = System.nanoTime();
+        for (byte[] packet : packets) {
+            pending.packets.add(packet);
+            pending.queuedAtNanos.add(now);
+        }
+        pending.bytes += bytes;
+        pendingPacketsQueued += packets.size();
+        System.out.println("[IP] ARP 응답 대기 - 패킷 보관 (" + destinationIpStr + ", " + pending.packets.size() + "개 대기)");
+        return true;
+    }
+    
+    /**
+     * ARP 캐시에 주소가 추가되면 해당 목적지의 보관 패킷 전송을 타이머 스레드에 맡김
+     * (ARPLayer 리스너, 수신 스레드에서 호출됨 - 전송은 Egress 대기로 오래 걸릴 수 있으므로 여기서 하지 않음)
+     */
+    private void flushPending(int ip, long mac) {
+        // 세션의 MAC 캐시 갱신 (Gratuitous ARP 등으로 바뀐 주소도 바로 반영)
+        PeerSession peer = peers.get(ip);
+        if (peer != null) {
+            peer.updateMac(mac, System.nanoTime());
+        }
+        if (pendingDestinations.isEmpty()) {
+            return;
+        }
+        synchronized (sendLock) {
+            PendingDestination pending = pendingDestinations.get(ip);
+            if (pending == null || lowerLayer == null) {
+                return;
+            }
+            boolean scheduled = pending.resolvedMac != NetAddress.NO_MAC;
+            pending.resolvedMac = mac;
+            if (!scheduled) {
+                System.out.println("[IP] ARP 응답 수신 - 보관 패킷 " + pending.packets.size() + "개 전송 예약 (" + NetAddress.formatIp(ip) + ")");
+                arpTimer.execute(() -> drainPending(pending));
+            }
+        }
+    }
+    
+    /**
+     * 보관 패킷을 순서대로 전송 (타이머 스레드)
+     * 잠금 안에서 조금씩 꺼내고 전송은 잠금 밖에서 하며, 큐가 빌 때 목적지를 제거합니다.
+     * 그 전까지 이 목적지로 보내는 새 패킷은 큐 뒤에 보관되므로 순서가 유지됩니다.
+     * 전송에 실패하면 남은 패킷은 폐기합니다 (성공한 패킷만 전송 수로 집계).
+     */
+    private void drainPending(PendingDestination pending) {
+        PeerSession peer = sendSession(pending.ip);
+        List<byte[]> chunk = new ArrayList<>(ARP_FLUSH_CHUNK);
+        while (true) {
+            long mac;
+            synchronized (sendLock) {
+                if (pending.packets.isEmpty()) {
+                    pendingDestinations.remove(pending.ip, pending);
+                    return;
+                }
+                mac = pending.resolvedMac;
+                long now = System.nanoTime();
+                while (chunk.size() < ARP_FLUSH_CHUNK && !pending.packets.isEmpty()) {
+                    byte[] packet = pending.packets.poll();
+                    long waited = now - pending.queuedAtNanos.poll();
+                    pending.bytes -= packet.length;
+                    totalArpWaitNanos += waited;
+                    maxArpWaitNanos = Math.max(maxArpWaitNanos, waited);
+                    chunk.add(packet);
+                }
+            }
+            
+            int sent = 0;
+            while (sent < chunk.size() && transmit(peer, mac, chunk.get(sent), isFragment(chunk.get(sent)))) {
+                sent++;
+            }
+            
+            synchronized (sendLock) {
+                pendingPacketsFlushed += sent;
+                if (sent < chunk.size()) {
+                    int dropped = chunk.size() - sent + pending.packets.size();
+                    pendingPacketsDropped += dropped;
+                    pendingDestinations.remove(pending.ip, pending);
+                    System.err.println("[IP] 보관 패킷 전송 실패 - 남은 " + dropped + "개 폐기 (" + NetAddress.formatIp(pending.ip) + ")");
+                    return;
+                }
+            }
+            chunk.clear();
+        }
+    }
+    
+    /**
+     * IP 헤더의 MF 플래그나 Fragment Offset이 있으면 Fragment
+     */
+    private static boolean isFragment(byte[] ipPacket) {
+        int flagsOffset = ((ipPacket[6] & 0xFF) << 8) | (ipPacket[7] & 0xFF);
+        return (flagsOffset & (FLAG_MORE_FRAGMENTS | FRAGMENT_OFFSET_MASK)) != 0;
+    }
+    
+    /**
+     * 대기 중인 목적지 점검: 제한 시간이 지났으면 폐기(ARP 부정 캐시 등록), 아니면 ARP 해석 재요청
+     */
+    private void checkPending(PendingDestination pending) {
+        int dropped;
+        synchronized (sendLock) {
+            if (pendingDestinations.get(pending.ip) != pending || pending.resolvedMac != NetAddress.NO_MAC) {
+                return; // 이미 전송 완료 또는 타이머 스레드에서 전송 중
+            }
+            long remaining = pending.createdAt + arpResolveTimeoutMs - System.currentTimeMillis();
+            if (remaining > 0) {
+                arpLayer.requestResolution(pending.ip); // 재전송 간격 안이면 ARP 계층에서 병합됨
+                schedulePendingCheck(pending, Math.min(ARP_CHECK_INTERVAL_MS, remaining));
+                return;
+            }
+            pendingDestinations.remove(pending.ip);
+            arpLayer.markUnresolved(pending.ip);
+            dropped = pending.packets.size();
+            pendingPacketsDropped += dropped;
+            arpResolutionTimeouts++;
         }
         
-        // 하위 계층(Ethernet)으로 전송
-        return lowerLayer.Send(ipPacket, ipPacket.length);
+        String ip = NetAddress.formatIp(pending.ip);
+        System.err.println("[IP] ARP 응답 없음 - 보관 패킷 " + dropped + "개 폐기 (" + ip + ")");
+        BiConsumer<String, Integer> callback = onArpResolutionFailed;
+        if (callback != null) {
+            callback.accept(ip, dropped);
+        }
+    }
+    
+    private void schedulePendingCheck(PendingDestination pending, long delayMs) {
+        if (arpTimer == null) {
+            arpTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "IpArpPendingTimer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        arpTimer.schedule(() -> checkPending(pending), delayMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * IP 헤더(20바이트) + 페이로드로 패킷 생성
+     * 헤더는 상대 세션의 템플릿을 복사하고 패킷별 필드만 채웁니다 (체크섬도 미리 계산한 합에 더해서 완성).
+     * 
+     * @param peer 목적지 세션 (헤더 템플릿)
+     * @param identification IP ID (같은 데이터그램의 Fragment는 모두 같은 값)
+     * @param flagsOffset Flags(3비트) + Fragment Offset(13비트, 8바이트 단위)
+     * @param protocol IP 프로토콜 번호
+     * @param tos TOS 바이트
+     * @param input 페이로드 원본
+     * @param offset 원본에서 복사할 시작 위치
+     * @param length 복사할 길이
+     */
+    private byte[] buildPacket(PeerSession peer, int identification, int flagsOffset, int protocol, int tos,
+                               byte[] input, int offset, int length) {
+        int totalLength = IP_HEADER_SIZE + length;
+        byte[] ipPacket = new byte[totalLength];
+        peer.writeHeader(ipPacket, sourceIpAddress, tos, totalLength, identification, flagsOffset, protocol);
+        System.arraycopy(input, offset, ipPacket, IP_HEADER_SIZE, length);
+        return ipPacket;
     }
     
     /**
@@ -301,7 +836,7 @@ public class IPLayer implements BaseLayer {
      * 1. IP 헤더 최소 크기 체크 (20바이트)
      * 2. IP 헤더 파싱 (버전, 프로토콜, 출발지/목적지 IP 등)
      * 3. 목적지 IP 필터링 (자신의 IP인 경우만 수락)
-     * 4. IP 헤더 제거 후 페이로드 추출
+     * 4. IP 헤더 제거 후 페이로드 추출 (Fragment면 재조립이 끝날 때까지 보관)
      * 5. 상위 계층(ChatApp)으로 전달
      * 
      * @param input 수신한 IP 패킷
@@ -333,18 +868,17 @@ public class IPLayer implements BaseLayer {
             return false;
         }
         
-        // TOS - 우선순위 추출
+        // TOS - 우선순위 (수신 설명자로 상위 계층에 전달)
         int tos = buffer.get() & 0xFF;
-        lastReceivedPriority = priorityFromTos(tos);
         
         // Total Length
         int totalLength = buffer.getShort() & 0xFFFF;
         
         // Identification
-        buffer.getShort();
+        int identification = buffer.getShort() & 0xFFFF;
         
         // Flags + Fragment Offset
-        buffer.getShort();
+        int flagsOffset = buffer.getShort() & 0xFFFF;
         
         // TTL
         buffer.get();
@@ -356,18 +890,18 @@ public class IPLayer implements BaseLayer {
         buffer.getShort();
         
         // Source IP
-        byte[] senderIp = new byte[4];
-        buffer.get(senderIp);
+        int senderIp = buffer.getInt();
         
         // Destination IP
-        byte[] receivedDestIp = new byte[4];
-        buffer.get(receivedDestIp);
+        int receivedDestIp = buffer.getInt();
         
-        System.out.println("[IP] 패킷 수신: " + formatIp(senderIp) + " -> " + formatIp(receivedDestIp) +
-                         " (프로토콜: " + protocol + ")");
+        if (packetLogEnabled) {
+            System.out.println("[IP] 패킷 수신: " + NetAddress.formatIp(senderIp) + " -> " + NetAddress.formatIp(receivedDestIp) +
+                             " (프로토콜: " + protocol + ")");
+        }
         
         // 목적지 IP 필터링 - 자신의 IP인 경우만 수락
-        if (!Arrays.equals(receivedDestIp, sourceIpAddress)) {
+        if (receivedDestIp != sourceIpAddress) {
             System.out.println("[IP] 목적지 IP 불일치 - 패킷 드롭");
             return false;
         }
@@ -378,21 +912,48 @@ public class IPLayer implements BaseLayer {
             return false;
         }
         
-        byte[] payload = Arrays.copyOfRange(input, headerLength, headerLength + payloadLength);
+        byte[] payload;
+        PeerSession peer;
+        boolean moreFragments = (flagsOffset & FLAG_MORE_FRAGMENTS) != 0;
+        int fragmentOffset = (flagsOffset & FRAGMENT_OFFSET_MASK) * 8;
+        if (moreFragments || fragmentOffset > 0) {
+            // Fragment: 재조립이 끝나야 상위 계층으로 전달 (출발지 세션의 재조립기, 세션이 없으면 생성)
+            peer = peer(senderIp);
+            if (peer == null) {
+                peerTableOverflows.incrementAndGet();
+                System.out.println("[IP] 상대 테이블 가득 참 - Fragment 드롭 (" + NetAddress.formatIp(senderIp) + ")");
+                return false;
+            }
+            payload = peer.reassemble(reassemblyBudget, receivedDestIp, protocol, identification, fragmentOffset,
+                                      moreFragments, input, headerLength, payloadLength,
+                                      System.currentTimeMillis());
+            if (payload == null) {
+                return true;
+            }
+            System.out.println("[IP] Fragment 재조립 완료 (ID: " + identification + ", " + payload.length + "바이트)");
+        } else {
+            // 조각나지 않은 패킷은 세션 없이 전달 (모르는 상대가 세션을 만들지 못함)
+            peer = peers.get(senderIp);
+            payload = Arrays.copyOfRange(input, headerLength, headerLength + payloadLength);
+        }
+        if (peer != null) {
+            peer.recordReceived(payload.length, System.nanoTime());
+        }
         
-        // ===== IP 역다중화: Protocol 필드에 따라 상위 계층 선택 =====
+        // ===== IP 역다중화: Protocol 필드에 따라 상위 계층 선택 (출발지/TOS는 수신 설명자로 함께 전달) =====
+        ReceiveDescriptor descriptor = new ReceiveDescriptor(senderIp, tos);
         boolean delivered = false;
         for (BaseLayer upperLayer : upperLayers) {
             // ChatApp 프로토콜 (253)
-            if (protocol == PROTOCOL_CHAT_APP && upperLayer instanceof ChatAppLayer) {
+            if (protocol == PROTOCOL_CHAT_APP && upperLayer instanceof ChatAppLayer chatApp) {
                 System.out.println("[IP] ChatApp으로 전달 (" + payload.length + "바이트)");
-                upperLayer.Receive(payload);
+                chatApp.receive(payload, descriptor);
                 delivered = true;
             }
             // FileApp 프로토콜 (254)
-            else if (protocol == PROTOCOL_FILE_APP && upperLayer instanceof FileAppLayer) {
+            else if (protocol == PROTOCOL_FILE_APP && upperLayer instanceof FileAppLayer fileApp) {
                 System.out.println("[IP] FileApp으로 전달 (" + payload.length + "바이트)");
-                upperLayer.Receive(payload);
+                fileApp.receive(payload, descriptor);
                 delivered = true;
             }
         }
@@ -403,60 +964,4 @@ public class IPLayer implements BaseLayer {
         
         return delivered;
     }
-    
-    /**
-     * IP 주소를 문자열로 포맷팅 (예: "192.168.0.1")
-     */
-    private String formatIp(byte[] ip) {
-        if (ip == null || ip.length < 4) {
-            return "0.0.0.0";
-        }
-        return String.format("%d.%d.%d.%d",
-            ip[0] & 0xFF, ip[1] & 0xFF, ip[2] & 0xFF, ip[3] & 0xFF);
-    }
-    
-    /**
-     * IP 헤더 체크섬 계산 (RFC 791)
-     * 
-     * 알고리즘:
-     * 1. 체크섬 필드를 0으로 설정
-     * 2. 헤더를 16비트 단위로 나누어 모두 더함
-     * 3. 오버플로우된 값을 하위 16비트에 더함 (carry wrap)
-     * 4. 1의 보수(complement)를 취함
-     * 
-     * @param data IP 헤더를 포함한 바이트 배열
-     * @param offset 헤더 시작 위치
-     * @param length 헤더 길이 (바이트 단위, 보통 20)
-     * @return 계산된 체크섬 (16비트)
-     */
-    private int calculateIpChecksum(byte[] data, int offset, int length) {
-        long sum = 0;
-        
-        // 16비트 단위로 더하기
-        for (int i = offset; i < offset + length; i += 2) {
-            int high = (data[i] & 0xFF) << 8;
-            int low = (i + 1 < data.length) ? (data[i + 1] & 0xFF) : 0;
-            sum += (high | low);
-        }
-        
-        // Carry를 하위 16비트에 더함 (32비트 → 16비트로 축소)
-        while ((sum >> 16) != 0) {
-            sum = (sum & 0xFFFF) + (sum >> 16);
-        }
-        
-        // 1의 보수 반환
-        return (int) ((~sum) & 0xFFFF);
-    }
-    
-    /**
-     * MAC 주소를 문자열로 포맷팅 (예: "AA:BB:CC:DD:EE:FF")
-     */
-    private String formatMac(byte[] mac) {
-        if (mac == null || mac.length < 6) {
-            return "00:00:00:00:00:00";
-        }
-        return String.format("%02X:%02X:%02X:%02X:%02X:%02X",
-            mac[0] & 0xFF, mac[1] & 0xFF, mac[2] & 0xFF,
-            mac[3] & 0xFF, mac[4] & 0xFF, mac[5] & 0xFF);
-    }
 }
@@ -0,0 +1,360 @@
+package com.demo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * IpReassembler - IPv4 Fragment 재조립 (RFC 791)
+ *
+ * 역할:
+ * - (출발지, 목적지, 프로토콜, Identification)별로 Fragment를 모아 원래 데이터그램 복원
+ * - 순서가 뒤바뀌거나 중복/겹쳐 도착한 Fragment 처리 (겹치는 구간은 나중 값으로 덮어씀)
+ * - 일정 시간 안에 완성되지 않은 데이터그램 폐기
+ * - 메모리 상한: 동시 재조립 수와 버퍼 총량을 넘으면 가장 오래된 데이터그램부터 폐기
+ * - 전역 상한({@link Budget}): 여러 재조립기(상대별)가 함께 쓰는 상한, 다 쓰면 자기 데이터그램만 양보하고
+ *   그래도 부족하면 Fragment 폐기 (한 상대가 다른 상대의 재조립을 밀어내지 못함)
+ *
+ * 수신 범위 관리:
+ * - Fragment Offset은 8바이트 단위이므로 8바이트 블록마다 1비트(BitSet)로 기록
+ * - 마지막 Fragment(MF=0)가 도착하면 전체 길이가 정해지고, 모든 블록이 채워지면 완성
+ *
+ * 스레드 안전: 모든 메서드는 synchronized
+ */
+public final class IpReassembler {
+
+    /** IPv4 데이터그램 페이로드 최대 크기 (Total Length 65535 - 헤더 20) */
+    public static final int MAX_DATAGRAM_SIZE = 0xFFFF - 20;
+
+    /** 재조립 대기 시간 (RFC 791 권장 15초) */
+    public static final long REASSEMBLY_TIMEOUT_MS = 15_000;
+
+    /** 동시에 재조립 중인 데이터그램 최대 수 */
+    public static final int MAX_PENDING_DATAGRAMS = 64;
+
+    /** 재조립 버퍼 총량 상한 */
+    public static final int MAX_BUFFERED_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * 여러 재조립기가 함께 쓰는 전역 상한 (버퍼 총량, 재조립 중인 데이터그램 수)
+     * 재조립기 잠금 안에서만 호출 (재조립기 → Budget 순서로만 잠금)
+     */
+    public static final class Budget {
+        private final int maxDatagrams;
+        private final int maxBytes;
+        private int datagrams = 0;
+        private int bytes = 0;
+        private long rejected = 0;
+
+        /**
+         * @param maxDatagrams 전체 재조립 중인 데이터그램 최대 수
+         * @param maxBytes 전체 재조립 버퍼 상한
+         */
+        public Budget(int maxDatagrams, int maxBytes) {
+            this.maxDatagrams = maxDatagrams;
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized boolean reserve(int datagramCount, int byteCount) {
+            if (datagrams + datagramCount > maxDatagrams || bytes + byteCount > maxBytes) {
+                return false;
+            }
+            datagrams += datagramCount;
+            bytes += byteCount;
+            return true;
+        }
+
+        synchronized void release(int datagramCount, int byteCount) {
+            datagrams -= datagramCount;
+            bytes -= byteCount;
+        }
+
+        synchronized void recordRejected() {
+            rejected++;
+        }
+
+        /** @return 전체 재조립 버퍼 크기 */
+        public synchronized int bufferedBytes() {
+            return bytes;
+        }
+
+        /** @return 전체 재조립 중인 데이터그램 수 */
+        public synchronized int pendingDatagrams() {
+            return datagrams;
+        }
+
+        /** @return 전역 상한 때문에 폐기한 Fragment 수 */
+        public synchronized long rejected() {
+            return rejected;
+        }
+    }
+
+    private static final int BLOCK_SIZE = 8;
+    private static final int INITIAL_BUFFER_SIZE = 2048;
+
+    /**
+     * 재조립 키 (IPv4 주소는 int로 표현)
+     */
+    private record Key(int source, int destination, int protocol, int identification) {}
+
+    /**
+     * 재조립 중인 데이터그램
+     */
+    private static final class Pending {
+        final long createdAt;
+        byte[] buffer = new byte[0];
+        final BitSet blocks = new BitSet();
+        int totalLength = -1; // 마지막 Fragment를 받기 전에는 알 수 없음
+
+        Pending(long createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        boolean isComplete() {
+            if (totalLength < 0) {
+                return false;
+            }
+            int totalBlocks = (totalLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return blocks.nextClearBit(0) >= totalBlocks;
+        }
+    }
+
+    /**
+     * 재조립 통계
+     */
+    public record Stats(long fragmentsReceived, long datagramsReassembled, long datagramsTimedOut,
+                        long datagramsEvicted, long fragmentsRejected, int pending, int bufferedBytes) {}
+
+    // 삽입 순서 = 생성 순서 (가장 오래된 데이터그램부터 폐기)
+    private final Map<Key, Pending> pending = new LinkedHashMap<>();
+    private final long timeoutMs;
+    private final int maxPendingDatagrams;
+    private final int maxBufferedBytes;
+    private final Budget budget; // null이면 전역 상한 없음
+    private int bufferedBytes = 0;
+    private boolean closed = false;
+
+    private long fragmentsReceived = 0;
+    private long datagramsReassembled = 0;
+    private long datagramsTimedOut = 0;
+    private long datagramsEvicted = 0;
+    private long fragmentsRejected = 0;
+
+    public IpReassembler() {
+        this(REASSEMBLY_TIMEOUT_MS);
+    }
+
+    /**
+     * @param timeoutMs 재조립 대기 시간 (밀리초)
+     */
+    public IpReassembler(long timeoutMs) {
+        this(timeoutMs, MAX_PENDING_DATAGRAMS, MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * @param timeoutMs 재조립 대기 시간 (밀리초)
+     * @param maxPendingDatagrams 동시에 재조립할 데이터그램 최대 수
+     * @param maxBufferedBytes 재조립 버퍼 총량 상한
+     */
+    public IpReassembler(long timeoutMs, int maxPendingDatagrams, int maxBufferedBytes) {
+        this(timeoutMs, maxPendingDatagrams, maxBufferedBytes, null);
+    }
+
+    /**
+     * @param timeoutMs 재조립 대기 시간 (밀리초)
+     * @param maxPendingDatagrams 이 재조립기가 동시에 재조립할 데이터그램 최대 수
+     * @param maxBufferedBytes 이 재조립기의 버퍼 총량 상한
+     * @param budget 다른 재조립기와 함께 쓰는 전역 상한 (null이면 없음)
+     */
+    public IpReassembler(long timeoutMs, int maxPendingDatagrams, int maxBufferedBytes, Budget budget) {
+        this.timeoutMs = timeoutMs;
+        this.maxPendingDatagrams = maxPendingDatagrams;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.budget = budget;
+    }
+
+    /**
+     * Fragment를 추가하고, 데이터그램이 완성되면 전체 페이로드를 반환합니다.
+     *
+     * @param source 출발지 IP (int, {@link NetAddress})
+     * @param destination 목적지 IP (int)
+     * @param protocol 프로토콜 번호
+     * @param identification IP Identification
+     * @param offset Fragment 시작 위치 (바이트, 8의 배수)
+     * @param moreFragments MF 플래그
+     * @param data 원본 배열
+     * @param dataOffset data 안의 Fragment 데이터 시작 위치
+     * @param length Fragment 데이터 길이
+     * @param nowMillis 현재 시각 (밀리초)
+     * @return 완성된 페이로드 (아직 미완성이거나 폐기되면 null)
+     */
+    public synchronized byte[] add(int source, int destination, int protocol, int identification,
+                                   int offset, boolean moreFragments, byte[] data, int dataOffset, int length,
+                                   long nowMillis) {
+        if (closed) {
+            fragmentsRejected++;
+            return null;
+        }
+        expire(nowMillis);
+        fragmentsReceived++;
+
+        // 범위 검증: 마지막이 아닌 Fragment는 8바이트 배수 길이여야 함
+        int end = offset + length;
+        if (length <= 0 || end > MAX_DATAGRAM_SIZE || (moreFragments && length % BLOCK_SIZE != 0)) {
+            fragmentsRejected++;
+            return null;
+        }
+
+        Key key = new Key(source, destination, protocol, identification);
+        Pending datagram = pending.get(key);
+        if (datagram == null) {
+            if (!reserve(key, 1, 0)) {
+                return null;
+            }
+            datagram = new Pending(nowMillis);
+            pending.put(key, datagram);
+        }
+
+        // 전체 길이 결정 (마지막 Fragment) 및 모순 검사
+        if (!moreFragments) {
+            if (datagram.totalLength >= 0 && datagram.totalLength != end) {
+                fragmentsRejected++;
+                discard(key);
+                return null;
+            }
+            datagram.totalLength = end;
+        }
+        if (datagram.totalLength >= 0 && end > datagram.totalLength) {
+            fragmentsRejected++;
+            discard(key);
+            return null;
+        }
+
+        // 버퍼 확장 (메모리 상한을 넘으면 오래된 데이터그램부터 폐기)
+        if (end > datagram.buffer.length) {
+            int newSize = Math.min(MAX_DATAGRAM_SIZE, Math.max(end, Math.max(INITIAL_BUFFER_SIZE, datagram.buffer.length * 2)));
+            if (datagram.totalLength >= 0) {
+                newSize = datagram.totalLength;
+            }
+            if (!reserve(key, 0, newSize - datagram.buffer.length)) {
+                discard(key);
+                return null;
+            }
+            bufferedBytes += newSize - datagram.buffer.length;
+            datagram.buffer = Arrays.copyOf(datagram.buffer, newSize);
+            evictIfNeeded();
+            if (!pending.containsKey(key)) {
+                return null;
+            }
+        }
+
+        System.arraycopy(data, dataOffset, datagram.buffer, offset, length);
+        datagram.blocks.set(offset / BLOCK_SIZE, (end + BLOCK_SIZE - 1) / BLOCK_SIZE);
+
+        if (!datagram.isComplete()) {
+            return null;
+        }
+        discard(key);
+        datagramsReassembled++;
+        return datagram.buffer.length == datagram.totalLength
+            ? datagram.buffer
+            : Arrays.copyOf(datagram.buffer, datagram.totalLength);
+    }
+
+    /**
+     * 대기 시간이 지난 데이터그램 폐기
+     * @param nowMillis 현재 시각 (밀리초)
+     */
+    public synchronized void expire(long nowMillis) {
+        Iterator<Map.Entry<Key, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Pending> entry = iterator.next();
+            if (nowMillis - entry.getValue().createdAt < timeoutMs) {
+                break; // 생성 순서이므로 이후 항목은 모두 유효
+            }
+            release(entry.getValue());
+            iterator.remove();
+            datagramsTimedOut++;
+        }
+    }
+
+    /**
+     * 재조립 중인 데이터그램이 없으면 닫기 (이후 Fragment는 폐기 - 버린 세션이 전역 상한을 붙잡지 않음)
+     * @return 닫았으면 true, 재조립 중인 데이터그램이 있으면 false
+     */
+    public synchronized boolean close(long nowMillis) {
+        expire(nowMillis);
+        if (!pending.isEmpty()) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    /**
+     * @return 재조립 통계
+     */
+    public synchronized Stats getStats() {
+        return new Stats(fragmentsReceived, datagramsReassembled, datagramsTimedOut,
+                         datagramsEvicted, fragmentsRejected, pending.size(), bufferedBytes);
+    }
+
+    /**
+     * 개수/메모리 상한을 넘으면 가장 오래된 데이터그램부터 폐기 (방금 확장한 데이터그램도 대상이 될 수 있음)
+     */
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Key, Pending>> iterator = pending.entrySet().iterator();
+        while ((pending.size() > maxPendingDatagrams || bufferedBytes > maxBufferedBytes) && iterator.hasNext()) {
+            Map.Entry<Key, Pending> entry = iterator.next();
+            release(entry.getValue());
+            iterator.remove();
+            datagramsEvicted++;
+        }
+    }
+
+    /**
+     * 전역 상한에서 예약, 모자라면 이 재조립기의 다른 데이터그램을 오래된 것부터 폐기하여 확보
+     * @return 예약했으면 true (전역 상한이 없으면 항상 true)
+     */
+    private boolean reserve(Key key, int datagramCount, int byteCount) {
+        if (budget == null) {
+            return true;
+        }
+        Iterator<Map.Entry<Key, Pending>> iterator = pending.entrySet().iterator();
+        while (!budget.reserve(datagramCount, byteCount)) {
+            Map.Entry<Key, Pending> oldest = null;
+            while (iterator.hasNext()) {
+                Map.Entry<Key, Pending> entry = iterator.next();
+                if (!entry.getKey().equals(key)) {
+                    oldest = entry;
+                    break;
+                }
+            }
+            if (oldest == null) {
+                budget.recordRejected();
+                fragmentsRejected++;
+                return false;
+            }
+            release(oldest.getValue());
+            iterator.remove();
+            datagramsEvicted++;
+        }
+        return true;
+    }
+
+    private void discard(Key key) {
+        Pending removed = pending.remove(key);
+        if (removed != null) {
+            release(removed);
+        }
+    }
+
+    private void release(Pending datagram) {
+        bufferedBytes -= datagram.buffer.length;
+        if (budget != null) {
+            budget.release(1, datagram.buffer.length);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.demo;
+
+/**
+ * NetAddress - IPv4 / MAC 주소 변환 유틸리티
+ *
+ * 계층 내부에서는 주소를 기본형으로 다룹니다.
+ * - IPv4 주소: int (빅 엔디안, 192.168.0.1 → 0xC0A80001)
+ * - MAC 주소: long (하위 48비트, AA:BB:CC:DD:EE:FF → 0xAABBCCDDEEFFL)
+ *
+ * 바이트 배열/문자열 변환은 UI 입력과 로그 출력에서만 사용합니다.
+ */
+public final class NetAddress {
+
+    /** 주소 없음 (MAC은 48비트이므로 -1과 겹치지 않음) */
+    public static final long NO_MAC = -1L;
+
+    /** 브로드캐스트 MAC (FF:FF:FF:FF:FF:FF) */
+    public static final long BROADCAST_MAC = 0xFFFF_FFFF_FFFFL;
+
+    private NetAddress() {}
+
+    /**
+     * 4바이트 배열 → int
+     */
+    public static int ipToInt(byte[] ip) {
+        return ipToInt(ip, 0);
+    }
+
+    /**
+     * 배열의 offset 위치 4바이트 → int
+     */
+    public static int ipToInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+             | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * int → 4바이트 배열
+     */
+    public static byte[] ipToBytes(int ip) {
+        return new byte[] {(byte) (ip >>> 24), (byte) (ip >>> 16), (byte) (ip >>> 8), (byte) ip};
+    }
+
+    /**
+     * 6바이트 배열 → long
+     */
+    public static long macToLong(byte[] mac) {
+        return macToLong(mac, 0);
+    }
+
+    /**
+     * 배열의 offset 위치 6바이트 → long
+     */
+    public static long macToLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 0; i < 6; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * long → 6바이트 배열
+     */
+    public static byte[] macToBytes(long mac) {
+        byte[] bytes = new byte[6];
+        writeMac(mac, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * long MAC을 배열의 offset 위치에 6바이트로 기록 (할당 없음)
+     */
+    public static void writeMac(long mac, byte[] target, int offset) {
+        for (int i = 5; i >= 0; i--) {
+            target[offset + i] = (byte) mac;
+            mac >>>= 8;
+        }
+    }
+
+    /**
+     * IP 주소 문자열 표시 (예: "192.168.0.1")
+     */
+    public static String formatIp(int ip) {
+        return (ip >>> 24) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+    }
+
+    /**
+     * MAC 주소 문자열 표시 (예: "AA:BB:CC:DD:EE:FF")
+     */
+    public static String formatMac(long mac) {
+        return String.format("%02X:%02X:%02X:%02X:%02X:%02X",
+            (mac >>> 40) & 0xFF, (mac >>> 32) & 0xFF, (mac >>> 24) & 0xFF,
+            (mac >>> 16) & 0xFF, (mac >>> 8) & 0xFF, mac & 0xFF);
+    }
+
+    /**
+     * IP 주소 문자열 → int
+     * @throws IllegalArgumentException 형식이 잘못된 경우
+     */
+    public static int parseIp(String ip) {
+        String[] parts = ip.trim().split("\\.");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("잘못된 IP 주소: " + ip);
+        }
+        int value = 0;
+        for (String part : parts) {
+            int octet = Integer.parseInt(part);
+            if (octet < 0 || octet > 255) {
+                throw new IllegalArgumentException("잘못된 IP 주소: " + ip);
+            }
+            value = (value << 8) | octet;
+        }
+        return value;
+    }
+}
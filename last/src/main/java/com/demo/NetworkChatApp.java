@@ -4,6 +4,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
@@ -74,6 +75,14 @@ import org.jnetpcap.PcapIf;
  *             └───────────────┬───────────────┘
  *                             ▼
  *             ┌───────────────────────────────┐
+ *             │     EgressScheduler.java      │
+ *             │      송신 QoS 스케줄러         │
+ *             │                               │
+ *             │ • 트래픽 클래스별 송신 큐      │
+ *             │ • 긴급 우선 + DRR 가중치 전송  │
+ *             └───────────────┬───────────────┘
+ *                             ▼
+ *             ┌───────────────────────────────┐
  *             │      PhysicalLayer.java       │
  *             │       물리 계층 (L1)           │
  *             │                               │
@@ -109,6 +118,7 @@ public class NetworkChatApp {
     private static JCheckBox proxyArpCheckbox;
     private static JTextField proxyIpField;
     private static JTextField proxyMacField;
+    private static JTextField scanRangeField;
     private static JTextField filePathField;
     private static JProgressBar fileProgressBar;
     private static JLabel fileStatusLabel;
@@ -130,13 +140,23 @@ public class NetworkChatApp {
     private static FileAppLayer fileLayer;
     private static IPLayer ipLayer;
     private static ARPLayer arpLayer;
+    private static ArpScanner arpScanner;
     private static EthernetLayer ethernetLayer;
+    private static EgressScheduler egressScheduler;
     private static PhysicalLayer physicalLayer;
     
     // ============= Constants =============
     private static final long READ_TIMEOUT_MS = Duration.ofMillis(200).toMillis();
     private static final boolean PROMISCUOUS_MODE = false;
     
+    // ARP 캐시 스냅샷 (재시작 시 복원)
+    private static final Path ARP_SNAPSHOT_FILE = Path.of("arp_cache.bin");
+    private static final long ARP_SNAPSHOT_INTERVAL_MS = 60_000;
+    private static boolean arpSnapshotHookInstalled = false;
+    
+    // 파일 전송 속도 제한 (목적지당, 느린 수신자 보호) - egressScheduler.setClassRateLimit으로 실행 중 변경 가능
+    private static final long FILE_RATE_LIMIT_BYTES_PER_SEC = 4 * 1024 * 1024;
+    
     /**
      * 프로그램 시작점
      */
@@ -307,6 +327,7 @@ public class NetworkChatApp {
         dstIpField = new JTextField("169.254", 15);
         dstIpField.setBackground(Color.WHITE);
         dstIpField.setForeground(Color.BLACK);
+        dstIpField.setToolTipText("쉼표로 여러 상대를 지정하면 채팅 메시지를 모두에게 전송합니다 (파일/ARP는 첫 번째 상대)");
         panel.add(dstIpField, gbc);
         
         // 설정 버튼
@@ -402,11 +423,69 @@ public class NetworkChatApp {
         encryptCheckbox.addActionListener(e -> {
             if (chatLayer != null) {
                 chatLayer.setEncryptionEnabled(encryptCheckbox.isSelected());
+                if (fileLayer != null) {
+                    fileLayer.setEncryptionEnabled(encryptCheckbox.isSelected());
+                }
                 logToUI("[설정] 암호화 " + (encryptCheckbox.isSelected() ? "활성화" : "비활성화"));
             }
         });
         optionsPanel.add(encryptCheckbox);
         
+        // FEC 체크박스 (손실이 많은 링크에서 재전송 없이 Fragment 복구)
+        JCheckBox fecCheckbox = new JCheckBox("🛡 FEC");
+        fecCheckbox.setBackground(Color.WHITE);
+        fecCheckbox.setForeground(Color.BLACK);
+        fecCheckbox.setToolTipText("Fragment 그룹마다 XOR 패리티를 추가하여 손실된 Fragment를 복구합니다");
+        fecCheckbox.addActionListener(e -> {
+            if (chatLayer != null) {
+                chatLayer.setFecEnabled(fecCheckbox.isSelected());
+                if (fileLayer != null) {
+                    fileLayer.setFecEnabled(fecCheckbox.isSelected());
+                }
+                logToUI("[설정] FEC " + (fecCheckbox.isSelected() ? "활성화" : "비활성화"));
+            }
+        });
+        optionsPanel.add(fecCheckbox);
+
+        // 신뢰성 체크박스 (ACK + 선택적 재전송, 우선순위별 순서 보장)
+        JCheckBox reliableCheckbox = new JCheckBox("📨 신뢰성");
+        reliableCheckbox.setBackground(Color.WHITE);
+        reliableCheckbox.setForeground(Color.BLACK);
+        reliableCheckbox.setToolTipText("ACK를 받지 못한 채팅 패킷을 재전송하고 보낸 순서대로 표시합니다");
+        reliableCheckbox.addActionListener(e -> {
+            if (chatLayer != null) {
+                chatLayer.setReliableEnabled(reliableCheckbox.isSelected());
+                logToUI("[설정] 신뢰성 모드 " + (reliableCheckbox.isSelected() ? "활성화" : "비활성화"));
+            }
+        });
+        optionsPanel.add(reliableCheckbox);
+
+        // 배치 체크박스 (작은 메시지를 2ms 동안 모아 한 프레임으로 전송)
+        JCheckBox batchCheckbox = new JCheckBox("📦 배치");
+        batchCheckbox.setBackground(Color.WHITE);
+        batchCheckbox.setForeground(Color.BLACK);
+        batchCheckbox.setToolTipText("짧은 메시지를 잠시 모아 하나의 프레임으로 전송합니다 (긴급 메시지 제외)");
+        batchCheckbox.addActionListener(e -> {
+            if (chatLayer != null) {
+                chatLayer.setBatchingEnabled(batchCheckbox.isSelected());
+                logToUI("[설정] 배치 모드 " + (batchCheckbox.isSelected() ? "활성화" : "비활성화"));
+            }
+        });
+        optionsPanel.add(batchCheckbox);
+
+        // 채팅 압축 체크박스 (붙여넣은 로그/JSON 등 긴 메시지의 Fragment 수 감소)
+        JCheckBox chatCompressCheckbox = new JCheckBox("🗜 압축");
+        chatCompressCheckbox.setBackground(Color.WHITE);
+        chatCompressCheckbox.setForeground(Color.BLACK);
+        chatCompressCheckbox.setToolTipText("긴 채팅 메시지를 Fragment화 전에 압축합니다");
+        chatCompressCheckbox.addActionListener(e -> {
+            if (chatLayer != null) {
+                chatLayer.setCompressionEnabled(chatCompressCheckbox.isSelected());
+                logToUI("[설정] 채팅 압축 " + (chatCompressCheckbox.isSelected() ? "활성화" : "비활성화"));
+            }
+        });
+        optionsPanel.add(chatCompressCheckbox);
+
         // 데모 모드 체크박스 (우선순위 시연용)
         JCheckBox demoModeCheckbox = new JCheckBox("🎬 데모모드");
         demoModeCheckbox.setBackground(Color.WHITE);
@@ -426,15 +505,14 @@ public class NetworkChatApp {
         priorityComboBox.setBackground(Color.WHITE);
         priorityComboBox.setForeground(Color.BLACK);
         priorityComboBox.addActionListener(e -> {
-            if (chatLayer != null && ipLayer != null) {
+            if (chatLayer != null) {
                 int index = priorityComboBox.getSelectedIndex();
                 ChatAppLayer.Priority priority = switch (index) {
                     case 1 -> ChatAppLayer.Priority.HIGH;
                     case 2 -> ChatAppLayer.Priority.LOW;
                     default -> ChatAppLayer.Priority.NORMAL;
                 };
-                chatLayer.setPriority(priority);
-                ipLayer.setPriority(priority);
+                chatLayer.setPriority(priority); // TOS는 ChatApp이 패킷마다 지정
             }
         });
         optionsPanel.add(priorityComboBox);
@@ -466,6 +544,32 @@ public class NetworkChatApp {
         
         JPanel fileButtonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
         fileButtonPanel.setBackground(Color.WHITE);
+        // 압축 체크박스 (텍스트/로그 파일 전송 시 유리)
+        JCheckBox compressCheckbox = new JCheckBox("📦 압축");
+        compressCheckbox.setBackground(Color.WHITE);
+        compressCheckbox.setForeground(Color.BLACK);
+        compressCheckbox.setToolTipText("Fragment 단위 압축 (압축되지 않는 데이터는 자동으로 생략)");
+        compressCheckbox.addActionListener(e -> {
+            if (fileLayer != null) {
+                fileLayer.setCompressionEnabled(compressCheckbox.isSelected());
+                logToUI("[설정] 파일 압축 " + (compressCheckbox.isSelected() ? "활성화" : "비활성화"));
+            }
+        });
+        fileButtonPanel.add(compressCheckbox);
+        
+        // 델타 체크박스 (수정된 파일을 다시 보낼 때 변경분만 전송)
+        JCheckBox deltaCheckbox = new JCheckBox("🔁 델타");
+        deltaCheckbox.setBackground(Color.WHITE);
+        deltaCheckbox.setForeground(Color.BLACK);
+        deltaCheckbox.setToolTipText("상대방이 같은 이름의 파일을 가지고 있으면 변경된 부분만 전송");
+        deltaCheckbox.addActionListener(e -> {
+            if (fileLayer != null) {
+                fileLayer.setDeltaEnabled(deltaCheckbox.isSelected());
+                logToUI("[설정] 델타 전송 " + (deltaCheckbox.isSelected() ? "활성화" : "비활성화"));
+            }
+        });
+        fileButtonPanel.add(deltaCheckbox);
+        
         JButton browseButton = new JButton("파일 선택");
         browseButton.addActionListener(e -> handleBrowseFile());
         fileButtonPanel.add(browseButton);
@@ -525,13 +629,23 @@ public class NetworkChatApp {
         viewLogButton.addActionListener(e -> handleViewLog());
         arpFunctionPanel.add(viewLogButton, gbc);
         
+        // 서브넷 ARP 스캔 (대역 입력 + 버튼)
+        gbc.gridx = 3; gbc.gridy = 1;
+        scanRangeField = new JTextField("192.168.0.0/24", 12);
+        arpFunctionPanel.add(scanRangeField, gbc);
+        
+        gbc.gridx = 3; gbc.gridy = 2;
+        JButton arpScanButton = new JButton("서브넷 스캔");
+        arpScanButton.addActionListener(e -> handleArpScan());
+        arpFunctionPanel.add(arpScanButton, gbc);
+        
         // Proxy ARP 설정
         gbc.gridx = 0; gbc.gridy = 1; gbc.gridwidth = 3;
         proxyArpCheckbox = new JCheckBox("Proxy ARP 활성화");
         arpFunctionPanel.add(proxyArpCheckbox, gbc);
         
         gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 1;
-        arpFunctionPanel.add(new JLabel("Proxy IP:"), gbc);
+        arpFunctionPanel.add(new JLabel("Proxy IP/대역:"), gbc);
         
         gbc.gridx = 1; gbc.gridy = 2;
         proxyIpField = new JTextField("192.168.0.200", 12);
@@ -732,10 +846,11 @@ public class NetworkChatApp {
             
             // IP 주소 파싱
             parseIpAddress(myIpField.getText(), myIpAddress);
-            parseIpAddress(dstIpField.getText(), dstIpAddress);
+            parseIpAddress(parsePeers(dstIpField.getText()).get(0), dstIpAddress);
             
             logToUI("[시스템] 내 IP: " + formatIpAddress(myIpAddress));
             logToUI("[시스템] 목적지 IP: " + formatIpAddress(dstIpAddress));
+            scanRangeField.setText(NetAddress.formatIp(NetAddress.ipToInt(myIpAddress) & 0xFFFFFF00) + "/24");
             
             // 계층 초기화
             initializeLayers();
@@ -746,6 +861,21 @@ public class NetworkChatApp {
             // Gratuitous ARP 자동 전송 (네트워크 진입 알림)
             arpLayer.sendGratuitousArp();
             
+            // 이전 실행의 ARP 캐시 복원 + 주기적/종료 시 저장
+            int restored = arpLayer.loadSnapshot(ARP_SNAPSHOT_FILE);
+            if (restored > 0) {
+                logToUI("[ARP] 이전 캐시 " + restored + "개 복원 (백그라운드 재확인)");
+            }
+            arpLayer.startSnapshotSaving(ARP_SNAPSHOT_FILE, ARP_SNAPSHOT_INTERVAL_MS);
+            if (!arpSnapshotHookInstalled) {
+                arpSnapshotHookInstalled = true;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    if (arpLayer != null) {
+                        arpLayer.saveSnapshot(ARP_SNAPSHOT_FILE);
+                    }
+                }, "ArpSnapshotSaver"));
+            }
+            
             logToUI("[시스템] 설정 완료 - 통신 준비됨");
             logToUI("[안내] 이제 ARP Request를 먼저 실행하여 상대방 MAC 주소를 확보하세요");
             
@@ -777,6 +907,24 @@ public class NetworkChatApp {
         }
     }
     
+    /**
+     * 쉼표로 구분한 목적지 IP 목록 파싱 (예: "192.168.0.20, 192.168.0.21")
+     * @return 정규화한 IP 문자열 목록 (입력 순서, 중복 제거)
+     * @throws IllegalArgumentException 형식이 잘못되었거나 비어 있는 경우
+     */
+    private static List<String> parsePeers(String text) {
+        List<String> peers = Arrays.stream(text.split(","))
+            .map(String::trim)
+            .filter(peer -> !peer.isEmpty())
+            .map(peer -> NetAddress.formatIp(NetAddress.parseIp(peer)))
+            .distinct()
+            .toList();
+        if (peers.isEmpty()) {
+            throw new IllegalArgumentException("목적지 IP가 없습니다");
+        }
+        return peers;
+    }
+    
     /**
      * 계층 구조 초기화
      * 
@@ -784,6 +932,8 @@ public class NetworkChatApp {
      * ChatApp → IP → Ethernet (데이터 전송)
      *              ↘ ARP (주소 해석)
      *                  ↓
+     *              EgressScheduler (송신 QoS)
+     *                  ↓
      *              Physical
      */
     private static void initializeLayers() {
@@ -829,6 +979,8 @@ public class NetworkChatApp {
         ipLayer = new IPLayer();
         ipLayer.setMyIp(myIpAddress);
         ipLayer.setDstIp(dstIpAddress);
+        ipLayer.setOnArpResolutionFailed((ip, dropped) ->
+            logToUI("[오류] ARP 응답 없음: " + ip + " (대기 중이던 패킷 " + dropped + "개 폐기)"));
         
         // 3. ARPLayer 생성 및 설정
         arpLayer = new ARPLayer();
@@ -840,7 +992,9 @@ public class NetworkChatApp {
         ethernetLayer.setSrcMac(myMacAddress);
         ethernetLayer.setEtherType(0x0800); // IPv4
         
-        // 5. PhysicalLayer 생성
+        // 5. EgressScheduler(송신 QoS), PhysicalLayer 생성
+        egressScheduler = new EgressScheduler();
+        egressScheduler.setClassRateLimit(EgressScheduler.TrafficClass.BULK, FILE_RATE_LIMIT_BYTES_PER_SEC, 0);
         physicalLayer = new PhysicalLayer();
         
         // 6. 계층 연결
@@ -860,12 +1014,15 @@ public class NetworkChatApp {
         arpLayer.SetUnderLayer(ethernetLayer);
         ethernetLayer.SetUpperLayer(arpLayer);
         
-        // Ethernet ↔ Physical
-        ethernetLayer.SetUnderLayer(physicalLayer);
-        physicalLayer.SetUpperLayer(ethernetLayer);
+        // Ethernet ↔ EgressScheduler ↔ Physical (송신 프레임은 클래스별 큐를 거쳐 전송)
+        ethernetLayer.SetUnderLayer(egressScheduler);
+        egressScheduler.SetUpperLayer(ethernetLayer);
+        egressScheduler.SetUnderLayer(physicalLayer);
+        physicalLayer.SetUpperLayer(egressScheduler);
         
         // IP와 ARP 연결 (IP가 ARP 사용)
         ipLayer.setArpLayer(arpLayer);
+        arpScanner = new ArpScanner(arpLayer);
         
         System.out.println("[시스템] 계층 구조 초기화 완료");
     }
@@ -876,7 +1033,8 @@ public class NetworkChatApp {
     private static void openPhysicalLayer() {
         try {
             physicalLayer.open(selectedDevice, PROMISCUOUS_MODE, READ_TIMEOUT_MS);
-            logToUI("[시스템] 네트워크 연결 성공");
+            logToUI("[시스템] 네트워크 연결 성공 (MTU " + ethernetLayer.getMtu()
+                    + ", 파일 Fragment " + fileLayer.getChunkSize() + "바이트)");
         } catch (PcapException e) {
             logToUI("[오류] 네트워크 연결 실패: " + e.getMessage());
         }
@@ -894,23 +1052,25 @@ public class NetworkChatApp {
             return;
         }
         
-        // 목적지 IP 업데이트
+        // 목적지 IP (쉼표로 여러 상대 지정 가능, 기본 목적지는 바꾸지 않고 상대마다 전송)
+        List<String> peers;
         try {
-            parseIpAddress(dstIpField.getText(), dstIpAddress);
-            ipLayer.setDstIp(dstIpAddress);
+            peers = parsePeers(dstIpField.getText());
         } catch (Exception e) {
             logToUI("[오류] 잘못된 목적지 IP: " + e.getMessage());
             return;
         }
         
-        // ChatApp 프로토콜 사용
-        ipLayer.useChatProtocol();
-        
-        if (chatLayer.sendMessage(message)) {
-            logToUI("[전송] " + message);
+        int failed = 0;
+        for (String peer : peers) {
+            if (!chatLayer.sendMessageTo(peer, message)) {
+                failed++;
+                logToUI("[오류] 메시지 전송 실패: " + peer + " (ARP 대기 큐 가득 참 또는 전송 오류)");
+            }
+        }
+        if (failed < peers.size()) {
+            logToUI("[전송] " + message + (peers.size() > 1 ? " (" + (peers.size() - failed) + "명)" : ""));
             messageField.setText("");
-        } else {
-            logToUI("[오류] 메시지 전송 실패 (ARP 캐시 확인 필요)");
         }
     }
     
@@ -919,7 +1079,8 @@ public class NetworkChatApp {
      */
     private static void handleBrowseFile() {
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        // 디렉토리를 선택하면 배치 전송 (여러 파일을 하나의 스트림으로)
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         
         int result = fileChooser.showOpenDialog(null);
         if (result == JFileChooser.APPROVE_OPTION) {
@@ -944,23 +1105,20 @@ public class NetworkChatApp {
         }
         
         java.io.File file = new java.io.File(filePath);
-        if (!file.exists() || !file.isFile()) {
+        if (!file.exists()) {
             logToUI("[오류] 파일을 찾을 수 없습니다: " + filePath);
             return;
         }
         
-        // 목적지 IP 업데이트
+        // 목적지 IP (여러 개면 첫 번째 상대에게 전송) - IPLayer 기본 목적지는 바꾸지 않고 전송마다 지정
+        int destinationIp;
         try {
-            parseIpAddress(dstIpField.getText(), dstIpAddress);
-            ipLayer.setDstIp(dstIpAddress);
+            destinationIp = NetAddress.parseIp(parsePeers(dstIpField.getText()).get(0));
         } catch (Exception e) {
             logToUI("[오류] 잘못된 목적지 IP: " + e.getMessage());
             return;
         }
         
-        // FileApp 프로토콜 사용
-        ipLayer.useFileProtocol();
-        
         // 진행 상태 초기화
         fileProgressBar.setValue(0);
         fileStatusLabel.setText("전송 준비 중...");
@@ -974,8 +1132,6 @@ public class NetworkChatApp {
                 if (progress == 100) {
                     fileStatusLabel.setText("전송 완료: " + fileName);
                     logToUI("[파일] 전송 완료: " + fileName);
-                    // 전송 완료 후 ChatApp 프로토콜로 복귀
-                    ipLayer.useChatProtocol();
                 } else {
                     fileStatusLabel.setText("전송 중: " + fileName + " (" + progress + "%)");
                 }
@@ -985,13 +1141,15 @@ public class NetworkChatApp {
         // 파일 전송 (별도 스레드에서 실행)
         new Thread(() -> {
             try {
-            fileLayer.sendFile(filePath);
+                if (file.isDirectory()) {
+                    fileLayer.sendDirectory(destinationIp, filePath);
+                } else {
+                    fileLayer.sendFile(destinationIp, filePath);
+                }
             } catch (Exception e) {
                 SwingUtilities.invokeLater(() -> {
                     logToUI("[오류] 파일 전송 실패: " + e.getMessage());
                     fileStatusLabel.setText("전송 실패");
-                    // 전송 실패 시에도 ChatApp 프로토콜로 복귀
-                    ipLayer.useChatProtocol();
                 });
             }
         }, "FileTransfer-UI").start();
@@ -1008,25 +1166,47 @@ public class NetworkChatApp {
         
         try {
             byte[] targetIp = new byte[4];
-            parseIpAddress(dstIpField.getText(), targetIp);
-            
-            // ARP용 이더넷 설정 (브로드캐스트)
-            byte[] broadcast = new byte[]{(byte)0xFF, (byte)0xFF, (byte)0xFF, 
-                                         (byte)0xFF, (byte)0xFF, (byte)0xFF};
-            ethernetLayer.setDstMac(broadcast);
-            ethernetLayer.setEtherType(0x0806); // ARP
+            parseIpAddress(parsePeers(dstIpField.getText()).get(0), targetIp);
             
+            // 브로드캐스트 목적지와 ARP EtherType은 ARP 계층이 프레임마다 지정
             arpLayer.sendArpRequest(targetIp);
             logToUI("[ARP] Request 전송: " + formatIpAddress(targetIp));
             
-            // 이더넷 타입 복원
-            ethernetLayer.setEtherType(0x0800); // IPv4
-            
         } catch (Exception e) {
             logToUI("[오류] ARP Request 실패: " + e.getMessage());
         }
     }
     
+    /**
+     * 서브넷 ARP 스캔 - 대역 전체에 ARP Request를 보내 응답한 피어를 캐시에 등록
+     */
+    private static void handleArpScan() {
+        if (arpScanner == null) {
+            logToUI("[오류] ARP 계층이 초기화되지 않았습니다.");
+            return;
+        }
+        
+        try {
+            String range = scanRangeField.getText().trim();
+            boolean started = arpScanner.start(range, result -> {
+                logToUI("[ARP] 스캔 완료: " + range + " - 응답 " + result.responders().length + "/"
+                        + result.probesSent() + " (마지막 응답 " + result.lastReplyMs() + "ms, 총 "
+                        + result.durationMs() + "ms)");
+                if (result.responders().length > 0) {
+                    logToUI("[ARP] 응답 호스트: " + String.join(", ", result.responderAddresses()));
+                }
+                SwingUtilities.invokeLater(NetworkChatApp::updateArpTable);
+            });
+            if (started) {
+                logToUI("[ARP] 스캔 시작: " + range);
+            } else {
+                logToUI("[ARP] 이미 스캔 중입니다.");
+            }
+        } catch (IllegalArgumentException e) {
+            logToUI("[오류] 스캔 대역이 잘못되었습니다: " + e.getMessage());
+        }
+    }
+    
     /**
      * Gratuitous ARP 전송
      */
@@ -1036,17 +1216,8 @@ public class NetworkChatApp {
             return;
         }
         
-        // ARP용 이더넷 설정 (브로드캐스트)
-        byte[] broadcast = new byte[]{(byte)0xFF, (byte)0xFF, (byte)0xFF, 
-                                     (byte)0xFF, (byte)0xFF, (byte)0xFF};
-        ethernetLayer.setDstMac(broadcast);
-        ethernetLayer.setEtherType(0x0806); // ARP
-        
         arpLayer.sendGratuitousArp();
         logToUI("[ARP] Gratuitous ARP 전송");
-        
-        // 이더넷 타입 복원
-        ethernetLayer.setEtherType(0x0800); // IPv4
     }
     
     /**
@@ -1128,6 +1299,15 @@ public class NetworkChatApp {
             chatLayer.stopMessageProcessing();
         }
         
+        // 큐에 남은 프레임 전송 (최대 0.5초)
+        if (egressScheduler != null) {
+            try {
+                egressScheduler.awaitIdle(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
         if (physicalLayer != null) {
             physicalLayer.close();
         }
@@ -0,0 +1,227 @@
+package com.demo;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PeerSession - IP 계층의 상대 호스트별 세션 (IPLayer의 상대 테이블 엔트리)
+ *
+ * 상대마다 따로 보관하는 상태:
+ * - 해석된 MAC: ARP 캐시 조회 결과를 잠시 보관 (ARP 응답/Gratuitous ARP가 오면 즉시 갱신,
+ *   그 밖에는 {@link #MAC_REVALIDATE_NANOS}마다 ARP 캐시로 다시 확인)
+ * - IP 헤더 템플릿: Version/IHL, TTL, 출발지/목적지 IP를 미리 채우고 그 부분의 체크섬 합도 미리 계산
+ *   → 패킷마다 TOS, 길이, ID, Flags, 프로토콜만 채우고 체크섬은 5개 워드만 더해서 완성
+ * - IP Identification: 상대마다 독립된 카운터 (RFC 6864, 시작값은 무작위)
+ *   → 상대가 많아도 ID 공간(65536)을 나눠 쓰지 않으므로 상대당 재조립 충돌 가능성이 낮아짐
+ * - Fragment 재조립: 상대마다 별도 재조립기와 메모리 상한 (Fragment를 쏟아내는 상대가 다른 상대의
+ *   재조립을 밀어내지 못함), 처음 Fragment를 받을 때 생성, 모든 상대가 전역 상한을 함께 씀
+ * - 송수신 통계와 마지막 활동 시각 (오래 쉬는 세션은 IPLayer가 정리)
+ *
+ * 스레드 안전: 여러 송신 스레드와 수신 스레드가 동시에 사용
+ */
+public final class PeerSession {
+
+    /** MAC 캐시를 ARP 캐시로 다시 확인하는 주기 (삭제/만료된 ARP 엔트리 반영) */
+    static final long MAC_REVALIDATE_NANOS = 1_000_000_000L;
+
+    /** 상대당 동시에 재조립할 데이터그램 최대 수 */
+    static final int MAX_PENDING_DATAGRAMS = 16;
+
+    /** 상대당 재조립 버퍼 상한 (최대 크기 데이터그램 4개) */
+    static final int MAX_BUFFERED_BYTES = 256 * 1024;
+
+    static final int HEADER_SIZE = 20;
+    private static final int VERSION_IHL = 0x45;   // IPv4, 헤더 20바이트
+    private static final int DEFAULT_TTL = 128;
+
+    /**
+     * 상대별 통계
+     * @param idleMs 마지막 송수신 이후 지난 시간
+     */
+    public record Stats(long packetsSent, long bytesSent, long packetsReceived, long bytesReceived,
+                        long idleMs, IpReassembler.Stats reassembly) {}
+
+    /**
+     * 출발지가 정해진 헤더 템플릿 (불변, 출발지 IP가 바뀌면 새로 생성)
+     * @param fixedSum 고정 필드의 16비트 워드 합 (1의 보수 접기 전)
+     */
+    private record HeaderTemplate(int sourceIp, byte[] bytes, int fixedSum) {}
+
+    private final int ip;
+    private final AtomicInteger identification = new AtomicInteger(ThreadLocalRandom.current().nextInt(0x10000));
+    private volatile HeaderTemplate template;
+
+    // MAC 캐시 (둘을 함께 쓰지만 잠깐 어긋나도 다시 확인 시각만 달라짐)
+    private volatile long mac = NetAddress.NO_MAC;
+    private volatile long macCheckedAt;
+
+    private volatile IpReassembler reassembler;
+    private boolean retired = false; // this로 동기화, 정리된 세션은 재조립기를 새로 만들지 않음
+
+    private final AtomicLong packetsSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong packetsReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private volatile long lastActiveNanos = System.nanoTime();
+
+    PeerSession(int ip) {
+        this.ip = ip;
+    }
+
+    /**
+     * @return 상대 IP ({@link NetAddress}의 int 값)
+     */
+    public int getIp() {
+        return ip;
+    }
+
+    // ===== MAC 캐시 =====
+
+    /**
+     * 보관 중인 MAC (다시 확인할 때가 되었거나 모르면 {@link NetAddress#NO_MAC})
+     */
+    long cachedMac(long nowNanos) {
+        long cached = mac;
+        if (cached == NetAddress.NO_MAC || nowNanos - macCheckedAt >= MAC_REVALIDATE_NANOS) {
+            return NetAddress.NO_MAC;
+        }
+        return cached;
+    }
+
+    /**
+     * ARP 캐시 조회 결과 또는 ARP 응답으로 MAC 갱신 (NO_MAC이면 캐시 비움)
+     */
+    void updateMac(long resolvedMac, long nowNanos) {
+        macCheckedAt = nowNanos;
+        mac = resolvedMac;
+    }
+
+    // ===== 헤더 템플릿 =====
+
+    int nextIdentification() {
+        return identification.getAndIncrement() & 0xFFFF;
+    }
+
+    /**
+     * 템플릿을 복사하고 패킷별 필드를 채워 IP 헤더 완성 (체크섬 포함)
+     *
+     * @param packet 헤더를 쓸 배열 (앞 20바이트)
+     * @param sourceIp 출발지 IP (템플릿과 다르면 템플릿을 다시 만듦)
+     */
+    void writeHeader(byte[] packet, int sourceIp, int tos, int totalLength, int identification,
+                     int flagsOffset, int protocol) {
+        HeaderTemplate header = template;
+        if (header == null || header.sourceIp() != sourceIp) {
+            header = buildTemplate(sourceIp);
+            template = header;
+        }
+        System.arraycopy(header.bytes(), 0, packet, 0, HEADER_SIZE);
+        packet[1] = (byte) tos;
+        packet[2] = (byte) (totalLength >>> 8);
+        packet[3] = (byte) totalLength;
+        packet[4] = (byte) (identification >>> 8);
+        packet[5] = (byte) identification;
+        packet[6] = (byte) (flagsOffset >>> 8);
+        packet[7] = (byte) flagsOffset;
+        packet[9] = (byte) protocol;
+
+        // 체크섬 (RFC 791): 16비트 워드 합을 접어 1의 보수
+        // 고정 필드 합 + 패킷별 워드 (템플릿의 TOS/프로토콜 자리는 0)
+        int sum = header.fixedSum() + (tos & 0xFF) + (totalLength & 0xFFFF) + (identification & 0xFFFF)
+                + (flagsOffset & 0xFFFF) + (protocol & 0xFF);
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        int checksum = ~sum & 0xFFFF;
+        packet[10] = (byte) (checksum >>> 8);
+        packet[11] = (byte) checksum;
+    }
+
+    private HeaderTemplate buildTemplate(int sourceIp) {
+        byte[] bytes = new byte[HEADER_SIZE];
+        bytes[0] = (byte) VERSION_IHL;
+        bytes[8] = (byte) DEFAULT_TTL;
+        for (int i = 0; i < 4; i++) {
+            bytes[12 + i] = (byte) (sourceIp >>> (24 - 8 * i));
+            bytes[16 + i] = (byte) (ip >>> (24 - 8 * i));
+        }
+        int fixedSum = (VERSION_IHL << 8) + (DEFAULT_TTL << 8)
+                     + (sourceIp >>> 16) + (sourceIp & 0xFFFF) + (ip >>> 16) + (ip & 0xFFFF);
+        return new HeaderTemplate(sourceIp, bytes, fixedSum);
+    }
+
+    // ===== 재조립 =====
+
+    /**
+     * 이 상대가 보낸 Fragment 추가 ({@link IpReassembler#add} 참고)
+     * @param budget 모든 상대가 함께 쓰는 재조립 전역 상한 (처음 Fragment를 받을 때 재조립기에 연결)
+     * @return 완성된 페이로드 (미완성이면 null)
+     */
+    byte[] reassemble(IpReassembler.Budget budget, int destination, int protocol, int identification, int offset, boolean moreFragments,
+                      byte[] data, int dataOffset, int length, long nowMillis) {
+        IpReassembler current = reassembler;
+        if (current == null) {
+            synchronized (this) {
+                current = reassembler;
+                if (current == null) {
+                    if (retired) {
+                        return null;
+                    }
+                    current = new IpReassembler(IpReassembler.REASSEMBLY_TIMEOUT_MS,
+                                                MAX_PENDING_DATAGRAMS, MAX_BUFFERED_BYTES, budget);
+                    reassembler = current;
+                }
+            }
+        }
+        return current.add(ip, destination, protocol, identification, offset, moreFragments,
+                           data, dataOffset, length, nowMillis);
+    }
+
+    /**
+     * @return 재조립 통계 (Fragment를 받은 적이 없으면 null)
+     */
+    IpReassembler.Stats getReassemblyStats() {
+        IpReassembler current = reassembler;
+        return current != null ? current.getStats() : null;
+    }
+
+    /**
+     * 세션을 정리하기 전에 재조립기 닫기 (대기 시간이 지난 것은 정리 후 판단)
+     * 닫힌 뒤 도착한 Fragment는 폐기되므로, 정리된 세션이 전역 상한을 붙잡고 남지 않음
+     *
+     * @return 재조립 중인 데이터그램이 없어 닫았으면 true
+     */
+    boolean retireReassembly(long nowMillis) {
+        synchronized (this) {
+            if (reassembler == null) {
+                retired = true;
+                return true;
+            }
+        }
+        return reassembler.close(nowMillis);
+    }
+
+    // ===== 통계 =====
+
+    void recordSent(int bytes, long nowNanos) {
+        packetsSent.incrementAndGet();
+        bytesSent.addAndGet(bytes);
+        lastActiveNanos = nowNanos;
+    }
+
+    void recordReceived(int bytes, long nowNanos) {
+        packetsReceived.incrementAndGet();
+        bytesReceived.addAndGet(bytes);
+        lastActiveNanos = nowNanos;
+    }
+
+    long idleNanos(long nowNanos) {
+        return nowNanos - lastActiveNanos;
+    }
+
+    public Stats getStats() {
+        return new Stats(packetsSent.get(), bytesSent.get(), packetsReceived.get(), bytesReceived.get(),
+                         idleNanos(System.nanoTime()) / 1_000_000, getReassemblyStats());
+    }
+}
@@ -0,0 +1,199 @@
+package com.demo;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * PeerTable - IPv4(int) → {@link PeerSession} 오픈 어드레싱 해시 테이블 (IPLayer의 상대 테이블)
+ *
+ * 구조 ({@link ArpTable}과 같은 방식):
+ * - 키는 기본형 int 배열에 저장 (송수신마다 Integer 박싱 없음)
+ * - 선형 탐사(Linear Probing), 용량은 2의 거듭제곱, 사용 슬롯이 절반을 넘으면 재구성
+ * - 삭제는 묘비(Tombstone) 표시: 키는 남기고 세션만 비움, 재구성 때 정리
+ * - IP 0(0.0.0.0)은 빈 슬롯 표시로 사용하므로 저장하지 않음
+ * - 세션 수는 상한을 넘지 않음 (가득 차면 {@link #getOrCreate}가 null)
+ *
+ * 동시성:
+ * - 조회(get)는 잠금 없이 동작: 세션을 먼저 쓰고 키를 release로 공개, 조회는 키를 acquire로 읽음
+ * - 변경(getOrCreate/removeIf)은 synchronized, 재구성 시 새 배열을 만든 뒤 volatile 참조를 교체
+ */
+public final class PeerTable {
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle SESSIONS = MethodHandles.arrayElementVarHandle(PeerSession[].class);
+
+    private static final int EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final class Slots {
+        final int[] keys;
+        final PeerSession[] sessions; // null이면 삭제된 슬롯 (키가 있을 때)
+        final int mask;
+
+        Slots(int capacity) {
+            keys = new int[capacity];
+            sessions = new PeerSession[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final int maxSessions;
+    private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+    private int used = 0;   // 키가 기록된 슬롯 수 (묘비 포함)
+    private volatile int live = 0;   // 세션 수
+
+    /**
+     * @param maxSessions 최대 세션 수
+     */
+    public PeerTable(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * 세션 조회 (잠금/할당 없음)
+     *
+     * @return 세션 (없으면 null)
+     */
+    public PeerSession get(int ip) {
+        if (ip == EMPTY) {
+            return null;
+        }
+        Slots table = slots;
+        for (int i = hash(ip) & table.mask; ; i = (i + 1) & table.mask) {
+            int key = (int) INTS.getAcquire(table.keys, i);
+            if (key == EMPTY) {
+                return null;
+            }
+            if (key == ip) {
+                return (PeerSession) SESSIONS.getAcquire(table.sessions, i);
+            }
+        }
+    }
+
+    /**
+     * 세션 조회, 없으면 생성
+     *
+     * @return 세션 (IP가 0이거나 세션 수가 상한에 도달했으면 null)
+     */
+    public synchronized PeerSession getOrCreate(int ip) {
+        if (ip == EMPTY) {
+            return null;
+        }
+        Slots table = slots;
+        int i = find(table, ip);
+        if (i >= 0 && table.sessions[i] != null) {
+            return table.sessions[i];
+        }
+        if (live >= maxSessions) {
+            return null;
+        }
+        if (i < 0 && (used + 1) * 2 > table.keys.length) {
+            rebuild();
+            table = slots;
+        }
+        if (i < 0) {
+            i = hash(ip) & table.mask;
+            while (table.keys[i] != EMPTY) {
+                i = (i + 1) & table.mask;
+            }
+        }
+        PeerSession session = new PeerSession(ip);
+        SESSIONS.setRelease(table.sessions, i, session);
+        if (table.keys[i] == EMPTY) {
+            used++;
+            INTS.setRelease(table.keys, i, ip);
+        }
+        live++;
+        return session;
+    }
+
+    /**
+     * 조건에 맞는 세션 삭제
+     * @return 삭제한 세션 수
+     */
+    public synchronized int removeIf(Predicate<PeerSession> filter) {
+        Slots table = slots;
+        int removed = 0;
+        for (int i = 0; i < table.keys.length; i++) {
+            PeerSession session = table.sessions[i];
+            if (session != null && filter.test(session)) {
+                SESSIONS.setRelease(table.sessions, i, null);
+                removed++;
+            }
+        }
+        live -= removed;
+        return removed;
+    }
+
+    /**
+     * 모든 세션 방문 (통계용)
+     */
+    public synchronized void forEach(Consumer<PeerSession> visitor) {
+        Slots table = slots;
+        for (PeerSession session : table.sessions) {
+            if (session != null) {
+                visitor.accept(session);
+            }
+        }
+    }
+
+    /**
+     * @return 세션 수
+     */
+    public int size() {
+        return live;
+    }
+
+    /**
+     * @return 최대 세션 수
+     */
+    public int capacity() {
+        return maxSessions;
+    }
+
+    /**
+     * 묘비를 정리하고 필요하면 용량을 늘려 새 배열로 재구성 (조회 중인 스레드는 이전 배열을 계속 사용)
+     */
+    private void rebuild() {
+        Slots old = slots;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < (live + 1) * 4) {
+            capacity <<= 1;
+        }
+        Slots table = new Slots(capacity);
+        int count = 0;
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.sessions[i] == null) {
+                continue;
+            }
+            int j = hash(old.keys[i]) & table.mask;
+            while (table.keys[j] != EMPTY) {
+                j = (j + 1) & table.mask;
+            }
+            table.keys[j] = old.keys[i];
+            table.sessions[j] = old.sessions[i];
+            count++;
+        }
+        used = count;
+        slots = table; // volatile 쓰기로 새 배열 공개
+    }
+
+    private static int find(Slots table, int ip) {
+        for (int i = hash(ip) & table.mask; ; i = (i + 1) & table.mask) {
+            int key = table.keys[i];
+            if (key == EMPTY) {
+                return -1;
+            }
+            if (key == ip) {
+                return i;
+            }
+        }
+    }
+
+    private static int hash(int ip) {
+        int h = ip * 0x9E3779B9; // 피보나치 해싱 (같은 서브넷의 연속 주소 분산)
+        return h ^ (h >>> 16);
+    }
+}
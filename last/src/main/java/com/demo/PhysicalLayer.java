@@ -1,5 +1,7 @@
 package com.demo;
 
+import java.net.NetworkInterface;
+import java.net.SocketException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -30,7 +32,12 @@ import java.nio.ByteBuffer;
  * - Non-promiscuous 모드: 자신에게 온 패킷만 캡처 (무차별 모드 비활성화)
  * - 200ms timeout: 패킷이 없어도 200ms마다 dispatch가 리턴 (낮은 지연 시간)
  * - dispatch(1): 한 번에 1개 패킷만 처리 (실시간성 향상)
- * - snaplen=2048: 패킷당 최대 캡처 크기 2KB (이더넷 MTU 1500 충분히 커버)
+ * - snaplen: 패킷당 최대 캡처 크기 (최소 2KB, 점보 프레임이면 MTU + 헤더만큼 확장)
+ * 
+ * MTU:
+ * - 장치를 열 때 운영체제 인터페이스 MTU를 자동 감지 (NetworkInterface.getMTU)
+ * - setMtu()로 직접 지정 가능 (0이면 자동 감지)
+ * - GetMaxPayloadSize()로 상위 계층에 알려 Fragment 크기 결정에 사용
  * 
  * 스레드 모델:
  * - Runnable 구현으로 백그라운드 수신 전담
@@ -44,6 +51,51 @@ public class PhysicalLayer implements BaseLayer, Runnable {
 
     private volatile Pcap pcap; // 패킷 캡처 세션 (스레드 간 공유, volatile 필요)
     private volatile Thread rxThread; // 백그라운드 수신 스레드
+    
+    // ===== MTU 설정 =====
+    public static final int DEFAULT_MTU = 1500;       // 감지 실패 시 표준 Ethernet MTU
+    private static final int MIN_SNAPLEN = 2048;      // 최소 캡처 크기
+    private static final int FRAME_HEADER_SIZE = 14 + 4; // Ethernet 헤더 + VLAN 태그 여유
+    private volatile int configuredMtu = 0;           // 0이면 자동 감지
+    private volatile int mtu = DEFAULT_MTU;           // 현재 적용된 MTU
+    
+    /**
+     * MTU를 직접 지정합니다. 다음 open()부터 snaplen에도 반영됩니다.
+     * @param mtu MTU 값 (0이면 인터페이스 MTU 자동 감지)
+     */
+    public void setMtu(int mtu) {
+        if (mtu < 0) {
+            throw new IllegalArgumentException("MTU는 0 이상이어야 합니다: " + mtu);
+        }
+        this.configuredMtu = mtu;
+        if (mtu > 0) {
+            this.mtu = mtu;
+        }
+    }
+    
+    /**
+     * @return 현재 적용된 MTU
+     */
+    public int getMtu() {
+        return mtu;
+    }
+    
+    /**
+     * 운영체제에서 인터페이스 MTU를 조회합니다.
+     * @param device 네트워크 장치
+     * @return 인터페이스 MTU (조회 실패 시 1500)
+     */
+    static int detectMtu(PcapIf device) {
+        try {
+            NetworkInterface ni = NetworkInterface.getByName(device.name());
+            if (ni != null && ni.getMTU() > 0) {
+                return ni.getMTU();
+            }
+        } catch (SocketException e) {
+            System.err.println("[Physical] MTU 조회 실패: " + e.getMessage());
+        }
+        return DEFAULT_MTU;
+    }
 
     /**
      * 네트워크 장치를 열고 패킷 캡처 세션을 시작합니다.
@@ -61,7 +113,7 @@ public class PhysicalLayer implements BaseLayer, Runnable {
      * Pcap 오픈 과정:
      * 1. 기존 세션이 있으면 종료 (close 호출)
      * 2. Pcap.openLive()로 새 세션 열기
-     *    - snaplen=2048: 이더넷 프레임 전체 캡처 가능
+     *    - snaplen: MTU + 헤더 (최소 2048), 점보 프레임도 잘리지 않고 캡처
      * 3. (선택적) PcapDirection 설정 (일부 버전에서 미지원)
      * 4. 백그라운드 수신 스레드 시작 (run 메서드 실행)
      * 
@@ -71,7 +123,11 @@ public class PhysicalLayer implements BaseLayer, Runnable {
     public boolean open(PcapIf device, boolean promiscuous, long timeoutMillis) throws PcapException {
         close(); // 기존 세션 정리
         
-        int snaplen = 2048; // 충분한 크기, 복사 오버헤드 최소화
+        // MTU 결정 (지정값이 없으면 인터페이스에서 감지) 후 프레임 전체가 들어가도록 snaplen 설정
+        this.mtu = configuredMtu > 0 ? configuredMtu : detectMtu(device);
+        int snaplen = Math.max(MIN_SNAPLEN, mtu + FRAME_HEADER_SIZE);
+        System.out.println("[Physical] MTU " + mtu + (configuredMtu > 0 ? " (지정)" : " (자동 감지)")
+                           + ", snaplen " + snaplen);
         this.pcap = Pcap.openLive(device, snaplen, promiscuous, timeoutMillis, TimeUnit.MILLISECONDS);
         
         // 일부 플랫폼이나 wrapper 버전에서는 PcapDirection.INOUT을 지원하지 않음
@@ -120,6 +176,9 @@ public class PhysicalLayer implements BaseLayer, Runnable {
     @Override
     public BaseLayer GetUnderLayer() { return underLayer; }
 
+    @Override
+    public int GetMaxPayloadSize() { return mtu; }
+
     @Override
     public BaseLayer GetUpperLayer(int index) { 
         return (index>=0 && index<uppers.size()) ? uppers.get(index) : null; 
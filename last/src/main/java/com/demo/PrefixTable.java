@@ -0,0 +1,115 @@
+package com.demo;
+
+/**
+ * PrefixTable - IPv4 프리픽스(CIDR) → MAC 최장 일치(Longest Prefix Match) 테이블
+ *
+ * 구조:
+ * - 주소 비트를 상위부터 하나씩 따라가는 이진 트라이 (깊이 최대 32)
+ * - 프리픽스 길이만큼 내려간 노드에 값을 저장하고, 조회 시 지나온 노드 중 가장 깊은 값을 사용
+ * - 엔트리 수와 무관하게 조회는 최대 32단계, 대역 하나(예: /24)는 엔트리 하나로 수천 개 주소를 처리
+ *
+ * 동시성:
+ * - 조회(lookup)는 잠금/할당 없음: 자식 노드와 값은 volatile 필드로 공개
+ * - 변경(put/remove/clear)은 synchronized
+ */
+public final class PrefixTable {
+
+    private static final class Node {
+        volatile Node zero;
+        volatile Node one;
+        volatile long value = NetAddress.NO_MAC;
+    }
+
+    private volatile Node root = new Node();
+    private int size = 0;
+
+    /**
+     * 프리픽스 추가/갱신
+     *
+     * @param network 대역 안의 주소 (호스트 비트는 무시)
+     * @param prefixLength 프리픽스 길이 (0~32, 32는 단일 주소)
+     * @param mac 응답할 MAC 주소
+     * @throws IllegalArgumentException 프리픽스 길이가 범위를 벗어난 경우
+     */
+    public synchronized void put(int network, int prefixLength, long mac) {
+        checkPrefixLength(prefixLength);
+        Node node = root;
+        for (int depth = 0; depth < prefixLength; depth++) {
+            boolean bit = (network << depth) < 0; // 상위 비트부터
+            Node next = bit ? node.one : node.zero;
+            if (next == null) {
+                next = new Node();
+                if (bit) {
+                    node.one = next;
+                } else {
+                    node.zero = next;
+                }
+            }
+            node = next;
+        }
+        if (node.value == NetAddress.NO_MAC) {
+            size++;
+        }
+        node.value = mac;
+    }
+
+    /**
+     * 프리픽스 삭제 (빈 노드는 남겨 두어도 조회 결과에 영향 없음)
+     * @return 삭제 여부
+     */
+    public synchronized boolean remove(int network, int prefixLength) {
+        checkPrefixLength(prefixLength);
+        Node node = root;
+        for (int depth = 0; depth < prefixLength && node != null; depth++) {
+            node = (network << depth) < 0 ? node.one : node.zero;
+        }
+        if (node == null || node.value == NetAddress.NO_MAC) {
+            return false;
+        }
+        node.value = NetAddress.NO_MAC;
+        size--;
+        return true;
+    }
+
+    /**
+     * 가장 긴 프리픽스가 일치하는 엔트리의 MAC 조회 (잠금/할당 없음)
+     * @param ip IPv4 주소
+     * @return MAC 또는 {@link NetAddress#NO_MAC} (일치하는 프리픽스 없음)
+     */
+    public long lookup(int ip) {
+        Node node = root;
+        long match = node.value;
+        for (int depth = 0; depth < 32; depth++) {
+            node = (ip << depth) < 0 ? node.one : node.zero;
+            if (node == null) {
+                break;
+            }
+            long value = node.value;
+            if (value != NetAddress.NO_MAC) {
+                match = value;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * @return 저장된 프리픽스 수
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 모든 엔트리 삭제
+     */
+    public synchronized void clear() {
+        root = new Node();
+        size = 0;
+    }
+
+    private static void checkPrefixLength(int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 32) {
+            throw new IllegalArgumentException("프리픽스 길이는 0~32여야 합니다: " + prefixLength);
+        }
+    }
+}
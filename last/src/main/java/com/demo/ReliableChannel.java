@@ -0,0 +1,349 @@
+package com.demo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReliableChannel - 한 상대(Peer)와의 신뢰성 전송 상태
+ *
+ * 역할:
+ * - 스트림(우선순위)마다 독립된 Sequence 번호 부여
+ * - 송신: ACK를 받을 때까지 패킷 보관, RTO가 지나면 해당 패킷만 재전송
+ * - 수신: Sequence 순서대로 정렬해 전달, 누적 ACK + 선택적 ACK(SACK) 생성
+ *
+ * 신뢰성 헤더 (상위 계층 헤더의 headerOffset 위치에 삽입):
+ * ┌────────────┬──────────┬──────────┐
+ * │ Session(4) │  Seq(4)  │ Base(4)  │
+ * └────────────┴──────────┴──────────┘
+ * - Session: 송신 측 채널 생성 시 정한 난수 (상대가 재시작하면 수신 상태 초기화)
+ * - Base: 아직 ACK되지 않은 가장 작은 Seq (포기한 패킷 구간은 수신 측이 건너뜀)
+ *
+ * RTO 계산 (Jacobson/Karels):
+ * - SRTT = 7/8·SRTT + 1/8·RTT,  RTTVAR = 3/4·RTTVAR + 1/4·|SRTT - RTT|
+ * - RTO = SRTT + 4·RTTVAR, 타임아웃마다 2배 (지수 백오프)
+ * - Karn 규칙: 재전송된 패킷의 ACK로는 RTT를 측정하지 않음
+ *
+ * 스레드 안전: 모든 메서드는 synchronized
+ */
+public final class ReliableChannel {
+
+    /** 신뢰성 헤더 크기 */
+    public static final int HEADER_SIZE = 12;
+
+    /** 스트림당 ACK 대기 / 순서 대기 패킷 최대 수 */
+    public static final int WINDOW_SIZE = 256;
+
+    /** ACK 하나에 담는 SACK 최대 수 */
+    public static final int MAX_SACK_COUNT = 16;
+
+    /** 최대 전송 횟수 (초과하면 포기) */
+    public static final int MAX_TRANSMISSIONS = 8;
+
+    private static final long INITIAL_RTO_MS = 200;
+    private static final long MIN_RTO_MS = 30;
+    private static final long MAX_RTO_MS = 3000;
+
+    private final String peer;
+    private final int sessionId = ThreadLocalRandom.current().nextInt();
+    private final Map<Integer, SendStream> sendStreams = new TreeMap<>();
+    private final Map<Integer, ReceiveStream> receiveStreams = new TreeMap<>();
+
+    // RTT 추정 (밀리초)
+    private double srtt = -1;
+    private double rttvar = 0;
+    private long rtoMs = INITIAL_RTO_MS;
+
+    // 통계
+    private long packetsSent = 0;
+    private long retransmissions = 0;
+    private long packetsAcked = 0;
+    private long packetsAbandoned = 0;
+    private long duplicatesReceived = 0;
+    private long rttSamples = 0;
+
+    /**
+     * 송신 대기 패킷
+     */
+    private static class Outstanding {
+        final byte[] packet;
+        final int headerOffset;
+        long sentAtNanos;
+        long deadlineNanos;
+        int transmissions = 1;
+
+        Outstanding(byte[] packet, int headerOffset) {
+            this.packet = packet;
+            this.headerOffset = headerOffset;
+        }
+    }
+
+    private static class SendStream {
+        int nextSeq = 0;
+        final TreeMap<Integer, Outstanding> unacked = new TreeMap<>();
+
+        int base() {
+            return unacked.isEmpty() ? nextSeq : unacked.firstKey();
+        }
+    }
+
+    private static class ReceiveStream {
+        int remoteSession;
+        int nextExpected;
+        final TreeMap<Integer, byte[]> outOfOrder = new TreeMap<>();
+    }
+
+    /**
+     * 수신 처리 결과
+     *
+     * @param deliverable 순서대로 전달할 패킷 (신뢰성 헤더 제거됨)
+     * @param cumulativeAck 다음에 기대하는 Seq (이보다 작은 Seq는 모두 수신)
+     * @param sacks 순서를 벗어나 수신해 보관 중인 Seq
+     */
+    public record Received(List<byte[]> deliverable, int cumulativeAck, int[] sacks) {
+    }
+
+    /**
+     * 통계 스냅샷
+     */
+    public record Stats(long packetsSent, long retransmissions, long packetsAcked, long packetsAbandoned,
+                        long duplicatesReceived, long rttSamples, double srttMs, long rtoMs, int unacked) {
+    }
+
+    public ReliableChannel(String peer) {
+        this.peer = peer;
+    }
+
+    public String getPeer() {
+        return peer;
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    // ===== 송신 =====
+
+    /**
+     * 패킷에 신뢰성 헤더를 삽입하고 ACK 대기 목록에 등록
+     * 윈도우가 가득 차 있으면 ACK로 자리가 날 때까지 최대 waitMs 동안 대기합니다.
+     *
+     * @param stream 스트림 번호 (우선순위)
+     * @param packet 원본 패킷
+     * @param length 원본 패킷 길이
+     * @param headerOffset 신뢰성 헤더를 삽입할 위치
+     * @param waitMs 윈도우 대기 시간
+     * @return 전송할 패킷, 윈도우가 비지 않으면 null
+     * @throws InterruptedException 대기 중 인터럽트
+     */
+    public synchronized byte[] register(int stream, byte[] packet, int length, int headerOffset, long waitMs)
+            throws InterruptedException {
+        SendStream sendStream = sendStreams.computeIfAbsent(stream, s -> new SendStream());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        while (sendStream.unacked.size() >= WINDOW_SIZE) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        int base = sendStream.base();
+        int seq = sendStream.nextSeq++;
+        byte[] framed = new byte[length + HEADER_SIZE];
+        System.arraycopy(packet, 0, framed, 0, headerOffset);
+        ByteBuffer.wrap(framed, headerOffset, HEADER_SIZE)
+                  .putInt(sessionId).putInt(seq).putInt(base);
+        System.arraycopy(packet, headerOffset, framed, headerOffset + HEADER_SIZE, length - headerOffset);
+
+        Outstanding outstanding = new Outstanding(framed, headerOffset);
+        outstanding.sentAtNanos = System.nanoTime();
+        outstanding.deadlineNanos = outstanding.sentAtNanos + TimeUnit.MILLISECONDS.toNanos(rtoMs);
+        sendStream.unacked.put(seq, outstanding);
+        packetsSent++;
+        return framed;
+    }
+
+    /**
+     * RTO가 지난 패킷을 골라 재전송 목록으로 반환
+     * 재전송할 때마다 Base를 최신 값으로 갱신하고, RTO를 2배로 늘립니다.
+     *
+     * @param nowNanos 현재 시각 (System.nanoTime)
+     * @return 재전송할 패킷
+     */
+    public synchronized List<byte[]> collectRetransmissions(long nowNanos) {
+        List<byte[]> packets = new ArrayList<>();
+        int abandoned = 0;
+        for (SendStream sendStream : sendStreams.values()) {
+            Iterator<Outstanding> it = sendStream.unacked.values().iterator();
+            while (it.hasNext()) {
+                Outstanding outstanding = it.next();
+                if (outstanding.deadlineNanos - nowNanos > 0) {
+                    continue;
+                }
+                if (outstanding.transmissions >= MAX_TRANSMISSIONS) {
+                    it.remove();
+                    abandoned++;
+                    continue;
+                }
+                outstanding.transmissions++;
+                outstanding.sentAtNanos = nowNanos;
+                ByteBuffer.wrap(outstanding.packet).putInt(outstanding.headerOffset + 8, sendStream.base());
+                packets.add(outstanding.packet);
+            }
+        }
+        if (!packets.isEmpty()) {
+            rtoMs = Math.min(MAX_RTO_MS, rtoMs * 2);
+            retransmissions += packets.size();
+        }
+
+        // 백오프된 RTO로 다음 재전송 시각 결정
+        long rtoNanos = TimeUnit.MILLISECONDS.toNanos(rtoMs);
+        for (SendStream sendStream : sendStreams.values()) {
+            for (Outstanding outstanding : sendStream.unacked.values()) {
+                if (outstanding.sentAtNanos == nowNanos) {
+                    outstanding.deadlineNanos = nowNanos + rtoNanos;
+                }
+            }
+        }
+        // 이번 호출에서 포기한 패킷이 있을 때만 대기 중인 송신 스레드를 깨움 (송신 창에 자리가 생김)
+        if (abandoned > 0) {
+            packetsAbandoned += abandoned;
+            notifyAll();
+        }
+        return packets;
+    }
+
+    /**
+     * ACK 수신 처리
+     *
+     * @param stream 스트림 번호
+     * @param session ACK가 가리키는 세션 (다르면 이전 세션의 ACK이므로 무시)
+     * @param cumulativeAck 상대가 다음에 기대하는 Seq
+     * @param sacks 상대가 순서를 벗어나 보관 중인 Seq
+     * @param nowNanos 현재 시각 (System.nanoTime)
+     */
+    public synchronized void onAck(int stream, int session, int cumulativeAck, int[] sacks, long nowNanos) {
+        SendStream sendStream = sendStreams.get(stream);
+        if (session != sessionId || sendStream == null) {
+            return;
+        }
+
+        // Karn 규칙: 한 번만 전송된 패킷 중 가장 최근 것으로 RTT 측정
+        long sampleSentAt = Long.MIN_VALUE;
+        Iterator<Outstanding> it = sendStream.unacked.headMap(cumulativeAck).values().iterator();
+        while (it.hasNext()) {
+            Outstanding outstanding = it.next();
+            if (outstanding.transmissions == 1) {
+                sampleSentAt = Math.max(sampleSentAt, outstanding.sentAtNanos);
+            }
+            it.remove();
+            packetsAcked++;
+        }
+        for (int seq : sacks) {
+            Outstanding outstanding = sendStream.unacked.remove(seq);
+            if (outstanding != null) {
+                if (outstanding.transmissions == 1) {
+                    sampleSentAt = Math.max(sampleSentAt, outstanding.sentAtNanos);
+                }
+                packetsAcked++;
+            }
+        }
+
+        if (sampleSentAt != Long.MIN_VALUE) {
+            updateRto((nowNanos - sampleSentAt) / 1_000_000.0);
+        }
+        notifyAll();
+    }
+
+    private void updateRto(double rttMs) {
+        if (srtt < 0) {
+            srtt = rttMs;
+            rttvar = rttMs / 2;
+        } else {
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rttMs);
+            srtt = 0.875 * srtt + 0.125 * rttMs;
+        }
+        rtoMs = Math.max(MIN_RTO_MS, Math.min(MAX_RTO_MS, (long) Math.ceil(srtt + 4 * rttvar)));
+        rttSamples++;
+    }
+
+    /**
+     * ACK를 기다리는 패킷 수
+     */
+    public synchronized int getUnackedCount() {
+        int count = 0;
+        for (SendStream sendStream : sendStreams.values()) {
+            count += sendStream.unacked.size();
+        }
+        return count;
+    }
+
+    // ===== 수신 =====
+
+    /**
+     * 신뢰성 헤더가 붙은 패킷 수신
+     *
+     * @param stream 스트림 번호
+     * @param session 송신 측 세션
+     * @param seq 패킷 Seq
+     * @param base 송신 측이 아직 ACK받지 못한 가장 작은 Seq
+     * @param packet 신뢰성 헤더를 제거한 패킷
+     * @return 순서대로 전달할 패킷과 보낼 ACK 정보
+     */
+    public synchronized Received onData(int stream, int session, int seq, int base, byte[] packet) {
+        ReceiveStream receiveStream = receiveStreams.get(stream);
+        if (receiveStream == null || receiveStream.remoteSession != session) {
+            // 새 상대이거나 상대가 재시작함 → Base부터 다시 시작
+            receiveStream = new ReceiveStream();
+            receiveStream.remoteSession = session;
+            receiveStream.nextExpected = base;
+            receiveStreams.put(stream, receiveStream);
+        }
+
+        List<byte[]> deliverable = new ArrayList<>();
+
+        // 송신 측이 포기한 구간은 건너뜀 (그 사이 보관된 패킷은 순서대로 전달)
+        if (base - receiveStream.nextExpected > 0) {
+            deliverable.addAll(receiveStream.outOfOrder.headMap(base).values());
+            receiveStream.outOfOrder.headMap(base).clear();
+            receiveStream.nextExpected = base;
+        }
+
+        if (seq - receiveStream.nextExpected < 0 || receiveStream.outOfOrder.containsKey(seq)) {
+            duplicatesReceived++;
+        } else if (seq - receiveStream.nextExpected < WINDOW_SIZE) {
+            receiveStream.outOfOrder.put(seq, packet);
+        }
+
+        // 순서가 맞는 패킷 전달
+        byte[] next;
+        while ((next = receiveStream.outOfOrder.remove(receiveStream.nextExpected)) != null) {
+            deliverable.add(next);
+            receiveStream.nextExpected++;
+        }
+
+        int[] sacks = receiveStream.outOfOrder.keySet().stream()
+                                   .limit(MAX_SACK_COUNT).mapToInt(Integer::intValue).toArray();
+        return new Received(deliverable, receiveStream.nextExpected, sacks);
+    }
+
+    // ===== 통계 =====
+
+    public synchronized Stats getStats() {
+        return new Stats(packetsSent, retransmissions, packetsAcked, packetsAbandoned, duplicatesReceived,
+                         rttSamples, srtt, rtoMs, getUnackedCount());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: 전송 %d, 재전송 %d, ACK %d, 포기 %d, 중복 수신 %d, SRTT %.1fms, RTO %dms",
+                             peer, packetsSent, retransmissions, packetsAcked, packetsAbandoned,
+                             duplicatesReceived, srtt, rtoMs);
+    }
+}
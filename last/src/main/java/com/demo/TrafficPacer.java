@@ -0,0 +1,211 @@
+package com.demo;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * TrafficPacer - 목적지/트래픽 클래스별 전송 속도 제한 (토큰 버킷)
+ *
+ * 제한 종류 (둘 다 걸려 있으면 둘 다 만족해야 전송):
+ * - 클래스 제한: 목적지 하나가 해당 클래스로 받을 수 있는 속도 (예: 파일은 목적지당 2MB/s)
+ * - 목적지 제한: 목적지 하나로 가는 전체 트래픽 속도 (느린 수신자 보호)
+ * - 각각 바이트/초와 패킷/초를 지정 가능 (0이면 해당 항목 제한 없음)
+ *
+ * 토큰 버킷:
+ * - 초당 rate만큼 채워지고 10ms 분량까지 쌓임 (짧은 버스트 허용)
+ * - 토큰이 0 이상이면 전송 가능, 전송하면 프레임 크기만큼 차감 (음수 = 빚)
+ *   → 버킷보다 큰 프레임(점보 프레임 등)도 멈추지 않고, 빚을 갚을 때까지 다음 전송이 미뤄짐
+ * - 전송 가능 시각을 나노초 단위로 계산하여 스케줄러가 그 시각까지만 대기 (고정 sleep 없음)
+ *
+ * 제한은 실행 중에 바꿀 수 있으며 다음 전송부터 새 속도로 계산됩니다.
+ * 스레드 안전하지 않음: {@link EgressScheduler}의 잠금 안에서만 사용합니다.
+ */
+public final class TrafficPacer {
+
+    /**
+     * 전송 속도 제한
+     * @param bytesPerSecond 초당 바이트 (0이면 제한 없음)
+     * @param packetsPerSecond 초당 패킷 (0이면 제한 없음)
+     */
+    public record RateLimit(long bytesPerSecond, int packetsPerSecond) {
+        public static final RateLimit UNLIMITED = new RateLimit(0, 0);
+
+        public RateLimit {
+            if (bytesPerSecond < 0 || packetsPerSecond < 0) {
+                throw new IllegalArgumentException("전송 속도 제한은 0 이상이어야 합니다: "
+                                                   + bytesPerSecond + "B/s, " + packetsPerSecond + "pps");
+            }
+        }
+
+        public boolean isUnlimited() {
+            return bytesPerSecond == 0 && packetsPerSecond == 0;
+        }
+    }
+
+    private static final long BURST_NANOS = 10_000_000L;   // 10ms 분량까지 토큰 적립
+    private static final int MAX_BUCKETS = 4096;            // 넘으면 가득 찬(유휴) 버킷 정리
+
+    /**
+     * 바이트/패킷 토큰 버킷
+     */
+    private static final class Bucket {
+        double byteTokens;
+        double packetTokens;
+        long refilledAt;
+
+        Bucket(RateLimit limit, long now) {
+            this.byteTokens = limit.bytesPerSecond() * (double) BURST_NANOS / 1e9;
+            this.packetTokens = Math.max(1.0, limit.packetsPerSecond() * (double) BURST_NANOS / 1e9);
+            this.refilledAt = now;
+        }
+
+        void refill(RateLimit limit, long now) {
+            long elapsed = Math.min(now - refilledAt, BURST_NANOS * 100);
+            if (elapsed <= 0) {
+                return;
+            }
+            byteTokens = Math.min(limit.bytesPerSecond() * (double) BURST_NANOS / 1e9,
+                                  byteTokens + limit.bytesPerSecond() * (double) elapsed / 1e9);
+            packetTokens = Math.min(Math.max(1.0, limit.packetsPerSecond() * (double) BURST_NANOS / 1e9),
+                                    packetTokens + limit.packetsPerSecond() * (double) elapsed / 1e9);
+            refilledAt = now;
+        }
+
+        /** 빚을 모두 갚을 때까지 남은 시간 (0이면 바로 전송 가능) */
+        long delayNanos(RateLimit limit) {
+            long delay = 0;
+            if (limit.bytesPerSecond() > 0 && byteTokens < 0) {
+                delay = (long) Math.ceil(-byteTokens * 1e9 / limit.bytesPerSecond());
+            }
+            if (limit.packetsPerSecond() > 0 && packetTokens < 0) {
+                delay = Math.max(delay, (long) Math.ceil(-packetTokens * 1e9 / limit.packetsPerSecond()));
+            }
+            return delay;
+        }
+
+        void consume(RateLimit limit, int bytes) {
+            if (limit.bytesPerSecond() > 0) {
+                byteTokens -= bytes;
+            }
+            if (limit.packetsPerSecond() > 0) {
+                packetTokens -= 1;
+            }
+        }
+
+        boolean isFull(RateLimit limit, long now) {
+            refill(limit, now);
+            return byteTokens >= limit.bytesPerSecond() * (double) BURST_NANOS / 1e9
+                && packetTokens >= Math.max(1.0, limit.packetsPerSecond() * (double) BURST_NANOS / 1e9);
+        }
+    }
+
+    private final Map<EgressScheduler.TrafficClass, RateLimit> classLimits = new EnumMap<>(EgressScheduler.TrafficClass.class);
+    private final Map<Integer, RateLimit> destinationLimits = new HashMap<>();
+    private final Map<Long, Bucket> classBuckets = new HashMap<>();        // (목적지 IP, 클래스) → 버킷
+    private final Map<Integer, Bucket> destinationBuckets = new HashMap<>();
+
+    /**
+     * 클래스 제한 설정 (목적지마다 따로 적용)
+     * @param limit 제한 ({@link RateLimit#UNLIMITED}면 해제)
+     */
+    public void setClassLimit(EgressScheduler.TrafficClass trafficClass, RateLimit limit) {
+        if (limit.isUnlimited()) {
+            classLimits.remove(trafficClass);
+        } else {
+            classLimits.put(trafficClass, limit);
+        }
+        classBuckets.keySet().removeIf(key -> (key & 0xFF) == trafficClass.ordinal()); // 새 속도의 버스트로 다시 시작
+    }
+
+    /**
+     * 목적지 전체 제한 설정
+     * @param destinationIp 목적지 IP
+     * @param limit 제한 ({@link RateLimit#UNLIMITED}면 해제)
+     */
+    public void setDestinationLimit(int destinationIp, RateLimit limit) {
+        if (limit.isUnlimited()) {
+            destinationLimits.remove(destinationIp);
+        } else {
+            destinationLimits.put(destinationIp, limit);
+        }
+        destinationBuckets.remove(destinationIp);
+    }
+
+    /**
+     * @return 클래스 제한 (없으면 UNLIMITED)
+     */
+    public RateLimit getClassLimit(EgressScheduler.TrafficClass trafficClass) {
+        return classLimits.getOrDefault(trafficClass, RateLimit.UNLIMITED);
+    }
+
+    /**
+     * @return 목적지 제한 (없으면 UNLIMITED)
+     */
+    public RateLimit getDestinationLimit(int destinationIp) {
+        return destinationLimits.getOrDefault(destinationIp, RateLimit.UNLIMITED);
+    }
+
+    /**
+     * 전송 가능할 때까지 남은 시간 (토큰은 차감하지 않음)
+     * @return 0이면 바로 전송 가능
+     */
+    public long delayNanos(int destinationIp, EgressScheduler.TrafficClass trafficClass, long nowNanos) {
+        long delay = 0;
+        RateLimit classLimit = classLimits.get(trafficClass);
+        if (classLimit != null) {
+            Bucket bucket = classBuckets.get(bucketKey(destinationIp, trafficClass));
+            if (bucket != null) {
+                bucket.refill(classLimit, nowNanos);
+                delay = bucket.delayNanos(classLimit);
+            }
+        }
+        RateLimit destinationLimit = destinationLimits.get(destinationIp);
+        if (destinationLimit != null) {
+            Bucket bucket = destinationBuckets.get(destinationIp);
+            if (bucket != null) {
+                bucket.refill(destinationLimit, nowNanos);
+                delay = Math.max(delay, bucket.delayNanos(destinationLimit));
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * 프레임 전송을 기록하여 토큰 차감 ({@link #delayNanos}가 0일 때 호출)
+     */
+    public void consume(int destinationIp, EgressScheduler.TrafficClass trafficClass, int bytes, long nowNanos) {
+        RateLimit classLimit = classLimits.get(trafficClass);
+        if (classLimit != null) {
+            if (classBuckets.size() >= MAX_BUCKETS) {
+                pruneIdleBuckets(nowNanos);
+            }
+            classBuckets.computeIfAbsent(bucketKey(destinationIp, trafficClass), key -> new Bucket(classLimit, nowNanos))
+                        .consume(classLimit, bytes);
+        }
+        RateLimit destinationLimit = destinationLimits.get(destinationIp);
+        if (destinationLimit != null) {
+            destinationBuckets.computeIfAbsent(destinationIp, key -> new Bucket(destinationLimit, nowNanos))
+                              .consume(destinationLimit, bytes);
+        }
+    }
+
+    /**
+     * 가득 찬 클래스 버킷 정리 (다시 만들면 같은 상태이므로 버려도 동작이 같음)
+     */
+    private void pruneIdleBuckets(long nowNanos) {
+        Iterator<Map.Entry<Long, Bucket>> iterator = classBuckets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Bucket> entry = iterator.next();
+            RateLimit limit = classLimits.get(EgressScheduler.TrafficClass.values()[(int) (entry.getKey() & 0xFF)]);
+            if (limit == null || entry.getValue().isFull(limit, nowNanos)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long bucketKey(int destinationIp, EgressScheduler.TrafficClass trafficClass) {
+        return ((destinationIp & 0xFFFFFFFFL) << 8) | trafficClass.ordinal();
+    }
+}
@@ -0,0 +1,343 @@
+package com.demo;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ARP 계층 테스트 (캐시 관리, 요청 병합)
+ */
+public class ARPLayerTest {
+
+    private static final byte[] MY_MAC = {0x02, 0x00, 0x00, 0x00, 0x00, 0x01};
+    private static final byte[] MY_IP = {(byte) 192, (byte) 168, 1, 10};
+    private static final byte[] PEER_MAC = {0x02, 0x00, 0x00, 0x00, 0x00, 0x02};
+    private static final byte[] PEER_IP = {(byte) 192, (byte) 168, 1, 20};
+
+    private ARPLayer arpLayer;
+    private EthernetLayerMock ethernet;
+
+    /**
+     * Ethernet 계층 Mock (보낸 ARP 패킷 기록)
+     */
+    static class EthernetLayerMock implements BaseLayer {
+        private final List<byte[]> sentPackets = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public boolean Send(byte[] input, int length) {
+            byte[] packet = new byte[length];
+            System.arraycopy(input, 0, packet, 0, length);
+            sentPackets.add(packet);
+            return true;
+        }
+
+        /**
+         * 보낸 ARP Request 수 (Operation = 1)
+         */
+        int requestCount() {
+            synchronized (sentPackets) {
+                return (int) sentPackets.stream().filter(p -> p[7] == 1).count();
+            }
+        }
+
+        @Override
+        public String GetLayerName() { return "EthernetMock"; }
+
+        @Override
+        public BaseLayer GetUnderLayer() { return null; }
+
+        @Override
+        public BaseLayer GetUpperLayer(int index) { return null; }
+
+        @Override
+        public void SetUnderLayer(BaseLayer layer) {}
+
+        @Override
+        public void SetUpperLayer(BaseLayer layer) {}
+    }
+
+    @BeforeEach
+    void setUp() {
+        arpLayer = new ARPLayer();
+        ethernet = new EthernetLayerMock();
+        arpLayer.SetUnderLayer(ethernet);
+        arpLayer.setMyMac(MY_MAC);
+        arpLayer.setMyIp(MY_IP);
+    }
+
+    @Test
+    @DisplayName("ARP 캐시 만료, 만료 전 갱신, 요청 병합, 부정 캐시 테스트")
+    void testCacheAgingRefreshAndNegativeCaching() throws Exception {
+        arpLayer.setCacheTtl(500);
+
+        // 1. 같은 IP에 대한 연속 해석 요청은 하나의 ARP Request로 병합
+        for (int i = 0; i < 10; i++) {
+            assertTrue(arpLayer.requestResolution(NetAddress.ipToInt(PEER_IP)));
+        }
+        assertEquals(1, ethernet.requestCount(), "요청이 병합되지 않음");
+        assertEquals(9, arpLayer.getArpStats().requestsCoalesced());
+
+        // 2. Reply 수신 → 캐시 등록
+        arpLayer.Receive(arpPacket(2, PEER_MAC, PEER_IP, MY_MAC, MY_IP));
+        assertArrayEquals(PEER_MAC, arpLayer.lookupArpCache("192.168.1.20"));
+        ethernet.sentPackets.clear();
+
+        // 3. 계속 사용하는 엔트리는 만료 전에 갱신 Request가 나가고, 응답하면 캐시 미스 없이 유지
+        long deadline = System.currentTimeMillis() + 1500;
+        while (System.currentTimeMillis() < deadline) {
+            assertNotNull(arpLayer.lookupArpCache("192.168.1.20"), "사용 중인 엔트리가 만료됨");
+            if (ethernet.requestCount() > 0) {
+                arpLayer.Receive(arpPacket(2, PEER_MAC, PEER_IP, MY_MAC, MY_IP));
+                ethernet.sentPackets.clear();
+            }
+            Thread.sleep(20);
+        }
+        assertTrue(arpLayer.getArpStats().refreshesSent() >= 2, "만료 전 갱신 없음");
+
+        // 4. 사용하지 않는 엔트리는 TTL이 지나면 만료
+        Thread.sleep(800);
+        assertNull(arpLayer.lookupArpCache("192.168.1.20"), "만료된 엔트리가 조회됨");
+        assertTrue(arpLayer.getArpStats().entriesExpired() >= 1);
+
+        // 5. 응답이 없던 IP는 부정 캐시 → Request 없이 즉시 실패
+        byte[] silentIp = {(byte) 192, (byte) 168, 1, 99};
+        ethernet.sentPackets.clear();
+        arpLayer.markUnresolved(NetAddress.ipToInt(silentIp));
+        assertTrue(arpLayer.isNegativelyCached(NetAddress.parseIp("192.168.1.99")));
+        assertFalse(arpLayer.requestResolution(NetAddress.ipToInt(silentIp)));
+        assertEquals(0, ethernet.requestCount(), "부정 캐시된 IP로 Request 전송됨");
+        assertEquals(1, arpLayer.getArpStats().negativeHits());
+
+        // 6. 나중에라도 응답이 오면 부정 캐시 해제
+        arpLayer.Receive(arpPacket(1, PEER_MAC, silentIp, new byte[6], MY_IP));
+        assertFalse(arpLayer.isNegativelyCached(NetAddress.parseIp("192.168.1.99")));
+    }
+
+    @Test
+    @DisplayName("기본형 주소 변환 및 ArpTable 추가/조회/삭제/확장 테스트")
+    void testPrimitiveAddressTable() {
+        // 1. 주소 변환 왕복
+        int ip = NetAddress.parseIp("192.168.1.20");
+        assertEquals(0xC0A80114, ip);
+        assertArrayEquals(PEER_IP, NetAddress.ipToBytes(ip));
+        assertEquals("192.168.1.20", NetAddress.formatIp(ip));
+        long mac = NetAddress.macToLong(PEER_MAC);
+        assertArrayEquals(PEER_MAC, NetAddress.macToBytes(mac));
+        assertEquals("02:00:00:00:00:02", NetAddress.formatMac(mac));
+        assertEquals(NetAddress.BROADCAST_MAC, NetAddress.macToLong(new byte[]{-1, -1, -1, -1, -1, -1}));
+        assertThrows(IllegalArgumentException.class, () -> NetAddress.parseIp("192.168.1"));
+
+        // 2. 여러 번 재구성될 만큼 추가 후 모두 조회
+        ArpTable table = new ArpTable();
+        long now = 1_000;
+        int base = NetAddress.parseIp("10.0.0.0");
+        for (int i = 1; i <= 5000; i++) {
+            table.put(base + i, 0x020000000000L + i, now, 10_000, 0.8);
+        }
+        assertEquals(5000, table.size());
+        for (int i = 1; i <= 5000; i++) {
+            assertEquals(0x020000000000L + i, table.get(base + i, now), "조회 실패: " + i);
+        }
+        assertEquals(NetAddress.NO_MAC, table.get(base + 5001, now));
+
+        // 3. 갱신은 크기를 늘리지 않고, 삭제한 엔트리는 조회되지 않으며 다시 추가 가능
+        table.put(base + 1, 0x0A0B0C0D0E0FL, now, 10_000, 0.8);
+        assertEquals(5000, table.size());
+        assertEquals(0x0A0B0C0D0E0FL, table.get(base + 1, now));
+        for (int i = 1; i <= 2500; i++) {
+            assertTrue(table.remove(base + i));
+        }
+        assertFalse(table.remove(base + 1));
+        assertEquals(2500, table.size());
+        assertEquals(NetAddress.NO_MAC, table.get(base + 1, now));
+        assertEquals(0x020000000000L + 2501, table.get(base + 2501, now));
+        table.put(base + 1, mac, now, 10_000, 0.8);
+        assertEquals(mac, table.get(base + 1, now));
+
+        // 4. 만료: 조회되지 않고 maintain에서 정리
+        assertEquals(NetAddress.NO_MAC, table.get(base + 2501, now + 10_000));
+        assertEquals(2501, table.maintain(now + 10_000, (refreshIp, refreshMac) -> {}));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    @DisplayName("ARP 캐시 스냅샷 저장/복원 및 재확인 테스트")
+    void testSnapshotSaveAndRestore() throws Exception {
+        Path file = Files.createTempFile("arp_snapshot", ".bin");
+        try {
+            arpLayer.addArpCacheEntry("192.168.1.20", PEER_MAC);
+            arpLayer.addArpCacheEntry("192.168.1.30", MY_MAC);
+            assertTrue(arpLayer.saveSnapshot(file));
+            
+            // 1. 재시작한 계층은 ARP 해석 없이 바로 조회 가능
+            ARPLayer restarted = new ARPLayer();
+            EthernetLayerMock restartedEthernet = new EthernetLayerMock();
+            restarted.SetUnderLayer(restartedEthernet);
+            restarted.setMyMac(MY_MAC);
+            restarted.setMyIp(MY_IP);
+            assertEquals(2, restarted.loadSnapshot(file));
+            assertArrayEquals(PEER_MAC, restarted.lookupArpCache("192.168.1.20"));
+            assertArrayEquals(MY_MAC, restarted.lookupArpCache("192.168.1.30"));
+            
+            // 2. 복원된 엔트리마다 백그라운드 재확인 Request 전송
+            long deadline = System.currentTimeMillis() + 2000;
+            while (restartedEthernet.requestCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, restartedEthernet.requestCount(), "재확인 Request 없음");
+            
+            // 3. 손상된 스냅샷은 무시
+            byte[] data = Files.readAllBytes(file);
+            data[22] ^= 0x01; // 첫 엔트리의 IP
+            Files.write(file, data);
+            ARPLayer corrupted = new ARPLayer();
+            assertEquals(0, corrupted.loadSnapshot(file));
+            assertNull(corrupted.lookupArpCache("192.168.1.20"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    @Test
+    @DisplayName("서브넷 ARP 스캔: 속도 제한 전송, 비동기 응답 수집 테스트")
+    void testSubnetScan() throws Exception {
+        // 살아 있는 호스트 3개: Request를 받으면 바로 Reply (수신 경로로 학습)
+        int[] alive = {NetAddress.parseIp("192.168.1.1"), NetAddress.parseIp("192.168.1.20"),
+                       NetAddress.parseIp("192.168.1.254")};
+        int quiet = NetAddress.parseIp("192.168.1.40");
+        int talker = NetAddress.parseIp("192.168.1.50");
+        int unsolicited = NetAddress.parseIp("192.168.1.60");
+        ARPLayer scanning = new ARPLayer();
+        EthernetLayerMock responder = new EthernetLayerMock() {
+            @Override
+            public boolean Send(byte[] input, int length) {
+                super.Send(input, length);
+                int target = ByteBuffer.wrap(input).getInt(24);
+                for (int ip : alive) {
+                    if (ip == target) {
+                        scanning.Receive(arpPacket(2, new byte[]{0x02, 0, 0, 0, 0, (byte) ip},
+                                                   NetAddress.ipToBytes(ip), MY_MAC, MY_IP));
+                    }
+                }
+                // 스캔 중 다른 호스트의 Request와 아직 Request를 보내지 않은 주소의 Reply
+                // (캐시에는 학습되지만 이번 스캔의 응답자가 아님)
+                if (target == quiet) {
+                    scanning.Receive(arpPacket(1, new byte[]{0x02, 0, 0, 0, 0, 50},
+                                               NetAddress.ipToBytes(talker), new byte[6],
+                                               NetAddress.ipToBytes(NetAddress.parseIp("192.168.1.99"))));
+                    scanning.Receive(arpPacket(2, new byte[]{0x02, 0, 0, 0, 0, 60},
+                                               NetAddress.ipToBytes(unsolicited), MY_MAC, MY_IP));
+                }
+                return true;
+            }
+        };
+        scanning.SetUnderLayer(responder);
+        scanning.setMyMac(MY_MAC);
+        scanning.setMyIp(MY_IP);
+        
+        ArpScanner scanner = new ArpScanner(scanning);
+        scanner.setRate(2000);
+        scanner.setReplyGrace(100);
+        CompletableFuture<ArpScanner.ScanResult> done = new CompletableFuture<>();
+        assertTrue(scanner.start("192.168.1.77/24", done::complete));
+        assertFalse(scanner.start("192.168.1.0/24", result -> {}), "동시에 두 번 스캔됨");
+        ArpScanner.ScanResult result = done.get(5, TimeUnit.SECONDS);
+        
+        // 자신(192.168.1.10)과 네트워크/브로드캐스트 주소를 뺀 253개에 Request
+        assertEquals(253, result.probesSent());
+        assertEquals(253, responder.requestCount());
+        assertEquals(List.of("192.168.1.1", "192.168.1.20", "192.168.1.254"), result.responderAddresses());
+        assertArrayEquals(new byte[]{0x02, 0, 0, 0, 0, 20}, scanning.lookupArpCache("192.168.1.20"));
+        assertNotNull(scanning.lookupArpCache("192.168.1.50"), "다른 호스트의 Request는 캐시에 학습됨");
+        assertNotNull(scanning.lookupArpCache("192.168.1.60"), "요청하지 않은 Reply도 캐시에 학습됨");
+        
+        // 2000개/초 → 253개 전송에 최소 약 125ms (한꺼번에 보내지 않음), /24가 1초 안에 완료
+        assertTrue(result.durationMs() >= 120, "전송 속도 제한 없음: " + result.durationMs() + "ms");
+        assertTrue(result.durationMs() < 1000, "스캔이 너무 느림: " + result.durationMs() + "ms");
+        assertFalse(scanner.isRunning());
+        assertThrows(IllegalArgumentException.class, () -> scanner.start("10.0.0.0/8", r -> {}));
+        
+        // 기본 속도는 수신 측 브로드캐스트 폭주 제어와 같아야 상대가 Request를 버리지 않음
+        assertEquals((int) EthernetLayer.DEFAULT_BROADCAST_RATE, ArpScanner.DEFAULT_RATE_PER_SECOND);
+    }
+    
+    @Test
+    @DisplayName("Proxy ARP 대역 최장 프리픽스 일치 및 명시적 Sender 응답 테스트")
+    void testProxyArpPrefixMatch() {
+        byte[] labMac = {0x02, 0x0A, 0, 0, 0, 0x01};
+        byte[] rackMac = {0x02, 0x0B, 0, 0, 0, 0x02};
+        byte[] hostMac = {0x02, 0x0C, 0, 0, 0, 0x03};
+        arpLayer.addProxyArpEntry("10.1.0.0/16", labMac);
+        arpLayer.addProxyArpEntry("10.1.5.0/24", rackMac);
+        arpLayer.addProxyArpEntry("10.1.5.7", hostMac);
+        arpLayer.setProxyArpEnabled(true);
+        
+        // 1. 가장 긴 프리픽스의 MAC으로, 요청된 IP를 Sender로 응답
+        assertProxyReply("10.1.200.9", labMac);
+        assertProxyReply("10.1.5.200", rackMac);
+        assertProxyReply("10.1.5.7", hostMac);
+        
+        // 2. 대역 밖 주소, Gratuitous ARP에는 응답하지 않음
+        ethernet.sentPackets.clear();
+        arpLayer.Receive(arpPacket(1, PEER_MAC, PEER_IP, new byte[6], NetAddress.ipToBytes(NetAddress.parseIp("10.2.0.1"))));
+        byte[] announce = NetAddress.ipToBytes(NetAddress.parseIp("10.1.5.9"));
+        arpLayer.Receive(arpPacket(1, PEER_MAC, announce, new byte[6], announce));
+        assertTrue(ethernet.sentPackets.isEmpty(), "대역 밖/Gratuitous 요청에 응답함");
+        
+        // 3. 자신의 주소 응답은 여전히 자신의 MAC (공유 필드 변경 없음)
+        arpLayer.Receive(arpPacket(1, PEER_MAC, PEER_IP, new byte[6], MY_IP));
+        byte[] reply = ethernet.sentPackets.get(0);
+        assertArrayEquals(MY_MAC, Arrays.copyOfRange(reply, 8, 14));
+        assertArrayEquals(MY_IP, Arrays.copyOfRange(reply, 14, 18));
+        
+        // 4. 트라이 단위 동작: 삭제 후에는 더 짧은 프리픽스로 대체, /0은 기본 경로
+        PrefixTable table = new PrefixTable();
+        table.put(NetAddress.parseIp("10.1.5.0"), 24, 2L);
+        table.put(NetAddress.parseIp("10.1.0.0"), 16, 1L);
+        assertEquals(2L, table.lookup(NetAddress.parseIp("10.1.5.1")));
+        assertTrue(table.remove(NetAddress.parseIp("10.1.5.99"), 24));
+        assertEquals(1L, table.lookup(NetAddress.parseIp("10.1.5.1")));
+        assertEquals(NetAddress.NO_MAC, table.lookup(NetAddress.parseIp("192.168.0.1")));
+        table.put(0, 0, 9L);
+        assertEquals(9L, table.lookup(NetAddress.parseIp("192.168.0.1")));
+        assertEquals(2, table.size());
+    }
+    
+    private void assertProxyReply(String requestedIp, byte[] expectedMac) {
+        ethernet.sentPackets.clear();
+        byte[] requested = NetAddress.ipToBytes(NetAddress.parseIp(requestedIp));
+        assertTrue(arpLayer.Receive(arpPacket(1, PEER_MAC, PEER_IP, new byte[6], requested)));
+        assertEquals(1, ethernet.sentPackets.size(), requestedIp + " 응답 없음");
+        byte[] reply = ethernet.sentPackets.get(0);
+        assertEquals(2, reply[7], "Reply가 아님");
+        assertArrayEquals(expectedMac, Arrays.copyOfRange(reply, 8, 14), requestedIp + " Sender MAC");
+        assertArrayEquals(requested, Arrays.copyOfRange(reply, 14, 18), requestedIp + " Sender IP");
+        assertArrayEquals(PEER_MAC, Arrays.copyOfRange(reply, 18, 24));
+    }
+    
+    /**
+     * ARP 패킷 생성 헬퍼 (28바이트)
+     */
+    static byte[] arpPacket(int operation, byte[] senderMac, byte[] senderIp, byte[] targetMac, byte[] targetIp) {
+        ByteBuffer buffer = ByteBuffer.allocate(28);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 0x0800);
+        buffer.put((byte) 6);
+        buffer.put((byte) 4);
+        buffer.putShort((short) operation);
+        buffer.put(senderMac);
+        buffer.put(senderIp);
+        buffer.put(targetMac);
+        buffer.put(targetIp);
+        return buffer.array();
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -22,7 +23,7 @@ public class ChatAppLayerTest {
      * IP 계층 Mock (테스트용)
      */
     static class IPLayerMock implements BaseLayer {
-        private List<byte[]> sentPackets = new ArrayList<>();
+        private List<byte[]> sentPackets = Collections.synchronizedList(new ArrayList<>());
         private BaseLayer upperLayer;
         
         @Override
@@ -49,7 +50,9 @@ public class ChatAppLayerTest {
         }
         
         public List<byte[]> getSentPackets() {
-            return new ArrayList<>(sentPackets);
+            synchronized (sentPackets) {
+                return new ArrayList<>(sentPackets);
+            }
         }
         
         public void clearSentPackets() {
@@ -261,4 +264,300 @@ public class ChatAppLayerTest {
         assertTrue(received);
         assertTrue(receivedMessage[0].contains(testMessage), "한글 메시지가 제대로 재조립되어야 함");
     }
+    
+    @Test
+    @DisplayName("FEC로 손실된 Fragment 복구 테스트 (재전송 없음)")
+    void testFecRecoversLostFragments() throws Exception {
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final String[] receivedMessage = {null};
+        
+        receiverChatApp.setOnReceive(msg -> {
+            receivedMessage[0] = msg;
+            receiveLatch.countDown();
+        });
+        
+        // K=4, M=2: 그룹마다 연속 2개 손실까지 복구 가능
+        senderChatApp.setFecParameters(4, 2);
+        senderChatApp.setEncryptionEnabled(true);
+        String testMessage = "FEC protected line. ".repeat(200); // 4000바이트 → 8개 Fragment
+        senderChatApp.sendMessage(testMessage);
+        
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        long repairs = packets.stream().filter(p -> (p[0] & 0x7F) == 0x03).count();
+        assertEquals(4, repairs, "그룹 2개 × Repair 2개");
+        
+        // 첫 그룹의 Fragment 1, 2와 두 번째 그룹의 Fragment 7(마지막) 손실
+        int dataIndex = 0;
+        for (byte[] packet : packets) {
+            boolean isData = (packet[0] & 0x7F) == 0x02;
+            if (isData) {
+                int seq = dataIndex++;
+                if (seq == 1 || seq == 2 || seq == 7) {
+                    continue;
+                }
+            }
+            receiverIpLayer.simulateReceive(packet);
+        }
+        
+        assertTrue(receiveLatch.await(3, TimeUnit.SECONDS), "FEC로 복구되어 메시지가 도착해야 함");
+        assertTrue(receivedMessage[0].contains(testMessage), "복구된 메시지가 원본과 같아야 함");
+        assertEquals(3, receiverChatApp.getFecRecoveredCount(), "손실된 Fragment 3개 복구");
+    }
+    
+    @Test
+    @DisplayName("FEC 그룹을 통째로 잃은 메시지가 같은 Fragment 수의 다음 메시지와 섞이지 않음")
+    void testLostGroupDoesNotMergeWithNextMessage() throws Exception {
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        List<String> receivedMessages = Collections.synchronizedList(new ArrayList<>());
+        receiverChatApp.setOnReceive(msg -> {
+            receivedMessages.add(msg);
+            receiveLatch.countDown();
+        });
+        
+        senderChatApp.setFecParameters(4, 2);
+        String lostMessage = "first message line. ".repeat(200);   // 4000바이트 → 8개 Fragment
+        String nextMessage = "second message text. ".repeat(190);  // 3990바이트 → 8개 Fragment
+        
+        // 첫 메시지: 두 번째 그룹(Fragment 4~7)과 그 Repair를 모두 잃음 → 복구 불가
+        senderChatApp.sendMessage(lostMessage);
+        List<byte[]> first = senderIpLayer.getSentPackets();
+        senderIpLayer.clearSentPackets();
+        int dataIndex = 0;
+        int repairIndex = 0;
+        for (byte[] packet : first) {
+            int type = packet[0] & 0x7F;
+            if ((type == 0x02 && dataIndex++ >= 4) || (type == 0x03 && repairIndex++ >= 2)) {
+                continue;
+            }
+            receiverIpLayer.simulateReceive(packet);
+        }
+        assertEquals(1, receiverChatApp.getPendingReassemblies(), "미완성 메시지가 남아 있어야 함");
+        
+        // 다음 메시지: 타임스탬프가 달라지도록 잠시 후 전송, 첫 Fragment와 그 그룹의 Repair로 복구해야 함
+        Thread.sleep(5);
+        senderChatApp.sendMessage(nextMessage);
+        dataIndex = 0;
+        for (byte[] packet : senderIpLayer.getSentPackets()) {
+            if ((packet[0] & 0x7F) == 0x02 && dataIndex++ == 0) {
+                continue;
+            }
+            receiverIpLayer.simulateReceive(packet);
+        }
+        
+        assertTrue(receiveLatch.await(3, TimeUnit.SECONDS), "다음 메시지는 FEC로 복구되어 도착해야 함");
+        assertEquals(1, receivedMessages.size());
+        assertTrue(receivedMessages.get(0).contains(nextMessage), "이전 메시지의 Fragment가 섞이지 않아야 함");
+        assertEquals(1, receiverChatApp.getFecRecoveredCount());
+        assertEquals(1, receiverChatApp.getPendingReassemblies(), "잃은 메시지만 시간 초과 전까지 남음");
+    }
+    
+    @Test
+    @DisplayName("신뢰성 모드: 손실된 Fragment만 재전송하고 보낸 순서대로 전달")
+    void testReliableRetransmitAndOrdering() throws Exception {
+        CountDownLatch receiveLatch = new CountDownLatch(2);
+        List<String> receivedMessages = Collections.synchronizedList(new ArrayList<>());
+        receiverChatApp.setOnReceive(msg -> {
+            receivedMessages.add(msg);
+            receiveLatch.countDown();
+        });
+        
+        senderChatApp.setReliableEnabled(true);
+        receiverChatApp.setReliableEnabled(true);
+        String longMessage = "reliable line. ".repeat(80); // 1200바이트 → 3개 Fragment
+        senderChatApp.sendMessage(longMessage);
+        senderChatApp.sendMessage("second");
+        
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        assertEquals(4, packets.size());
+        assertTrue(packets.stream().allMatch(p -> (p[0] & 0x20) != 0), "모든 패킷에 신뢰성 플래그가 있어야 함");
+        
+        // 두 번째 Fragment 손실 → 뒤의 패킷은 순서 대기
+        for (int i = 0; i < packets.size(); i++) {
+            if (i != 1) {
+                receiverIpLayer.simulateReceive(packets.get(i));
+            }
+        }
+        
+        // ACK(누적 + SACK) 전달 → 손실된 패킷만 남음
+        List<byte[]> acks = receiverIpLayer.getSentPackets();
+        assertTrue(acks.stream().allMatch(p -> (p[0] & 0x1F) == 0x04), "수신 측은 ACK만 보내야 함");
+        receiverIpLayer.clearSentPackets();
+        acks.forEach(senderIpLayer::simulateReceive);
+        assertEquals(1, senderChatApp.getReliableStats().get("peer").unacked());
+        
+        // 전달은 비동기 - 잠시 기다린 뒤에도 아무것도 전달되지 않아야 함 (재전송은 아직 수신 측에 넘기지 않음)
+        Thread.sleep(200);
+        assertTrue(receivedMessages.isEmpty(), "손실된 Fragment가 오기 전에는 전달되지 않아야 함: " + receivedMessages);
+        
+        // RTO 후 재전송된 패킷 전달
+        long deadline = System.currentTimeMillis() + 3000;
+        while (senderIpLayer.getSentPackets().size() == packets.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<byte[]> all = senderIpLayer.getSentPackets();
+        assertTrue(all.size() > packets.size(), "RTO 후 재전송되어야 함");
+        byte[] retransmitted = all.get(packets.size());
+        // Type(1) + Priority(1) + Timestamp(8) + Session(4) + Seq(4) + Base(4): Base는 재전송 시 갱신됨
+        assertEquals(java.nio.ByteBuffer.wrap(packets.get(1)).getInt(14), java.nio.ByteBuffer.wrap(retransmitted).getInt(14),
+                     "손실된 Fragment만 재전송");
+        assertArrayEquals(java.util.Arrays.copyOfRange(packets.get(1), 22, packets.get(1).length),
+                          java.util.Arrays.copyOfRange(retransmitted, 22, retransmitted.length));
+        receiverIpLayer.simulateReceive(retransmitted);
+        receiverIpLayer.getSentPackets().forEach(senderIpLayer::simulateReceive);
+        
+        assertTrue(receiveLatch.await(3, TimeUnit.SECONDS), "두 메시지 모두 도착해야 함");
+        assertTrue(receivedMessages.get(0).contains(longMessage), "보낸 순서대로 전달되어야 함");
+        assertTrue(receivedMessages.get(1).contains("second"));
+        
+        ReliableChannel.Stats stats = senderChatApp.getReliableStats().get("peer");
+        assertEquals(0, stats.unacked());
+        assertTrue(stats.retransmissions() >= 1);
+        assertTrue(stats.rttSamples() >= 1, "처음 전송된 패킷의 ACK로 RTT를 측정해야 함");
+    }
+    
+    @Test
+    @DisplayName("배치 모드: 작은 메시지를 한 프레임으로 묶고 HIGH는 바로 전송")
+    void testBatchingCoalescesSmallMessages() throws Exception {
+        CountDownLatch receiveLatch = new CountDownLatch(6);
+        List<String> receivedMessages = Collections.synchronizedList(new ArrayList<>());
+        receiverChatApp.setOnReceive(msg -> {
+            receivedMessages.add(msg);
+            receiveLatch.countDown();
+        });
+        
+        senderChatApp.setBatchingEnabled(true);
+        senderChatApp.setBatchLatencyBudget(50_000); // 50ms (테스트 안정성)
+        for (int i = 0; i < 5; i++) {
+            senderChatApp.sendMessage("status " + i);
+        }
+        assertTrue(senderIpLayer.getSentPackets().isEmpty(), "지연 예산 동안은 전송되지 않아야 함");
+        
+        // HIGH 우선순위는 배치를 거치지 않음
+        senderChatApp.setPriority(ChatAppLayer.Priority.HIGH);
+        senderChatApp.sendMessage("urgent");
+        assertEquals(1, senderIpLayer.getSentPackets().size(), "HIGH 메시지는 바로 전송되어야 함");
+        
+        long deadline = System.currentTimeMillis() + 2000;
+        while (senderIpLayer.getSentPackets().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        assertEquals(2, packets.size(), "NORMAL 메시지 5개는 배치 프레임 하나로 전송되어야 함");
+        assertEquals(0x05, packets.get(1)[0] & 0x1F);
+        assertEquals(1, senderChatApp.getBatchFramesSent());
+        assertEquals(5, senderChatApp.getBatchedPacketCount());
+        
+        packets.forEach(receiverIpLayer::simulateReceive);
+        assertTrue(receiveLatch.await(3, TimeUnit.SECONDS), "모든 메시지가 도착해야 함");
+        assertTrue(receivedMessages.get(0).contains("urgent"));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(receivedMessages.get(i + 1).contains("status " + i), "배치 안의 순서가 유지되어야 함");
+        }
+    }
+    
+    @Test
+    @DisplayName("배치 모드: 여러 상대에게 번갈아 보내도 상대마다 배치가 유지됨")
+    void testBatchingPerPeer() throws Exception {
+        senderChatApp.setBatchingEnabled(true);
+        senderChatApp.setBatchLatencyBudget(50_000); // 50ms (테스트 안정성)
+        for (int i = 0; i < 4; i++) {
+            senderChatApp.sendMessageTo("peer-a", "to a " + i);
+            senderChatApp.sendMessageTo("peer-b", "to b " + i);
+        }
+        assertTrue(senderIpLayer.getSentPackets().isEmpty(), "상대가 바뀌어도 배치를 바로 보내지 않아야 함");
+        
+        long deadline = System.currentTimeMillis() + 2000;
+        while (senderIpLayer.getSentPackets().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        assertEquals(2, packets.size(), "상대마다 배치 프레임 하나");
+        assertTrue(packets.stream().allMatch(p -> (p[0] & 0x1F) == 0x05));
+        assertEquals(2, senderChatApp.getBatchFramesSent());
+        assertEquals(8, senderChatApp.getBatchedPacketCount());
+    }
+    
+    @Test
+    @DisplayName("배치 모드: 전송 중 stopMessageProcessing이 타이머를 멈춰도 예외 없이 모든 패킷 전송")
+    void testBatchingStopWhileSending() throws Exception {
+        senderChatApp.setBatchingEnabled(true);
+        senderChatApp.setBatchLatencyBudget(50_000);
+        int threads = 4;
+        int perThread = 200;
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String peer = "peer-" + t;
+            Thread sender = new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        assertTrue(senderChatApp.sendMessageTo(peer, "m" + i));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            senders.add(sender);
+            sender.start();
+        }
+        started.await();
+        senderChatApp.stopMessageProcessing();
+        for (Thread sender : senders) {
+            sender.join(5000);
+        }
+        assertTrue(errors.isEmpty(), "전송 중 예외: " + errors);
+        
+        // 배치 프레임 안의 패킷까지 세면 보낸 메시지 수와 같음 (배치에 남아 버려진 패킷 없음)
+        int delivered = 0;
+        for (byte[] packet : senderIpLayer.getSentPackets()) {
+            if ((packet[0] & 0x1F) != 0x05) {
+                delivered++;
+                continue;
+            }
+            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(packet, 10, packet.length - 10);
+            while (buffer.remaining() >= 2) {
+                int length = buffer.getShort() & 0xFFFF;
+                buffer.position(buffer.position() + length);
+                delivered++;
+            }
+        }
+        assertEquals(threads * perThread, delivered);
+    }
+    
+    @Test
+    @DisplayName("압축: 긴 메시지는 압축 후 Fragment화되고 수신 측에서 복원")
+    void testCompressedLongMessage() throws Exception {
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final String[] receivedMessage = {null};
+        receiverChatApp.setOnReceive(msg -> {
+            receivedMessage[0] = msg;
+            receiveLatch.countDown();
+        });
+        
+        // 붙여넣은 로그처럼 반복되는 구조 + 변하는 숫자
+        java.util.Random random = new java.util.Random(35);
+        StringBuilder log = new StringBuilder();
+        while (log.length() < 20000) {
+            log.append("{\"level\":\"INFO\",\"seq\":").append(random.nextInt(100000))
+               .append(",\"msg\":\"request handled\"}\n");
+        }
+        String testMessage = log.toString();
+        int uncompressedFragments = (testMessage.length() + 511) / 512;
+        
+        senderChatApp.setCompressionEnabled(true);
+        senderChatApp.setEncryptionEnabled(true);
+        senderChatApp.sendMessage(testMessage);
+        
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        assertTrue(packets.size() > 1, "압축 후에도 Fragment화되어야 함");
+        assertTrue(packets.size() < uncompressedFragments / 2, "Fragment 수가 절반 이하로 줄어야 함: " + packets.size());
+        assertTrue(packets.stream().allMatch(p -> (p[0] & 0x40) != 0), "압축 플래그가 있어야 함");
+        
+        packets.forEach(receiverIpLayer::simulateReceive);
+        assertTrue(receiveLatch.await(3, TimeUnit.SECONDS), "메시지 수신 대기 시간 초과");
+        assertTrue(receivedMessage[0].contains(testMessage), "압축 해제된 메시지가 원본과 같아야 함");
+        assertTrue(senderChatApp.getCompressionStats().ratio() < 0.5);
+    }
 }
@@ -0,0 +1,203 @@
+package com.demo;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 송신 QoS 스케줄러 테스트 (분류, 엄격한 우선순위, DRR, 큐 제한)
+ */
+public class EgressSchedulerTest {
+
+    private static final int PROTOCOL_CHAT_APP = 253;
+    private static final int PROTOCOL_FILE_APP = 254;
+
+    private EgressScheduler scheduler;
+    private PhysicalLayerMock physical;
+
+    /**
+     * Physical 계층 Mock (gate가 열릴 때까지 첫 전송을 붙잡아 큐가 쌓이게 함)
+     */
+    static class PhysicalLayerMock implements BaseLayer {
+        final List<byte[]> sentFrames = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch firstSendStarted = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public boolean Send(byte[] input, int length) {
+            firstSendStarted.countDown();
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sentFrames.add(input);
+            return true;
+        }
+
+        @Override
+        public String GetLayerName() { return "PhysicalMock"; }
+
+        @Override
+        public BaseLayer GetUnderLayer() { return null; }
+
+        @Override
+        public BaseLayer GetUpperLayer(int index) { return null; }
+
+        @Override
+        public void SetUnderLayer(BaseLayer layer) {}
+
+        @Override
+        public void SetUpperLayer(BaseLayer layer) {}
+    }
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new EgressScheduler();
+        physical = new PhysicalLayerMock();
+        scheduler.SetUnderLayer(physical);
+    }
+
+    @Test
+    @DisplayName("트래픽 분류: ARP/긴급 TOS는 HIGH, 파일 프로토콜은 BULK")
+    void testClassification() {
+        assertEquals(EgressScheduler.TrafficClass.HIGH, classify(arpFrame()));
+        assertEquals(EgressScheduler.TrafficClass.HIGH, classify(ipFrame(PROTOCOL_CHAT_APP, 0xE0, 100, 0)));
+        assertEquals(EgressScheduler.TrafficClass.NORMAL, classify(ipFrame(PROTOCOL_CHAT_APP, 0x00, 100, 0)));
+        assertEquals(EgressScheduler.TrafficClass.LOW, classify(ipFrame(PROTOCOL_CHAT_APP, 0x20, 100, 0)));
+        // 파일 프레임은 채팅이 남긴 TOS 값과 관계없이 BULK
+        assertEquals(EgressScheduler.TrafficClass.BULK, classify(ipFrame(PROTOCOL_FILE_APP, 0xE0, 100, 0)));
+    }
+
+    @Test
+    @DisplayName("파일 전송 중 긴급 채팅은 바로, 일반 채팅은 DRR 가중치대로 전송")
+    void testStrictPriorityAndDrr() throws Exception {
+        // 1. 파일 프레임 하나가 전송 중인 동안 파일 20개, 일반 채팅 8개, 긴급 채팅 1개가 쌓임
+        scheduler.Send(ipFrame(PROTOCOL_FILE_APP, 0, 1500, 0), 1514);
+        assertTrue(physical.firstSendStarted.await(2, TimeUnit.SECONDS));
+        for (int i = 1; i <= 20; i++) {
+            assertTrue(scheduler.Send(ipFrame(PROTOCOL_FILE_APP, 0, 1500, i), 1514));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertTrue(scheduler.Send(ipFrame(PROTOCOL_CHAT_APP, 0x00, 1500, 100 + i), 1514));
+        }
+        assertTrue(scheduler.Send(ipFrame(PROTOCOL_CHAT_APP, 0xE0, 100, 200), 114));
+
+        // 2. 전송 재개
+        physical.gate.countDown();
+        assertTrue(scheduler.awaitIdle(2000), "큐가 비워지지 않음");
+        List<Integer> order = new ArrayList<>();
+        for (byte[] frame : physical.sentFrames) {
+            order.add(ByteBuffer.wrap(frame).getShort(18) & 0xFFFF); // IP ID
+        }
+        assertEquals(30, order.size());
+
+        // 3. 전송 중이던 프레임 다음은 긴급 채팅
+        assertEquals(0, order.get(0));
+        assertEquals(200, order.get(1), "긴급 채팅이 파일 뒤에서 대기함: " + order);
+
+        // 4. NORMAL : BULK = 4 : 1 → 일반 채팅 8개는 파일 2개 사이에 모두 전송, 클래스 안에서는 순서 유지
+        int lastChat = order.indexOf(107);
+        long filesBeforeLastChat = order.subList(2, lastChat).stream().filter(id -> id < 100).count();
+        assertTrue(filesBeforeLastChat <= 2, "일반 채팅이 파일 뒤로 밀림: " + order);
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20),
+                     order.stream().filter(id -> id > 0 && id < 100).toList());
+
+        // 5. 클래스별 통계 (대기 시간 포함)
+        Map<EgressScheduler.TrafficClass, EgressScheduler.ClassStats> stats = scheduler.getStats();
+        assertEquals(21, stats.get(EgressScheduler.TrafficClass.BULK).sent());
+        assertEquals(8, stats.get(EgressScheduler.TrafficClass.NORMAL).sent());
+        assertEquals(1, stats.get(EgressScheduler.TrafficClass.HIGH).sent());
+        assertTrue(stats.get(EgressScheduler.TrafficClass.BULK).maxQueueDelayMs() > 0);
+    }
+
+    @Test
+    @DisplayName("큐 크기 제한: 가득 차면 대기 후 드롭")
+    void testQueueLimit() throws Exception {
+        scheduler.setQueueLimit(EgressScheduler.TrafficClass.BULK, 3000);
+        scheduler.setEnqueueTimeout(50);
+
+        // 전송 중 1개 + 큐 2개(3000바이트 이내)는 수락, 그다음은 드롭
+        scheduler.Send(ipFrame(PROTOCOL_FILE_APP, 0, 1486, 0), 1500);
+        assertTrue(physical.firstSendStarted.await(2, TimeUnit.SECONDS));
+        assertTrue(scheduler.Send(ipFrame(PROTOCOL_FILE_APP, 0, 1486, 1), 1500));
+        assertTrue(scheduler.Send(ipFrame(PROTOCOL_FILE_APP, 0, 1486, 2), 1500));
+        assertFalse(scheduler.Send(ipFrame(PROTOCOL_FILE_APP, 0, 1486, 3), 1500));
+
+        // 다른 클래스는 영향 없음
+        assertTrue(scheduler.Send(ipFrame(PROTOCOL_CHAT_APP, 0x00, 100, 4), 114));
+
+        physical.gate.countDown();
+        assertTrue(scheduler.awaitIdle(2000));
+        assertEquals(4, physical.sentFrames.size());
+        assertEquals(1, scheduler.getStats().get(EgressScheduler.TrafficClass.BULK).dropped());
+    }
+
+    @Test
+    @DisplayName("속도 제한: 파일은 목적지당 제한 속도로, 채팅은 지연 없이 전송")
+    void testPacing() throws Exception {
+        physical.gate.countDown();
+        scheduler.setClassRateLimit(EgressScheduler.TrafficClass.BULK, 150_000, 0); // 1500바이트 = 10ms
+
+        // 1. 파일 21개(31500바이트)는 버스트 1개 후 10ms 간격 → 약 200ms
+        long started = System.nanoTime();
+        for (int i = 0; i < 21; i++) {
+            assertTrue(scheduler.Send(ipFrame(PROTOCOL_FILE_APP, 0, 1486, i), 1500));
+        }
+        Thread.sleep(50);
+        assertTrue(scheduler.Send(ipFrame(PROTOCOL_CHAT_APP, 0x00, 100, 100), 114));
+        assertTrue(scheduler.awaitIdle(2000));
+        double elapsedMs = (System.nanoTime() - started) / 1e6;
+        assertTrue(elapsedMs >= 180, "속도 제한이 적용되지 않음: " + elapsedMs + "ms");
+
+        // 2. 파일 사이에 들어온 채팅은 속도 제한 대기와 무관하게 바로 전송
+        Map<EgressScheduler.TrafficClass, EgressScheduler.ClassStats> stats = scheduler.getStats();
+        assertTrue(stats.get(EgressScheduler.TrafficClass.NORMAL).maxQueueDelayMs() < 50,
+                   "채팅이 파일 속도 제한에 묶임: " + stats.get(EgressScheduler.TrafficClass.NORMAL));
+        assertTrue(stats.get(EgressScheduler.TrafficClass.BULK).maxQueueDelayMs() >= 150);
+
+        // 3. 다른 목적지의 제한은 영향 없음, 실행 중 제한 해제 시 바로 전송
+        scheduler.setDestinationRateLimit("192.168.0.99", 1, 0);
+        scheduler.setClassRateLimit(EgressScheduler.TrafficClass.BULK, 0, 0);
+        started = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(scheduler.Send(ipFrame(PROTOCOL_FILE_APP, 0, 1486, i), 1500));
+        }
+        assertTrue(scheduler.awaitIdle(2000));
+        assertTrue((System.nanoTime() - started) / 1e6 < 100, "제한 해제가 반영되지 않음");
+        assertEquals(TrafficPacer.RateLimit.UNLIMITED,
+                     scheduler.getClassRateLimit(EgressScheduler.TrafficClass.BULK));
+    }
+
+    private static EgressScheduler.TrafficClass classify(byte[] frame) {
+        return EgressScheduler.classify(frame, frame.length);
+    }
+
+    /**
+     * Ethernet + IPv4 프레임 생성 헬퍼
+     */
+    private static byte[] ipFrame(int protocol, int tos, int ipLength, int identification) {
+        ByteBuffer buffer = ByteBuffer.allocate(14 + ipLength);
+        buffer.put(new byte[]{0x02, 0, 0, 0, 0, 0x02}).put(new byte[]{0x02, 0, 0, 0, 0, 0x01});
+        buffer.putShort((short) 0x0800);
+        buffer.put((byte) 0x45).put((byte) tos).putShort((short) ipLength);
+        buffer.putShort((short) identification).putShort((short) 0);
+        buffer.put((byte) 128).put((byte) protocol).putShort((short) 0);
+        buffer.put(new byte[]{(byte) 192, (byte) 168, 0, 10}).put(new byte[]{(byte) 192, (byte) 168, 0, 20});
+        return buffer.array();
+    }
+
+    private static byte[] arpFrame() {
+        ByteBuffer buffer = ByteBuffer.allocate(60);
+        buffer.put(new byte[]{-1, -1, -1, -1, -1, -1}).put(new byte[]{0x02, 0, 0, 0, 0, 0x01});
+        buffer.putShort((short) 0x0806);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,183 @@
+package com.demo;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ethernet 계층 테스트 (브로드캐스트 폭주 제어, 프레임 중복 제거)
+ */
+public class EthernetLayerTest {
+
+    private static final byte[] MY_MAC = {0x02, 0x00, 0x00, 0x00, 0x00, 0x01};
+    private static final byte[] MY_IP = {(byte) 192, (byte) 168, 1, 10};
+    private static final byte[] PEER_MAC = {0x02, 0x00, 0x00, 0x00, 0x00, 0x02};
+    private static final byte[] PEER_IP = {(byte) 192, (byte) 168, 1, 20};
+
+    @Test
+    @DisplayName("브로드캐스트 폭주 제어: 출발지 MAC별 토큰 버킷 테스트")
+    void testBroadcastStormControl() {
+        EthernetLayer ethernetLayer = new EthernetLayer();
+        ethernetLayer.setSrcMac(MY_MAC);
+        ethernetLayer.setBroadcastRateLimit(100, 50);
+        int[] delivered = new int[256]; // 출발지 MAC 마지막 바이트별 ARP 전달 수
+        ARPLayer counting = new ARPLayer() {
+            @Override
+            public boolean Receive(byte[] input) {
+                delivered[input[13] & 0xFF]++;
+                return true;
+            }
+        };
+        ethernetLayer.SetUpperLayer(counting);
+        
+        // 1. 폭주 호스트(0x66)가 Request 1000개, 정상 호스트(0x02)는 10개를 섞어서 보냄
+        byte[] broadcast = {-1, -1, -1, -1, -1, -1};
+        byte[] noisyMac = {0x02, 0, 0, 0, 0, 0x66};
+        long started = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            byte[] target = {10, 0, (byte) (i >> 8), (byte) i};
+            ethernetLayer.Receive(frame(broadcast, noisyMac, arpPacket(1, noisyMac, new byte[]{10, 0, 0, 66}, new byte[6], target)));
+            if (i % 100 == 0) {
+                ethernetLayer.Receive(frame(broadcast, PEER_MAC, arpPacket(1, PEER_MAC, PEER_IP, new byte[6], target)));
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        
+        // 2. 폭주 호스트는 버스트 + 경과 시간만큼만 통과, 정상 호스트는 모두 통과
+        assertEquals(10, delivered[0x02], "정상 호스트의 브로드캐스트가 제한됨");
+        assertTrue(delivered[0x66] >= 50 && delivered[0x66] <= 50 + 100 * elapsedSeconds + 1,
+                   "폭주 호스트 제한 안 됨: " + delivered[0x66]);
+        EthernetLayer.StormStats stats = ethernetLayer.getStormStats();
+        assertEquals(1000 - delivered[0x66], stats.broadcastDropped());
+        assertEquals(2, stats.trackedSources());
+        
+        // 3. 유니캐스트는 제한 대상 아님
+        int before = delivered[0x66];
+        ethernetLayer.Receive(frame(MY_MAC, noisyMac, arpPacket(2, noisyMac, new byte[]{10, 0, 0, 66}, MY_MAC, MY_IP)));
+        assertEquals(before + 1, delivered[0x66], "유니캐스트가 제한됨");
+        assertEquals(stats.broadcastDropped(), ethernetLayer.getStormStats().broadcastDropped());
+    }
+    
+    @Test
+    @DisplayName("브로드캐스트 폭주 제어: 추적 출발지가 가득 차도 정리는 간격마다 한 번")
+    void testBroadcastStormPruneInterval() {
+        EthernetLayer ethernetLayer = new EthernetLayer();
+        ethernetLayer.setSrcMac(MY_MAC);
+        ethernetLayer.setBroadcastRateLimit(0.001, 50); // 버킷이 다시 가득 차지 않음 → 정리해도 빠지는 출발지 없음
+        int[] delivered = new int[1];
+        ethernetLayer.SetUpperLayer(new ARPLayer() {
+            @Override
+            public boolean Receive(byte[] input) {
+                delivered[0]++;
+                return true;
+            }
+        });
+        
+        // 1. 출발지 MAC 1024개로 추적 테이블을 채운 뒤, 새 MAC 2000개가 하나씩 브로드캐스트
+        byte[] broadcast = {-1, -1, -1, -1, -1, -1};
+        long started = System.nanoTime();
+        for (int i = 0; i < 1024 + 2000; i++) {
+            byte[] mac = {0x02, 0, 0, 1, (byte) (i >> 8), (byte) i};
+            byte[] target = {10, 0, (byte) (i >> 8), (byte) i};
+            ethernetLayer.Receive(frame(broadcast, mac, arpPacket(1, mac, new byte[]{10, 0, 0, 66}, new byte[6], target)));
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        
+        // 2. 새 출발지마다 정리하지 않고 공유 버킷으로 (버스트만큼만 통과)
+        EthernetLayer.StormStats stats = ethernetLayer.getStormStats();
+        assertEquals(1024, stats.trackedSources());
+        assertTrue(stats.bucketPrunes() >= 1 && stats.bucketPrunes() <= 1 + (long) elapsedSeconds,
+                   "새 출발지마다 정리함: " + stats.bucketPrunes());
+        assertEquals(1024 + 50, delivered[0]);
+        assertEquals(2000 - 50, stats.broadcastDropped());
+    }
+
+    @Test
+    @DisplayName("프레임 중복 제거: IP ID 기준 시간 창, ARP 재전송은 통과")
+    void testFrameDeduplication() {
+        EthernetLayer ethernetLayer = new EthernetLayer();
+        ethernetLayer.setSrcMac(MY_MAC);
+        int[] delivered = new int[2]; // [0] = IP, [1] = ARP
+        ethernetLayer.SetUpperLayer(new IPLayer() {
+            @Override
+            public boolean Receive(byte[] input) {
+                delivered[0]++;
+                return true;
+            }
+        });
+        ethernetLayer.SetUpperLayer(new ARPLayer() {
+            @Override
+            public boolean Receive(byte[] input) {
+                delivered[1]++;
+                return true;
+            }
+        });
+
+        // 1. 같은 IP 프레임(같은 IP ID)이 복제되어 들어오면 두 번째는 드롭
+        byte[] chat = "hello".getBytes();
+        ethernetLayer.Receive(ipFrame(1234, chat));
+        ethernetLayer.Receive(ipFrame(1234, chat));
+        assertEquals(1, delivered[0], "복제된 IP 프레임이 전달됨");
+        assertEquals(1, ethernetLayer.getDuplicateFrameDrops());
+
+        // 2. 내용이 같은 메시지라도 IP ID가 다르면 통과
+        ethernetLayer.Receive(ipFrame(1235, chat));
+        assertEquals(2, delivered[0], "같은 내용의 새 메시지가 드롭됨");
+
+        // 3. 바이트가 똑같은 ARP Request 재전송은 모두 통과
+        byte[] request = frame(new byte[]{-1, -1, -1, -1, -1, -1}, PEER_MAC,
+                               arpPacket(1, PEER_MAC, PEER_IP, new byte[6], MY_IP));
+        for (int i = 0; i < 3; i++) {
+            ethernetLayer.Receive(request);
+        }
+        assertEquals(3, delivered[1], "ARP 재전송이 드롭됨");
+
+        // 4. 시간 창이 지나면 같은 프레임도 다시 통과 (창 안에서는 계속 중복)
+        FrameDeduplicator dedup = new FrameDeduplicator(1000);
+        byte[] frame = ipFrame(7, chat);
+        assertFalse(dedup.isDuplicate(frame, frame.length, 0));
+        assertTrue(dedup.isDuplicate(frame, frame.length, 999));
+        assertTrue(dedup.isDuplicate(frame, frame.length, 1500));
+        assertFalse(dedup.isDuplicate(frame, frame.length, 4000));
+    }
+
+    /**
+     * IPv4 프레임 생성 헬퍼 (PEER → MY, 옵션 없는 20바이트 헤더)
+     */
+    private static byte[] ipFrame(int identification, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(14 + 20 + payload.length);
+        buffer.put(MY_MAC).put(PEER_MAC).putShort((short) 0x0800);
+        buffer.put((byte) 0x45).put((byte) 0).putShort((short) (20 + payload.length));
+        buffer.putShort((short) identification).putShort((short) 0);
+        buffer.put((byte) 64).put((byte) 253).putShort((short) 0);
+        buffer.put(PEER_IP).put(MY_IP).put(payload);
+        return buffer.array();
+    }
+
+    /**
+     * Ethernet 프레임 생성 헬퍼 (ARP EtherType)
+     */
+    private static byte[] frame(byte[] dstMac, byte[] srcMac, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(14 + payload.length);
+        buffer.put(dstMac).put(srcMac).putShort((short) 0x0806).put(payload);
+        return buffer.array();
+    }
+    
+    /**
+     * ARP 패킷 생성 헬퍼 (28바이트)
+     */
+    private static byte[] arpPacket(int operation, byte[] senderMac, byte[] senderIp, byte[] targetMac, byte[] targetIp) {
+        ByteBuffer buffer = ByteBuffer.allocate(28);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 0x0800);
+        buffer.put((byte) 6);
+        buffer.put((byte) 4);
+        buffer.putShort((short) operation);
+        buffer.put(senderMac);
+        buffer.put(senderIp);
+        buffer.put(targetMac);
+        buffer.put(targetIp);
+        return buffer.array();
+    }
+}
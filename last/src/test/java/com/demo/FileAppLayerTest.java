@@ -26,8 +26,16 @@ public class FileAppLayerTest {
      * IP 계층 Mock (테스트용)
      */
     static class IPLayerMock implements BaseLayer {
-        private List<byte[]> sentPackets = new ArrayList<>();
+        private final List<byte[]> sentPackets = java.util.Collections.synchronizedList(new ArrayList<>());
         private BaseLayer upperLayer;
+        private int maxPayloadSize = 0; // 0이면 MTU 알 수 없음
+        
+        void setMaxPayloadSize(int size) {
+            this.maxPayloadSize = size;
+        }
+        
+        @Override
+        public int GetMaxPayloadSize() { return maxPayloadSize; }
         
         @Override
         public boolean Send(byte[] input, int length) {
@@ -140,6 +148,47 @@ public class FileAppLayerTest {
         receivedFile.delete();
     }
     
+    @Test
+    @DisplayName("Fragment 수가 같은 두 전송이 동시에 진행되어도 섞이지 않음 (Transfer ID)")
+    void testConcurrentTransfersSameFragmentCount() throws Exception {
+        // 1. 크기가 같고 내용이 다른 파일 2개 (각각 3개 Fragment)
+        File fileA = createTestFile("test_concurrent_a.txt", "A".repeat(2500));
+        File fileB = createTestFile("test_concurrent_b.txt", "B".repeat(2500));
+        
+        CountDownLatch receiveLatch = new CountDownLatch(2);
+        List<Boolean> results = java.util.Collections.synchronizedList(new ArrayList<>());
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            results.add(success);
+            receiveLatch.countDown();
+        });
+        
+        // 2. 동시에 전송
+        senderFileApp.sendFile(fileA.getAbsolutePath());
+        senderFileApp.sendFile(fileB.getAbsolutePath());
+        Thread.sleep(1000);
+        
+        // 3. FILE_START 2개를 먼저 전달한 뒤 나머지 전달 (두 전송이 모두 진행 중인 상태)
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        assertEquals(2, packets.stream().filter(p -> p[0] == 0x01).count());
+        packets.stream().filter(p -> p[0] == 0x01).forEach(receiverIpLayer::simulateReceive);
+        packets.stream().filter(p -> p[0] != 0x01).forEach(receiverIpLayer::simulateReceive);
+        
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "두 파일 모두 수신 완료되어야 함");
+        assertEquals(List.of(true, true), results, "두 파일 모두 Merkle Root 검증 통과해야 함");
+        
+        File receivedA = new File("received_files/test_concurrent_a.txt");
+        File receivedB = new File("received_files/test_concurrent_b.txt");
+        assertArrayEquals(java.nio.file.Files.readAllBytes(fileA.toPath()),
+                          java.nio.file.Files.readAllBytes(receivedA.toPath()));
+        assertArrayEquals(java.nio.file.Files.readAllBytes(fileB.toPath()),
+                          java.nio.file.Files.readAllBytes(receivedB.toPath()));
+        
+        fileA.delete();
+        fileB.delete();
+        receivedA.delete();
+        receivedB.delete();
+    }
+    
     @Test
     @DisplayName("큰 파일 Fragmentation 테스트")
     void testLargeFileFragmentation() throws Exception {
@@ -260,6 +309,498 @@ public class FileAppLayerTest {
         receivedFile.delete();
     }
     
+    @Test
+    @DisplayName("손상된 Fragment 재전송 요청 테스트")
+    void testCorruptedFragmentRetransmission() throws Exception {
+        // 1. 테스트 파일 생성 (여러 Fragment)
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 80; i++) {
+            content.append("Integrity check line ").append(i).append("\n");
+        }
+        File testFile = createTestFile("test_crc.txt", content.toString());
+        
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final boolean[] receiveSuccess = {false};
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            receiveSuccess[0] = success;
+            receiveLatch.countDown();
+        });
+        
+        // 2. 파일 전송
+        senderFileApp.sendFile(testFile.getAbsolutePath());
+        Thread.sleep(500);
+        
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        assertTrue(packets.size() >= 4, "여러 Fragment로 나뉘어야 함");
+        senderIpLayer.clearSentPackets();
+        
+        // 3. 두 번째 FILE_DATA의 데이터 1바이트 손상 (헤더 15바이트 이후)
+        byte[] corrupted = packets.get(2);
+        corrupted[20] ^= 0x5A;
+        
+        for (byte[] packet : packets) {
+            receiverIpLayer.simulateReceive(packet);
+        }
+        
+        // 4. 수신 측은 완료하지 않고 FILE_NACK 전송
+        assertFalse(receiveLatch.await(300, TimeUnit.MILLISECONDS), "손상된 파일이 완료되면 안 됨");
+        List<byte[]> nacks = receiverIpLayer.getSentPackets();
+        assertEquals(1, nacks.size(), "FILE_NACK 1개가 전송되어야 함");
+        assertEquals(0x04, nacks.get(0)[0], "FILE_NACK 타입");
+        
+        // 5. 송신 측에 NACK 전달 → 손상된 Fragment만 재전송
+        senderIpLayer.simulateReceive(nacks.get(0));
+        Thread.sleep(300);
+        List<byte[]> retransmitted = senderIpLayer.getSentPackets();
+        assertEquals(2, retransmitted.size(), "손상된 Fragment 1개 + FILE_END만 재전송");
+        
+        for (byte[] packet : retransmitted) {
+            receiverIpLayer.simulateReceive(packet);
+        }
+        
+        // 6. 검증
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "재전송 후 수신 완료되어야 함");
+        assertTrue(receiveSuccess[0], "Merkle Root 검증 통과해야 함");
+        
+        File receivedFile = new File("received_files/test_crc.txt");
+        assertArrayEquals(java.nio.file.Files.readAllBytes(testFile.toPath()),
+                          java.nio.file.Files.readAllBytes(receivedFile.toPath()));
+        
+        testFile.delete();
+        receivedFile.delete();
+    }
+    
+    @Test
+    @DisplayName("암호화된 파일 전송 테스트")
+    void testEncryptedFileTransfer() throws Exception {
+        File testFile = createTestFile("test_encrypted.txt", "Secret file content ".repeat(150));
+        
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final boolean[] receiveSuccess = {false};
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            receiveSuccess[0] = success;
+            receiveLatch.countDown();
+        });
+        
+        senderFileApp.setEncryptionEnabled(true);
+        senderFileApp.sendFile(testFile.getAbsolutePath());
+        Thread.sleep(800);
+        
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        // 두 번째 패킷(첫 FILE_DATA)의 Flags 바이트에 암호화 플래그가 있어야 함
+        assertTrue((packets.get(1)[13] & 0x80) != 0, "암호화 플래그가 설정되어야 함");
+        
+        for (byte[] packet : packets) {
+            receiverIpLayer.simulateReceive(packet);
+        }
+        
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "파일 수신 완료 대기 시간 초과");
+        assertTrue(receiveSuccess[0], "파일 수신 실패");
+        
+        File receivedFile = new File("received_files/test_encrypted.txt");
+        assertArrayEquals(java.nio.file.Files.readAllBytes(testFile.toPath()),
+                          java.nio.file.Files.readAllBytes(receivedFile.toPath()));
+        
+        testFile.delete();
+        receivedFile.delete();
+    }
+    
+    @Test
+    @DisplayName("압축 적응 상태: 매직 넘버로 건너뛴 전송은 다시 시도하지 않고, 다른 전송에 영향 없음")
+    void testCompressionSessionsAreIndependent() {
+        ChunkCompressor compressor = new ChunkCompressor();
+        byte[] text = "INFO request handled status=200\n".repeat(40).getBytes(StandardCharsets.UTF_8);
+        byte[] jpeg = text.clone();
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        jpeg[2] = (byte) 0xFF;
+        
+        // JPEG 전송과 텍스트 전송이 번갈아 진행
+        ChunkCompressor.Session jpegTransfer = compressor.newSession();
+        ChunkCompressor.Session textTransfer = compressor.newSession();
+        int jpegCompressed = 0;
+        int textCompressed = 0;
+        for (int seq = 0; seq < 40; seq++) {
+            if (jpegTransfer.compress(seq, seq == 0 ? jpeg : text) != null) {
+                jpegCompressed++;
+            }
+            if (textTransfer.compress(seq, text) != null) {
+                textCompressed++;
+            }
+        }
+        
+        assertEquals(0, jpegCompressed, "샘플링 주기(0, 16, 32)에도 압축을 시도하지 않아야 함");
+        assertEquals(40, textCompressed, "다른 전송의 건너뛰기 상태를 공유하지 않아야 함");
+        assertEquals(40, compressor.getStats().skippedChunks(), "통계는 모든 전송 합계");
+    }
+    
+    @Test
+    @DisplayName("압축 파일 전송 테스트 (텍스트는 압축, 랜덤 데이터는 생략)")
+    void testCompressedFileTransfer() throws Exception {
+        // 1. 압축이 잘 되는 로그 형식 텍스트 + 압축되지 않는 랜덤 데이터
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            log.append("2024-01-01 12:00:").append(i % 60).append(" INFO request handled status=200\n");
+        }
+        byte[] random = new byte[8 * 1024];
+        new java.util.Random(7).nextBytes(random);
+        
+        File testFile = new File("test_compress.log");
+        try (FileOutputStream fos = new FileOutputStream(testFile)) {
+            fos.write(log.toString().getBytes(StandardCharsets.UTF_8));
+            fos.write(random);
+        }
+        
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final boolean[] receiveSuccess = {false};
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            receiveSuccess[0] = success;
+            receiveLatch.countDown();
+        });
+        
+        senderFileApp.setCompressionEnabled(true);
+        senderFileApp.sendFile(testFile.getAbsolutePath());
+        Thread.sleep(1500);
+        
+        // 2. 앞부분 Fragment는 압축 플래그, 전체 전송량은 원본보다 작아야 함
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        assertTrue((packets.get(1)[13] & 0x40) != 0, "텍스트 Fragment는 압축되어야 함");
+        
+        ChunkCompressor.Stats stats = senderFileApp.getCompressionStats();
+        System.out.println("[Test] " + stats);
+        assertTrue(stats.ratio() < 0.8, "전체 압축률이 개선되어야 함");
+        assertTrue(stats.skippedChunks() >= 6, "랜덤 데이터 Fragment는 압축을 생략해야 함");
+        
+        // 3. 수신 및 검증
+        for (byte[] packet : packets) {
+            receiverIpLayer.simulateReceive(packet);
+        }
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "파일 수신 완료 대기 시간 초과");
+        assertTrue(receiveSuccess[0], "파일 수신 실패");
+        
+        File receivedFile = new File("received_files/test_compress.log");
+        assertArrayEquals(java.nio.file.Files.readAllBytes(testFile.toPath()),
+                          java.nio.file.Files.readAllBytes(receivedFile.toPath()));
+        
+        testFile.delete();
+        receivedFile.delete();
+    }
+    
+    @Test
+    @DisplayName("FEC 파일 전송 테스트 (손실된 Fragment를 재전송 없이 복구)")
+    void testFecFileTransfer() throws Exception {
+        byte[] content = new byte[40 * 1024 + 300];
+        new java.util.Random(31).nextBytes(content);
+        File testFile = new File("test_fec.bin");
+        java.nio.file.Files.write(testFile.toPath(), content);
+        
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final boolean[] receiveSuccess = {false};
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            receiveSuccess[0] = success;
+            receiveLatch.countDown();
+        });
+        
+        senderFileApp.setFecEnabled(true);
+        senderFileApp.sendFile(testFile.getAbsolutePath());
+        Thread.sleep(1000);
+        
+        // 그룹(16개)마다 1개씩 FILE_DATA 손실
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        assertTrue(packets.stream().anyMatch(p -> p[0] == 0x07), "FILE_REPAIR가 전송되어야 함");
+        int dropped = 0;
+        for (byte[] packet : packets) {
+            if (packet[0] == 0x02) {
+                int seq = java.nio.ByteBuffer.wrap(packet, 5, 4).getInt();
+                if (seq % 16 == 5) {
+                    dropped++;
+                    continue;
+                }
+            }
+            receiverIpLayer.simulateReceive(packet);
+        }
+        
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "파일 수신 완료 대기 시간 초과");
+        assertTrue(receiveSuccess[0], "FEC 복구 후 Merkle Root 검증 통과해야 함");
+        assertTrue(receiverIpLayer.getSentPackets().isEmpty(), "재전송 요청(FILE_NACK)이 없어야 함");
+        assertEquals(dropped, receiverFileApp.getFecRecoveredCount());
+        
+        File receivedFile = new File("received_files/test_fec.bin");
+        assertArrayEquals(content, java.nio.file.Files.readAllBytes(receivedFile.toPath()));
+        
+        testFile.delete();
+        receivedFile.delete();
+    }
+    
+    @Test
+    @DisplayName("희소 파일 전송 테스트 (0 구간은 FILE_HOLE로 묶어 전송)")
+    void testSparseFileTransfer() throws Exception {
+        // 앞뒤 4KB는 랜덤, 가운데 64KB는 0
+        byte[] content = new byte[72 * 1024];
+        java.util.Random random = new java.util.Random(32);
+        byte[] head = new byte[4 * 1024];
+        random.nextBytes(head);
+        System.arraycopy(head, 0, content, 0, head.length);
+        random.nextBytes(head);
+        System.arraycopy(head, 0, content, content.length - head.length, head.length);
+        File testFile = new File("test_sparse.bin");
+        java.nio.file.Files.write(testFile.toPath(), content);
+        
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final boolean[] receiveSuccess = {false};
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            receiveSuccess[0] = success;
+            receiveLatch.countDown();
+        });
+        
+        senderFileApp.sendFile(testFile.getAbsolutePath());
+        Thread.sleep(1000);
+        
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        long holes = packets.stream().filter(p -> p[0] == 0x08).count();
+        long dataFragments = packets.stream().filter(p -> p[0] == 0x02).count();
+        assertEquals(1, holes, "연속된 0 구간은 FILE_HOLE 하나로 전송되어야 함");
+        assertEquals(8, dataFragments, "0이 아닌 Fragment만 FILE_DATA로 전송되어야 함");
+        
+        for (byte[] packet : packets) {
+            receiverIpLayer.simulateReceive(packet);
+        }
+        
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "파일 수신 완료 대기 시간 초과");
+        assertTrue(receiveSuccess[0], "Merkle Root 검증 통과해야 함");
+        
+        File receivedFile = new File("received_files/test_sparse.bin");
+        assertArrayEquals(content, java.nio.file.Files.readAllBytes(receivedFile.toPath()));
+        
+        testFile.delete();
+        receivedFile.delete();
+    }
+    
+    @Test
+    @DisplayName("델타 전송 테스트 (수신 측 기존 파일과 다른 부분만 전송)")
+    void testDeltaFileTransfer() throws Exception {
+        // 1. 수신 측에 이전 버전 파일 준비
+        byte[] oldContent = new byte[64 * 1024];
+        new java.util.Random(29).nextBytes(oldContent);
+        File receivedDir = new File("received_files");
+        receivedDir.mkdirs();
+        File basisFile = new File(receivedDir, "test_delta.bin");
+        java.nio.file.Files.write(basisFile.toPath(), oldContent);
+        
+        // 2. 새 버전: 중간 일부 수정 + 앞쪽에 몇 바이트 삽입 (블록 경계가 밀림)
+        byte[] newContent = new byte[oldContent.length + 5];
+        System.arraycopy("HEAD!".getBytes(StandardCharsets.UTF_8), 0, newContent, 0, 5);
+        System.arraycopy(oldContent, 0, newContent, 5, oldContent.length);
+        for (int i = 30_000; i < 30_100; i++) {
+            newContent[i] ^= 0x33;
+        }
+        File testFile = new File("test_delta.bin");
+        java.nio.file.Files.write(testFile.toPath(), newContent);
+        
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final boolean[] receiveSuccess = {false};
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            receiveSuccess[0] = success;
+            receiveLatch.countDown();
+        });
+        
+        // 3. 서명 요청 → 수신 측 서명 응답 → 델타 전송 순서로 패킷 전달
+        senderFileApp.setDeltaEnabled(true);
+        senderFileApp.sendFile(testFile.getAbsolutePath());
+        
+        List<byte[]> requests = waitForPackets(senderIpLayer, 1);
+        assertEquals(0x05, requests.get(0)[0], "FILE_SIG_REQUEST 타입");
+        senderIpLayer.clearSentPackets();
+        receiverIpLayer.simulateReceive(requests.get(0));
+        
+        waitForPackets(receiverIpLayer, 1);
+        Thread.sleep(200); // 나머지 서명 패킷 대기
+        List<byte[]> signatures = receiverIpLayer.getSentPackets();
+        assertEquals(0x06, signatures.get(0)[0], "FILE_SIGNATURE 타입");
+        for (byte[] packet : signatures) {
+            senderIpLayer.simulateReceive(packet);
+        }
+        Thread.sleep(800);
+        
+        // 4. 변경된 부분만 전송되어야 함 (전체 64개 Fragment 대비)
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        int dataFragments = (int) packets.stream().filter(p -> p[0] == 0x02).count();
+        System.out.println("[Test] 델타 FILE_DATA 개수: " + dataFragments);
+        assertTrue(dataFragments <= 8, "변경분만 전송되어야 함: " + dataFragments);
+        
+        for (byte[] packet : packets) {
+            receiverIpLayer.simulateReceive(packet);
+        }
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "파일 수신 완료 대기 시간 초과");
+        assertTrue(receiveSuccess[0], "델타 복원 실패");
+        assertArrayEquals(newContent, java.nio.file.Files.readAllBytes(basisFile.toPath()));
+        
+        testFile.delete();
+        basisFile.delete();
+    }
+    
+    @Test
+    @DisplayName("델타 복원: 상대가 보낸 크기가 델타 스트림과 다르면 할당 전에 거부")
+    void testDeltaApplyRejectsForgedLength() throws Exception {
+        File basis = new File("received_files", "test_delta_forged.bin");
+        basis.getParentFile().mkdirs();
+        byte[] content = new byte[8 * 1024];
+        new java.util.Random(7).nextBytes(content);
+        java.nio.file.Files.write(basis.toPath(), content);
+        try {
+            DeltaSync.Signature signature = DeltaSync.computeSignature(basis, DeltaSync.DEFAULT_BLOCK_SIZE);
+            byte[] delta = DeltaSync.encode(content, signature);
+            
+            assertArrayEquals(content, DeltaSync.apply(basis, DeltaSync.DEFAULT_BLOCK_SIZE, delta, content.length));
+            assertThrows(IOException.class,
+                () -> DeltaSync.apply(basis, DeltaSync.DEFAULT_BLOCK_SIZE, delta, Integer.MAX_VALUE),
+                "위조된 크기로 큰 배열을 할당하면 안 됨");
+            assertThrows(IOException.class,
+                () -> DeltaSync.apply(basis, DeltaSync.DEFAULT_BLOCK_SIZE, delta, content.length + 1L));
+            assertThrows(IOException.class,
+                () -> DeltaSync.apply(basis, DeltaSync.DEFAULT_BLOCK_SIZE,
+                    java.util.Arrays.copyOf(delta, delta.length - 1), content.length),
+                "잘린 델타 스트림");
+        } finally {
+            basis.delete();
+        }
+    }
+    
+    @Test
+    @DisplayName("디렉토리 배치 전송 테스트 (작은 파일 여러 개를 하나의 스트림으로)")
+    void testBatchDirectoryTransfer() throws Exception {
+        // 1. 작은 파일 300개 + 빈 파일 + 하위 디렉토리
+        File directory = new File("test_batch_dir");
+        File subDirectory = new File(directory, "sub");
+        subDirectory.mkdirs();
+        java.util.Random random = new java.util.Random(30);
+        List<File> sourceFiles = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            byte[] content = new byte[10 + random.nextInt(190)];
+            random.nextBytes(content);
+            File file = new File(i % 3 == 0 ? subDirectory : directory, "file_" + i + ".dat");
+            java.nio.file.Files.write(file.toPath(), content);
+            sourceFiles.add(file);
+        }
+        File emptyFile = new File(directory, "empty.txt");
+        emptyFile.createNewFile();
+        sourceFiles.add(emptyFile);
+        
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final boolean[] receiveSuccess = {false};
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            receiveSuccess[0] = success;
+            receiveLatch.countDown();
+        });
+        
+        // 2. 배치 전송
+        assertTrue(senderFileApp.sendDirectory(directory.getAbsolutePath()));
+        Thread.sleep(1500);
+        
+        // 3. FILE_START/FILE_END는 1개씩, FILE_DATA는 마지막을 제외하고 모두 가득 채워져야 함
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        long starts = packets.stream().filter(p -> p[0] == 0x01).count();
+        long ends = packets.stream().filter(p -> p[0] == 0x03).count();
+        List<byte[]> dataPackets = packets.stream().filter(p -> p[0] == 0x02).toList();
+        assertEquals(1, starts, "FILE_START는 1개");
+        assertEquals(1, ends, "FILE_END는 1개");
+        for (int i = 0; i < dataPackets.size() - 1; i++) {
+            int dataLen = ((dataPackets.get(i)[14] & 0xFF) << 8) | (dataPackets.get(i)[15] & 0xFF);
+            assertEquals(1024, dataLen, "Fragment는 파일 경계를 넘어 가득 채워져야 함");
+        }
+        System.out.println("[Test] 배치 전송: 파일 " + sourceFiles.size() + "개 → FILE_DATA " + dataPackets.size() + "개");
+        assertTrue(dataPackets.size() < sourceFiles.size() / 4, "파일당 Fragment 오버헤드가 없어야 함");
+        
+        // 4. 수신 및 검증
+        for (byte[] packet : packets) {
+            receiverIpLayer.simulateReceive(packet);
+        }
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "배치 수신 완료 대기 시간 초과");
+        assertTrue(receiveSuccess[0], "배치 수신 실패");
+        
+        java.nio.file.Path receivedRoot = new File("received_files", directory.getName()).toPath();
+        for (File source : sourceFiles) {
+            java.nio.file.Path relative = directory.toPath().relativize(source.toPath());
+            assertArrayEquals(java.nio.file.Files.readAllBytes(source.toPath()),
+                              java.nio.file.Files.readAllBytes(receivedRoot.resolve(relative)),
+                              "파일 내용이 다름: " + relative);
+        }
+        
+        deleteRecursively(directory);
+        deleteRecursively(receivedRoot.toFile());
+    }
+    
+    @Test
+    @DisplayName("MTU 기반 Fragment 크기 테스트 (IP 페이로드 1480바이트를 가득 채움)")
+    void testMtuSizedFragments() throws Exception {
+        // 1. 송신 측 하위 계층만 MTU를 알려줌 (수신 측은 FILE_START의 ChunkSize를 따름)
+        senderIpLayer.setMaxPayloadSize(1500 - 20);
+        assertEquals(1460, senderFileApp.getChunkSize(), "1480 - FILE_DATA 헤더(20)");
+        senderFileApp.setFecEnabled(true);
+        assertEquals(1455, senderFileApp.getChunkSize(), "FEC 사용 시 1480 - FILE_REPAIR 헤더(23) - 길이 접두어(2)");
+        senderFileApp.setFecEnabled(false);
+        assertEquals(1024, receiverFileApp.getChunkSize(), "MTU를 모르면 기본값");
+        
+        byte[] content = new byte[20000];
+        new java.util.Random(36).nextBytes(content);
+        File testFile = new File("test_mtu.bin");
+        java.nio.file.Files.write(testFile.toPath(), content);
+        
+        CountDownLatch receiveLatch = new CountDownLatch(1);
+        final boolean[] receiveSuccess = {false};
+        receiverFileApp.setOnReceiveComplete((fileName, success) -> {
+            receiveSuccess[0] = success;
+            receiveLatch.countDown();
+        });
+        
+        // 2. 전송: 20000 / 1460 → 14개 Fragment (1KB 기준이면 20개)
+        senderFileApp.sendFile(testFile.getAbsolutePath());
+        Thread.sleep(1000);
+        
+        List<byte[]> packets = senderIpLayer.getSentPackets();
+        List<byte[]> dataPackets = packets.stream().filter(p -> p[0] == 0x02).toList();
+        assertEquals(14, dataPackets.size(), "MTU에 맞춘 Fragment 수");
+        for (byte[] packet : dataPackets) {
+            assertTrue(packet.length <= 1480, "IP 페이로드를 넘는 Fragment: " + packet.length);
+        }
+        
+        // 3. 수신 및 검증
+        for (byte[] packet : packets) {
+            receiverIpLayer.simulateReceive(packet);
+        }
+        assertTrue(receiveLatch.await(5, TimeUnit.SECONDS), "파일 수신 완료 대기 시간 초과");
+        assertTrue(receiveSuccess[0], "파일 수신 실패");
+        
+        File receivedFile = new File("received_files/test_mtu.bin");
+        assertArrayEquals(content, java.nio.file.Files.readAllBytes(receivedFile.toPath()), "파일 내용이 다름");
+        
+        testFile.delete();
+        receivedFile.delete();
+    }
+    
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+    
+    /**
+     * Mock 계층에 패킷이 쌓일 때까지 대기
+     */
+    private List<byte[]> waitForPackets(IPLayerMock layer, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (layer.getSentPackets().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        List<byte[]> packets = layer.getSentPackets();
+        assertTrue(packets.size() >= count, "패킷 대기 시간 초과");
+        return packets;
+    }
+    
     /**
      * 테스트 파일 생성 헬퍼 메서드
      */
@@ -0,0 +1,114 @@
+package com.demo;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * FileSendPipeline 테스트 (순서 복원, 단계별 사용률, 작업자 수와 무관한 결과)
+ */
+public class FileSendPipelineTest {
+    
+    private static final int CHUNK_SIZE = 1024;
+    
+    private byte[] createData(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+    
+    @Test
+    @DisplayName("여러 작업자가 처리해도 Sequence 순서대로 전송")
+    void testOrderRestored() throws Exception {
+        byte[] data = createData(200 * CHUNK_SIZE + 123);
+        
+        FileSendPipeline pipeline = new FileSendPipeline(CHUNK_SIZE, 8)
+            .addStage("jitter", chunk -> {
+                // 작업자마다 처리 시간이 달라 순서가 뒤섞이도록 함
+                if (ThreadLocalRandom.current().nextInt(4) == 0) {
+                    try { Thread.sleep(1); } catch (InterruptedException ignored) {}
+                }
+            }, 4)
+            .addStage("checksum", chunk ->
+                chunk.crc = FileIntegrity.crc32c(chunk.payload, 0, chunk.payload.length), 3);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] expectedSequence = {0};
+        int count = pipeline.run(new ByteArrayInputStream(data), chunk -> {
+            assertEquals(expectedSequence[0]++, chunk.sequence, "순서가 복원되어야 함");
+            assertEquals(FileIntegrity.crc32c(chunk.plain, 0, chunk.plain.length), chunk.crc);
+            out.write(chunk.payload, 0, chunk.payload.length);
+        });
+        
+        assertEquals(201, count);
+        assertArrayEquals(data, out.toByteArray(), "재조립한 데이터가 원본과 같아야 함");
+    }
+    
+    @Test
+    @DisplayName("단계별 사용률 보고")
+    void testStageUtilizationReport() throws Exception {
+        FileSendPipeline pipeline = new FileSendPipeline(CHUNK_SIZE)
+            .addStage("checksum", chunk ->
+                chunk.leafHash = FileIntegrity.leafHash(chunk.plain, 0, chunk.plain.length), 2);
+        
+        pipeline.run(new ByteArrayInputStream(createData(64 * CHUNK_SIZE)), chunk -> {});
+        
+        Map<String, Double> utilization = pipeline.getStageUtilization();
+        assertEquals(java.util.List.of("read", "checksum", "send"), java.util.List.copyOf(utilization.keySet()));
+        for (double value : utilization.values()) {
+            assertTrue(value >= 0.0 && value <= 1.0, "사용률은 0~1 범위: " + value);
+        }
+        
+        String report = pipeline.getStageReport();
+        assertTrue(report.contains("병목"), "병목 단계가 표시되어야 함");
+    }
+    
+    @Test
+    @DisplayName("단일 작업자 vs 다중 작업자: 결과 동일, checksum 단계 사용률 보고")
+    void testWorkerScaling() throws Exception {
+        // 처리 시간 비교는 코어 수와 부하에 따라 달라지므로 단위 테스트에서는 결과와 보고서만 검사
+        byte[] data = createData(2000 * CHUNK_SIZE);
+        
+        HashRun single = runHashPipeline(data, 1);
+        HashRun multi = runHashPipeline(data, 4);
+        
+        // 작업자 수와 관계없이 같은 순서로 같은 CRC/Leaf 해시
+        assertEquals(2000, single.count());
+        assertEquals(single.count(), multi.count());
+        assertArrayEquals(single.digest(), multi.digest(), "작업자 수에 따라 결과가 달라짐");
+        
+        // 두 실행 모두 checksum 단계 사용률이 보고됨
+        for (HashRun run : new HashRun[]{single, multi}) {
+            Double checksum = run.utilization().get("checksum");
+            assertNotNull(checksum, "checksum 단계 사용률 없음");
+            assertTrue(checksum >= 0.0 && checksum <= 1.0, "사용률은 0~1 범위: " + checksum);
+            String line = String.format("%-10s 작업자 %d, 처리 %d개", "checksum", run.workers(), run.count());
+            assertTrue(run.report().contains(line), "보고서에 checksum 단계가 없음: " + run.report());
+        }
+    }
+    
+    /**
+     * 해시 파이프라인 실행 결과
+     * @param digest 전송 순서대로 누적한 Sequence/CRC/Leaf 해시의 SHA-256
+     */
+    private record HashRun(int workers, int count, byte[] digest, Map<String, Double> utilization, String report) {}
+    
+    private HashRun runHashPipeline(byte[] data, int workers) throws Exception {
+        FileSendPipeline pipeline = new FileSendPipeline(CHUNK_SIZE)
+            .addStage("checksum", chunk -> {
+                chunk.crc = FileIntegrity.crc32c(chunk.payload, 0, chunk.payload.length);
+                chunk.leafHash = FileIntegrity.leafHash(chunk.plain, 0, chunk.plain.length);
+            }, workers);
+        java.security.MessageDigest sha = java.security.MessageDigest.getInstance("SHA-256");
+        int count = pipeline.run(new ByteArrayInputStream(data), chunk -> {
+            sha.update(java.nio.ByteBuffer.allocate(8).putInt(chunk.sequence).putInt(chunk.crc).array());
+            sha.update(chunk.leafHash);
+        });
+        return new HashRun(workers, count, sha.digest(), pipeline.getStageUtilization(), pipeline.getStageReport());
+    }
+}
@@ -26,11 +26,23 @@ public class IPLayerDemuxTest {
     static class EthernetLayerMock implements BaseLayer {
         private BaseLayer upperLayer;
         private byte[] lastSentData;
+        private final java.util.List<byte[]> sentFrames = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        private int maxPayloadSize = 0; // 0이면 MTU 알 수 없음
+        private volatile boolean failSends = false;
+        private volatile String lastSenderThread;
+        
+        @Override
+        public int GetMaxPayloadSize() { return maxPayloadSize; }
         
         @Override
         public boolean Send(byte[] input, int length) {
+            lastSenderThread = Thread.currentThread().getName();
+            if (failSends) {
+                return false;
+            }
             lastSentData = new byte[length];
             System.arraycopy(input, 0, lastSentData, 0, length);
+            sentFrames.add(lastSentData);
             System.out.println("[EthernetMock] 패킷 전송: " + length + " bytes");
             return true;
         }
@@ -86,9 +98,9 @@ public class IPLayerDemuxTest {
         private byte[] mockMac = new byte[]{0x11, 0x22, 0x33, 0x44, 0x55, 0x66};
         
         @Override
-        public byte[] lookupArpCache(String ip) {
+        public long lookup(int ip) {
             // Mock: 항상 같은 MAC 주소 반환
-            return mockMac;
+            return NetAddress.macToLong(mockMac);
         }
     }
     
@@ -192,6 +204,7 @@ public class IPLayerDemuxTest {
         byte[] fileName = "test.txt".getBytes("UTF-8");
         java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(50);
         buffer.put((byte) 0x01); // TYPE_FILE_START
+        buffer.putInt(1); // transferId
         buffer.putInt(0); // sequence
         buffer.putInt(1); // totalSequences
         buffer.put((byte) fileName.length); // fileNameLen
@@ -254,6 +267,7 @@ public class IPLayerDemuxTest {
         byte[] fileNameBytes = "test.dat".getBytes("UTF-8");
         java.nio.ByteBuffer fileBuffer = java.nio.ByteBuffer.allocate(50);
         fileBuffer.put((byte) 0x01);
+        fileBuffer.putInt(1); // transferId
         fileBuffer.putInt(0);
         fileBuffer.putInt(1);
         fileBuffer.put((byte) fileNameBytes.length);
@@ -278,4 +292,470 @@ public class IPLayerDemuxTest {
         
         System.out.println("[Test] ChatApp과 FileApp 동시 사용 성공!");
     }
+    
+    @Test
+    @DisplayName("MTU를 넘는 데이터그램의 IP Fragmentation/재조립 테스트")
+    void testIpFragmentationReassembly() throws Exception {
+        // 1. MTU 1500에서 4000바이트 FileApp 데이터그램 전송
+        senderEthernet.maxPayloadSize = 1500;
+        java.util.List<byte[]> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.List<IPLayer.ReceiveDescriptor> sources = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        FileAppLayer capture = new FileAppLayer() {
+            @Override
+            public boolean receive(byte[] input, IPLayer.ReceiveDescriptor from) {
+                delivered.add(input);
+                sources.add(from);
+                return true;
+            }
+        };
+        receiverIpLayer.SetUpperLayer(capture);
+        
+        byte[] payload = new byte[4000];
+        new java.util.Random(38).nextBytes(payload);
+        payload[0] = 0x7F; // 실제 FileApp 타입과 겹치지 않도록
+        senderIpLayer.useFileProtocol();
+        assertTrue(senderIpLayer.Send(payload, payload.length));
+        
+        // 2. 3개 Fragment: 같은 ID, Offset은 8바이트 단위, 마지막만 MF=0
+        java.util.List<byte[]> frames = senderEthernet.sentFrames;
+        assertEquals(3, frames.size());
+        int id = ((frames.get(0)[4] & 0xFF) << 8) | (frames.get(0)[5] & 0xFF);
+        int expectedOffset = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            byte[] frame = frames.get(i);
+            assertTrue(frame.length <= 1500, "MTU 초과 Fragment");
+            assertEquals(id, ((frame[4] & 0xFF) << 8) | (frame[5] & 0xFF), "Fragment ID 불일치");
+            int flagsOffset = ((frame[6] & 0xFF) << 8) | (frame[7] & 0xFF);
+            assertEquals(i < frames.size() - 1, (flagsOffset & 0x2000) != 0, "MF 플래그");
+            assertEquals(expectedOffset, (flagsOffset & 0x1FFF) * 8, "Fragment Offset");
+            expectedOffset += frame.length - 20;
+        }
+        assertEquals(payload.length, expectedOffset);
+        
+        // 3. 역순 + 중복 수신 → 한 번만 원래 데이터로 전달
+        receiverEthernet.simulateReceive(frames.get(2));
+        receiverEthernet.simulateReceive(frames.get(1));
+        receiverEthernet.simulateReceive(frames.get(1));
+        assertTrue(delivered.isEmpty(), "재조립 완료 전 전달됨");
+        receiverEthernet.simulateReceive(frames.get(0));
+        assertEquals(1, delivered.size());
+        assertArrayEquals(payload, delivered.get(0));
+        assertEquals(NetAddress.parseIp("192.168.1.10"), sources.get(0).sourceIp(), "재조립된 데이터그램의 출발지");
+        assertEquals(0, receiverIpLayer.getReassemblyStats().pending());
+        
+        // 4. 완성되지 않은 데이터그램은 대기 시간이 지나면 폐기
+        IpReassembler reassembler = new IpReassembler(100);
+        int src = NetAddress.parseIp("10.0.0.1");
+        int dst = NetAddress.parseIp("10.0.0.2");
+        assertNull(reassembler.add(src, dst, 254, 7, 0, true, payload, 0, 1480, 0));
+        assertEquals(1, reassembler.getStats().pending());
+        reassembler.expire(100);
+        assertEquals(0, reassembler.getStats().pending());
+        assertEquals(1, reassembler.getStats().datagramsTimedOut());
+        assertEquals(0, reassembler.getStats().bufferedBytes());
+    }
+    
+    @Test
+    @DisplayName("상대별 재조립기는 전역 상한(4MB/64개)을 함께 씀: 출발지가 많아도 버퍼 총량 제한")
+    void testReassemblyGlobalBudget() {
+        // 1. 출발지 200개가 각자 거의 최대 크기 데이터그램의 마지막 부근 Fragment 하나씩 (각 약 64KB 버퍼)
+        int sources = 200;
+        int offset = 65000;
+        for (int i = 0; i < sources; i++) {
+            java.nio.ByteBuffer packet = java.nio.ByteBuffer.allocate(28);
+            packet.put((byte) 0x45).put((byte) 0).putShort((short) 28).putShort((short) i)
+                  .putShort((short) (0x2000 | offset / 8)).put((byte) 64).put((byte) 254).putShort((short) 0)
+                  .putInt(NetAddress.parseIp("10.1.0.0") + i).putInt(NetAddress.parseIp("192.168.1.20"))
+                  .putLong(0);
+            receiverEthernet.simulateReceive(packet.array());
+        }
+        
+        // 2. 세션은 출발지마다 생기지만 재조립 버퍼는 전역 상한 안, 넘친 Fragment는 폐기
+        IpReassembler.Stats stats = receiverIpLayer.getReassemblyStats();
+        assertEquals(sources, receiverIpLayer.getPeerCount());
+        assertTrue(stats.bufferedBytes() <= IpReassembler.MAX_BUFFERED_BYTES, "전역 버퍼 상한 초과: " + stats.bufferedBytes());
+        assertEquals(IpReassembler.MAX_PENDING_DATAGRAMS, stats.pending());
+        assertEquals(sources - IpReassembler.MAX_PENDING_DATAGRAMS, stats.fragmentsRejected());
+    }
+    
+    @Test
+    @DisplayName("ARP 응답 대기 중 패킷 보관 후 순서대로 전송, 응답이 없으면 제한 시간 후 폐기")
+    void testArpPendingQueue() throws Exception {
+        // 1. 빈 캐시의 실제 ARP 계층 사용
+        ARPLayer arp = new ARPLayer();
+        senderIpLayer.setArpLayer(arp);
+        senderIpLayer.setArpResolveTimeout(200);
+        CountDownLatch failedLatch = new CountDownLatch(1);
+        final Object[] failure = new Object[2];
+        senderIpLayer.setOnArpResolutionFailed((ip, dropped) -> {
+            failure[0] = ip;
+            failure[1] = dropped;
+            failedLatch.countDown();
+        });
+        
+        // 2. 캐시 미스: 전송은 성공(보관)하지만 아직 아무것도 나가지 않음
+        assertTrue(senderIpLayer.Send(new byte[]{1, 1}, 2));
+        assertTrue(senderIpLayer.Send(new byte[]{2, 2}, 2));
+        assertTrue(senderEthernet.sentFrames.isEmpty(), "ARP 응답 전에 전송됨");
+        assertEquals(2, senderIpLayer.getArpWaitStats().packetsQueued());
+        
+        // 3. ARP 응답 → 보관한 순서대로 전송 (응답을 받은 스레드가 아니라 타이머 스레드에서)
+        arp.addArpCacheEntry("192.168.1.20", new byte[]{0x11, 0x22, 0x33, 0x44, 0x55, 0x66});
+        awaitNoPendingDestinations();
+        assertNotEquals(Thread.currentThread().getName(), senderEthernet.lastSenderThread, "ARP 수신 스레드에서 전송함");
+        assertEquals(2, senderEthernet.sentFrames.size());
+        assertEquals(1, senderEthernet.sentFrames.get(0)[20]);
+        assertEquals(2, senderEthernet.sentFrames.get(1)[20]);
+        IPLayer.ArpWaitStats stats = senderIpLayer.getArpWaitStats();
+        assertEquals(2, stats.packetsFlushed());
+        assertEquals(0, stats.destinationsPending());
+        assertTrue(stats.maxWaitMs() >= stats.avgWaitMs());
+        
+        // 4. 응답하지 않는 목적지는 제한 시간 후 폐기 + 콜백
+        senderIpLayer.setDstIp(new byte[]{(byte) 192, (byte) 168, 1, 30});
+        assertTrue(senderIpLayer.Send(new byte[]{3, 3}, 2));
+        assertTrue(failedLatch.await(2, TimeUnit.SECONDS), "제한 시간 콜백 없음");
+        assertEquals("192.168.1.30", failure[0]);
+        assertEquals(1, failure[1]);
+        assertEquals(1, senderIpLayer.getArpWaitStats().resolutionTimeouts());
+        assertEquals(2, senderEthernet.sentFrames.size(), "폐기된 패킷이 전송됨");
+        
+        // 5. 보관 패킷 전송이 실패하면 전송 수가 아니라 폐기 수로 집계
+        senderEthernet.failSends = true;
+        senderIpLayer.setDstIp(new byte[]{(byte) 192, (byte) 168, 1, 40});
+        assertTrue(senderIpLayer.Send(new byte[]{4, 4}, 2));
+        assertTrue(senderIpLayer.Send(new byte[]{5, 5}, 2));
+        arp.addArpCacheEntry("192.168.1.40", new byte[]{0x11, 0x22, 0x33, 0x44, 0x55, 0x40});
+        awaitNoPendingDestinations();
+        stats = senderIpLayer.getArpWaitStats();
+        assertEquals(2, stats.packetsFlushed());
+        assertEquals(1 + 2, stats.packetsDropped());
+    }
+    
+    private void awaitNoPendingDestinations() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (senderIpLayer.getArpWaitStats().destinationsPending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, senderIpLayer.getArpWaitStats().destinationsPending(), "보관 패킷 전송이 끝나지 않음");
+    }
+    
+    @Test
+    @DisplayName("점보 프레임 MTU가 Ethernet → IP → 앱 계층까지 전달되는지 테스트")
+    void testJumboMtuPropagation() {
+        // 1. Physical Mock이 MTU 9000을 알려주는 실제 Ethernet/IP 스택
+        java.util.List<byte[]> frames = new java.util.ArrayList<>();
+        BaseLayer physicalMock = new BaseLayer() {
+            @Override public String GetLayerName() { return "PhysicalMock"; }
+            @Override public BaseLayer GetUnderLayer() { return null; }
+            @Override public BaseLayer GetUpperLayer(int index) { return null; }
+            @Override public void SetUnderLayer(BaseLayer layer) {}
+            @Override public void SetUpperLayer(BaseLayer layer) {}
+            @Override public int GetMaxPayloadSize() { return 9000; }
+            @Override public boolean Send(byte[] input, int length) {
+                frames.add(java.util.Arrays.copyOf(input, length));
+                return true;
+            }
+        };
+        EthernetLayer ethernet = new EthernetLayer();
+        IPLayer ip = new IPLayer();
+        FileAppLayer fileApp = new FileAppLayer();
+        ChatAppLayer chatApp = new ChatAppLayer(null);
+        ethernet.SetUnderLayer(physicalMock);
+        ip.SetUnderLayer(ethernet);
+        fileApp.SetUnderLayer(ip);
+        chatApp.SetUnderLayer(ip);
+        
+        // 2. MTU 전파 검증
+        assertEquals(9000, ethernet.getMtu());
+        assertEquals(8980, ip.GetMaxPayloadSize(), "MTU - IP 헤더");
+        assertEquals(8960, fileApp.getChunkSize(), "IP 페이로드 - FILE_DATA 헤더");
+        assertEquals(8980 - 18, chatApp.getFragmentSize(), "IP 페이로드 - FRAGMENT 헤더");
+        chatApp.setReliableEnabled(true);
+        assertEquals(8980 - 18 - 12, chatApp.getFragmentSize(), "신뢰성 헤더는 FRAGMENT에 추가됨");
+        chatApp.setReliableEnabled(false);
+        chatApp.setFecEnabled(true);
+        assertEquals(8980 - 23, chatApp.getFragmentSize(), "FEC 사용 시 REPAIR 헤더 + 길이 접두어 기준");
+        chatApp.setFecEnabled(false);
+        
+        // 3. Ethernet은 MTU까지만 전송
+        assertTrue(ethernet.Send(new byte[9000], 9000));
+        assertFalse(ethernet.Send(new byte[9001], 9001), "MTU 초과 프레임은 폐기");
+        assertEquals(1, frames.size());
+        assertEquals(9000 + 14, frames.get(0).length);
+        assertEquals(1, ethernet.getOversizeDrops());
+        
+        // 4. 직접 지정한 MTU가 우선
+        ethernet.setMtu(1500);
+        assertEquals(1460, fileApp.getChunkSize());
+        chatApp.stopMessageProcessing();
+    }
+    
+    @Test
+    @DisplayName("파일 전송마다 목적지 지정: 연달아 다른 상대에게 보내도 각자 전송되고 기본 목적지는 그대로")
+    void testFileSendPerCallDestination() throws Exception {
+        java.util.List<byte[]> frames = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        senderIpLayer.SetUnderLayer(new BaseLayer() {
+            @Override public String GetLayerName() { return "CollectMock"; }
+            @Override public BaseLayer GetUnderLayer() { return null; }
+            @Override public BaseLayer GetUpperLayer(int index) { return null; }
+            @Override public void SetUnderLayer(BaseLayer layer) {}
+            @Override public void SetUpperLayer(BaseLayer layer) {}
+            @Override public boolean Send(byte[] input, int length) {
+                frames.add(java.util.Arrays.copyOf(input, length));
+                return true;
+            }
+        });
+        FileAppLayer fileApp = new FileAppLayer();
+        fileApp.SetUnderLayer(senderIpLayer);
+        senderIpLayer.SetUpperLayer(fileApp);
+        
+        java.io.File file = java.io.File.createTempFile("per-call-dst", ".bin");
+        file.deleteOnExit();
+        byte[] content = new byte[5000];
+        new java.util.Random(49).nextBytes(content);
+        java.nio.file.Files.write(file.toPath(), content);
+        
+        // 1. 두 상대에게 연달아 전송 (전송 스레드가 시작되기 전에 다음 전송이 들어옴)
+        int peerA = NetAddress.parseIp("192.168.1.21");
+        int peerB = NetAddress.parseIp("192.168.1.22");
+        assertTrue(fileApp.sendFile(peerA, file.getAbsolutePath()));
+        assertTrue(fileApp.sendFile(peerB, file.getAbsolutePath()));
+        
+        // 2. 두 전송 모두 FILE_END까지 (IP 헤더 20바이트 뒤 FileApp Type)
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (frames) {
+                if (frames.stream().filter(f -> f[20] == 0x03).count() == 2) {
+                    break;
+                }
+            }
+            Thread.sleep(10);
+        }
+        
+        // 3. 상대마다 같은 수의 프레임, 기본 목적지(.20)로는 하나도 가지 않음
+        java.util.Map<Integer, Long> perDestination;
+        synchronized (frames) {
+            perDestination = frames.stream().collect(java.util.stream.Collectors.groupingBy(
+                f -> NetAddress.ipToInt(f, 16), java.util.stream.Collectors.counting()));
+        }
+        assertEquals(java.util.Set.of(peerA, peerB), perDestination.keySet(), "목적지가 섞임: " + perDestination);
+        assertEquals(perDestination.get(peerA), perDestination.get(peerB));
+        assertEquals(NetAddress.parseIp("192.168.1.20"), senderIpLayer.getDstIpAddress());
+    }
+    
+    @Test
+    @DisplayName("여러 스레드가 목적지/프로토콜을 패킷마다 지정해 동시에 전송해도 섞이지 않음")
+    void testConcurrentDescriptorSend() throws Exception {
+        // 1. 실제 Ethernet 계층 + 프레임을 모으는 Physical Mock
+        java.util.List<byte[]> frames = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        BaseLayer physicalMock = new BaseLayer() {
+            @Override public String GetLayerName() { return "PhysicalMock"; }
+            @Override public BaseLayer GetUnderLayer() { return null; }
+            @Override public BaseLayer GetUpperLayer(int index) { return null; }
+            @Override public void SetUnderLayer(BaseLayer layer) {}
+            @Override public void SetUpperLayer(BaseLayer layer) {}
+            @Override public boolean Send(byte[] input, int length) {
+                frames.add(java.util.Arrays.copyOf(input, length));
+                return true;
+            }
+        };
+        EthernetLayer ethernet = new EthernetLayer();
+        ethernet.SetUnderLayer(physicalMock);
+        ethernet.setSrcMac(new byte[]{0x02, 0, 0, 0, 0, 0x10});
+        IPLayer ip = new IPLayer();
+        ip.SetUnderLayer(ethernet);
+        ip.setArpLayer(senderArp);
+        ip.setMyIp(new byte[]{(byte) 192, (byte) 168, 1, 10});
+        senderArp.SetUnderLayer(ethernet);
+        senderArp.setMyMac(new byte[]{0x02, 0, 0, 0, 0, 0x10});
+        senderArp.setMyIp(new byte[]{(byte) 192, (byte) 168, 1, 10});
+        
+        // 2. 채팅(.20, 긴급), 파일(.30), ARP 요청을 동시에 전송하고, 기존 설정자도 계속 바꿈
+        int perThread = 300;
+        int chatDst = NetAddress.parseIp("192.168.1.20");
+        int fileDst = NetAddress.parseIp("192.168.1.30");
+        java.util.concurrent.atomic.AtomicBoolean running = new java.util.concurrent.atomic.AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        java.util.List<Thread> senders = java.util.List.of(
+            new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < perThread; i++) {
+                    ip.send(new byte[]{1, (byte) i}, 2, IPLayer.SendDescriptor.chat(chatDst, ChatAppLayer.Priority.HIGH));
+                }
+            }),
+            new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < perThread; i++) {
+                    ip.send(new byte[]{2, (byte) i}, 2, IPLayer.SendDescriptor.file(fileDst));
+                }
+            }),
+            new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < 20; i++) {
+                    senderArp.sendArpRequest(NetAddress.parseIp("192.168.1." + (100 + i)));
+                }
+            }));
+        Thread toggler = new Thread(() -> {
+            awaitQuietly(start);
+            while (running.get()) {
+                ip.useFileProtocol();
+                ip.setPriority(ChatAppLayer.Priority.LOW);
+                ip.setDstIp(new byte[]{(byte) 192, (byte) 168, 1, 99});
+                ip.useChatProtocol();
+                ethernet.setEtherType(0x0806);
+                ethernet.setEtherType(0x0800);
+            }
+        });
+        senders.forEach(Thread::start);
+        toggler.start();
+        start.countDown();
+        for (Thread sender : senders) {
+            sender.join(5000);
+        }
+        running.set(false);
+        toggler.join(5000);
+        
+        // 3. 모든 프레임이 자기 목적지/프로토콜/TOS/EtherType을 유지하고, IP ID는 목적지마다 중복 없음
+        java.util.Set<Long> ids = new java.util.HashSet<>();
+        int chatCount = 0;
+        int fileCount = 0;
+        for (byte[] frame : frames) {
+            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(frame);
+            int etherType = buffer.getShort(12) & 0xFFFF;
+            if (etherType == 0x0806) {
+                assertEquals(NetAddress.BROADCAST_MAC, NetAddress.macToLong(frame, 0), "ARP 요청은 브로드캐스트");
+                continue;
+            }
+            assertEquals(0x0800, etherType, "IP 패킷의 EtherType이 바뀜");
+            assertEquals(NetAddress.macToLong(new byte[]{0x11, 0x22, 0x33, 0x44, 0x55, 0x66}),
+                         NetAddress.macToLong(frame, 0), "IP 패킷이 브로드캐스트로 나감");
+            int protocol = frame[14 + 9] & 0xFF;
+            int dst = NetAddress.ipToInt(frame, 14 + 16);
+            assertTrue(ids.add(((long) dst << 16) | (buffer.getShort(18) & 0xFFFF)), "IP ID 중복");
+            if (frame[14 + 20] == 1) {
+                chatCount++;
+                assertEquals(253, protocol);
+                assertEquals(chatDst, dst);
+                assertEquals(0xE0, frame[14 + 1] & 0xFF, "채팅 우선순위(TOS)가 바뀜");
+            } else {
+                fileCount++;
+                assertEquals(254, protocol);
+                assertEquals(fileDst, dst);
+                assertEquals(0x00, frame[14 + 1] & 0xFF);
+            }
+        }
+        assertEquals(perThread, chatCount);
+        assertEquals(perThread, fileCount);
+    }
+    
+    @Test
+    @DisplayName("허브 노드: 여러 상대의 Fragment 메시지를 섞여 받아도 상대별로 재조립하고 상대마다 응답")
+    void testMultiPeerHub() throws Exception {
+        // 1. 허브(.20)에 클라이언트 2개(.10, .11) - Fragment 수가 같은 긴 메시지를 동시에 전송
+        IPLayer otherIpLayer = new IPLayer();
+        EthernetLayerMock otherEthernet = new EthernetLayerMock();
+        otherIpLayer.SetUnderLayer(otherEthernet);
+        otherIpLayer.setArpLayer(new ARPLayerMock());
+        otherIpLayer.setMyIp(new byte[]{(byte) 192, (byte) 168, 1, 11});
+        otherIpLayer.setDstIp(new byte[]{(byte) 192, (byte) 168, 1, 20});
+        senderEthernet.maxPayloadSize = 100;
+        otherEthernet.maxPayloadSize = 100;
+        ChatAppLayer client1 = new ChatAppLayer(null);
+        ChatAppLayer client2 = new ChatAppLayer(null);
+        client1.SetUnderLayer(senderIpLayer);
+        client2.SetUnderLayer(otherIpLayer);
+        
+        java.util.List<String> received = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        CountDownLatch receiveLatch = new CountDownLatch(2);
+        receiverChatApp.setOnReceive(msg -> {
+            received.add(msg);
+            receiveLatch.countDown();
+        });
+        
+        String message1 = "A".repeat(120);
+        String message2 = "B".repeat(120);
+        assertTrue(client1.sendMessage(message1));
+        assertTrue(client2.sendMessage(message2));
+        assertEquals(senderEthernet.sentFrames.size(), otherEthernet.sentFrames.size());
+        assertTrue(senderEthernet.sentFrames.size() > 1, "Fragment화되지 않음");
+        
+        // 2. 두 상대의 Fragment를 번갈아 수신
+        for (int i = 0; i < senderEthernet.sentFrames.size(); i++) {
+            receiverEthernet.simulateReceive(senderEthernet.sentFrames.get(i));
+            receiverEthernet.simulateReceive(otherEthernet.sentFrames.get(i));
+        }
+        assertTrue(receiveLatch.await(2, TimeUnit.SECONDS), "메시지 재조립 실패");
+        assertTrue(received.stream().anyMatch(msg -> msg.contains(message1)), "상대 1 메시지가 섞임: " + received);
+        assertTrue(received.stream().anyMatch(msg -> msg.contains(message2)), "상대 2 메시지가 섞임: " + received);
+        assertEquals(0, receiverIpLayer.getPeerCount(), "조각나지 않은 패킷만 받은 상대는 세션을 만들지 않음");
+        
+        // 3. 허브는 기본 목적지를 바꾸지 않고 상대마다 응답 (헤더 템플릿으로 만든 체크섬도 유효)
+        receiverEthernet.sentFrames.clear();
+        assertTrue(receiverChatApp.sendMessageTo("192.168.1.10", "hi 10"));
+        assertTrue(receiverChatApp.sendMessageTo("192.168.1.11", "hi 11"));
+        assertEquals(2, receiverEthernet.sentFrames.size());
+        assertEquals(NetAddress.parseIp("192.168.1.10"), NetAddress.ipToInt(receiverEthernet.sentFrames.get(0), 16));
+        assertEquals(NetAddress.parseIp("192.168.1.11"), NetAddress.ipToInt(receiverEthernet.sentFrames.get(1), 16));
+        for (byte[] packet : receiverEthernet.sentFrames) {
+            assertEquals(0xFFFF, headerSum(packet), "IP 헤더 체크섬 오류");
+        }
+        assertThrows(IllegalArgumentException.class, () -> receiverChatApp.sendMessageTo("192.168.1", "x"));
+        
+        // 4. 상대별 세션 통계 (세션이 생긴 뒤 받은 패킷부터 집계)
+        senderEthernet.sentFrames.clear();
+        assertTrue(client1.sendMessage("again"));
+        senderEthernet.sentFrames.forEach(receiverEthernet::simulateReceive);
+        java.util.Map<String, PeerSession.Stats> peers = receiverIpLayer.getPeerStats();
+        assertEquals(2, receiverIpLayer.getPeerCount());
+        PeerSession.Stats peer1 = peers.get("192.168.1.10");
+        assertEquals(senderEthernet.sentFrames.size(), peer1.packetsReceived());
+        assertEquals(0, peers.get("192.168.1.11").packetsReceived());
+        assertEquals(1, peer1.packetsSent());
+        assertEquals(1, peers.get("192.168.1.11").packetsSent());
+        
+        client1.stopMessageProcessing();
+        client2.stopMessageProcessing();
+    }
+    
+    @Test
+    @DisplayName("상대 테이블 상한: 상대가 MAX_PEERS를 넘어도 세션 수는 늘지 않고 전송은 계속됨")
+    void testPeerTableCap() {
+        int extra = 50;
+        for (int i = 0; i < IPLayer.MAX_PEERS + extra; i++) {
+            int destination = NetAddress.parseIp("10.0.0.0") + 1 + i;
+            assertTrue(receiverIpLayer.send(new byte[]{1}, 1, IPLayer.SendDescriptor.file(destination)));
+        }
+        assertEquals(IPLayer.MAX_PEERS, receiverIpLayer.getPeerCount(), "세션 수는 상한을 넘지 않아야 함");
+        assertEquals(extra, receiverIpLayer.getPeerTableOverflows(), "넘친 상대는 세션 없이 전송");
+        assertEquals(IPLayer.MAX_PEERS + extra, receiverEthernet.sentFrames.size());
+        
+        // 세션이 있는 상대는 그대로 조회됨
+        int first = NetAddress.parseIp("10.0.0.1");
+        assertTrue(receiverIpLayer.send(new byte[]{1}, 1, IPLayer.SendDescriptor.file(first)));
+        assertEquals(2, receiverIpLayer.getPeerStats().get("10.0.0.1").packetsSent());
+        assertEquals(extra, receiverIpLayer.getPeerTableOverflows());
+    }
+    
+    /**
+     * IP 헤더 16비트 워드 합 (체크섬 포함, 올바르면 0xFFFF)
+     */
+    private static int headerSum(byte[] packet) {
+        int sum = 0;
+        for (int i = 0; i < 20; i += 2) {
+            sum += ((packet[i] & 0xFF) << 8) | (packet[i + 1] & 0xFF);
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return sum;
+    }
+    
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }